@@ -32,7 +32,9 @@ import com.google.common.collect.Maps;
 import com.google.common.net.HttpHeaders;
 import com.google.gitiles.GitilesRequestFailureException.FailureReason;
 import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -49,12 +51,14 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jgit.util.StringUtils;
 
 /** Base servlet class for Gitiles servlets that serve Soy templates. */
 public abstract class BaseServlet extends HttpServlet {
   private static final long serialVersionUID = 1L;
   private static final String DATA_ATTRIBUTE = BaseServlet.class.getName() + "/Data";
   private static final String STREAMING_ATTRIBUTE = BaseServlet.class.getName() + "/Streaming";
+  private static final String COMPACT_PARAM = "compact";
 
   static void setNotCacheable(HttpServletResponse res) {
     res.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache, no-store, max-age=0, must-revalidate");
@@ -108,19 +112,23 @@ public abstract class BaseServlet extends HttpServlet {
       res.sendError(SC_BAD_REQUEST);
       return;
     }
-    switch (format.get()) {
-      case HTML:
-        doGetHtml(req, res);
-        break;
-      case TEXT:
-        doGetText(req, res);
-        break;
-      case JSON:
-        doGetJson(req, res);
-        break;
-      case DEFAULT:
-      default:
-        throw new GitilesRequestFailureException(FailureReason.UNSUPPORTED_RESPONSE_FORMAT);
+    try {
+      switch (format.get()) {
+        case HTML:
+          doGetHtml(req, res);
+          break;
+        case TEXT:
+          doGetText(req, res);
+          break;
+        case JSON:
+          doGetJson(req, res);
+          break;
+        case DEFAULT:
+        default:
+          throw new GitilesRequestFailureException(FailureReason.UNSUPPORTED_RESPONSE_FORMAT);
+      }
+    } finally {
+      CommitContext.release(req);
     }
   }
 
@@ -188,6 +196,10 @@ public abstract class BaseServlet extends HttpServlet {
   protected final Renderer renderer;
   private final GitilesAccess.Factory accessFactory;
 
+  // GSON instances are thread-safe and expensive to build, so are shared across requests.
+  private transient volatile Gson prettyGson;
+  private transient volatile Gson compactGson;
+
   protected BaseServlet(Renderer renderer, GitilesAccess.Factory accessFactory) {
     this.renderer = renderer;
     this.accessFactory = accessFactory;
@@ -302,20 +314,102 @@ public abstract class BaseServlet extends HttpServlet {
   protected void renderJson(
       HttpServletRequest req, HttpServletResponse res, Object src, Type typeOfSrc)
       throws IOException {
+    Gson gson = getGson(req);
     setApiHeaders(req, res, JSON);
     res.setStatus(SC_OK);
     try (Writer writer = newWriter(req, res)) {
-      newGsonBuilder(req).create().toJson(src, typeOfSrc, writer);
+      gson.toJson(src, typeOfSrc, writer);
       writer.write('\n');
     }
   }
 
-  @SuppressWarnings("unused") // Used in subclasses.
+  /** Writer of a JSON value that is produced incrementally. */
+  @FunctionalInterface
+  protected interface JsonStreamer {
+    /**
+     * Write a single JSON value.
+     *
+     * @param gson GSON instance configured for the request, for writing nested values.
+     * @param out writer positioned where the value starts.
+     * @throws IOException if an error occurred producing or writing the value.
+     */
+    void write(Gson gson, JsonWriter out) throws IOException;
+  }
+
+  /**
+   * Render JSON as it is produced.
+   *
+   * <p>Unlike {@link #renderJson(HttpServletRequest, HttpServletResponse, Object, Type)}, the value
+   * does not need to be fully built in memory before rendering. The output is byte-for-byte the
+   * same as rendering the equivalent object, provided the streamer writes fields in declaration
+   * order and omits null fields. Since headers are committed before the value is produced, errors
+   * thrown by the streamer may leave a truncated response.
+   *
+   * @param req in-progress request.
+   * @param res in-progress response.
+   * @param streamer writer of the value.
+   */
+  protected void renderJson(
+      HttpServletRequest req, HttpServletResponse res, JsonStreamer streamer) throws IOException {
+    Gson gson = getGson(req);
+    req.setAttribute(STREAMING_ATTRIBUTE, true);
+    setApiHeaders(req, res, JSON);
+    res.setStatus(SC_OK);
+    try (Writer writer = newWriter(req, res)) {
+      JsonWriter out = gson.newJsonWriter(writer);
+      streamer.write(gson, out);
+      out.flush();
+      writer.write('\n');
+    }
+  }
+
+  /**
+   * Get the GSON instance used to render JSON for a request.
+   *
+   * <p>The default implementation caches one instance for each output mode, so subclasses whose
+   * {@link #newGsonBuilder(HttpServletRequest)} depends on more of the request than {@link
+   * #isCompactJson(HttpServletRequest)} must override this method.
+   *
+   * @param req in-progress request.
+   * @return GSON instance.
+   * @throws IOException if an error occurred reading the configuration.
+   */
+  protected Gson getGson(HttpServletRequest req) throws IOException {
+    boolean compact = isCompactJson(req);
+    Gson gson = compact ? compactGson : prettyGson;
+    if (gson == null) {
+      gson = newGsonBuilder(req).create();
+      if (compact) {
+        compactGson = gson;
+      } else {
+        prettyGson = gson;
+      }
+    }
+    return gson;
+  }
+
   protected GsonBuilder newGsonBuilder(HttpServletRequest req) throws IOException {
-    return new GsonBuilder()
-        .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
-        .setPrettyPrinting()
-        .generateNonExecutableJson();
+    GsonBuilder builder =
+        new GsonBuilder()
+            .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+            .generateNonExecutableJson();
+    if (!isCompactJson(req)) {
+      builder.setPrettyPrinting();
+    }
+    return builder;
+  }
+
+  /**
+   * Check whether the client asked for compact JSON.
+   *
+   * @param req in-progress request.
+   * @return whether the {@code compact} parameter is set, in which case JSON is rendered without
+   *     whitespace between tokens.
+   */
+  protected static boolean isCompactJson(HttpServletRequest req) {
+    String compact = req.getParameter(COMPACT_PARAM);
+    return compact != null
+        && (compact.isEmpty() || Boolean.TRUE.equals(StringUtils.toBooleanOrNull(compact)));
   }
 
   /**
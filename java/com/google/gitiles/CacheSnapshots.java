@@ -0,0 +1,220 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Snapshots of in-memory caches on local disk.
+ *
+ * <p>Caches are empty after a restart, and requests are slow until popular pages refill them.
+ * Snapshots of the caches are written periodically and on shutdown, one file per cache, and read
+ * back in the background on startup. Each cache validates its own entries as it reads them, and
+ * never replaces entries cached since startup.
+ */
+class CacheSnapshots {
+  private static final Logger log = LoggerFactory.getLogger(CacheSnapshots.class);
+
+  private static final int MAGIC = 0x47534e50;
+  private static final int FORMAT_VERSION = 1;
+  private static final String SUFFIX = ".snapshot";
+
+  /** Writer of the entries of a cache. */
+  interface Writer {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  /** Reader of the entries of a cache. */
+  interface Reader {
+    void read(DataInputStream in) throws IOException;
+  }
+
+  private static class Source {
+    final Writer writer;
+    final Reader reader;
+
+    Source(Writer writer, Reader reader) {
+      this.writer = writer;
+      this.reader = reader;
+    }
+  }
+
+  private final Path directory;
+  private final Duration interval;
+  private final Map<String, Source> caches = new LinkedHashMap<>();
+
+  private ScheduledExecutorService executor;
+  private volatile boolean restored;
+
+  /**
+   * Create snapshots of caches.
+   *
+   * @param directory directory holding the snapshot files.
+   * @param interval time between periodic snapshots, or zero to only write snapshots on shutdown.
+   */
+  CacheSnapshots(Path directory, Duration interval) {
+    this.directory = checkNotNull(directory, "directory");
+    this.interval = checkNotNull(interval, "interval");
+    checkArgument(!interval.isNegative(), "interval must not be negative: %s", interval);
+  }
+
+  /**
+   * Add a cache.
+   *
+   * @param name name of the cache, used as the name of its snapshot file.
+   * @param writer writer of the entries of the cache.
+   * @param reader reader of entries written by {@code writer}.
+   * @return this.
+   */
+  synchronized CacheSnapshots add(String name, Writer writer, Reader reader) {
+    checkArgument(!caches.containsKey(name), "duplicate cache: %s", name);
+    caches.put(name, new Source(writer, reader));
+    return this;
+  }
+
+  /** Read the snapshots in the background, then start writing them periodically. */
+  synchronized void start() {
+    if (executor != null) {
+      return;
+    }
+    executor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("gitiles-cache-snapshot-%d")
+                .setDaemon(true)
+                .build());
+    executor.execute(this::restore);
+    if (!interval.isZero()) {
+      executor.scheduleWithFixedDelay(
+          this::writeLogged, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Stop writing snapshots periodically, and write them a last time.
+   *
+   * <p>If the snapshots were not fully read back yet, the files are left as they are, rather than
+   * replaced by snapshots of caches that are still mostly empty.
+   */
+  synchronized void stop() {
+    if (executor == null) {
+      return;
+    }
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    executor = null;
+    writeLogged();
+  }
+
+  /** Read each cache's snapshot, if any, skipping snapshots that are missing or unreadable. */
+  void restore() {
+    for (Map.Entry<String, Source> e : sources().entrySet()) {
+      if (Thread.currentThread().isInterrupted()) {
+        return;
+      }
+      String name = e.getKey();
+      Path file = directory.resolve(name + SUFFIX);
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+        if (in.readInt() != MAGIC
+            || in.readInt() != FORMAT_VERSION
+            || !in.readUTF().equals(name)) {
+          log.warn("Ignoring cache snapshot {} in unknown format", file);
+          continue;
+        }
+        e.getValue().reader.read(in);
+      } catch (NoSuchFileException err) {
+        continue;
+      } catch (IOException | RuntimeException err) {
+        log.warn("Failed to read cache snapshot {}", file, err);
+      }
+    }
+    restored = true;
+  }
+
+  /**
+   * Write each cache's snapshot.
+   *
+   * <p>Snapshots are written to temporary files, then renamed over the previous snapshots, so a
+   * crash while writing never leaves a truncated snapshot behind.
+   *
+   * @throws IOException if an error occurred writing a snapshot.
+   */
+  void write() throws IOException {
+    if (!restored) {
+      return;
+    }
+    Files.createDirectories(directory);
+    for (Map.Entry<String, Source> e : sources().entrySet()) {
+      String name = e.getKey();
+      Path tmp = Files.createTempFile(directory, name, SUFFIX + ".tmp");
+      try {
+        try (DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+          out.writeInt(MAGIC);
+          out.writeInt(FORMAT_VERSION);
+          out.writeUTF(name);
+          e.getValue().writer.write(out);
+        }
+        Path file = directory.resolve(name + SUFFIX);
+        try {
+          Files.move(
+              tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException err) {
+          Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    }
+  }
+
+  private void writeLogged() {
+    try {
+      write();
+    } catch (IOException | RuntimeException e) {
+      log.warn("Failed to write cache snapshots to {}", directory, e);
+    }
+  }
+
+  private synchronized Map<String, Source> sources() {
+    return new LinkedHashMap<>(caches);
+  }
+}
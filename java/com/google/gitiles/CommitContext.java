@@ -0,0 +1,184 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+import org.eclipse.jgit.http.server.ServletUtils;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.notes.NoteMap;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Request-scoped repository metadata shared by every {@link CommitData} built for a request.
+ *
+ * <p>Holds the data that is the same for every commit in a request, so that building a commit
+ * only costs what differs per commit: the peeled refs index, the commit notes map, abbreviated
+ * object names, and how tree diffs are computed. Safe for use from multiple threads building
+ * entries for the same request.
+ *
+ * <p>Obtained with {@link #get(HttpServletRequest)} and released by {@link BaseServlet} at the end
+ * of the request.
+ */
+class CommitContext implements AutoCloseable {
+  private static final String ATTRIBUTE = CommitContext.class.getName();
+  private static final int MAX_NOTE_SIZE = 524288;
+
+  /**
+   * Get the context for a request, creating it if necessary.
+   *
+   * <p>The first call for a request must happen on the request thread.
+   *
+   * @param req in-progress request.
+   * @return the context for the request.
+   */
+  static CommitContext get(HttpServletRequest req) {
+    CommitContext ctx = (CommitContext) req.getAttribute(ATTRIBUTE);
+    if (ctx == null) {
+      ctx = new CommitContext(ServletUtils.getRepository(req), RefSnapshot.loader(req));
+      req.setAttribute(ATTRIBUTE, ctx);
+    }
+    return ctx;
+  }
+
+  /**
+   * Release the context for a request, if one was created.
+   *
+   * @param req in-progress request.
+   */
+  static void release(HttpServletRequest req) {
+    CommitContext ctx = (CommitContext) req.getAttribute(ATTRIBUTE);
+    if (ctx != null) {
+      req.removeAttribute(ATTRIBUTE);
+      ctx.close();
+    }
+  }
+
+  private final Repository repo;
+  private final RefSnapshot.Loader refs;
+  private final Map<ObjectId, AbbreviatedObjectId> abbreviations = new ConcurrentHashMap<>();
+  private volatile DiffTrees diffTrees;
+
+  // Guarded by this.
+  private ObjectReader notesReader;
+  private NoteMap notes;
+  private boolean notesLoaded;
+
+  private CommitContext(Repository repo, RefSnapshot.Loader refs) {
+    this.repo = checkNotNull(repo, "repo");
+    this.refs = checkNotNull(refs, "refs");
+    this.diffTrees = new DiffTrees(repo);
+  }
+
+  /**
+   * Get the tree diffs used for commits in this request.
+   *
+   * @return tree diffs; by default, computed on demand with the repository's rename limit.
+   */
+  DiffTrees getDiffTrees() {
+    return diffTrees;
+  }
+
+  /**
+   * Set the tree diffs used for commits in this request.
+   *
+   * <p>Must be called on the request thread before any commits are built. The diffs are closed
+   * with this context.
+   *
+   * @param diffTrees tree diffs.
+   */
+  void setDiffTrees(DiffTrees diffTrees) {
+    this.diffTrees = checkNotNull(diffTrees, "diffTrees");
+  }
+
+  /**
+   * Get refs by the object they peel to.
+   *
+   * @return map of object ID to the refs pointing at it, from the snapshot of the request's refs.
+   * @throws IOException if the refs could not be read.
+   */
+  Map<AnyObjectId, Set<Ref>> getRefsById() throws IOException {
+    return refs.get().getRefsByPeeledObjectId(repo.getRefDatabase());
+  }
+
+  /**
+   * Abbreviate an object ID.
+   *
+   * @param reader reader owned by the calling thread, used on a cache miss.
+   * @param id object to abbreviate.
+   * @return the abbreviated ID.
+   * @throws IOException if the object database could not be read.
+   */
+  AbbreviatedObjectId abbreviate(ObjectReader reader, AnyObjectId id) throws IOException {
+    AbbreviatedObjectId result = abbreviations.get(id);
+    if (result == null) {
+      result = reader.abbreviate(id);
+      abbreviations.put(id.copy(), result);
+    }
+    return result;
+  }
+
+  /**
+   * Get the note for a commit from {@code refs/notes/commits}.
+   *
+   * @param id commit ID.
+   * @return the note contents, the empty string if the notes could not be read, or null if the
+   *     repository has no commit notes.
+   */
+  @Nullable
+  synchronized String getNote(AnyObjectId id) {
+    try {
+      if (!notesLoaded) {
+        notesLoaded = true;
+        Ref notesRef = repo.getRefDatabase().exactRef(Constants.R_NOTES_COMMITS);
+        if (notesRef != null) {
+          notesReader = repo.newObjectReader();
+          try (RevWalk walk = new RevWalk(notesReader)) {
+            notes = NoteMap.read(notesReader, walk.parseCommit(notesRef.getObjectId()));
+          }
+        }
+      }
+      if (notes == null) {
+        return notesReader != null ? "" : null;
+      }
+      byte[] data = notes.getCachedBytes(id, MAX_NOTE_SIZE);
+      return data != null ? new String(data, UTF_8) : "";
+    } catch (Exception e) {
+      return notesReader != null ? "" : null;
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    diffTrees.close();
+    if (notesReader != null) {
+      notesReader.close();
+      notesReader = null;
+    }
+  }
+}
@@ -26,28 +26,17 @@ import com.google.common.collect.Sets;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffFormatter;
-import org.eclipse.jgit.http.server.ServletUtils;
 import org.eclipse.jgit.lib.AbbreviatedObjectId;
-import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
-import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.notes.NoteMap;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.treewalk.AbstractTreeIterator;
-import org.eclipse.jgit.treewalk.CanonicalTreeParser;
-import org.eclipse.jgit.treewalk.EmptyTreeIterator;
-import org.eclipse.jgit.util.io.NullOutputStream;
 
 /** Format-independent data about a single commit. */
 class CommitData {
@@ -84,8 +73,6 @@ class CommitData {
 
   static class Builder {
     private ArchiveFormat archiveFormat;
-    private Map<AnyObjectId, Set<Ref>> refsById;
-    private static final int MAX_NOTE_SIZE = 524288;
 
     Builder setArchiveFormat(@Nullable ArchiveFormat archiveFormat) {
       this.archiveFormat = archiveFormat;
@@ -97,8 +84,8 @@ class CommitData {
       checkFields(fs);
       checkNotNull(req, "request");
       checkNotNull(walk, "walk");
-      Repository repo = ServletUtils.getRepository(req);
       GitilesView view = ViewFilter.getView(req);
+      CommitContext ctx = CommitContext.get(req);
 
       CommitData result = new CommitData();
 
@@ -114,9 +101,7 @@ class CommitData {
         result.sha = c.copy();
       }
       if (fs.contains(Field.ABBREV_SHA)) {
-        try (ObjectReader reader = repo.getObjectDatabase().newReader()) {
-          result.abbrev = reader.abbreviate(c);
-        }
+        result.abbrev = ctx.abbreviate(walk.getObjectReader(), c);
       }
       if (fs.contains(Field.URL)) {
         result.url = GitilesView.revision().copyFrom(view).setRevision(c).toUrl();
@@ -143,23 +128,13 @@ class CommitData {
         result.parents = Arrays.asList(c.getParents());
       }
       if (fs.contains(Field.BRANCHES)) {
-        result.branches = getRefsById(repo, c, Constants.R_HEADS);
+        result.branches = getRefsById(ctx, c, Constants.R_HEADS);
       }
       if (fs.contains(Field.TAGS)) {
-        result.tags = getRefsById(repo, c, Constants.R_TAGS);
+        result.tags = getRefsById(ctx, c, Constants.R_TAGS);
       }
       if (fs.contains(Field.NOTES)) {
-        Ref notesRef = repo.getRefDatabase().exactRef(Constants.R_NOTES_COMMITS);
-        if (notesRef != null) {
-          try {
-            byte[] data =
-                NoteMap.read(walk.getObjectReader(), walk.parseCommit(notesRef.getObjectId()))
-                    .getCachedBytes(c, MAX_NOTE_SIZE);
-            result.notes = new String(data, "utf-8");
-          } catch (Exception e) {
-            result.notes = "";
-          }
-        }
+        result.notes = ctx.getNote(c);
       }
       if (fs.contains(Field.MESSAGE)) {
         walk.parseBody(c);
@@ -181,7 +156,7 @@ class CommitData {
         result.shortMessage = msg;
       }
       if (fs.contains(Field.DIFF_TREE)) {
-        result.diffEntries = computeDiffEntries(repo, view, walk, c);
+        result.diffEntries = computeDiffEntries(ctx, view, walk, c);
       }
       return result;
     }
@@ -203,11 +178,9 @@ class CommitData {
           .toUrl();
     }
 
-    private List<Ref> getRefsById(Repository repo, ObjectId id, String prefix) throws IOException {
-      if (refsById == null) {
-        refsById = repo.getAllRefsByPeeledObjectId();
-      }
-      Set<Ref> refs = refsById.get(id);
+    private static List<Ref> getRefsById(CommitContext ctx, ObjectId id, String prefix)
+        throws IOException {
+      Set<Ref> refs = ctx.getRefsById().get(id);
       if (refs == null) {
         return ImmutableList.of();
       }
@@ -217,44 +190,28 @@ class CommitData {
           .collect(toList());
     }
 
-    private AbstractTreeIterator getTreeIterator(RevWalk walk, RevCommit commit)
-        throws IOException {
-      CanonicalTreeParser p = new CanonicalTreeParser();
-      p.reset(walk.getObjectReader(), walk.parseTree(walk.parseCommit(commit).getTree()));
-      return p;
-    }
-
     private DiffList computeDiffEntries(
-        Repository repo, GitilesView view, RevWalk walk, RevCommit commit) throws IOException {
+        CommitContext ctx, GitilesView view, RevWalk walk, RevCommit commit) throws IOException {
       DiffList result = new DiffList();
       result.revision =
           view.getRevision().matches(commit)
               ? view.getRevision()
               : Revision.peeled(commit.name(), commit);
 
-      AbstractTreeIterator oldTree;
       switch (commit.getParentCount()) {
         case 0:
           result.oldRevision = Revision.NULL;
-          oldTree = new EmptyTreeIterator();
           break;
         case 1:
           result.oldRevision =
               Revision.peeled(result.revision.getName() + "^", commit.getParent(0));
-          oldTree = getTreeIterator(walk, commit.getParent(0));
           break;
         default:
           // TODO(dborowitz): handle merges
           return result;
       }
-      AbstractTreeIterator newTree = getTreeIterator(walk, commit);
-
-      try (DiffFormatter diff = new DiffFormatter(NullOutputStream.INSTANCE)) {
-        diff.setRepository(repo);
-        diff.setDetectRenames(true);
-        result.entries = diff.scan(oldTree, newTree);
-        return result;
-      }
+      result.entries = ctx.getDiffTrees().scan(walk, commit);
+      return result;
     }
   }
 
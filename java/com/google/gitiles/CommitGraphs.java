@@ -0,0 +1,76 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import org.eclipse.jgit.internal.storage.commitgraph.CommitGraph;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+
+/**
+ * Generation numbers read from a repository's commit-graph.
+ *
+ * <p>JGit only exposes commit-graph data through {@code
+ * org.eclipse.jgit.internal.storage.commitgraph}, an internal package that may change in any JGit
+ * release. This class is the only user of that package, so a JGit upgrade that changes it only
+ * needs changes here. Callers must still work when the repository has no commit-graph, in which
+ * case no commit is found.
+ */
+final class CommitGraphs {
+  private static final CommitGraphs EMPTY = new CommitGraphs(CommitGraph.EMPTY);
+
+  /**
+   * Get the commit-graph of a repository.
+   *
+   * @param reader reader for the repository.
+   * @return the repository's commit-graph, or one containing no commits if it has none.
+   * @throws IOException if an error occurred reading the commit-graph.
+   */
+  static CommitGraphs of(ObjectReader reader) throws IOException {
+    return reader.getCommitGraph().map(CommitGraphs::new).orElse(EMPTY);
+  }
+
+  private final CommitGraph graph;
+
+  private CommitGraphs(CommitGraph graph) {
+    this.graph = checkNotNull(graph, "graph");
+  }
+
+  /**
+   * Check whether a commit is in the commit-graph.
+   *
+   * <p>A commit-graph holds every ancestor of the commits in it.
+   *
+   * @param id commit ID.
+   * @return whether {@code id} is in the commit-graph.
+   */
+  boolean contains(AnyObjectId id) {
+    return graph.findGraphPosition(id) >= 0;
+  }
+
+  /**
+   * Get the generation number of a commit.
+   *
+   * @param id commit ID.
+   * @return generation number of {@code id}, or 0 if it is not in the commit-graph or the
+   *     commit-graph does not record generation numbers.
+   */
+  int getGeneration(AnyObjectId id) {
+    int pos = graph.findGraphPosition(id);
+    return pos >= 0 ? Math.max(graph.getCommitData(pos).getGeneration(), 0) : 0;
+  }
+}
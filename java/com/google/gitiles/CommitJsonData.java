@@ -44,6 +44,9 @@ public class CommitJsonData {
     public List<Commit> log;
     public String previous;
     public String next;
+    public String previousCursor;
+    public String nextCursor;
+    public Boolean truncated;
   }
 
   public static class Ident {
@@ -0,0 +1,543 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.AbstractCache;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.util.NB;
+
+/**
+ * Compact cache of primitive values keyed by object ID within a scope.
+ *
+ * <p>A Guava cache keyed by {@link org.eclipse.jgit.lib.ObjectId} spends several times the size of
+ * the ID itself on the key, its boxed value and the cache's own per-entry objects. This cache
+ * instead stores entries in open-addressing tables of primitive arrays: the 20 raw bytes of the ID,
+ * an interned scope ID, the write time and the value, about 29 bytes per slot for boolean values
+ * and 37 for long values. Scopes, such as a user and repository pair, are interned by {@link
+ * #scope(Object...)}.
+ *
+ * <p>The cache is bounded by a number of bytes rather than of entries. Like a Guava cache with a
+ * maximum size, it evicts approximately least recently used entries, here with the clock algorithm,
+ * and like one with {@link CacheBuilder#expireAfterWrite}, it can expire entries a fixed time after
+ * they were written. Unlike a loading Guava cache, concurrent misses of the same key may each
+ * compute the value.
+ */
+class CompactObjectCache {
+  private static final int SEGMENTS = 16;
+  private static final int MIN_SLOTS = 16;
+  private static final int MAX_SLOTS = 1 << 26;
+  private static final int INITIAL_SLOTS = 1 << 10;
+  private static final int MAX_SCOPES = 64 << 10;
+
+  private static final byte OCCUPIED = 1;
+  private static final byte REFERENCED = 2;
+  private static final byte TRUE = 4;
+
+  /** Receiver of the entries of a cache. */
+  interface EntryVisitor {
+    /**
+     * Receive an entry.
+     *
+     * @param scope values identifying the scope of the entry, as passed to {@link
+     *     #scope(Object...)}.
+     * @param id object ID.
+     * @param value cached value.
+     * @throws IOException if the visitor failed to write out the entry.
+     */
+    void visit(List<Object> scope, ObjectId id, long value) throws IOException;
+  }
+
+  /**
+   * Get the size of a slot.
+   *
+   * @param longValues whether the cache stores long values rather than booleans.
+   * @return number of bytes used by each slot of the cache's tables.
+   */
+  static int bytesPerSlot(boolean longValues) {
+    return Constants.OBJECT_ID_LENGTH
+        + 2 * Integer.BYTES
+        + Byte.BYTES
+        + (longValues ? Long.BYTES : 0);
+  }
+
+  private final boolean longValues;
+  private final int expireSeconds;
+  private final Ticker ticker;
+  private final long startNanos;
+  private final Segment[] segments;
+  private final AbstractCache.SimpleStatsCounter stats = new AbstractCache.SimpleStatsCounter();
+
+  // Scope IDs are never reused within a generation, so entries of a scope evicted from this cache
+  // are never returned for another scope. Only scope() writes these fields, holding the lock on
+  // scopes.
+  private final Cache<List<Object>, Long> scopes;
+  private int nextScope;
+  private volatile int generation;
+
+  /**
+   * Create a cache.
+   *
+   * @param maxBytes maximum number of bytes to use for entries.
+   * @param expireAfterWrite time after which entries expire, or zero to never expire entries.
+   * @param longValues whether to store long values rather than booleans.
+   */
+  CompactObjectCache(long maxBytes, Duration expireAfterWrite, boolean longValues) {
+    this(maxBytes, expireAfterWrite, longValues, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  CompactObjectCache(long maxBytes, Duration expireAfterWrite, boolean longValues, Ticker ticker) {
+    checkArgument(maxBytes > 0, "maxBytes must be positive: %s", maxBytes);
+    checkArgument(
+        !expireAfterWrite.isNegative(),
+        "expireAfterWrite must not be negative: %s",
+        expireAfterWrite);
+    this.longValues = longValues;
+    long seconds = expireAfterWrite.getSeconds() + (expireAfterWrite.getNano() > 0 ? 1 : 0);
+    this.expireSeconds = (int) Math.min(seconds, Integer.MAX_VALUE);
+    this.ticker = checkNotNull(ticker, "ticker");
+    this.startNanos = ticker.read();
+
+    long slots = maxBytes / SEGMENTS / bytesPerSlot(longValues);
+    int maxSlots = (int) Long.highestOneBit(Math.max(MIN_SLOTS, Math.min(slots, MAX_SLOTS)));
+    segments = new Segment[SEGMENTS];
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(maxSlots);
+    }
+    scopes = CacheBuilder.newBuilder().maximumSize(MAX_SCOPES).build();
+  }
+
+  /**
+   * Get a scope.
+   *
+   * @param parts values identifying the scope, such as a user key and a repository name.
+   * @return token identifying the scope in calls to {@link #get(long, AnyObjectId, long)} and
+   *     {@link #put(long, AnyObjectId, long)}.
+   */
+  long scope(Object... parts) {
+    List<Object> key = ImmutableList.copyOf(parts);
+    Long token = scopes.getIfPresent(key);
+    if (token != null) {
+      return token;
+    }
+    synchronized (scopes) {
+      token = scopes.getIfPresent(key);
+      if (token == null) {
+        if (nextScope == Integer.MAX_VALUE) {
+          // Out of IDs. Entries put with a token of the old generation are dropped, so clearing
+          // the tables after changing generations leaves no entry of a scope ID about to be
+          // reused.
+          generation++;
+          scopes.invalidateAll();
+          nextScope = 0;
+          invalidateAll();
+        }
+        token = ((long) generation << 32) | (nextScope++ & 0xffffffffL);
+        scopes.put(key, token);
+      }
+      return token;
+    }
+  }
+
+  /**
+   * Get a cached value.
+   *
+   * @param scope token returned by {@link #scope(Object...)}.
+   * @param id object ID.
+   * @param missing value to return if the entry is not cached; must not be a value ever put.
+   * @return the cached value, or {@code missing}.
+   */
+  long get(long scope, AnyObjectId id, long missing) {
+    int h = hash(id.hashCode(), (int) scope);
+    long value = segment(h).get(scope, h, id, missing, now());
+    if (value == missing) {
+      stats.recordMisses(1);
+    } else {
+      stats.recordHits(1);
+    }
+    return value;
+  }
+
+  /**
+   * Cache a value.
+   *
+   * @param scope token returned by {@link #scope(Object...)}.
+   * @param id object ID.
+   * @param value value to cache; 0 or 1 unless the cache stores long values.
+   */
+  void put(long scope, AnyObjectId id, long value) {
+    checkArgument(longValues || value == 0 || value == 1, "not a boolean value: %s", value);
+    int h = hash(id.hashCode(), (int) scope);
+    segment(h).put(scope, h, id, value, now(), true);
+  }
+
+  /**
+   * Cache a value unless one is already cached.
+   *
+   * @param scope token returned by {@link #scope(Object...)}.
+   * @param id object ID.
+   * @param value value to cache; 0 or 1 unless the cache stores long values.
+   */
+  void putIfAbsent(long scope, AnyObjectId id, long value) {
+    checkArgument(longValues || value == 0 || value == 1, "not a boolean value: %s", value);
+    int h = hash(id.hashCode(), (int) scope);
+    segment(h).put(scope, h, id, value, now(), false);
+  }
+
+  /**
+   * Visit the entries of the cache.
+   *
+   * <p>Each table is copied under its lock and visited outside of it, so a slow visitor does not
+   * block lookups. Expired entries, and entries of scopes no longer interned, are skipped.
+   *
+   * @param visitor receiver of the entries.
+   * @throws IOException if the visitor failed.
+   */
+  void forEach(EntryVisitor visitor) throws IOException {
+    Map<Integer, List<Object>> scopeParts = new HashMap<>();
+    int gen = generation;
+    for (Map.Entry<List<Object>, Long> e : scopes.asMap().entrySet()) {
+      long token = e.getValue();
+      if ((int) (token >>> 32) == gen) {
+        scopeParts.put((int) token, e.getKey());
+      }
+    }
+    for (Segment s : segments) {
+      s.forEach(gen, scopeParts, visitor, now());
+    }
+  }
+
+  /**
+   * Get the number of entries.
+   *
+   * @return approximate number of entries in the cache, including expired entries not yet evicted.
+   */
+  long size() {
+    long size = 0;
+    for (Segment s : segments) {
+      size += s.size();
+    }
+    return size;
+  }
+
+  /** Remove all entries. */
+  void invalidateAll() {
+    for (Segment s : segments) {
+      s.clear();
+    }
+  }
+
+  /**
+   * Get a view of this cache as a Guava cache.
+   *
+   * <p>The view supports {@link Cache#size()}, {@link Cache#invalidateAll()} and {@link
+   * Cache#stats()}, for monitoring code written against Guava caches. Entries cannot be read or
+   * written through the view.
+   *
+   * @return view of this cache.
+   */
+  <V> Cache<Object, V> asCache() {
+    return new AbstractCache<Object, V>() {
+      @Override
+      public @Nullable V getIfPresent(Object key) {
+        return null;
+      }
+
+      @Override
+      public long size() {
+        return CompactObjectCache.this.size();
+      }
+
+      @Override
+      public void invalidateAll() {
+        CompactObjectCache.this.invalidateAll();
+      }
+
+      @Override
+      public CacheStats stats() {
+        return stats.snapshot();
+      }
+    };
+  }
+
+  private Segment segment(int h) {
+    return segments[h >>> 28];
+  }
+
+  private int now() {
+    long seconds = TimeUnit.NANOSECONDS.toSeconds(ticker.read() - startNanos);
+    return (int) Math.min(seconds, Integer.MAX_VALUE);
+  }
+
+  private static int hash(int idHash, int scopeId) {
+    // Object IDs are uniformly distributed, so the top bits selecting the segment can come
+    // straight from the ID; the low bits selecting the slot also depend on the scope.
+    int h = idHash ^ (scopeId * 0x9e3779b9);
+    return h ^ (h >>> 16);
+  }
+
+  /** Open-addressing table with linear probing and backward-shift deletion. */
+  private class Segment {
+    private final int maxSlots;
+
+    private byte[] keys;
+    private int[] scopeIds;
+    private int[] written;
+    private byte[] flags;
+    private long[] values;
+    private int count;
+    private int hand;
+
+    private Segment(int maxSlots) {
+      this.maxSlots = maxSlots;
+      allocate(Math.min(maxSlots, INITIAL_SLOTS));
+    }
+
+    private void allocate(int slots) {
+      keys = new byte[slots * Constants.OBJECT_ID_LENGTH];
+      scopeIds = new int[slots];
+      written = new int[slots];
+      flags = new byte[slots];
+      values = longValues ? new long[slots] : null;
+      count = 0;
+      hand = 0;
+    }
+
+    synchronized long get(long scope, int h, AnyObjectId id, long missing, int now) {
+      if ((int) (scope >>> 32) != generation) {
+        return missing;
+      }
+      int i = find(h, (int) scope, id);
+      if (i < 0) {
+        return missing;
+      }
+      if (isExpired(i, now)) {
+        remove(i);
+        return missing;
+      }
+      flags[i] |= REFERENCED;
+      if (longValues) {
+        return values[i];
+      }
+      return (flags[i] & TRUE) != 0 ? 1 : 0;
+    }
+
+    synchronized void put(
+        long scope, int h, AnyObjectId id, long value, int now, boolean replace) {
+      if ((int) (scope >>> 32) != generation) {
+        return;
+      }
+      int i = find(h, (int) scope, id);
+      if (i >= 0 && !replace && !isExpired(i, now)) {
+        return;
+      }
+      if (i < 0) {
+        if (count >= flags.length / 4 * 3) {
+          if (flags.length < maxSlots) {
+            resize(flags.length * 2);
+          } else {
+            evict(now);
+          }
+        }
+        i = freeSlot(h);
+        id.copyRawTo(keys, i * Constants.OBJECT_ID_LENGTH);
+        scopeIds[i] = (int) scope;
+        count++;
+      }
+      written[i] = now;
+      flags[i] = (byte) (OCCUPIED | REFERENCED | (!longValues && value != 0 ? TRUE : 0));
+      if (longValues) {
+        values[i] = value;
+      }
+    }
+
+    synchronized int size() {
+      return count;
+    }
+
+    void forEach(int gen, Map<Integer, List<Object>> scopeParts, EntryVisitor visitor, int now)
+        throws IOException {
+      byte[] ids;
+      int[] entryScopes;
+      long[] entryValues;
+      int n = 0;
+      synchronized (this) {
+        if (gen != generation) {
+          return;
+        }
+        ids = new byte[count * Constants.OBJECT_ID_LENGTH];
+        entryScopes = new int[count];
+        entryValues = new long[count];
+        for (int i = 0; i < flags.length; i++) {
+          if ((flags[i] & OCCUPIED) == 0 || isExpired(i, now)) {
+            continue;
+          }
+          System.arraycopy(
+              keys,
+              i * Constants.OBJECT_ID_LENGTH,
+              ids,
+              n * Constants.OBJECT_ID_LENGTH,
+              Constants.OBJECT_ID_LENGTH);
+          entryScopes[n] = scopeIds[i];
+          entryValues[n] = longValues ? values[i] : (flags[i] & TRUE) != 0 ? 1 : 0;
+          n++;
+        }
+      }
+      for (int i = 0; i < n; i++) {
+        List<Object> scope = scopeParts.get(entryScopes[i]);
+        if (scope != null) {
+          visitor.visit(
+              scope,
+              ObjectId.fromRaw(ids, i * Constants.OBJECT_ID_LENGTH),
+              entryValues[i]);
+        }
+      }
+    }
+
+    synchronized void clear() {
+      allocate(Math.min(maxSlots, INITIAL_SLOTS));
+    }
+
+    private int find(int h, int scopeId, AnyObjectId id) {
+      int mask = flags.length - 1;
+      for (int i = h & mask; (flags[i] & OCCUPIED) != 0; i = (i + 1) & mask) {
+        if (scopeIds[i] == scopeId && id.compareTo(keys, i * Constants.OBJECT_ID_LENGTH) == 0) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private int freeSlot(int h) {
+      int mask = flags.length - 1;
+      int i = h & mask;
+      while ((flags[i] & OCCUPIED) != 0) {
+        i = (i + 1) & mask;
+      }
+      return i;
+    }
+
+    private int hashAt(int i) {
+      // AnyObjectId.hashCode() is the second word of the ID.
+      return hash(NB.decodeInt32(keys, i * Constants.OBJECT_ID_LENGTH + 4), scopeIds[i]);
+    }
+
+    private boolean isExpired(int i, int now) {
+      return expireSeconds > 0 && now - written[i] >= expireSeconds;
+    }
+
+    private void evict(int now) {
+      // Clock: sweep the table, giving each recently read or written entry a second chance. The
+      // caller only evicts from a table at least 3/4 full, so the sweep finds a victim within two
+      // laps.
+      int mask = flags.length - 1;
+      while (true) {
+        int i = hand;
+        if ((flags[i] & OCCUPIED) != 0) {
+          if ((flags[i] & REFERENCED) == 0 || isExpired(i, now)) {
+            remove(i);
+            stats.recordEviction();
+            return;
+          }
+          flags[i] &= ~REFERENCED;
+        }
+        hand = (i + 1) & mask;
+      }
+    }
+
+    private void remove(int i) {
+      // Shift back later entries of the probe sequence, so that lookups never need tombstones.
+      int mask = flags.length - 1;
+      int j = i;
+      while (true) {
+        j = (j + 1) & mask;
+        if ((flags[j] & OCCUPIED) == 0) {
+          break;
+        }
+        int home = hashAt(j) & mask;
+        if (((j - home) & mask) >= ((j - i) & mask)) {
+          move(j, i);
+          i = j;
+        }
+      }
+      flags[i] = 0;
+      count--;
+    }
+
+    private void move(int from, int to) {
+      System.arraycopy(
+          keys,
+          from * Constants.OBJECT_ID_LENGTH,
+          keys,
+          to * Constants.OBJECT_ID_LENGTH,
+          Constants.OBJECT_ID_LENGTH);
+      scopeIds[to] = scopeIds[from];
+      written[to] = written[from];
+      flags[to] = flags[from];
+      if (longValues) {
+        values[to] = values[from];
+      }
+    }
+
+    private void resize(int slots) {
+      byte[] oldKeys = keys;
+      int[] oldScopeIds = scopeIds;
+      int[] oldWritten = written;
+      byte[] oldFlags = flags;
+      long[] oldValues = values;
+      int oldCount = count;
+      allocate(slots);
+      for (int i = 0; i < oldFlags.length; i++) {
+        if ((oldFlags[i] & OCCUPIED) == 0) {
+          continue;
+        }
+        int h =
+            hash(NB.decodeInt32(oldKeys, i * Constants.OBJECT_ID_LENGTH + 4), oldScopeIds[i]);
+        int j = freeSlot(h);
+        System.arraycopy(
+            oldKeys,
+            i * Constants.OBJECT_ID_LENGTH,
+            keys,
+            j * Constants.OBJECT_ID_LENGTH,
+            Constants.OBJECT_ID_LENGTH);
+        scopeIds[j] = oldScopeIds[i];
+        written[j] = oldWritten[i];
+        flags[j] = oldFlags[i];
+        if (longValues) {
+          values[j] = oldValues[i];
+        }
+      }
+      count = oldCount;
+    }
+  }
+}
@@ -0,0 +1,318 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static java.util.Comparator.comparingInt;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import org.eclipse.jgit.lib.BitmapIndex;
+import org.eclipse.jgit.lib.BitmapIndex.Bitmap;
+import org.eclipse.jgit.lib.BitmapIndex.BitmapBuilder;
+import org.eclipse.jgit.lib.BitmapObject;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.BitmapWalker;
+import org.eclipse.jgit.revwalk.ObjectWalk;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Cache of the merge-bases of commits and of the number of commits each has that the other lacks.
+ *
+ * <p>With pack bitmaps, the commits behind are counted from the difference of the bitmaps of the
+ * two commits, and only the commits ahead are walked, down to the first commits the base can reach;
+ * the closest of those are the merge-bases. Otherwise, both histories are walked together from the
+ * highest generation down, using the commit-graph or a {@link GenerationTopoWalk.Generations}
+ * cache, until every commit left to walk is reachable from a merge-base. Either way, history that
+ * both sides share is not walked past the merge-bases. Without bitmaps or a commit-graph, the first
+ * comparison over a history still has to visit all of it to compute generations, as {@link
+ * GenerationTopoWalk} does.
+ *
+ * <p>Entries are keyed by the IDs of the two commits, which determine their histories, so they stay
+ * valid however the refs change.
+ */
+class CompareCache {
+  static CacheBuilder<Object, Object> defaultBuilder() {
+    return CacheBuilder.newBuilder().maximumSize(16 << 10);
+  }
+
+  /** Result of comparing a commit to a base. */
+  static class Comparison {
+    private final ImmutableList<ObjectId> mergeBases;
+    private final int ahead;
+    private final int behind;
+
+    Comparison(List<? extends ObjectId> mergeBases, int ahead, int behind) {
+      ImmutableList.Builder<ObjectId> b = ImmutableList.builder();
+      for (ObjectId id : mergeBases) {
+        b.add(id.copy());
+      }
+      this.mergeBases = b.build();
+      this.ahead = ahead;
+      this.behind = behind;
+    }
+
+    /**
+     * Get the merge-bases.
+     *
+     * @return best common ancestors of the two commits, none of which is reachable from another;
+     *     empty if their histories are unrelated.
+     */
+    ImmutableList<ObjectId> getMergeBases() {
+      return mergeBases;
+    }
+
+    /**
+     * Get the number of commits ahead.
+     *
+     * @return number of commits reachable from the commit but not from the base.
+     */
+    int getAhead() {
+      return ahead;
+    }
+
+    /**
+     * Get the number of commits behind.
+     *
+     * @return number of commits reachable from the base but not from the commit.
+     */
+    int getBehind() {
+      return behind;
+    }
+  }
+
+  private static final int BASE = 1;
+  private static final int HEAD = 2;
+  private static final int BOTH = BASE | HEAD;
+  private static final int STALE = 4;
+
+  private final Cache<List<ObjectId>, Comparison> cache;
+  private final GenerationTopoWalk.Generations generations;
+
+  CompareCache() {
+    this(defaultBuilder());
+  }
+
+  CompareCache(CacheBuilder<Object, Object> builder) {
+    cache = builder.build();
+    generations = new GenerationTopoWalk.Generations();
+  }
+
+  /**
+   * Compare commits to a base.
+   *
+   * <p>Commits that are not cached are compared in one pass sharing the work on the base, so
+   * comparing many branches to one base costs little more than walking what each branch does not
+   * share with it.
+   *
+   * @param repo repository.
+   * @param base commit to compare to.
+   * @param heads commits to compare.
+   * @return the comparison of each of {@code heads} to {@code base}, in the same order.
+   * @throws IOException if an error occurred reading objects.
+   */
+  List<Comparison> compare(Repository repo, ObjectId base, List<? extends ObjectId> heads)
+      throws IOException {
+    List<Comparison> result = new ArrayList<>(heads.size());
+    try (Comparer comparer = new Comparer(repo, base)) {
+      for (ObjectId head : heads) {
+        List<ObjectId> key = ImmutableList.of(base.copy(), head.copy());
+        Comparison c = cache.getIfPresent(key);
+        if (c == null) {
+          c = comparer.compare(head);
+          cache.put(key, c);
+        }
+        result.add(c);
+      }
+    }
+    return result;
+  }
+
+  private class Comparer implements AutoCloseable {
+    private final RevWalk walk;
+    private final ObjectId baseId;
+    private final Map<RevCommit, Integer> known = new HashMap<>();
+
+    private RevCommit base;
+    private CommitGraphs graph;
+    private BitmapIndex index;
+    private BitmapBuilder baseBits;
+
+    private Comparer(Repository repo, ObjectId baseId) {
+      walk = new RevWalk(repo);
+      walk.setRetainBody(false);
+      this.baseId = baseId;
+    }
+
+    private Comparison compare(ObjectId headId) throws IOException {
+      if (base == null) {
+        // Deferred until a head misses the cache.
+        base = walk.parseCommit(baseId);
+        graph = CommitGraphs.of(walk.getObjectReader());
+        index = walk.getObjectReader().getBitmapIndex();
+      }
+      RevCommit head = walk.parseCommit(headId);
+      return index != null ? compareByBitmaps(head) : compareByGeneration(head);
+    }
+
+    private Comparison compareByBitmaps(RevCommit head) throws IOException {
+      if (baseBits == null) {
+        baseBits = reachableFrom(base);
+      }
+      BitmapBuilder headBits = reachableFrom(head);
+      int behind = countCommits(index.newBitmapBuilder().or(baseBits).andNot(headBits));
+
+      // Walk the commits the base cannot reach; the first commits reached that it can reach are the
+      // candidate merge-bases.
+      int ahead = 0;
+      List<RevCommit> candidates = new ArrayList<>();
+      Set<RevCommit> seen = new HashSet<>();
+      Deque<RevCommit> todo = new ArrayDeque<>();
+      seen.add(head);
+      todo.add(head);
+      while (!todo.isEmpty()) {
+        RevCommit c = todo.poll();
+        if (baseBits.contains(c)) {
+          candidates.add(c);
+          continue;
+        }
+        ahead++;
+        walk.parseHeaders(c);
+        for (RevCommit p : c.getParents()) {
+          if (seen.add(p)) {
+            todo.add(p);
+          }
+        }
+      }
+
+      // A candidate reachable from another one is a common ancestor, but not a best one.
+      List<RevCommit> mergeBases = candidates;
+      if (candidates.size() > 1) {
+        List<BitmapBuilder> bits = new ArrayList<>(candidates.size());
+        for (RevCommit c : candidates) {
+          bits.add(reachableFrom(c));
+        }
+        mergeBases = new ArrayList<>();
+        for (RevCommit c : candidates) {
+          if (!reachableFromOther(c, candidates, bits)) {
+            mergeBases.add(c);
+          }
+        }
+      }
+      return new Comparison(mergeBases, ahead, behind);
+    }
+
+    private Comparison compareByGeneration(RevCommit head) throws IOException {
+      // Each commit is flagged with the sides that reach it; commits reachable from a merge-base
+      // are stale, and no longer count. Children have higher generations than their parents, so a
+      // commit's flags are final by the time it is polled.
+      Map<RevCommit, Integer> flags = new HashMap<>();
+      PriorityQueue<RevCommit> queue =
+          new PriorityQueue<>(comparingInt((RevCommit c) -> known.get(c)).reversed());
+      int active = 0;
+      active += flag(flags, queue, base, BASE);
+      active += flag(flags, queue, head, HEAD);
+
+      int ahead = 0;
+      int behind = 0;
+      List<RevCommit> mergeBases = new ArrayList<>();
+      while (active > 0) {
+        RevCommit c = queue.poll();
+        int f = flags.get(c);
+        if ((f & STALE) == 0) {
+          active--;
+          if (f == BOTH) {
+            mergeBases.add(c);
+            f |= STALE;
+          } else if (f == HEAD) {
+            ahead++;
+          } else {
+            behind++;
+          }
+        }
+        walk.parseHeaders(c);
+        for (RevCommit p : c.getParents()) {
+          active += flag(flags, queue, p, f);
+        }
+      }
+      return new Comparison(mergeBases, ahead, behind);
+    }
+
+    /**
+     * Add flags to a commit, queueing it if it is new.
+     *
+     * @return change in the number of queued commits that are not stale.
+     */
+    private int flag(
+        Map<RevCommit, Integer> flags, PriorityQueue<RevCommit> queue, RevCommit c, int f)
+        throws IOException {
+      Integer old = flags.get(c);
+      if (old == null) {
+        generations.get(walk, graph, c, known);
+        flags.put(c, f);
+        queue.add(c);
+        return (f & STALE) == 0 ? 1 : 0;
+      }
+      flags.put(c, old | f);
+      return (old & STALE) == 0 && (f & STALE) != 0 ? -1 : 0;
+    }
+
+    private BitmapBuilder reachableFrom(RevCommit c) throws IOException {
+      BitmapWalker walker =
+          new BitmapWalker(
+              new ObjectWalk(walk.getObjectReader()), index, NullProgressMonitor.INSTANCE);
+      return walker.findObjects(ImmutableList.of(c), null, true);
+    }
+
+    @Override
+    public void close() {
+      walk.close();
+    }
+  }
+
+  private static boolean reachableFromOther(
+      RevCommit c, List<RevCommit> candidates, List<BitmapBuilder> bits) {
+    for (int i = 0; i < candidates.size(); i++) {
+      if (!candidates.get(i).equals(c) && bits.get(i).contains(c)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int countCommits(Bitmap bitmap) {
+    int n = 0;
+    for (BitmapObject o : bitmap) {
+      if (o.getType() == Constants.OBJ_COMMIT) {
+        n++;
+      }
+    }
+    return n;
+  }
+}
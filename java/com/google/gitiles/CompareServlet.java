@@ -0,0 +1,228 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
+import com.google.common.primitives.Longs;
+import com.google.gitiles.CompareCache.Comparison;
+import com.google.gitiles.GitilesRequestFailureException.FailureReason;
+import com.google.gson.reflect.TypeToken;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jgit.http.server.ServletUtils;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Serves an API result giving the merge-bases of revisions and how far each is ahead and behind.
+ *
+ * <p>{@code +compare/base..head} compares one revision to another. {@code +compare/base} compares
+ * the refs named in repeated {@code head} parameters and the refs under repeated {@code prefix}
+ * parameters to one base, by default every branch, looked up in one {@link CompareCache} pass.
+ * Batches are paged like {@link RefServlet} listings, by full ref name.
+ */
+public class CompareServlet extends BaseServlet {
+  private static final long serialVersionUID = 1L;
+
+  /** Parameter giving the name of a ref to compare to the base. */
+  static final String HEAD_PARAM = "head";
+
+  /** Parameter giving a prefix of the names of the refs to compare to the base. */
+  static final String PREFIX_PARAM = "prefix";
+
+  /** Maximum and default number of refs compared per request. */
+  static final int MAX_HEADS = 1000;
+
+  static class CompareJsonData {
+    String base;
+    String head;
+    List<String> mergeBases;
+    int ahead;
+    int behind;
+  }
+
+  private final CompareCache compareCache;
+
+  CompareServlet(GitilesAccess.Factory accessFactory, CompareCache compareCache) {
+    super(null, accessFactory);
+    this.compareCache = checkNotNull(compareCache, "compareCache");
+  }
+
+  @Override
+  protected void doGetText(HttpServletRequest req, HttpServletResponse res) throws IOException {
+    Map<String, CompareJsonData> result = compare(req, res);
+    try (Writer out = startRenderText(req, res)) {
+      for (Map.Entry<String, CompareJsonData> e : result.entrySet()) {
+        CompareJsonData data = e.getValue();
+        out.write(data.ahead + " " + data.behind + ' ' + e.getKey());
+        for (String mergeBase : data.mergeBases) {
+          out.write(' ' + mergeBase);
+        }
+        out.write('\n');
+      }
+    }
+  }
+
+  @Override
+  protected void doGetJson(HttpServletRequest req, HttpServletResponse res) throws IOException {
+    Map<String, CompareJsonData> result = compare(req, res);
+    if (isRange(ViewFilter.getView(req))) {
+      renderJson(req, res, result.values().iterator().next(), CompareJsonData.class);
+    } else {
+      renderJson(req, res, result, new TypeToken<Map<String, CompareJsonData>>() {}.getType());
+    }
+  }
+
+  private static boolean isRange(GitilesView view) {
+    return !Revision.isNull(view.getOldRevision());
+  }
+
+  /**
+   * Compare the revisions of a request.
+   *
+   * <p>For a batch with more refs after the page, sets {@link RefServlet#NEXT_START_HEADER} to the
+   * name of the last ref of the page.
+   *
+   * @return comparisons keyed by the name of the head: the revision as given for a range, or the
+   *     full ref name for a batch, in name order.
+   */
+  private Map<String, CompareJsonData> compare(HttpServletRequest req, HttpServletResponse res)
+      throws IOException {
+    GitilesView view = ViewFilter.getView(req);
+    Revision base = isRange(view) ? view.getOldRevision() : view.getRevision();
+    if (base.getPeeledType() != Constants.OBJ_COMMIT
+        || view.getRevision().getPeeledType() != Constants.OBJ_COMMIT) {
+      throw new GitilesRequestFailureException(FailureReason.INCORRECT_OBJECT_TYPE);
+    }
+
+    Map<String, ObjectId> heads;
+    Repository repo = ServletUtils.getRepository(req);
+    if (isRange(view)) {
+      heads = new LinkedHashMap<>();
+      heads.put(view.getRevision().getName(), view.getRevision().getPeeledId());
+    } else {
+      heads = getHeads(repo, RefSnapshot.get(req), view.getParameters(), res);
+    }
+
+    List<Comparison> comparisons =
+        compareCache.compare(repo, base.getPeeledId(), ImmutableList.copyOf(heads.values()));
+    Map<String, CompareJsonData> result = new LinkedHashMap<>();
+    int i = 0;
+    for (Map.Entry<String, ObjectId> e : heads.entrySet()) {
+      Comparison c = comparisons.get(i++);
+      CompareJsonData data = new CompareJsonData();
+      data.base = base.getPeeledId().name();
+      data.head = e.getValue().name();
+      data.mergeBases = new ArrayList<>(c.getMergeBases().size());
+      for (ObjectId id : c.getMergeBases()) {
+        data.mergeBases.add(id.name());
+      }
+      data.ahead = c.getAhead();
+      data.behind = c.getBehind();
+      result.put(e.getKey(), data);
+    }
+    return result;
+  }
+
+  private static Map<String, ObjectId> getHeads(
+      Repository repo,
+      RefSnapshot refs,
+      ListMultimap<String, String> params,
+      HttpServletResponse res)
+      throws IOException {
+    List<String> names = params.get(HEAD_PARAM);
+    List<String> prefixes = params.get(PREFIX_PARAM);
+    if (names.isEmpty() && prefixes.isEmpty()) {
+      prefixes = ImmutableList.of(Constants.R_HEADS);
+    } else if (names.size() > MAX_HEADS) {
+      throw tooManyHeads();
+    }
+    String start = Iterables.getFirst(params.get(RefServlet.START_PARAM), null);
+    int limit = getLimit(params);
+
+    // Names and prefixes may overlap; keep each ref once, in name order. One more ref than the
+    // limit tells whether another page follows.
+    TreeMap<String, Ref> found = new TreeMap<>();
+    for (String name : names) {
+      // Refs deleted since the caller listed them are left out, rather than failing the batch.
+      Ref ref = refs.findRef(name);
+      if (ref != null && (start == null || ref.getName().compareTo(start) > 0)) {
+        found.put(ref.getName(), ref);
+      }
+    }
+    for (String prefix : prefixes) {
+      if (!prefix.startsWith(Constants.R_REFS)) {
+        throw new GitilesRequestFailureException(FailureReason.INCORECT_PARAMETER)
+            .withPublicErrorMessage(
+                "Prefix must start with %s: %s",
+                Constants.R_REFS, RefServlet.sanitizeRefForText(prefix));
+      }
+      for (Ref ref : refs.getRefsByPrefix(prefix, start, limit + 1)) {
+        found.put(ref.getName(), ref);
+      }
+    }
+    if (found.size() > limit) {
+      while (found.size() > limit) {
+        found.pollLastEntry();
+      }
+      res.setHeader(RefServlet.NEXT_START_HEADER, found.lastKey());
+    }
+
+    Map<String, ObjectId> heads = new LinkedHashMap<>();
+    try (RevWalk walk = new RevWalk(repo)) {
+      walk.setRetainBody(false);
+      for (Ref ref : found.values()) {
+        // Refs that do not point at commits have nothing to compare.
+        RevCommit c = ContainsCache.peelToCommit(walk, ref);
+        if (c != null) {
+          heads.put(ref.getName(), c.copy());
+        }
+      }
+    }
+    return heads;
+  }
+
+  private static int getLimit(ListMultimap<String, String> params) {
+    List<String> values = params.get(RefServlet.LIMIT_PARAM);
+    if (values.isEmpty()) {
+      return MAX_HEADS;
+    }
+    Long limit = Longs.tryParse(values.get(0));
+    if (limit == null || limit < 0) {
+      throw new GitilesRequestFailureException(FailureReason.INCORECT_PARAMETER);
+    }
+    return limit == 0 || limit > MAX_HEADS ? MAX_HEADS : limit.intValue();
+  }
+
+  private static GitilesRequestFailureException tooManyHeads() {
+    return new GitilesRequestFailureException(FailureReason.INCORECT_PARAMETER)
+        .withPublicErrorMessage("At most %d refs can be compared at once", MAX_HEADS);
+  }
+}
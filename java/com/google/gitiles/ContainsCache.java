@@ -0,0 +1,180 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.ReachabilityChecker;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Cache of the refs containing commits.
+ *
+ * <p>Refs are first pruned without walking: a ref in the repository's commit-graph cannot contain a
+ * commit that is not in the graph, nor one of the same or a higher generation. With pack bitmaps,
+ * each remaining ref is checked against its reachability bitmap, which only walks history written
+ * since the last repack. Otherwise, the remaining refs are walked by {@link
+ * RevWalk#getMergedInto(RevCommit, java.util.Collection)}, which carries what each walk found over
+ * to the next.
+ *
+ * <p>Entries are keyed by the version of the refs in a {@link RefSnapshot}, so they stop matching
+ * once any ref changes.
+ */
+class ContainsCache {
+  static CacheBuilder<Object, Object> defaultBuilder() {
+    return CacheBuilder.newBuilder().maximumSize(1024).expireAfterWrite(10, TimeUnit.MINUTES);
+  }
+
+  private final Cache<List<Object>, ImmutableList<Ref>> cache;
+
+  ContainsCache() {
+    this(defaultBuilder());
+  }
+
+  ContainsCache(CacheBuilder<Object, Object> builder) {
+    cache = builder.build();
+  }
+
+  /**
+   * Get the refs containing a commit.
+   *
+   * @param repo repository.
+   * @param access access for the current request.
+   * @param refs snapshot of the refs of the repository.
+   * @param prefix prefix of the names of the refs to check, such as {@code refs/heads/}.
+   * @param id commit to look for.
+   * @return refs under {@code prefix} in {@code refs} that {@code id} is reachable from, in name
+   *     order.
+   * @throws IOException if an error occurred reading objects.
+   */
+  List<Ref> getContaining(
+      Repository repo, GitilesAccess access, RefSnapshot refs, String prefix, ObjectId id)
+      throws IOException {
+    List<Object> key =
+        ImmutableList.of(
+            access.getVisibilityClass(),
+            access.getRepositoryName(),
+            refs.getVersion(),
+            prefix,
+            id.copy());
+    try {
+      return cache.get(key, () -> compute(repo, refs.getRefsByPrefix(prefix), id));
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      throw new IOException(e);
+    }
+  }
+
+  private static ImmutableList<Ref> compute(Repository repo, List<Ref> candidates, ObjectId id)
+      throws IOException {
+    Set<String> containing = new HashSet<>();
+    try (RevWalk walk = new RevWalk(repo)) {
+      walk.setRetainBody(false);
+      RevCommit commit = walk.parseCommit(id);
+      ObjectReader reader = walk.getObjectReader();
+      CommitGraphs graph = CommitGraphs.of(reader);
+      boolean inGraph = graph.contains(commit);
+      int generation = graph.getGeneration(commit);
+
+      Map<RevCommit, List<Ref>> remaining = new HashMap<>();
+      for (Ref ref : candidates) {
+        RevCommit tip = peelToCommit(walk, ref);
+        if (tip == null) {
+          continue;
+        } else if (tip.equals(commit)) {
+          containing.add(ref.getName());
+          continue;
+        }
+        if (graph.contains(tip)) {
+          // A commit-graph holds every ancestor of the commits in it.
+          int g = graph.getGeneration(tip);
+          if (!inGraph || (g > 0 && generation > 0 && g <= generation)) {
+            continue;
+          }
+        }
+        remaining.computeIfAbsent(tip, k -> new ArrayList<>()).add(ref);
+      }
+      if (remaining.isEmpty()) {
+        // Nothing to walk.
+      } else if (reader.getBitmapIndex() != null) {
+        ReachabilityChecker checker = reader.createReachabilityChecker(walk);
+        for (Map.Entry<RevCommit, List<Ref>> e : remaining.entrySet()) {
+          if (checker.areAllReachable(ImmutableList.of(commit), Stream.of(e.getKey())).isEmpty()) {
+            e.getValue().forEach(r -> containing.add(r.getName()));
+          }
+        }
+      } else {
+        List<Ref> refs = new ArrayList<>();
+        remaining.values().forEach(refs::addAll);
+        try (RevWalk mergedWalk = new RevWalk(repo)) {
+          mergedWalk.setRetainBody(false);
+          for (Ref ref : mergedWalk.getMergedInto(mergedWalk.parseCommit(commit), refs)) {
+            containing.add(ref.getName());
+          }
+        }
+      }
+    }
+
+    ImmutableList.Builder<Ref> result = ImmutableList.builder();
+    for (Ref ref : candidates) {
+      if (containing.contains(ref.getName())) {
+        result.add(ref);
+      }
+    }
+    return result.build();
+  }
+
+  /**
+   * Peel a ref to a commit.
+   *
+   * @param walk walk to parse objects with.
+   * @param ref ref to peel.
+   * @return the commit {@code ref} points at, possibly through tags, or null if it does not point
+   *     at a commit.
+   * @throws IOException if an error occurred reading objects.
+   */
+  static @Nullable RevCommit peelToCommit(RevWalk walk, Ref ref) throws IOException {
+    ObjectId id = ref.getPeeledObjectId() != null ? ref.getPeeledObjectId() : ref.getObjectId();
+    if (id == null) {
+      return null;
+    }
+    try {
+      RevObject o = walk.peel(walk.parseAny(id));
+      return o instanceof RevCommit ? (RevCommit) o : null;
+    } catch (MissingObjectException e) {
+      return null;
+    }
+  }
+}
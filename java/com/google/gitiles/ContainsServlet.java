@@ -0,0 +1,144 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gitiles.GitilesRequestFailureException.FailureReason;
+import com.google.gitiles.RefServlet.RefJsonData;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jgit.http.server.ServletUtils;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+
+/**
+ * Serves the refs containing a commit.
+ *
+ * <p>Refs are checked under the prefixes given in repeated {@code prefix} parameters, by default
+ * {@code refs/heads/} and {@code refs/tags/}, and looked up in a {@link ContainsCache}.
+ */
+public class ContainsServlet extends BaseServlet {
+  private static final long serialVersionUID = 1L;
+
+  /** Parameter giving a prefix of the names of the refs to check. */
+  static final String PREFIX_PARAM = "prefix";
+
+  static final int MAX_PREFIXES = 16;
+
+  private static final ImmutableList<String> DEFAULT_PREFIXES =
+      ImmutableList.of(Constants.R_HEADS, Constants.R_TAGS);
+
+  private final ContainsCache containsCache;
+
+  ContainsServlet(
+      GitilesAccess.Factory accessFactory, Renderer renderer, ContainsCache containsCache) {
+    super(renderer, accessFactory);
+    this.containsCache = checkNotNull(containsCache, "containsCache");
+  }
+
+  @Override
+  protected void doGetHtml(HttpServletRequest req, HttpServletResponse res) throws IOException {
+    GitilesView view = ViewFilter.getView(req);
+    List<Ref> branches = new ArrayList<>();
+    List<Ref> tags = new ArrayList<>();
+    List<Ref> others = new ArrayList<>();
+    for (Ref ref : getContaining(req)) {
+      if (ref.getName().startsWith(Constants.R_HEADS)) {
+        branches.add(ref);
+      } else if (ref.getName().startsWith(Constants.R_TAGS)) {
+        tags.add(ref);
+      } else {
+        others.add(ref);
+      }
+    }
+    renderHtml(
+        req,
+        res,
+        "com.google.gitiles.templates.RefList.containsDetail",
+        ImmutableMap.of(
+            "revision", view.getRevision().getName(),
+            "branches", RefServlet.toSoyData(view, Constants.R_HEADS, branches, null),
+            "tags", RefServlet.toSoyData(view, Constants.R_TAGS, tags, null),
+            "others", RefServlet.toSoyData(view, Constants.R_REFS, others, null)));
+  }
+
+  @Override
+  protected void doGetText(HttpServletRequest req, HttpServletResponse res) throws IOException {
+    List<Ref> refs = getContaining(req);
+    RefServlet.TextRefAdvertiser adv = new RefServlet.TextRefAdvertiser(startRenderText(req, res));
+    adv.setDerefTags(true);
+    adv.send(refs);
+    adv.end();
+  }
+
+  @Override
+  protected void doGetJson(HttpServletRequest req, HttpServletResponse res) throws IOException {
+    List<Ref> refs = getContaining(req);
+    // Equivalent to rendering a Map<String, RefJsonData> in ref order.
+    renderJson(
+        req,
+        res,
+        (gson, out) -> {
+          out.beginObject();
+          for (Ref ref : refs) {
+            out.name(ref.getName());
+            gson.toJson(new RefJsonData(ref), RefJsonData.class, out);
+          }
+          out.endObject();
+        });
+  }
+
+  private List<Ref> getContaining(HttpServletRequest req) throws IOException {
+    GitilesView view = ViewFilter.getView(req);
+    Revision rev = view.getRevision();
+    if (rev.getPeeledType() != Constants.OBJ_COMMIT) {
+      throw new GitilesRequestFailureException(FailureReason.INCORRECT_OBJECT_TYPE);
+    }
+    List<String> prefixes = view.getParameters().get(PREFIX_PARAM);
+    if (prefixes.isEmpty()) {
+      prefixes = DEFAULT_PREFIXES;
+    } else if (prefixes.size() > MAX_PREFIXES) {
+      throw new GitilesRequestFailureException(FailureReason.INCORECT_PARAMETER)
+          .withPublicErrorMessage("At most %d prefixes are allowed", MAX_PREFIXES);
+    }
+
+    GitilesAccess access = getAccess(req);
+    RefSnapshot refs = RefSnapshot.get(req);
+    // Prefixes may overlap; keep each ref once, in name order.
+    Map<String, Ref> result = new TreeMap<>();
+    for (String prefix : prefixes) {
+      if (!prefix.startsWith(Constants.R_REFS)) {
+        throw new GitilesRequestFailureException(FailureReason.INCORECT_PARAMETER)
+            .withPublicErrorMessage(
+                "Prefix must start with %s: %s",
+                Constants.R_REFS, RefServlet.sanitizeRefForText(prefix));
+      }
+      for (Ref ref :
+          containsCache.getContaining(
+              ServletUtils.getRepository(req), access, refs, prefix, rev.getPeeledId())) {
+        result.put(ref.getName(), ref);
+      }
+    }
+    return new ArrayList<>(result.values());
+  }
+}
@@ -48,8 +48,17 @@ public class DescribeServlet extends BaseServlet {
     return !values.isEmpty() && (values.get(0).isEmpty() || values.get(0).equals("1"));
   }
 
+  private final NameRevIndex nameRevIndex;
+
   protected DescribeServlet(GitilesAccess.Factory accessFactory) {
     super(null, accessFactory);
+    this.nameRevIndex = new NameRevIndex();
+  }
+
+  @Override
+  public void destroy() {
+    nameRevIndex.shutdown();
+    super.destroy();
   }
 
   @Override
@@ -101,15 +110,23 @@ public class DescribeServlet extends BaseServlet {
     if (id == null) {
       return null;
     }
+    NameRevIndex.Mode mode = getMode(view);
     String name;
-    try (Git git = new Git(repo)) {
-      NameRevCommand cmd = nameRevCommand(git, id, req);
-      if (cmd == null) {
-        return null;
+    NameRevIndex.Names names = null;
+    GitilesAccess access = getAccess(req);
+    if (mode.isIndexed()
+        && access.getConfig().getBoolean("describe", null, "nameRevIndex", false)) {
+      names = nameRevIndex.get(access, repo, RefSnapshot.get(req), mode);
+    }
+    if (names != null) {
+      name = names.get(id);
+    } else {
+      // Not indexed yet, or not up to date with the refs.
+      try (Git git = new Git(repo)) {
+        name = nameRevCommand(git, id, mode).call().get(id);
+      } catch (GitAPIException e) {
+        throw new IOException(e);
       }
-      name = cmd.call().get(id);
-    } catch (GitAPIException e) {
-      throw new IOException(e);
     }
     if (name == null) {
       throw new GitilesRequestFailureException(FailureReason.OBJECT_NOT_FOUND);
@@ -117,10 +134,7 @@ public class DescribeServlet extends BaseServlet {
     return name;
   }
 
-  private NameRevCommand nameRevCommand(Git git, ObjectId id, HttpServletRequest req)
-      throws IOException {
-    GitilesView view = ViewFilter.getView(req);
-    NameRevCommand cmd = git.nameRev();
+  private static NameRevIndex.Mode getMode(GitilesView view) {
     boolean all = getBooleanParam(view, ALL_PARAM);
     boolean tags = getBooleanParam(view, TAGS_PARAM);
     if (all && tags) {
@@ -128,11 +142,26 @@ public class DescribeServlet extends BaseServlet {
           .withPublicErrorMessage("Cannot specify both \"all\" and \"tags\"");
     }
     if (all) {
-      cmd.addPrefix(Constants.R_REFS);
+      return NameRevIndex.Mode.ALL;
     } else if (tags) {
-      cmd.addPrefix(Constants.R_TAGS);
-    } else {
-      cmd.addAnnotatedTags();
+      return NameRevIndex.Mode.TAGS;
+    }
+    return NameRevIndex.Mode.ANNOTATED_TAGS;
+  }
+
+  private static NameRevCommand nameRevCommand(Git git, ObjectId id, NameRevIndex.Mode mode)
+      throws IOException {
+    NameRevCommand cmd = git.nameRev();
+    switch (mode) {
+      case ALL:
+        cmd.addPrefix(Constants.R_REFS);
+        break;
+      case TAGS:
+        cmd.addPrefix(Constants.R_TAGS);
+        break;
+      case ANNOTATED_TAGS:
+        cmd.addAnnotatedTags();
+        break;
     }
     cmd.add(id);
     return cmd;
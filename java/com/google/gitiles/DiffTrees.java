@@ -0,0 +1,229 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Throwables;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.util.io.NullOutputStream;
+
+/**
+ * Rename-detecting tree diffs of the commits shown by a request.
+ *
+ * <p>Rename detection may be bounded by a rename limit, so that a single commit touching many files
+ * only has its exact renames detected instead of stalling the page.
+ *
+ * <p>When created with an executor, {@link #prefetch(Iterable)} starts diffing each commit as soon
+ * as the walk produces it, each on its own reader, keeping at most a fixed number of commits ahead
+ * of the consumer. {@link #scan(RevWalk, RevCommit)} then waits for the commit's diff rather than
+ * computing it, so results are still consumed in walk order.
+ */
+class DiffTrees implements AutoCloseable {
+  private final Repository repo;
+  private final ExecutorService executor;
+  private final int parallelism;
+  private final int renameLimit;
+  private final Map<ObjectId, Future<List<DiffEntry>>> pending = new ConcurrentHashMap<>();
+  private volatile boolean closed;
+
+  /**
+   * Create diffs computed on the calling thread with the repository's rename limit.
+   *
+   * @param repo repository.
+   */
+  DiffTrees(Repository repo) {
+    this(repo, null, 0, -1);
+  }
+
+  /**
+   * Create diffs.
+   *
+   * @param repo repository.
+   * @param executor executor for computing diffs ahead of use, or null to compute them on the
+   *     calling thread.
+   * @param parallelism maximum number of commits diffed ahead of use.
+   * @param renameLimit maximum number of added or deleted files considered for content rename
+   *     detection, 0 for no limit, or negative to use the repository's {@code diff.renameLimit}.
+   */
+  DiffTrees(
+      Repository repo, @Nullable ExecutorService executor, int parallelism, int renameLimit) {
+    checkArgument(executor == null || parallelism > 0, "parallelism must be positive");
+    this.repo = checkNotNull(repo, "repo");
+    this.executor = executor;
+    this.parallelism = parallelism;
+    this.renameLimit = renameLimit;
+  }
+
+  /**
+   * Start diffing commits ahead of use.
+   *
+   * @param commits commits in walk order; each commit's parents must be final by the time it is
+   *     produced.
+   * @return the same commits, in the same order.
+   */
+  Iterable<RevCommit> prefetch(Iterable<RevCommit> commits) {
+    if (executor == null) {
+      return commits;
+    }
+    return () -> new PrefetchIterator(commits.iterator());
+  }
+
+  /**
+   * Get the diff of a commit against its parent.
+   *
+   * @param walk walk owned by the calling thread, used if the diff was not prefetched.
+   * @param c commit with at most one parent.
+   * @return diff entries, with renames detected.
+   * @throws IOException if an error occurred reading the repository.
+   */
+  List<DiffEntry> scan(RevWalk walk, RevCommit c) throws IOException {
+    checkArgument(c.getParentCount() <= 1, "cannot diff merge commit %s", c.name());
+    Future<List<DiffEntry>> f = pending.remove(c);
+    if (f != null) {
+      return get(f);
+    }
+    walk.parseHeaders(c);
+    ObjectId parent = c.getParentCount() > 0 ? c.getParent(0) : null;
+    return diff(walk.getObjectReader(), c.getTree(), parent);
+  }
+
+  private List<DiffEntry> diff(ObjectReader reader, ObjectId tree, @Nullable ObjectId parent)
+      throws IOException {
+    AbstractTreeIterator oldTree;
+    if (parent != null) {
+      try (RevWalk rw = new RevWalk(reader)) {
+        oldTree = newTreeParser(reader, rw.parseCommit(parent).getTree());
+      }
+    } else {
+      oldTree = new EmptyTreeIterator();
+    }
+    try (DiffFormatter diff = new DiffFormatter(NullOutputStream.INSTANCE)) {
+      diff.setReader(reader, repo.getConfig());
+      diff.setDetectRenames(true);
+      if (renameLimit >= 0) {
+        diff.getRenameDetector().setRenameLimit(renameLimit);
+      }
+      return diff.scan(oldTree, newTreeParser(reader, tree));
+    }
+  }
+
+  private static AbstractTreeIterator newTreeParser(ObjectReader reader, ObjectId tree)
+      throws IOException {
+    CanonicalTreeParser p = new CanonicalTreeParser();
+    p.reset(reader, tree);
+    return p;
+  }
+
+  private void submit(RevCommit c) {
+    if (c.getParentCount() > 1 || pending.containsKey(c)) {
+      return;
+    }
+    // Copy everything the task needs; the walk's objects are not safe to read concurrently once
+    // the walk advances.
+    ObjectId tree = c.getTree().copy();
+    ObjectId parent = c.getParentCount() > 0 ? c.getParent(0).copy() : null;
+    pending.put(
+        c.copy(),
+        executor.submit(
+            () -> {
+              if (closed) {
+                return null;
+              }
+              try (ObjectReader reader = repo.newObjectReader()) {
+                return diff(reader, tree, parent);
+              }
+            }));
+  }
+
+  private static List<DiffEntry> get(Future<List<DiffEntry>> f) throws IOException {
+    try {
+      return f.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e);
+    }
+  }
+
+  /** Waits for diffs that were prefetched but never used; they read from the repository. */
+  @Override
+  public void close() {
+    closed = true;
+    for (Future<List<DiffEntry>> f : pending.values()) {
+      try {
+        f.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        // Not used, so not reported.
+      }
+    }
+    pending.clear();
+  }
+
+  private class PrefetchIterator implements Iterator<RevCommit> {
+    private final Iterator<RevCommit> source;
+    private final Deque<RevCommit> ahead = new ArrayDeque<>(parallelism);
+
+    private PrefetchIterator(Iterator<RevCommit> source) {
+      this.source = source;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (ahead.size() < parallelism && source.hasNext()) {
+        RevCommit c = source.next();
+        submit(c);
+        ahead.add(c);
+      }
+      return !ahead.isEmpty();
+    }
+
+    @Override
+    public RevCommit next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return ahead.remove();
+    }
+  }
+}
@@ -0,0 +1,246 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Objects.hash;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gitiles.blame.cache.ChangedPathTreeFilter;
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.diff.DiffConfig;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.FollowFilter;
+import org.eclipse.jgit.revwalk.RenameCallback;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.TreeRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Revision filter following a path across renames, with renames cached across walks.
+ *
+ * <p>Equivalent to a {@link FollowFilter} on a walk that does not rewrite parents. {@code
+ * FollowFilter} runs rename detection on every commit that adds the followed path, and its results
+ * are lost with the walk, so every page of a file's history repeats the same similarity scoring.
+ * This filter looks up the outcome of rename detection, including the absence of a rename, in a
+ * {@link RenameCache} keyed by commit and path before running it.
+ *
+ * <p>Must be applied before any other revision filters, since it has to see every commit that
+ * touches the path to switch paths at a rename.
+ */
+class FollowRevFilter extends RevFilter {
+  /** Outcomes of rename detection, keyed by commit and the path it adds. */
+  static class RenameCache {
+    static CacheBuilder<Object, Object> defaultBuilder() {
+      return CacheBuilder.newBuilder().maximumSize(10 << 10).expireAfterAccess(1, TimeUnit.HOURS);
+    }
+
+    private static class Key {
+      private final ObjectId commit;
+      private final String path;
+
+      private Key(ObjectId commit, String path) {
+        this.commit = commit;
+        this.path = path;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+        if (o instanceof Key) {
+          Key k = (Key) o;
+          return Objects.equals(commit, k.commit) && Objects.equals(path, k.path);
+        }
+        return false;
+      }
+
+      @Override
+      public int hashCode() {
+        return hash(commit, path);
+      }
+    }
+
+    private final Cache<Key, Optional<DiffEntry>> cache;
+
+    RenameCache() {
+      this(defaultBuilder());
+    }
+
+    RenameCache(CacheBuilder<Object, Object> builder) {
+      cache = builder.build();
+    }
+
+    /**
+     * Find the path a commit renamed to a given path.
+     *
+     * @param reader reader for the repository.
+     * @param cfg diff configuration for rename detection.
+     * @param c commit with exactly one parent, whose headers are parsed.
+     * @param path path added by the commit.
+     * @return the rename or copy producing {@code path}, or null if the path was newly created.
+     * @throws IOException if an error occurred reading the repository.
+     */
+    @Nullable
+    DiffEntry getRename(ObjectReader reader, DiffConfig cfg, RevCommit c, String path)
+        throws IOException {
+      try {
+        return cache
+            .get(new Key(c.copy(), path), () -> Optional.ofNullable(detect(reader, cfg, c, path)))
+            .orElse(null);
+      } catch (ExecutionException e) {
+        Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+        throw new IOException(e);
+      }
+    }
+
+    private static @Nullable DiffEntry detect(
+        ObjectReader reader, DiffConfig cfg, RevCommit c, String path) throws IOException {
+      List<DiffEntry> files;
+      try (TreeWalk tw = new TreeWalk(reader)) {
+        tw.setRecursive(true);
+        tw.setFilter(TreeFilter.ANY_DIFF);
+        tw.addTree(c.getParent(0).getTree());
+        tw.addTree(c.getTree());
+        files = DiffEntry.scan(tw);
+      }
+      RenameDetector rd = new RenameDetector(reader, cfg);
+      rd.addAll(files);
+      for (DiffEntry ent : rd.compute()) {
+        ChangeType type = ent.getChangeType();
+        if ((type == ChangeType.RENAME || type == ChangeType.COPY)
+            && ent.getNewPath().equals(path)) {
+          return ent;
+        }
+      }
+      return null;
+    }
+  }
+
+  private final String initialPath;
+  private final DiffConfig cfg;
+  private final RenameCache renames;
+  private final boolean changedPathFilters;
+
+  private String path;
+  private RevFilter delegate;
+  private RenameCallback renameCallback;
+
+  /**
+   * Create a filter.
+   *
+   * @param path path to follow.
+   * @param cfg diff configuration for rename detection.
+   * @param renames cache of rename detection results.
+   * @param changedPathFilters whether to consult changed-path Bloom filters.
+   */
+  FollowRevFilter(String path, DiffConfig cfg, RenameCache renames, boolean changedPathFilters) {
+    this.initialPath = checkNotNull(path, "path");
+    this.cfg = checkNotNull(cfg, "cfg");
+    this.renames = checkNotNull(renames, "renames");
+    this.changedPathFilters = changedPathFilters;
+    this.path = initialPath;
+  }
+
+  /**
+   * Set the callback notified when the filter follows a rename.
+   *
+   * <p>As with {@link FollowFilter}, the callback is notified while the walk is including the
+   * commit with the rename, before the walk returns it.
+   *
+   * @param renameCallback callback, or null.
+   */
+  void setRenameCallback(@Nullable RenameCallback renameCallback) {
+    this.renameCallback = renameCallback;
+  }
+
+  /**
+   * Get the path currently followed.
+   *
+   * @return the path, after following renames in the commits included so far.
+   */
+  String getPath() {
+    return path;
+  }
+
+  @Override
+  public boolean include(RevWalk walker, RevCommit c)
+      throws StopWalkException, MissingObjectException, IncorrectObjectTypeException,
+          IOException {
+    if (delegate == null) {
+      delegate = newDelegate(walker, path);
+    }
+    if (!delegate.include(walker, c)) {
+      return false;
+    }
+    if (c.getParentCount() == 1) {
+      RevCommit p = c.getParent(0);
+      walker.parseHeaders(p);
+      ObjectReader reader = walker.getObjectReader();
+      if (TreeWalk.forPath(reader, path, p.getTree()) == null) {
+        DiffEntry rename = renames.getRename(reader, cfg, c, path);
+        if (rename != null) {
+          path = rename.getOldPath();
+          delegate = newDelegate(walker, path);
+          if (renameCallback != null) {
+            renameCallback.renamed(rename);
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  private RevFilter newDelegate(RevWalk walker, String p) {
+    if (changedPathFilters) {
+      return ChangedPathTreeFilter.newRevFilter(walker, ChangedPathTreeFilter.create(p));
+    }
+    return new TreeRevFilter(
+        walker, AndTreeFilter.create(PathFilterGroup.createFromStrings(p), TreeFilter.ANY_DIFF));
+  }
+
+  @Override
+  public boolean requiresCommitBody() {
+    return false;
+  }
+
+  @Override
+  public RevFilter clone() {
+    return new FollowRevFilter(initialPath, cfg, renames, changedPathFilters);
+  }
+
+  @Override
+  public String toString() {
+    return "FOLLOW(" + path + ")";
+  }
+}
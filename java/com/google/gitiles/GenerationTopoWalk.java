@@ -0,0 +1,287 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Comparator.comparingInt;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+
+/**
+ * Walk emitting commits in topological order as soon as they are known to be safe to emit.
+ *
+ * <p>Equivalent to a walk sorted with {@link RevSort#TOPO_KEEP_BRANCH_TOGETHER}, which has to pop
+ * every commit in the range before emitting the first one. This walk instead relies on generation
+ * numbers: every child of a commit has a higher generation than the commit itself, so once every
+ * commit of a higher generation has been explored, the commit's set of children in the walk is
+ * complete. Exploration proceeds only as deep as the commits emitted so far, so showing the first
+ * page of a topologically sorted log reads little more than that page.
+ *
+ * <p>Generation numbers are read from the repository's commit-graph when it has one, and are
+ * otherwise computed and kept in a {@link Generations} cache shared across walks. Without a
+ * commit-graph, the first walk over a history still has to visit all of it to compute generations,
+ * but later walks over the same history do not.
+ *
+ * <p>Revision filters are applied as commits are emitted; tree filters must be applied as revision
+ * filters. Sort options and parent rewriting set on the walk are ignored.
+ */
+class GenerationTopoWalk extends RevWalk {
+  /** Generation numbers of commits not in a commit-graph. */
+  static class Generations {
+    static CacheBuilder<Object, Object> defaultBuilder() {
+      return CacheBuilder.newBuilder().maximumSize(256 << 10);
+    }
+
+    // Keyed by commit ID alone: a commit's ID determines its parents, and so its generation, in
+    // every repository that has it.
+    private final Cache<ObjectId, Integer> cache;
+
+    Generations() {
+      this(defaultBuilder());
+    }
+
+    Generations(CacheBuilder<Object, Object> builder) {
+      cache = builder.build();
+    }
+
+    /**
+     * Get the generation number of a commit.
+     *
+     * @param walk walk to parse commits with.
+     * @param graph commit-graph of the repository.
+     * @param c commit.
+     * @param known generation numbers already known to the caller, updated with those of {@code c}
+     *     and of any ancestors that had to be computed.
+     * @return generation number of {@code c}, at least 1.
+     * @throws IOException if an error occurred reading commits.
+     */
+    int get(RevWalk walk, CommitGraphs graph, RevCommit c, Map<RevCommit, Integer> known)
+        throws IOException {
+      Integer g = known.get(c);
+      if (g != null) {
+        return g;
+      }
+      // Iterative, since histories can be far deeper than the stack.
+      Deque<RevCommit> todo = new ArrayDeque<>();
+      todo.push(c);
+      while (!todo.isEmpty()) {
+        RevCommit x = todo.peek();
+        if (known.containsKey(x)) {
+          todo.pop();
+          continue;
+        }
+        int found = lookup(graph, x);
+        if (found > 0) {
+          known.put(x, found);
+          todo.pop();
+          continue;
+        }
+        walk.parseHeaders(x);
+        int max = 0;
+        boolean complete = true;
+        for (int i = 0; i < x.getParentCount(); i++) {
+          RevCommit p = x.getParent(i);
+          Integer pg = known.get(p);
+          if (pg != null) {
+            max = Math.max(max, pg);
+          } else {
+            complete = false;
+            todo.push(p);
+          }
+        }
+        if (complete) {
+          known.put(x, max + 1);
+          cache.put(x.copy(), max + 1);
+          todo.pop();
+        }
+      }
+      return known.get(c);
+    }
+
+    private int lookup(CommitGraphs graph, RevCommit c) {
+      int g = graph.getGeneration(c);
+      if (g > 0) {
+        return g;
+      }
+      Integer cached = cache.getIfPresent(c);
+      return cached != null ? cached : 0;
+    }
+  }
+
+  private static class Node {
+    private int generation;
+    private int inDegree;
+    private boolean discovered;
+  }
+
+  private final Generations generations;
+  private final Map<RevCommit, Integer> known = new HashMap<>();
+  private final List<RevCommit> starts = new ArrayList<>();
+  private final Map<RevCommit, Node> nodes = new HashMap<>();
+  private final PriorityQueue<RevCommit> explore =
+      new PriorityQueue<>(comparingInt((RevCommit c) -> node(c).generation).reversed());
+  private final Deque<RevCommit> ready = new ArrayDeque<>();
+
+  private CommitGraphs graph;
+  private boolean started;
+
+  /**
+   * Create a walk.
+   *
+   * @param repo repository.
+   * @param generations cache of computed generation numbers.
+   */
+  GenerationTopoWalk(Repository repo, Generations generations) {
+    super(repo);
+    this.generations = checkNotNull(generations, "generations");
+  }
+
+  @Override
+  public void markStart(RevCommit c)
+      throws MissingObjectException, IncorrectObjectTypeException, IOException {
+    super.markStart(c);
+    // Also called for uninteresting commits, which exploreTo() needs to carry the flag down.
+    if (!starts.contains(c)) {
+      starts.add(c);
+    }
+  }
+
+  @Override
+  public RevCommit next()
+      throws MissingObjectException, IncorrectObjectTypeException, IOException {
+    if (!started) {
+      init();
+    }
+    RevFilter filter = getRevFilter();
+    try {
+      while (true) {
+        RevCommit c = ready.pollFirst();
+        if (c == null) {
+          return null;
+        }
+        // Like TopoNonIntermixSortGenerator, parents that become ready are emitted next, last
+        // parent first.
+        for (int i = 0; i < c.getParentCount(); i++) {
+          RevCommit p = c.getParent(i);
+          exploreTo(generation(p));
+          if (--node(p).inDegree == 0 && !p.has(RevFlag.UNINTERESTING)) {
+            ready.addFirst(p);
+          }
+          if (isFirstParent()) {
+            break;
+          }
+        }
+        if (filter.requiresCommitBody()) {
+          parseBody(c);
+        }
+        if (filter.include(this, c)) {
+          return c;
+        }
+      }
+    } catch (StopWalkException e) {
+      ready.clear();
+      return null;
+    }
+  }
+
+  private void init() throws IOException {
+    started = true;
+    graph = CommitGraphs.of(getObjectReader());
+    int min = Integer.MAX_VALUE;
+    for (RevCommit s : starts) {
+      discover(s);
+      min = Math.min(min, node(s).generation);
+    }
+    exploreTo(min);
+
+    // Starts that are not reachable from another start, newest first, like a date-ordered walk.
+    List<RevCommit> roots = new ArrayList<>(starts.size());
+    for (RevCommit s : starts) {
+      if (node(s).inDegree == 0 && !s.has(RevFlag.UNINTERESTING)) {
+        roots.add(s);
+      }
+    }
+    roots.sort(comparingInt(RevCommit::getCommitTime).reversed());
+    ready.addAll(roots);
+  }
+
+  private void discover(RevCommit c) throws IOException {
+    Node n = node(c);
+    if (!n.discovered) {
+      n.discovered = true;
+      generation(c);
+      explore.add(c);
+    }
+  }
+
+  /**
+   * Explore every discovered commit with at least a given generation.
+   *
+   * <p>Afterwards, every commit with at most that generation has its final in-degree and flags,
+   * since all of its children have a higher generation.
+   */
+  private void exploreTo(int generation) throws IOException {
+    while (!explore.isEmpty() && node(explore.peek()).generation >= generation) {
+      RevCommit c = explore.poll();
+      parseHeaders(c);
+      boolean uninteresting = c.has(RevFlag.UNINTERESTING);
+      for (int i = 0; i < c.getParentCount(); i++) {
+        RevCommit p = c.getParent(i);
+        if (uninteresting) {
+          // Everything reachable from an uninteresting commit is uninteresting, first parent or
+          // not.
+          p.add(RevFlag.UNINTERESTING);
+        } else {
+          node(p).inDegree++;
+        }
+        discover(p);
+        if (!uninteresting && isFirstParent()) {
+          break;
+        }
+      }
+    }
+  }
+
+  private Node node(RevCommit c) {
+    return nodes.computeIfAbsent(c, k -> new Node());
+  }
+
+  private int generation(RevCommit c) throws IOException {
+    Node n = node(c);
+    if (n.generation == 0) {
+      n.generation = generations.get(this, graph, c, known);
+    }
+    return n.generation;
+  }
+}
@@ -75,6 +75,24 @@ public interface GitilesAccess {
    */
   Object getUserKey();
 
+  /**
+   * Get visibility class.
+   *
+   * <p>Users in the same visibility class can see the same refs of the repository of the request,
+   * so whether an object is visible to one of them answers it for all of them. Results of
+   * visibility checks are cached per class and repository rather than per user, so implementations
+   * with per-user access control can share one reachability walk among many users by returning,
+   * for example, a hash of the names and values of the visible refs, or the ID of the group
+   * granting access.
+   *
+   * @return an opaque object identifying the refs visible to the end-user making the request, and
+   *     supporting {@link Object#equals(Object)} and {@link Object#hashCode()}. Never null. By
+   *     default, the user key.
+   */
+  default Object getVisibilityClass() {
+    return getUserKey();
+  }
+
   /**
    * Get repository name.
    *
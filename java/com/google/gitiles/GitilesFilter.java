@@ -22,6 +22,7 @@ import static com.google.gitiles.Renderer.fileUrlMapper;
 import static java.util.stream.Collectors.toList;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
@@ -33,6 +34,8 @@ import com.google.gitiles.doc.DocServlet;
 import java.io.File;
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
@@ -174,6 +177,8 @@ class GitilesFilter extends MetaFilter {
   private VisibilityCache visibilityCache;
   private TimeCache timeCache;
   private BlameCache blameCache;
+  private NotFoundCache notFoundCache;
+  private CacheSnapshots cacheSnapshots;
   private GitwebRedirectFilter gitwebRedirect;
   private Filter errorHandler;
   private BranchRedirect branchRedirect;
@@ -220,7 +225,8 @@ class GitilesFilter extends MetaFilter {
     }
 
     Filter repositoryFilter = new RepositoryFilter(resolver);
-    Filter viewFilter = new ViewFilter(accessFactory, urls, visibilityCache, branchRedirect);
+    Filter viewFilter =
+        new ViewFilter(accessFactory, urls, visibilityCache, branchRedirect, notFoundCache);
     Filter dispatchFilter = new DispatchFilter(filters, servlets);
 
     ServletBinder root = serveRegex(ROOT_REGEX).through(viewFilter);
@@ -236,9 +242,22 @@ class GitilesFilter extends MetaFilter {
         .through(viewFilter)
         .through(dispatchFilter);
 
+    setDefaultCacheSnapshots();
+    if (cacheSnapshots != null) {
+      cacheSnapshots.start();
+    }
     initialized = true;
   }
 
+  @Override
+  public synchronized void destroy() {
+    if (cacheSnapshots != null) {
+      cacheSnapshots.stop();
+      cacheSnapshots = null;
+    }
+    super.destroy();
+  }
+
   @Override
   protected ServletBinder register(ServletBinder b) {
     b.through(errorHandler);
@@ -253,18 +272,45 @@ class GitilesFilter extends MetaFilter {
       case REPOSITORY_INDEX:
         return new RepositoryIndexServlet(accessFactory, renderer, timeCache);
       case REFS:
-        return new RefServlet(accessFactory, renderer, timeCache);
+        return new RefServlet(
+            accessFactory,
+            renderer,
+            timeCache,
+            config.getInt("refs", null, "pageSize", RefServlet.DEFAULT_PAGE_SIZE),
+            config.getInt("refs", null, "maxPageSize", RefServlet.DEFAULT_MAX_PAGE_SIZE));
       case REVISION:
         return new RevisionServlet(accessFactory, renderer, linkifier());
       case SHOW:
       case PATH:
-        return new PathServlet(accessFactory, renderer, urls);
+        return new PathServlet(accessFactory, renderer, urls, notFoundCache);
       case DIFF:
         return new DiffServlet(accessFactory, renderer, linkifier());
       case LOG:
-        return new LogServlet(accessFactory, renderer, linkifier());
+        return new LogServlet(
+            accessFactory,
+            renderer,
+            linkifier(),
+            config.getInt("log", null, "renderThreads", 0),
+            config.getInt("log", null, "diffThreads", 0));
       case DESCRIBE:
         return new DescribeServlet(accessFactory);
+      case VISIBILITY:
+        return new VisibilityServlet(accessFactory, visibilityCache);
+      case CONTAINS:
+        return new ContainsServlet(
+            accessFactory,
+            renderer,
+            new ContainsCache(
+                config.getSubsections("cache").contains("contains")
+                    ? ConfigUtil.getCacheBuilder(config, "contains")
+                    : ContainsCache.defaultBuilder()));
+      case COMPARE:
+        return new CompareServlet(
+            accessFactory,
+            new CompareCache(
+                config.getSubsections("cache").contains("compare")
+                    ? ConfigUtil.getCacheBuilder(config, "compare")
+                    : CompareCache.defaultBuilder()));
       case ARCHIVE:
         return new ArchiveServlet(accessFactory);
       case BLAME:
@@ -312,6 +358,7 @@ class GitilesFilter extends MetaFilter {
     setDefaultVisibilityCache();
     setDefaultTimeCache();
     setDefaultBlameCache();
+    setDefaultNotFoundCache();
     setDefaultGitwebRedirect();
     setDefaultErrorHandler();
   }
@@ -384,17 +431,38 @@ class GitilesFilter extends MetaFilter {
 
   private void setDefaultVisibilityCache() {
     if (visibilityCache == null) {
-      if (config.getSubsections("cache").contains("visibility")) {
-        visibilityCache = new VisibilityCache(ConfigUtil.getCacheBuilder(config, "visibility"));
+      ReachabilityIndex reachabilityIndex = null;
+      if (config.getBoolean("gitiles", null, "reachabilityIndex", false)) {
+        if (config.getSubsections("cache").contains("reachabilityIndex")) {
+          reachabilityIndex =
+              new ReachabilityIndex(ConfigUtil.getCacheBuilder(config, "reachabilityIndex"));
+        } else {
+          reachabilityIndex = new ReachabilityIndex();
+        }
+      }
+      CompactObjectCache compact = getCompactCache("visibility", Duration.ofMinutes(30), false);
+      if (compact != null) {
+        visibilityCache = new VisibilityCache(new VisibilityChecker(), compact, reachabilityIndex);
+      } else if (config.getSubsections("cache").contains("visibility")) {
+        visibilityCache =
+            new VisibilityCache(
+                new VisibilityChecker(),
+                ConfigUtil.getCacheBuilder(config, "visibility"),
+                reachabilityIndex);
       } else {
-        visibilityCache = new VisibilityCache();
+        visibilityCache =
+            new VisibilityCache(
+                new VisibilityChecker(), VisibilityCache.defaultBuilder(), reachabilityIndex);
       }
     }
   }
 
   private void setDefaultTimeCache() {
     if (timeCache == null) {
-      if (config.getSubsections("cache").contains("tagTime")) {
+      CompactObjectCache compact = getCompactCache("tagTime", Duration.ZERO, true);
+      if (compact != null) {
+        timeCache = new TimeCache(compact);
+      } else if (config.getSubsections("cache").contains("tagTime")) {
         timeCache = new TimeCache(ConfigUtil.getCacheBuilder(config, "tagTime"));
       } else {
         timeCache = new TimeCache();
@@ -402,16 +470,57 @@ class GitilesFilter extends MetaFilter {
     }
   }
 
+  private @Nullable CompactObjectCache getCompactCache(
+      String name, Duration defaultExpireAfterWrite, boolean longValues) {
+    long maxBytes = config.getLong("cache", name, "maxBytes", 0);
+    if (maxBytes <= 0) {
+      return null;
+    }
+    Duration expireAfterWrite =
+        ConfigUtil.getDuration(config, "cache", name, "expireAfterWrite", defaultExpireAfterWrite);
+    return new CompactObjectCache(maxBytes, expireAfterWrite, longValues);
+  }
+
   private void setDefaultBlameCache() {
     if (blameCache == null) {
+      boolean changedPathFilters = config.getBoolean("gitiles", null, "changedPathFilters", true);
       if (config.getSubsections("cache").contains("blame")) {
-        blameCache = new BlameCacheImpl(ConfigUtil.getCacheBuilder(config, "blame"));
+        blameCache =
+            new BlameCacheImpl(ConfigUtil.getCacheBuilder(config, "blame"), changedPathFilters);
       } else {
-        blameCache = new BlameCacheImpl();
+        blameCache = new BlameCacheImpl(BlameCacheImpl.defaultBuilder(), changedPathFilters);
       }
     }
   }
 
+  private void setDefaultNotFoundCache() {
+    if (notFoundCache == null) {
+      if (config.getSubsections("cache").contains("notFound")) {
+        notFoundCache = new NotFoundCache(ConfigUtil.getCacheBuilder(config, "notFound"));
+      } else {
+        notFoundCache = new NotFoundCache();
+      }
+    }
+  }
+
+  private void setDefaultCacheSnapshots() {
+    String directory = config.getString("cacheSnapshot", null, "directory");
+    if (Strings.isNullOrEmpty(directory)) {
+      return;
+    }
+    cacheSnapshots =
+        new CacheSnapshots(
+                Paths.get(directory),
+                ConfigUtil.getDuration(
+                    config, "cacheSnapshot", null, "interval", Duration.ofMinutes(10)))
+            .add("tagTime", timeCache::writeSnapshot, timeCache::readSnapshot)
+            .add("visibility", visibilityCache::writeSnapshot, visibilityCache::readSnapshot);
+    if (blameCache instanceof BlameCacheImpl) {
+      BlameCacheImpl blame = (BlameCacheImpl) blameCache;
+      cacheSnapshots.add("blame", blame::writeSnapshot, blame::readSnapshot);
+    }
+  }
+
   private void setDefaultGitwebRedirect() {
     if (gitwebRedirect == null) {
       if (config.getBoolean("gitiles", null, "redirectGitweb", true)) {
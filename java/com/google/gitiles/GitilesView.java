@@ -66,6 +66,9 @@ public class GitilesView {
     DIFF,
     LOG,
     DESCRIBE,
+    VISIBILITY,
+    CONTAINS,
+    COMPARE,
     ARCHIVE,
     BLAME,
     DOC,
@@ -111,6 +114,11 @@ public class GitilesView {
         case HOST_INDEX:
           repositoryPrefix = other.repositoryPrefix;
           break;
+        case COMPARE:
+          oldRevision = other.oldRevision;
+          revision = other.revision;
+          repositoryName = other.repositoryName;
+          break;
         case LOG:
         case DIFF:
           oldRevision = other.oldRevision;
@@ -124,9 +132,11 @@ public class GitilesView {
           path = other.path;
         // $FALL-THROUGH$
         case REVISION:
+        case CONTAINS:
           revision = other.revision;
         // $FALL-THROUGH$
         case DESCRIBE:
+        case VISIBILITY:
         case REFS:
         case REPOSITORY_INDEX:
           repositoryName = other.repositoryName;
@@ -195,9 +205,12 @@ public class GitilesView {
         case REPOSITORY_INDEX:
         case REFS:
         case DESCRIBE:
+        case VISIBILITY:
           throw new IllegalStateException(String.format("cannot set revision on %s view", type));
         case ARCHIVE:
         case BLAME:
+        case COMPARE:
+        case CONTAINS:
         case DIFF:
         case DOC:
         case LOG:
@@ -228,7 +241,7 @@ public class GitilesView {
     }
 
     public Builder setOldRevision(Revision revision) {
-      if (type != Type.DIFF && type != Type.LOG) {
+      if (type != Type.DIFF && type != Type.LOG && type != Type.COMPARE) {
         revision = firstNonNull(revision, Revision.NULL);
         checkState(Revision.isNull(revision), "cannot set old revision on %s view", type);
       }
@@ -266,6 +279,9 @@ public class GitilesView {
         case HOST_INDEX:
         case REPOSITORY_INDEX:
         case REVISION:
+        case VISIBILITY:
+        case CONTAINS:
+        case COMPARE:
         default:
           checkState(path == null, "cannot set path on %s view", type);
           break;
@@ -340,7 +356,12 @@ public class GitilesView {
         case DESCRIBE:
           checkDescribe();
           break;
+        case VISIBILITY:
+          checkVisibility();
+          break;
         case REVISION:
+        case CONTAINS:
+        case COMPARE:
           checkRevision();
           break;
         case PATH:
@@ -407,6 +428,10 @@ public class GitilesView {
       checkRepositoryIndex();
     }
 
+    private void checkVisibility() {
+      checkRepositoryIndex();
+    }
+
     private void checkRevision() {
       checkView(!Revision.isNull(revision), "missing revision on %s view", type);
       checkRepositoryIndex();
@@ -457,6 +482,18 @@ public class GitilesView {
     return new Builder(Type.DESCRIBE);
   }
 
+  public static Builder visibility() {
+    return new Builder(Type.VISIBILITY);
+  }
+
+  public static Builder contains() {
+    return new Builder(Type.CONTAINS);
+  }
+
+  public static Builder compare() {
+    return new Builder(Type.COMPARE);
+  }
+
   public static Builder revision() {
     return new Builder(Type.REVISION);
   }
@@ -654,9 +691,22 @@ public class GitilesView {
       case DESCRIBE:
         url.append(repositoryName).append("/+describe");
         break;
+      case VISIBILITY:
+        url.append(repositoryName).append("/+visibility");
+        break;
       case REVISION:
         url.append(repositoryName).append("/+/").append(revision.getName());
         break;
+      case CONTAINS:
+        url.append(repositoryName).append("/+contains/").append(revision.getName());
+        break;
+      case COMPARE:
+        url.append(repositoryName).append("/+compare/");
+        if (!Revision.isNull(oldRevision)) {
+          url.append(oldRevision.getName()).append("..");
+        }
+        url.append(revision.getName());
+        break;
       case ARCHIVE:
         url.append(repositoryName).append("/+archive/").append(revision.getName());
         if (path != null) {
@@ -749,7 +799,8 @@ public class GitilesView {
     return getBreadcrumbs(null);
   }
 
-  private static final EnumSet<Type> NON_HTML_TYPES = EnumSet.of(Type.DESCRIBE, Type.ARCHIVE);
+  private static final EnumSet<Type> NON_HTML_TYPES =
+      EnumSet.of(Type.DESCRIBE, Type.VISIBILITY, Type.COMPARE, Type.ARCHIVE);
 
   /**
    * Get breadcrumbs.
@@ -850,6 +901,8 @@ public class GitilesView {
         copy = isLeaf ? blame() : path();
         break;
       case ARCHIVE:
+      case COMPARE:
+      case CONTAINS:
       case DESCRIBE:
       case DOC:
       case HOST_INDEX:
@@ -859,6 +912,7 @@ public class GitilesView {
       case REVISION:
       case ROOTED_DOC:
       case SHOW:
+      case VISIBILITY:
       default:
         copy = path();
         break;
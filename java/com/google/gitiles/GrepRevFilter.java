@@ -0,0 +1,85 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import java.io.IOException;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * Filter which only includes commits whose message contains any of a set of terms.
+ *
+ * <p>Like {@link IdentRevFilter}, terms are fixed strings rather than regular expressions, and are
+ * matched directly against the message in the raw commit buffer without decoding it, unless the
+ * commit declares a non-default encoding or a case-insensitive filter has non-ASCII terms.
+ */
+class GrepRevFilter extends RevFilter {
+  private final TermMatcher matcher;
+
+  /**
+   * Create a filter.
+   *
+   * @param terms terms to match; a commit matches if its message contains any of them.
+   * @param ignoreCase whether to match case-insensitively.
+   */
+  GrepRevFilter(Iterable<String> terms, boolean ignoreCase) {
+    this.matcher = new TermMatcher(terms, ignoreCase);
+  }
+
+  @Override
+  public boolean include(RevWalk walker, RevCommit commit)
+      throws StopWalkException, MissingObjectException, IncorrectObjectTypeException, IOException {
+    byte[] buf = commit.getRawBuffer();
+    if (buf == null) {
+      walker.parseBody(commit);
+      buf = commit.getRawBuffer();
+    }
+    if (!matcher.canMatchRaw() || RawParseUtils.encoding(buf, 0) >= 0) {
+      return matches(commit.getFullMessage());
+    }
+    int ptr = RawParseUtils.commitMessage(buf, 0);
+    return ptr >= 0 && matcher.matchesRaw(buf, ptr, buf.length);
+  }
+
+  @Override
+  public boolean requiresCommitBody() {
+    return true;
+  }
+
+  @Override
+  public RevFilter clone() {
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "GREP(" + String.join(", ", matcher.getTerms()) + ")";
+  }
+
+  /**
+   * Whether a decoded message matches the filter.
+   *
+   * @param message full commit message.
+   * @return whether the message contains any of the patterns.
+   */
+  boolean matches(String message) {
+    return matcher.matches(message);
+  }
+}
@@ -0,0 +1,624 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Objects.hash;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.BitmapIndex;
+import org.eclipse.jgit.lib.BitmapIndex.BitmapBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.BitmapWalker;
+import org.eclipse.jgit.revwalk.ObjectWalk;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.util.IntList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the commits authored and committed by each identity in a repository.
+ *
+ * <p>For each repository, the index records every commit reachable from the repository's refs along
+ * with its commit time, and for each distinct author and committer identity, the positions of that
+ * identity's commits. When the refs change, only the new history is indexed, in a new segment;
+ * segments are merged once there are too many of them. Indexing happens on a background thread, so
+ * requests never wait for it.
+ *
+ * <p>A {@link Walk} created from the index jumps straight to the commits of the matching
+ * identities, without walking the history in between, and uses the repository's pack bitmaps to
+ * drop those that are not reachable from its starts. It can only be created when the index covers
+ * every start, which implies it covers every commit the walk can reach, and when the repository has
+ * bitmaps; otherwise callers fall back to {@link IdentRevFilter}.
+ */
+class IdentIndex {
+  private static final Logger log = LoggerFactory.getLogger(IdentIndex.class);
+
+  private static final int MAX_SEGMENTS = 8;
+
+  static CacheBuilder<Object, Object> defaultBuilder() {
+    return CacheBuilder.newBuilder().maximumSize(16).expireAfterAccess(1, TimeUnit.DAYS);
+  }
+
+  private static class Ident {
+    private final String name;
+    private final String email;
+
+    private Ident(PersonIdent person) {
+      this.name = person.getName();
+      this.email = person.getEmailAddress();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o instanceof Ident) {
+        Ident i = (Ident) o;
+        return Objects.equals(name, i.name) && Objects.equals(email, i.email);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash(name, email);
+    }
+  }
+
+  /**
+   * Immutable set of commits, sorted by ID, with their commit times and the positions of each
+   * identity's commits.
+   */
+  private static class Segment {
+    private final byte[] ids;
+    private final int[] times;
+    private final int size;
+    private final Map<Ident, int[]> authors;
+    private final Map<Ident, int[]> committers;
+
+    private Segment(
+        byte[] ids,
+        int[] times,
+        int size,
+        Map<Ident, int[]> authors,
+        Map<Ident, int[]> committers) {
+      this.ids = ids;
+      this.times = times;
+      this.size = size;
+      this.authors = authors;
+      this.committers = committers;
+    }
+
+    private int find(AnyObjectId id) {
+      int lo = 0;
+      int hi = size - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        int cmp = id.compareTo(ids, mid * Constants.OBJECT_ID_LENGTH);
+        if (cmp == 0) {
+          return mid;
+        } else if (cmp < 0) {
+          hi = mid - 1;
+        } else {
+          lo = mid + 1;
+        }
+      }
+      return -1;
+    }
+
+    private ObjectId get(int pos) {
+      return ObjectId.fromRaw(ids, pos * Constants.OBJECT_ID_LENGTH);
+    }
+
+    private BitSet match(@Nullable IdentRevFilter filter, Map<Ident, int[]> idents) {
+      BitSet result = new BitSet(size);
+      if (filter == null) {
+        result.set(0, size);
+        return result;
+      }
+      for (Map.Entry<Ident, int[]> e : idents.entrySet()) {
+        if (filter.matches(e.getKey().name, e.getKey().email)) {
+          for (int pos : e.getValue()) {
+            result.set(pos);
+          }
+        }
+      }
+      return result;
+    }
+  }
+
+  private static class SegmentBuilder {
+    private final List<ObjectId> commits = new ArrayList<>();
+    private final Map<ObjectId, Integer> times = new HashMap<>();
+    private final Map<Ident, List<ObjectId>> authors = new HashMap<>();
+    private final Map<Ident, List<ObjectId>> committers = new HashMap<>();
+
+    private void add(RevCommit c) {
+      ObjectId id = c.copy();
+      commits.add(id);
+      times.put(id, c.getCommitTime());
+      authors.computeIfAbsent(new Ident(c.getAuthorIdent()), k -> new ArrayList<>()).add(id);
+      committers
+          .computeIfAbsent(new Ident(c.getCommitterIdent()), k -> new ArrayList<>())
+          .add(id);
+    }
+
+    private Segment build() {
+      ObjectId[] sorted = commits.toArray(new ObjectId[0]);
+      Arrays.sort(sorted);
+      byte[] ids = new byte[sorted.length * Constants.OBJECT_ID_LENGTH];
+      int[] t = new int[sorted.length];
+      for (int i = 0; i < sorted.length; i++) {
+        sorted[i].copyRawTo(ids, i * Constants.OBJECT_ID_LENGTH);
+        t[i] = times.get(sorted[i]);
+      }
+      Segment s = new Segment(ids, t, sorted.length, new HashMap<>(), new HashMap<>());
+      toPositions(s, authors, s.authors);
+      toPositions(s, committers, s.committers);
+      return s;
+    }
+
+    private static void toPositions(
+        Segment s, Map<Ident, List<ObjectId>> in, Map<Ident, int[]> out) {
+      for (Map.Entry<Ident, List<ObjectId>> e : in.entrySet()) {
+        int[] positions = new int[e.getValue().size()];
+        for (int i = 0; i < positions.length; i++) {
+          positions[i] = s.find(e.getValue().get(i));
+        }
+        Arrays.sort(positions);
+        out.put(e.getKey(), positions);
+      }
+    }
+  }
+
+  private static class Snapshot {
+    private static final Snapshot EMPTY = new Snapshot(0, ImmutableSet.of(), ImmutableList.of());
+
+    /** {@link RefSnapshot#getVersion() Version} of the refs at the last update. */
+    private final long refsVersion;
+
+    /** Commits whose history is fully indexed. */
+    private final ImmutableSet<ObjectId> tips;
+
+    private final ImmutableList<Segment> segments;
+
+    private Snapshot(
+        long refsVersion, ImmutableSet<ObjectId> tips, ImmutableList<Segment> segments) {
+      this.refsVersion = refsVersion;
+      this.tips = tips;
+      this.segments = segments;
+    }
+
+    private boolean contains(AnyObjectId id) {
+      for (Segment s : segments) {
+        if (s.find(id) >= 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Walk emitting the indexed commits of matching identities that are reachable from its starts.
+   *
+   * <p>Commits are emitted newest first by commit time, which is the order of a walk without
+   * sorting as long as no commit is older than its parents. Reachability from the starts, and from
+   * the commits marked uninteresting, is computed once with the repository's pack bitmaps, and the
+   * history between matching commits is never walked.
+   *
+   * <p>Revision filters are applied as commits are emitted; tree filters must be applied as
+   * revision filters. Sort options, first-parent and parent rewriting set on the walk are ignored.
+   */
+  static class Walk extends RevWalk {
+    private final ImmutableList<Segment> segments;
+    private final int[] offsets;
+    private final List<RevCommit> starts = new ArrayList<>();
+
+    // Set by newWalk.
+    private BitmapIndex bitmaps;
+    private long[] candidates;
+
+    private BitmapBuilder reachable;
+    private int next;
+
+    private Walk(Repository repo, ImmutableList<Segment> segments) {
+      super(repo);
+      this.segments = segments;
+      this.offsets = new int[segments.size() + 1];
+      for (int i = 0; i < segments.size(); i++) {
+        offsets[i + 1] = offsets[i] + segments.get(i).size;
+      }
+    }
+
+    @Override
+    public void markStart(RevCommit c)
+        throws MissingObjectException, IncorrectObjectTypeException, IOException {
+      super.markStart(c);
+      // Also called for uninteresting commits.
+      if (!starts.contains(c)) {
+        starts.add(c);
+      }
+    }
+
+    @Override
+    public RevCommit next()
+        throws MissingObjectException, IncorrectObjectTypeException, IOException {
+      if (reachable == null) {
+        init();
+      }
+      RevFilter filter = getRevFilter();
+      try {
+        while (next > 0) {
+          ObjectId id = get((int) candidates[--next]);
+          if (!reachable.contains(id)) {
+            continue;
+          }
+          RevCommit c = parseCommit(id);
+          if (filter != RevFilter.ALL) {
+            // Path filters compare with the parents' trees.
+            for (int i = 0; i < c.getParentCount(); i++) {
+              parseHeaders(c.getParent(i));
+            }
+          }
+          if (filter.requiresCommitBody()) {
+            parseBody(c);
+          }
+          if (filter.include(this, c)) {
+            return c;
+          }
+        }
+        return null;
+      } catch (StopWalkException e) {
+        next = 0;
+        return null;
+      }
+    }
+
+    private void init() throws IOException {
+      List<RevCommit> include = new ArrayList<>(starts.size());
+      List<RevCommit> exclude = new ArrayList<>();
+      for (RevCommit s : starts) {
+        (s.has(RevFlag.UNINTERESTING) ? exclude : include).add(s);
+      }
+      reachable = findObjects(include);
+      if (!exclude.isEmpty()) {
+        reachable.andNot(findObjects(exclude));
+      }
+    }
+
+    private BitmapBuilder findObjects(List<RevCommit> commits) throws IOException {
+      try (ObjectWalk ow = new ObjectWalk(getObjectReader())) {
+        return new BitmapWalker(ow, bitmaps, NullProgressMonitor.INSTANCE)
+            .findObjects(commits, null, true);
+      }
+    }
+
+    private ObjectId get(int index) {
+      int i = Arrays.binarySearch(offsets, index);
+      // The first segment starting after index, minus one; segments are never empty.
+      int segment = i >= 0 ? i : -i - 2;
+      return segments.get(segment).get(index - offsets[segment]);
+    }
+  }
+
+  private class Holder {
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private boolean updating;
+
+    private synchronized void scheduleUpdate(Repository repo, RefSnapshot refs) {
+      if (updating) {
+        return;
+      }
+      updating = true;
+      // The request that triggered the update may close the repository before the update runs.
+      repo.incrementOpen();
+      try {
+        executor.execute(
+            () -> {
+              try {
+                snapshot = update(repo, snapshot, refs);
+              } catch (IOException | RuntimeException e) {
+                log.warn("Failed to update identity index for {}", repo, e);
+              } finally {
+                repo.close();
+                synchronized (this) {
+                  updating = false;
+                }
+              }
+            });
+      } catch (RuntimeException e) {
+        repo.close();
+        updating = false;
+        throw e;
+      }
+    }
+  }
+
+  private final Cache<String, Holder> cache;
+  private final ExecutorService executor;
+
+  IdentIndex() {
+    this(defaultBuilder());
+  }
+
+  IdentIndex(CacheBuilder<Object, Object> builder) {
+    this(
+        builder,
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("gitiles-ident-%d").setDaemon(true).build()));
+  }
+
+  /**
+   * Create an index.
+   *
+   * @param builder builder for the cache of per-repository indexes.
+   * @param executor executor running index updates, owned by the index.
+   */
+  @VisibleForTesting
+  IdentIndex(CacheBuilder<Object, Object> builder, ExecutorService executor) {
+    this.cache = builder.build();
+    this.executor = checkNotNull(executor, "executor");
+  }
+
+  /** Stop indexing; updates in progress are abandoned. */
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Create a walk over the commits matching identities, if the index covers it.
+   *
+   * <p>Schedules an update of the index if the repository's refs changed since it was last
+   * updated.
+   *
+   * @param repositoryName name of the repository.
+   * @param repo repository.
+   * @param refs current refs of the repository.
+   * @param starts commits the walk will start from.
+   * @param author filter for authors, or null to match any author.
+   * @param committer filter for committers, or null to match any committer.
+   * @return walk emitting the commits reachable from the starts marked on it that match both
+   *     {@code author} and {@code committer}, or null if the index does not cover all of {@code
+   *     starts} yet or the repository has no bitmap index.
+   * @throws IOException if an error occurred reading the repository.
+   */
+  @Nullable
+  Walk newWalk(
+      String repositoryName,
+      Repository repo,
+      RefSnapshot refs,
+      Collection<? extends ObjectId> starts,
+      @Nullable IdentRevFilter author,
+      @Nullable IdentRevFilter committer)
+      throws IOException {
+    checkNotNull(repositoryName, "repositoryName");
+    Holder holder;
+    try {
+      holder = cache.get(repositoryName, Holder::new);
+    } catch (ExecutionException e) {
+      throw new IOException(e);
+    }
+    Snapshot snapshot = holder.snapshot;
+    if (snapshot == Snapshot.EMPTY || snapshot.refsVersion != refs.getVersion()) {
+      holder.scheduleUpdate(repo, refs);
+    }
+    for (ObjectId start : starts) {
+      if (!snapshot.contains(start)) {
+        return null;
+      }
+    }
+
+    Walk walk = new Walk(repo, snapshot.segments);
+    walk.bitmaps = walk.getObjectReader().getBitmapIndex();
+    if (walk.bitmaps == null) {
+      walk.close();
+      return null;
+    }
+    walk.candidates = match(snapshot.segments, author, committer);
+    walk.next = walk.candidates.length;
+    return walk;
+  }
+
+  /**
+   * Find the commits matching identities.
+   *
+   * @return sorted keys of the matching commits, each made of the commit time in the upper half and
+   *     the commit's position across all segments in the lower half.
+   */
+  private static long[] match(
+      ImmutableList<Segment> segments,
+      @Nullable IdentRevFilter author,
+      @Nullable IdentRevFilter committer) {
+    List<long[]> keys = new ArrayList<>(segments.size());
+    int n = 0;
+    int offset = 0;
+    for (Segment s : segments) {
+      BitSet matches = s.match(author, s.authors);
+      matches.and(s.match(committer, s.committers));
+      long[] k = new long[matches.cardinality()];
+      int j = 0;
+      for (int pos = matches.nextSetBit(0); pos >= 0; pos = matches.nextSetBit(pos + 1)) {
+        k[j++] = ((long) s.times[pos] << 32) | (offset + pos);
+      }
+      keys.add(k);
+      n += k.length;
+      offset += s.size;
+    }
+    long[] result = new long[n];
+    int i = 0;
+    for (long[] k : keys) {
+      System.arraycopy(k, 0, result, i, k.length);
+      i += k.length;
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+  private static Snapshot update(Repository repo, Snapshot old, RefSnapshot refs)
+      throws IOException {
+    ImmutableSet.Builder<ObjectId> tips = ImmutableSet.builder();
+    SegmentBuilder b = new SegmentBuilder();
+    try (RevWalk walk = new RevWalk(repo)) {
+      for (Ref ref : refs.getRefs()) {
+        RevCommit c = peelToCommit(walk, ref.getObjectId());
+        if (c != null) {
+          walk.markStart(c);
+          tips.add(c.copy());
+        }
+      }
+      for (ObjectId id : old.tips) {
+        RevCommit c = peelToCommit(walk, id);
+        if (c != null) {
+          walk.markUninteresting(c);
+          tips.add(c.copy());
+        }
+      }
+      for (RevCommit c : walk) {
+        b.add(c);
+        c.disposeBody();
+      }
+    }
+    if (b.commits.isEmpty()) {
+      return new Snapshot(refs.getVersion(), tips.build(), old.segments);
+    }
+    ImmutableList<Segment> segments =
+        ImmutableList.<Segment>builder().addAll(old.segments).add(b.build()).build();
+    if (segments.size() > MAX_SEGMENTS) {
+      Segment merged = segments.get(0);
+      for (int i = 1; i < segments.size(); i++) {
+        merged = merge(merged, segments.get(i));
+      }
+      segments = ImmutableList.of(merged);
+    }
+    return new Snapshot(refs.getVersion(), tips.build(), segments);
+  }
+
+  private static @Nullable RevCommit peelToCommit(RevWalk walk, @Nullable ObjectId id)
+      throws IOException {
+    if (id == null) {
+      return null;
+    }
+    try {
+      RevObject o = walk.peel(walk.parseAny(id));
+      return o instanceof RevCommit ? (RevCommit) o : null;
+    } catch (MissingObjectException e) {
+      return null;
+    }
+  }
+
+  private static Segment merge(Segment a, Segment b) {
+    int[] mapA = new int[a.size];
+    int[] mapB = new int[b.size];
+    byte[] ids = new byte[(a.size + b.size) * Constants.OBJECT_ID_LENGTH];
+    int[] times = new int[a.size + b.size];
+    int i = 0;
+    int j = 0;
+    int n = 0;
+    while (i < a.size || j < b.size) {
+      int cmp;
+      if (i == a.size) {
+        cmp = 1;
+      } else if (j == b.size) {
+        cmp = -1;
+      } else {
+        cmp = a.get(i).compareTo(b.ids, j * Constants.OBJECT_ID_LENGTH);
+      }
+      if (cmp <= 0) {
+        copyId(a.ids, i, ids, n);
+        times[n] = a.times[i];
+        mapA[i++] = n;
+        if (cmp == 0) {
+          mapB[j++] = n;
+        }
+      } else {
+        copyId(b.ids, j, ids, n);
+        times[n] = b.times[j];
+        mapB[j++] = n;
+      }
+      n++;
+    }
+    ids = Arrays.copyOf(ids, n * Constants.OBJECT_ID_LENGTH);
+    Segment s = new Segment(ids, Arrays.copyOf(times, n), n, new HashMap<>(), new HashMap<>());
+    mergePositions(a.authors, mapA, b.authors, mapB, s.authors);
+    mergePositions(a.committers, mapA, b.committers, mapB, s.committers);
+    return s;
+  }
+
+  private static void copyId(byte[] src, int srcPos, byte[] dst, int dstPos) {
+    System.arraycopy(
+        src,
+        srcPos * Constants.OBJECT_ID_LENGTH,
+        dst,
+        dstPos * Constants.OBJECT_ID_LENGTH,
+        Constants.OBJECT_ID_LENGTH);
+  }
+
+  private static void mergePositions(
+      Map<Ident, int[]> a, int[] mapA, Map<Ident, int[]> b, int[] mapB, Map<Ident, int[]> out) {
+    Map<Ident, IntList> merged = new HashMap<>();
+    remap(a, mapA, merged);
+    remap(b, mapB, merged);
+    for (Map.Entry<Ident, IntList> e : merged.entrySet()) {
+      IntList list = e.getValue();
+      int[] positions = new int[list.size()];
+      for (int i = 0; i < positions.length; i++) {
+        positions[i] = list.get(i);
+      }
+      Arrays.sort(positions);
+      out.put(e.getKey(), positions);
+    }
+  }
+
+  private static void remap(Map<Ident, int[]> in, int[] map, Map<Ident, IntList> out) {
+    for (Map.Entry<Ident, int[]> e : in.entrySet()) {
+      IntList list = out.computeIfAbsent(e.getKey(), k -> new IntList());
+      for (int pos : e.getValue()) {
+        list.add(map[pos]);
+      }
+    }
+  }
+}
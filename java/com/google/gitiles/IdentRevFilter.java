@@ -15,6 +15,7 @@
 package com.google.gitiles;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
@@ -23,27 +24,65 @@ import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.util.RawParseUtils;
 
-/** Filter which only includes commits matching a person identity. */
+/**
+ * Filter which only includes commits matching a person identity.
+ *
+ * <p>A commit matches if the name or email address of its identity contains any of the filter's
+ * terms. Matching is done directly on the raw commit buffer, without decoding the identity, unless
+ * the commit declares a non-default encoding or a case-insensitive filter has non-ASCII terms.
+ */
 public abstract class IdentRevFilter extends RevFilter {
   public static IdentRevFilter author(String author) {
-    return new Author(author);
+    return author(ImmutableList.of(author), false);
+  }
+
+  /**
+   * Create a filter matching authors.
+   *
+   * @param terms terms to match; a commit matches if its author contains any of them.
+   * @param ignoreCase whether to match case-insensitively.
+   * @return filter.
+   */
+  public static IdentRevFilter author(Iterable<String> terms, boolean ignoreCase) {
+    return new Author(terms, ignoreCase);
   }
 
   public static IdentRevFilter committer(String committer) {
-    return new Committer(committer);
+    return committer(ImmutableList.of(committer), false);
+  }
+
+  /**
+   * Create a filter matching committers.
+   *
+   * @param terms terms to match; a commit matches if its committer contains any of them.
+   * @param ignoreCase whether to match case-insensitively.
+   * @return filter.
+   */
+  public static IdentRevFilter committer(Iterable<String> terms, boolean ignoreCase) {
+    return new Committer(terms, ignoreCase);
   }
 
-  private final String pattern;
+  private final TermMatcher matcher;
 
-  protected IdentRevFilter(String pattern) {
-    this.pattern = pattern;
+  protected IdentRevFilter(Iterable<String> patterns, boolean ignoreCase) {
+    this.matcher = new TermMatcher(patterns, ignoreCase);
   }
 
   @Override
   public boolean include(RevWalk walker, RevCommit commit)
       throws StopWalkException, MissingObjectException, IncorrectObjectTypeException, IOException {
-    return matchesPerson(getIdent(walker, commit));
+    byte[] buf = commit.getRawBuffer();
+    if (buf == null) {
+      walker.parseBody(commit);
+      buf = commit.getRawBuffer();
+    }
+    if (!matcher.canMatchRaw() || RawParseUtils.encoding(buf, 0) >= 0) {
+      PersonIdent person = getIdent(walker, commit);
+      return person != null && matchesPerson(person);
+    }
+    return matchesRaw(buf, findIdent(buf));
   }
 
   @Override
@@ -58,18 +97,65 @@ public abstract class IdentRevFilter extends RevFilter {
    */
   @VisibleForTesting
   boolean matchesPerson(PersonIdent person) {
+    return matches(person.getName(), person.getEmailAddress());
+  }
+
+  /**
+   * Whether a decoded identity matches the filter.
+   *
+   * @param name name of the identity.
+   * @param email email address of the identity.
+   * @return whether the name or email address contains any of the terms.
+   */
+  boolean matches(String name, String email) {
     // Equivalent to --fixed-strings, to avoid pathological performance of Java
     // regex matching.
     // TODO(kalman): Find/use a port of re2.
-    return person.getName().contains(pattern) || person.getEmailAddress().contains(pattern);
+    return matcher.matches(name) || matcher.matches(email);
+  }
+
+  /**
+   * Whether the identity starting at a position in a raw commit buffer matches.
+   *
+   * @param buf raw commit buffer.
+   * @param ptr position of the identity, as returned by {@link RawParseUtils#author(byte[], int)},
+   *     or -1 if the commit has no such identity.
+   * @return whether the name or email address of the identity contains any of the patterns.
+   */
+  private boolean matchesRaw(byte[] buf, int ptr) {
+    if (ptr < 0) {
+      return false;
+    }
+    // Same bounds as RawParseUtils.parsePersonIdent: "name <email> when".
+    int emailB = RawParseUtils.nextLF(buf, ptr, '<');
+    if (emailB == ptr || buf[emailB - 1] != '<') {
+      return false;
+    }
+    int emailE = RawParseUtils.nextLF(buf, emailB, '>');
+    if (emailE == emailB || buf[emailE - 1] != '>') {
+      return false;
+    }
+    int nameE = emailB - 1;
+    if (nameE > ptr && buf[nameE - 1] == ' ') {
+      nameE--;
+    }
+    return matcher.matchesRaw(buf, ptr, nameE) || matcher.matchesRaw(buf, emailB, emailE - 1);
   }
 
   protected abstract PersonIdent getIdent(RevWalk walk, RevCommit commit)
       throws MissingObjectException, IOException;
 
+  /**
+   * Find the identity in a raw commit buffer.
+   *
+   * @param buf raw commit buffer.
+   * @return position of the identity, or -1 if the commit has none.
+   */
+  protected abstract int findIdent(byte[] buf);
+
   private static class Author extends IdentRevFilter {
-    private Author(String author) {
-      super(author);
+    private Author(Iterable<String> terms, boolean ignoreCase) {
+      super(terms, ignoreCase);
     }
 
     @Override
@@ -78,11 +164,16 @@ public abstract class IdentRevFilter extends RevFilter {
       walk.parseBody(commit);
       return commit.getAuthorIdent();
     }
+
+    @Override
+    protected int findIdent(byte[] buf) {
+      return RawParseUtils.author(buf, 0);
+    }
   }
 
   private static class Committer extends IdentRevFilter {
-    private Committer(String committer) {
-      super(committer);
+    private Committer(Iterable<String> terms, boolean ignoreCase) {
+      super(terms, ignoreCase);
     }
 
     @Override
@@ -91,5 +182,10 @@ public abstract class IdentRevFilter extends RevFilter {
       walk.parseBody(commit);
       return commit.getCommitterIdent();
     }
+
+    @Override
+    protected int findIdent(byte[] buf) {
+      return RawParseUtils.committer(buf, 0);
+    }
   }
 }
@@ -0,0 +1,532 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+
+/**
+ * Keyset cursors for paginating a log without re-walking from the tip.
+ *
+ * <p>A date-ordered {@link RevWalk} is fully described at any point by its start configuration and
+ * the set of commits still pending in its queue. A cursor captures that pending set (the
+ * "frontier") just before the first commit of the next page, so the next page can restart the walk
+ * from the frontier instead of walking from the tip and skipping. A walk stopped early by a {@link
+ * ScanBudget} is resumed the same way, from the frontier at the commit it stopped at. Walks that
+ * must see all of history before emitting anything (topological or reverse order) and
+ * rename-following walks are not supported.
+ *
+ * <p>Tokens are authenticated with a per-{@link Codec} key and bound to a fingerprint of the walk
+ * configuration, so a client cannot use them to start a walk at a commit that is not reachable from
+ * the revision it was already allowed to see.
+ */
+class LogCursor {
+  /** Maximum number of frontier commits that may be encoded in a single token. */
+  static final int MAX_FRONTIER = 32;
+
+  private static final byte VERSION = 1;
+  private static final int MAC_LENGTH = 16;
+  private static final BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+
+  /** Coordinates of a page: a cursor, a start commit, or neither for the first page. */
+  static class Page {
+    static final Page FIRST = new Page(null, null);
+
+    private final String cursor;
+    private final ObjectId start;
+
+    Page(@Nullable String cursor, @Nullable ObjectId start) {
+      this.cursor = cursor;
+      this.start = start != null ? start.copy() : null;
+    }
+
+    @Nullable
+    String getCursor() {
+      return cursor;
+    }
+
+    @Nullable
+    ObjectId getStart() {
+      return start;
+    }
+  }
+
+  /** Encodes and authenticates cursor tokens. */
+  static class Codec {
+    private final HashFunction mac;
+
+    Codec() {
+      byte[] key = new byte[32];
+      new SecureRandom().nextBytes(key);
+      mac = Hashing.hmacSha256(key);
+    }
+
+    String encode(String fingerprint, Collection<? extends ObjectId> frontier) {
+      byte[] raw = new byte[2 + MAC_LENGTH + frontier.size() * Constants.OBJECT_ID_LENGTH];
+      raw[0] = VERSION;
+      raw[1] = (byte) frontier.size();
+      int p = 2 + MAC_LENGTH;
+      for (ObjectId id : frontier) {
+        id.copyRawTo(raw, p);
+        p += Constants.OBJECT_ID_LENGTH;
+      }
+      System.arraycopy(sign(fingerprint, raw), 0, raw, 2, MAC_LENGTH);
+      return ENCODING.encode(raw);
+    }
+
+    /**
+     * Decode a token.
+     *
+     * @param fingerprint fingerprint of the walk the token is being used with.
+     * @param token token from the request.
+     * @return frontier encoded in the token, or null if the token is malformed, was not issued by
+     *     this codec, or was issued for a different walk.
+     */
+    @Nullable
+    ImmutableList<ObjectId> decode(String fingerprint, String token) {
+      byte[] raw;
+      try {
+        raw = ENCODING.decode(token);
+      } catch (IllegalArgumentException e) {
+        return null;
+      }
+      if (raw.length < 2 + MAC_LENGTH || raw[0] != VERSION) {
+        return null;
+      }
+      int n = raw[1] & 0xff;
+      if (n == 0
+          || n > MAX_FRONTIER
+          || raw.length != 2 + MAC_LENGTH + n * Constants.OBJECT_ID_LENGTH) {
+        return null;
+      }
+      byte[] expected = sign(fingerprint, raw);
+      if (!MessageDigest.isEqual(expected, Arrays.copyOfRange(raw, 2, 2 + MAC_LENGTH))) {
+        return null;
+      }
+      ImmutableList.Builder<ObjectId> frontier = ImmutableList.builderWithExpectedSize(n);
+      for (int p = 2 + MAC_LENGTH; p < raw.length; p += Constants.OBJECT_ID_LENGTH) {
+        frontier.add(ObjectId.fromRaw(raw, p));
+      }
+      return frontier.build();
+    }
+
+    private byte[] sign(String fingerprint, byte[] raw) {
+      Hasher h = mac.newHasher();
+      h.putString(fingerprint, UTF_8);
+      h.putByte(raw[0]);
+      h.putBytes(raw, 2 + MAC_LENGTH, raw.length - 2 - MAC_LENGTH);
+      return Arrays.copyOf(h.hash().asBytes(), MAC_LENGTH);
+    }
+  }
+
+  /** Small server-side memory of which page linked to each issued cursor. */
+  static class History {
+    static CacheBuilder<Object, Object> defaultBuilder() {
+      return CacheBuilder.newBuilder().maximumSize(10 << 10).expireAfterAccess(1, TimeUnit.HOURS);
+    }
+
+    private final Cache<String, Page> previous;
+
+    History() {
+      this(defaultBuilder());
+    }
+
+    History(CacheBuilder<Object, Object> builder) {
+      previous = builder.build();
+    }
+
+    void put(String cursor, Page prev) {
+      previous.put(cursor, prev);
+    }
+
+    @Nullable
+    Page getPrevious(String cursor) {
+      return previous.getIfPresent(cursor);
+    }
+  }
+
+  /**
+   * Revision filter that records the pending frontier of the walk it is installed on.
+   *
+   * <p>Must wrap the walk's entire revision filter, and the walk must not have a tree filter, since
+   * commits rejected by a tree filter are never passed to the revision filter.
+   *
+   * <p>Resuming from a frontier is only exact if no commit the walk already emitted can be reached
+   * again from the frontier. Without clock skew, commits are older than their descendants, so this
+   * holds as long as every commit emitted so far is strictly newer than the frontier; walks that
+   * visit a commit newer than the one before it, or that would resume between two commits with the
+   * same time, do not produce cursors. Skew in history the walk has not visited yet can only be
+   * found by the resumed walk, which drops any commit newer than its frontier that a walk from the
+   * tip would have emitted first.
+   */
+  static class Tracker extends RevFilter {
+    private static final int MAX_TRACKED = 1024;
+
+    /**
+     * Number of frontiers kept for commits the walk has not returned yet. A walk with uninteresting
+     * commits holds back a few commits, in case they turn out to be uninteresting, so the filter
+     * sees commits some time before the walk returns them.
+     */
+    private static final int MAX_PENDING = 16;
+
+    private final RevFilter delegate;
+    private final RevFlag seen;
+    private final boolean firstParent;
+    private final ObjectId tip;
+    private final int bound;
+    private final Set<RevCommit> frontier = new LinkedHashSet<>();
+    private final Map<RevCommit, List<RevCommit>> frontiers =
+        new LinkedHashMap<RevCommit, List<RevCommit>>() {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<RevCommit, List<RevCommit>> e) {
+            return size() > MAX_PENDING;
+          }
+        };
+    private Set<ObjectId> emitted;
+    private RevCommit current;
+    private int lastTime = Integer.MAX_VALUE;
+    private boolean ordered = true;
+    private boolean separated;
+    private boolean overflow;
+
+    /**
+     * Install a tracker on a walk.
+     *
+     * @param walk fully configured walk, other than its start commits.
+     * @param starts commits the walk will be started from, newest first.
+     * @param tip commit the walk that issued the cursor was started from, if {@code starts} is the
+     *     frontier of a cursor; null if the walk starts from the tip.
+     * @return the installed tracker.
+     */
+    static Tracker install(RevWalk walk, Collection<RevCommit> starts, @Nullable ObjectId tip) {
+      Tracker t =
+          new Tracker(walk, walk.getRevFilter(), tip, starts.iterator().next().getCommitTime());
+      for (RevCommit c : starts) {
+        t.frontier.add(c);
+        c.add(t.seen);
+      }
+      walk.setRevFilter(t);
+      return t;
+    }
+
+    private Tracker(RevWalk walk, RevFilter delegate, @Nullable ObjectId tip, int bound) {
+      this.delegate = checkNotNull(delegate, "delegate");
+      this.seen = walk.newFlag("LogCursor.SEEN");
+      this.firstParent = walk.isFirstParent();
+      this.tip = tip != null ? tip.copy() : null;
+      this.bound = bound;
+    }
+
+    @Override
+    public boolean include(RevWalk walk, RevCommit c)
+        throws StopWalkException, MissingObjectException, IncorrectObjectTypeException,
+            IOException {
+      int time = c.getCommitTime();
+      ordered &= time <= lastTime;
+      separated = time < lastTime;
+      lastTime = time;
+      current = c;
+      boolean result = delegate.include(walk, c);
+      if (result && tip != null && time > bound) {
+        result = !emittedBefore(walk, c);
+      }
+      // RevWalk queues parents only after the filter returns, and filters may rewrite parents, so
+      // the parents are read after the delegate has run.
+      if (overflow) {
+        return result;
+      }
+      if (ordered && separated) {
+        List<RevCommit> at = frontierFrom(c);
+        if (at != null) {
+          frontiers.put(c, at);
+        }
+      }
+      frontier.remove(c);
+      for (int i = 0; i < c.getParentCount(); i++) {
+        if (firstParent && i > 0) {
+          break;
+        }
+        RevCommit p = c.getParent(i);
+        if (!p.has(seen)) {
+          p.add(seen);
+          frontier.add(p);
+        }
+      }
+      if (frontier.size() > MAX_TRACKED) {
+        frontier.removeIf(f -> f.has(RevFlag.UNINTERESTING));
+        if (frontier.size() > MAX_TRACKED) {
+          overflow = true;
+          frontier.clear();
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Get the pending commits, starting with the newest.
+     *
+     * <p>Commits found to be uninteresting are left out: the filter never sees them, so they are
+     * never removed from the frontier, and a resumed walk would not emit anything from them anyway.
+     *
+     * @param newest pending commit the walk is about to emit.
+     * @return the pending commits, or null if there are too many.
+     */
+    @Nullable
+    private List<RevCommit> frontierFrom(RevCommit newest) {
+      List<RevCommit> result = new ArrayList<>();
+      result.add(newest);
+      for (RevCommit f : frontier) {
+        if (!f.equals(newest) && !f.has(RevFlag.UNINTERESTING)) {
+          if (result.size() == MAX_FRONTIER) {
+            return null;
+          }
+          result.add(f);
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Check whether the walk that issued the cursor emitted a commit before its frontier.
+     *
+     * <p>That walk emitted, before the frontier, exactly the commits reachable from the tip through
+     * commits newer than the newest commit of the frontier, so only those are walked, and only once
+     * skew is found.
+     */
+    private boolean emittedBefore(RevWalk walk, RevCommit c) throws IOException {
+      if (emitted == null) {
+        emitted = new HashSet<>();
+        try (RevWalk w = new RevWalk(walk.getObjectReader())) {
+          w.setRetainBody(false);
+          Deque<RevCommit> todo = new ArrayDeque<>();
+          RevCommit t = w.parseCommit(tip);
+          if (t.getCommitTime() > bound) {
+            emitted.add(t.copy());
+            todo.add(t);
+          }
+          while (!todo.isEmpty()) {
+            RevCommit n = todo.poll();
+            for (int i = 0; i < n.getParentCount(); i++) {
+              if (firstParent && i > 0) {
+                break;
+              }
+              RevCommit p = n.getParent(i);
+              w.parseHeaders(p);
+              if (p.getCommitTime() > bound && emitted.add(p.copy())) {
+                todo.add(p);
+              }
+            }
+          }
+        }
+      }
+      return emitted.contains(c);
+    }
+
+    /**
+     * Get the frontier positioned at a commit.
+     *
+     * @param next commit most recently returned by the walk.
+     * @return commits from which a new walk with the same configuration emits {@code next} followed
+     *     by the remainder of this walk, or null if the frontier is not known or too large.
+     */
+    @Nullable
+    ImmutableList<ObjectId> frontierAt(RevCommit next) {
+      List<RevCommit> at = frontiers.get(next);
+      return at != null ? copy(at) : null;
+    }
+
+    /**
+     * Get the frontier of a walk that was stopped by its revision filter.
+     *
+     * @return commits from which a new walk with the same configuration emits the remainder of
+     *     this walk, starting with the commit the filter stopped at, or null if the frontier is not
+     *     known or too large.
+     */
+    @Nullable
+    ImmutableList<ObjectId> pendingFrontier() {
+      if (overflow || !ordered || !separated || current == null || !frontier.contains(current)) {
+        return null;
+      }
+      List<RevCommit> at = frontierFrom(current);
+      return at != null ? copy(at) : null;
+    }
+
+    private static ImmutableList<ObjectId> copy(Collection<RevCommit> commits) {
+      ImmutableList.Builder<ObjectId> result =
+          ImmutableList.builderWithExpectedSize(commits.size());
+      for (RevCommit c : commits) {
+        result.add(c.copy());
+      }
+      return result.build();
+    }
+
+    @Override
+    public boolean requiresCommitBody() {
+      return delegate.requiresCommitBody();
+    }
+
+    /**
+     * Copy the filter for another walk.
+     *
+     * <p>The frontier refers to commits and a flag of the walk the tracker was installed on, so the
+     * copy only filters commits as the wrapped filter does, and tracks nothing.
+     *
+     * @return a copy of the wrapped filter.
+     */
+    @Override
+    public RevFilter clone() {
+      return delegate.clone();
+    }
+  }
+
+  /** Cursor state for a single log request. */
+  static class Session {
+    private final Codec codec;
+    private final History history;
+    private final String fingerprint;
+    private final Page current;
+    private final boolean fromCursor;
+    private Tracker tracker;
+    private String next;
+
+    /**
+     * Create a session.
+     *
+     * @param codec token codec.
+     * @param history history of previous pages.
+     * @param fingerprint fingerprint of the walk configuration; see {@link
+     *     LogCursor#fingerprint(String...)}.
+     * @param current coordinates of the page being rendered.
+     * @param fromCursor whether the page being rendered was started from {@code current}'s cursor.
+     */
+    Session(Codec codec, History history, String fingerprint, Page current, boolean fromCursor) {
+      this.codec = checkNotNull(codec, "codec");
+      this.history = checkNotNull(history, "history");
+      this.fingerprint = checkNotNull(fingerprint, "fingerprint");
+      this.current = checkNotNull(current, "current");
+      this.fromCursor = fromCursor;
+    }
+
+    void setTracker(Tracker tracker) {
+      this.tracker = tracker;
+    }
+
+    /**
+     * Get the cursor for the page after this one.
+     *
+     * @param nextStart first commit of the next page.
+     * @return opaque token, or null if the walk cannot be resumed from a cursor.
+     */
+    @Nullable
+    String getNextCursor(RevCommit nextStart) {
+      if (next == null && tracker != null) {
+        ImmutableList<ObjectId> frontier = tracker.frontierAt(nextStart);
+        if (frontier != null) {
+          next = codec.encode(fingerprint, frontier);
+          history.put(next, current);
+        }
+      }
+      return next;
+    }
+
+    /**
+     * Get the cursor resuming a walk that was stopped before it finished the page.
+     *
+     * @return opaque token, or null if the walk cannot be resumed from a cursor.
+     */
+    @Nullable
+    String getResumeCursor() {
+      if (next == null && tracker != null) {
+        ImmutableList<ObjectId> frontier = tracker.pendingFrontier();
+        if (frontier != null) {
+          next = codec.encode(fingerprint, frontier);
+          history.put(next, current);
+        }
+      }
+      return next;
+    }
+
+    /**
+     * Get the page before this one.
+     *
+     * @return coordinates of the previous page, or null if this page was not reached by a cursor or
+     *     the previous page is no longer known.
+     */
+    @Nullable
+    Page getPreviousPage() {
+      return fromCursor ? history.getPrevious(current.getCursor()) : null;
+    }
+
+    /**
+     * Whether this page was reached by a cursor.
+     *
+     * @return whether this page was reached by a cursor, and so has no legacy previous start.
+     */
+    boolean isFromCursor() {
+      return fromCursor;
+    }
+  }
+
+  /**
+   * Compute a fingerprint for a walk configuration.
+   *
+   * @param parts values that affect which commits the walk emits, in a fixed order.
+   * @return fingerprint suitable for binding tokens to the walk.
+   */
+  static String fingerprint(String... parts) {
+    StringBuilder b = new StringBuilder();
+    for (String p : parts) {
+      b.append(p != null ? p.length() + ":" + p : "-").append('\0');
+    }
+    return b.toString();
+  }
+
+  private LogCursor() {}
+}
@@ -14,6 +14,7 @@
 
 package com.google.gitiles;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.base.Strings;
@@ -23,19 +24,28 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gitiles.CommitData.Field;
 import com.google.gitiles.DateFormatter.Format;
 import com.google.gitiles.GitilesRequestFailureException.FailureReason;
-import com.google.gson.reflect.TypeToken;
+import com.google.gitiles.blame.cache.ChangedPathTreeFilter;
+import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -44,17 +54,18 @@ import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.http.server.ServletUtils;
 import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.FollowFilter;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevObject;
 import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevTag;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.TreeRevFilter;
 import org.eclipse.jgit.revwalk.filter.AndRevFilter;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
@@ -68,6 +79,7 @@ public class LogServlet extends BaseServlet {
 
   static final String LIMIT_PARAM = "n";
   static final String START_PARAM = "s";
+  static final String CURSOR_PARAM = "c";
 
   private static final String FOLLOW_PARAM = "follow";
   private static final String NAME_STATUS_PARAM = "name-status";
@@ -75,15 +87,114 @@ public class LogServlet extends BaseServlet {
   private static final String TOPO_ORDER_PARAM = "topo-order";
   private static final String REVERSE_PARAM = "reverse";
   private static final String FIRST_PARENT_PARAM = "first-parent";
+  private static final String AUTHOR_PARAM = "author";
+  private static final String COMMITTER_PARAM = "committer";
+  private static final String IGNORE_CASE_PARAM = "regexp-ignore-case";
+  private static final String GREP_PARAM = "grep";
 
   private static final int DEFAULT_LIMIT = 100;
   private static final int MAX_LIMIT = 10000;
+  private static final int DEFAULT_DIFF_PARALLELISM = 4;
+  private static final int DEFAULT_GREP_MAX_COMMITS = 100000;
+  private static final long DEFAULT_GREP_TIMEOUT_MS = 5000;
 
   private final Linkifier linkifier;
+  private final LogCursor.Codec cursorCodec;
+  private final LogCursor.History cursorHistory;
+  private final FollowRevFilter.RenameCache renameCache;
+  private final GenerationTopoWalk.Generations generations;
+  private final ReverseLog.LogCache reverseLogs;
+  private final IdentIndex identIndex;
+  private final int renderThreads;
+  private final int diffThreads;
+  private transient ExecutorService renderExecutor;
+  private transient ForkJoinPool diffExecutor;
 
   public LogServlet(GitilesAccess.Factory accessFactory, Renderer renderer, Linkifier linkifier) {
+    this(accessFactory, renderer, linkifier, 0, 0);
+  }
+
+  /**
+   * Construct a log servlet.
+   *
+   * @param accessFactory factory for per-request access.
+   * @param renderer renderer.
+   * @param linkifier linkifier.
+   * @param renderThreads number of threads used to build HTML log entries in parallel with the
+   *     walk, or 0 to build them on the request thread.
+   * @param diffThreads number of threads used to compute tree diffs of log entries ahead of
+   *     rendering, or 0 to compute them while building each entry.
+   */
+  public LogServlet(
+      GitilesAccess.Factory accessFactory,
+      Renderer renderer,
+      Linkifier linkifier,
+      int renderThreads,
+      int diffThreads) {
     super(renderer, accessFactory);
+    checkArgument(renderThreads >= 0, "renderThreads must not be negative: %s", renderThreads);
+    checkArgument(diffThreads >= 0, "diffThreads must not be negative: %s", diffThreads);
     this.linkifier = checkNotNull(linkifier, "linkifier");
+    this.cursorCodec = new LogCursor.Codec();
+    this.cursorHistory = new LogCursor.History();
+    this.renameCache = new FollowRevFilter.RenameCache();
+    this.generations = new GenerationTopoWalk.Generations();
+    this.reverseLogs = new ReverseLog.LogCache();
+    this.identIndex = new IdentIndex();
+    this.renderThreads = renderThreads;
+    this.diffThreads = diffThreads;
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if (renderExecutor != null) {
+      renderExecutor.shutdown();
+      renderExecutor = null;
+    }
+    if (diffExecutor != null) {
+      diffExecutor.shutdown();
+      diffExecutor = null;
+    }
+    identIndex.shutdown();
+    super.destroy();
+  }
+
+  private synchronized @Nullable ExecutorService getRenderExecutor() {
+    if (renderThreads > 0 && renderExecutor == null) {
+      renderExecutor =
+          Executors.newFixedThreadPool(
+              renderThreads,
+              new ThreadFactoryBuilder().setNameFormat("gitiles-log-%d").setDaemon(true).build());
+    }
+    return renderExecutor;
+  }
+
+  private synchronized @Nullable ExecutorService getDiffExecutor() {
+    if (diffThreads > 0 && diffExecutor == null) {
+      diffExecutor =
+          new ForkJoinPool(
+              diffThreads,
+              pool -> {
+                ForkJoinWorkerThread t =
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("gitiles-diff-" + t.getPoolIndex());
+                return t;
+              },
+              null,
+              false);
+    }
+    return diffExecutor;
+  }
+
+  private void setDiffTrees(HttpServletRequest req, Repository repo, GitilesAccess access)
+      throws IOException {
+    Config config = access.getConfig();
+    int parallelism = config.getInt("log", null, "diffParallelism", DEFAULT_DIFF_PARALLELISM);
+    ExecutorService executor = parallelism > 0 ? getDiffExecutor() : null;
+    CommitContext.get(req)
+        .setDiffTrees(
+            new DiffTrees(
+                repo, executor, parallelism, config.getInt("log", null, "renameLimit", -1)));
   }
 
   @Override
@@ -94,11 +205,12 @@ public class LogServlet extends BaseServlet {
     Paginator paginator = null;
     try {
       GitilesAccess access = getAccess(req);
-      paginator = newPaginator(repo, view, access);
+      paginator = newPaginator(req, repo, view, access);
       if (paginator == null) {
         throw new GitilesRequestFailureException(FailureReason.OBJECT_NOT_FOUND);
       }
       DateFormatter df = new DateFormatter(access, Format.DEFAULT);
+      setDiffTrees(req, repo, access);
 
       // Allow the user to select a logView variant with the "pretty" param.
       String pretty = Iterables.getFirst(view.getParameters().get(PRETTY_PARAM), "default");
@@ -130,6 +242,7 @@ public class LogServlet extends BaseServlet {
               req, res, "com.google.gitiles.templates.LogDetail.logDetail", data)) {
         Writer w = newWriter(out, res);
         new LogSoyData(req, access, pretty)
+            .setExecutor(getRenderExecutor(), renderThreads)
             .renderStreaming(paginator, null, renderer, w, df, LogSoyData.FooterBehavior.NEXT);
         w.flush();
       }
@@ -154,24 +267,52 @@ public class LogServlet extends BaseServlet {
     Paginator paginator = null;
     try {
       GitilesAccess access = getAccess(req);
-      paginator = newPaginator(repo, view, access);
+      paginator = newPaginator(req, repo, view, access);
       if (paginator == null) {
         throw new GitilesRequestFailureException(FailureReason.OBJECT_NOT_FOUND);
       }
       DateFormatter df = new DateFormatter(access, Format.DEFAULT);
-      CommitJsonData.Log result = new CommitJsonData.Log();
-      List<CommitJsonData.Commit> entries = Lists.newArrayListWithCapacity(paginator.getLimit());
-      for (RevCommit c : paginator) {
-        entries.add(new CommitJsonData().toJsonData(req, paginator.getWalk(), c, fs, df));
-      }
-      result.log = entries;
-      if (paginator.getPreviousStart() != null) {
-        result.previous = paginator.getPreviousStart().name();
-      }
-      if (paginator.getNextStart() != null) {
-        result.next = paginator.getNextStart().name();
-      }
-      renderJson(req, res, result, new TypeToken<CommitJsonData.Log>() {}.getType());
+      setDiffTrees(req, repo, access);
+      Iterable<RevCommit> commits =
+          fs.contains(Field.DIFF_TREE)
+              ? CommitContext.get(req).getDiffTrees().prefetch(paginator)
+              : paginator;
+      Paginator p = paginator;
+      // Equivalent to rendering a CommitJsonData.Log, without holding every entry in memory.
+      renderJson(
+          req,
+          res,
+          (gson, out) -> {
+            out.beginObject();
+            out.name("log").beginArray();
+            for (RevCommit c : commits) {
+              gson.toJson(
+                  new CommitJsonData().toJsonData(req, p.getWalk(), c, fs, df),
+                  CommitJsonData.Commit.class,
+                  out);
+            }
+            out.endArray();
+            String previous = null;
+            String previousCursor = null;
+            LogCursor.Page prevPage = p.getPreviousPage();
+            if (prevPage != null) {
+              if (prevPage.getStart() != null) {
+                previous = prevPage.getStart().name();
+              }
+              previousCursor = prevPage.getCursor();
+            } else if (p.getPreviousStart() != null) {
+              previous = p.getPreviousStart().name();
+            }
+            String next = p.getNextStart() != null ? p.getNextStart().name() : null;
+            writeIfNotNull(out, "previous", previous);
+            writeIfNotNull(out, "next", next);
+            writeIfNotNull(out, "previous_cursor", previousCursor);
+            writeIfNotNull(out, "next_cursor", p.getNextCursor());
+            if (p.isTruncated()) {
+              out.name("truncated").value(true);
+            }
+            out.endObject();
+          });
     } finally {
       if (paginator != null) {
         paginator.getWalk().close();
@@ -179,6 +320,13 @@ public class LogServlet extends BaseServlet {
     }
   }
 
+  private static void writeIfNotNull(JsonWriter out, String name, @Nullable String value)
+      throws IOException {
+    if (value != null) {
+      out.name(name).value(value);
+    }
+  }
+
   private static @Nullable GitilesView getView(HttpServletRequest req, Repository repo)
       throws IOException {
     GitilesView view = ViewFilter.getView(req);
@@ -227,45 +375,108 @@ public class LogServlet extends BaseServlet {
     }
   }
 
-  private static @Nullable RevWalk newWalk(Repository repo, GitilesView view, GitilesAccess access)
+  private @Nullable RevWalk newWalk(
+      HttpServletRequest req,
+      Repository repo,
+      GitilesView view,
+      GitilesAccess access,
+      List<? extends ObjectId> starts,
+      @Nullable LogCursor.Session cursor,
+      @Nullable FollowRevFilter follow,
+      @Nullable ScanBudget budget)
       throws MissingObjectException, IOException {
-    RevWalk walk = new RevWalk(repo);
-    if (isTrue(view, FIRST_PARENT_PARAM)) {
-      walk.setFirstParent(true);
+    RevWalk walk = null;
+    boolean topo = isTrue(view, TOPO_ORDER_PARAM);
+    boolean reverse = isTrue(view, REVERSE_PARAM);
+    if (topo
+        && !reverse
+        && access.getConfig().getBoolean("log", null, "generationTopoOrder", true)) {
+      walk = new GenerationTopoWalk(repo, generations);
+    } else if (!topo
+        && !reverse
+        && cursor == null
+        && follow == null
+        && !isTrue(view, FIRST_PARENT_PARAM)
+        && access.getConfig().getBoolean("log", null, "identIndex", false)) {
+      walk = newIdentIndexWalk(req, repo, view, starts);
     }
-    if (isTrue(view, TOPO_ORDER_PARAM)) {
-      walk.sort(RevSort.TOPO_KEEP_BRANCH_TOGETHER, true);
+    if (walk == null) {
+      walk = new RevWalk(repo);
+      if (topo) {
+        walk.sort(RevSort.TOPO_KEEP_BRANCH_TOGETHER, true);
+      }
+      if (reverse) {
+        walk.sort(RevSort.REVERSE, true);
+      }
     }
-    if (isTrue(view, REVERSE_PARAM)) {
-      walk.sort(RevSort.REVERSE, true);
+    if (isTrue(view, FIRST_PARENT_PARAM)) {
+      walk.setFirstParent(true);
     }
+    List<RevCommit> startCommits = new ArrayList<>(starts.size());
     try {
-      walk.markStart(walk.parseCommit(view.getRevision().getId()));
+      for (ObjectId id : starts) {
+        startCommits.add(walk.parseCommit(id));
+      }
       if (!Revision.isNull(view.getOldRevision())) {
         walk.markUninteresting(walk.parseCommit(view.getOldRevision().getId()));
       }
     } catch (IncorrectObjectTypeException iote) {
       return null;
     }
-    setTreeFilter(walk, view, access);
-    setRevFilter(walk, view);
+    RevFilter pathFilter =
+        setTreeFilter(
+            walk,
+            view,
+            access,
+            follow,
+            cursor != null
+                || budget != null
+                || walk instanceof GenerationTopoWalk
+                || walk instanceof IdentIndex.Walk);
+    setRevFilter(walk, view, budget, pathFilter);
+    if (cursor != null) {
+      cursor.setTracker(
+          LogCursor.Tracker.install(
+              walk, startCommits, cursor.isFromCursor() ? view.getRevision().getId() : null));
+    }
+    for (RevCommit c : startCommits) {
+      walk.markStart(c);
+    }
     return walk;
   }
 
-  private static void setRevFilter(RevWalk walk, GitilesView view) {
-    List<RevFilter> filters = new ArrayList<>(3);
+  private static void setRevFilter(
+      RevWalk walk,
+      GitilesView view,
+      @Nullable ScanBudget budget,
+      @Nullable RevFilter pathFilter) {
+    List<RevFilter> filters = new ArrayList<>(5);
+    if (budget != null) {
+      // First, so that it counts every commit the walk pops.
+      filters.add(budget);
+    }
+    if (pathFilter != null) {
+      filters.add(pathFilter);
+    }
     if (isTrue(view, "no-merges")) {
       filters.add(RevFilter.NO_MERGES);
     }
 
-    String author = Iterables.getFirst(view.getParameters().get("author"), null);
-    if (author != null) {
-      filters.add(IdentRevFilter.author(author));
+    // An identity index walk only emits commits with matching identities.
+    if (!(walk instanceof IdentIndex.Walk)) {
+      IdentRevFilter author = getAuthorFilter(view);
+      if (author != null) {
+        filters.add(author);
+      }
+      IdentRevFilter committer = getCommitterFilter(view);
+      if (committer != null) {
+        filters.add(committer);
+      }
     }
 
-    String committer = Iterables.getFirst(view.getParameters().get("committer"), null);
-    if (committer != null) {
-      filters.add(IdentRevFilter.committer(committer));
+    List<String> grep = view.getParameters().get(GREP_PARAM);
+    if (!grep.isEmpty()) {
+      filters.add(new GrepRevFilter(grep, isTrue(view, IGNORE_CASE_PARAM)));
     }
 
     if (filters.size() > 1) {
@@ -275,25 +486,116 @@ public class LogServlet extends BaseServlet {
     }
   }
 
-  private static void setTreeFilter(RevWalk walk, GitilesView view, GitilesAccess access)
+  // Like git log, multiple values of the same parameter match any of them.
+  private static @Nullable IdentRevFilter getAuthorFilter(GitilesView view) {
+    List<String> authors = view.getParameters().get(AUTHOR_PARAM);
+    return !authors.isEmpty()
+        ? IdentRevFilter.author(authors, isTrue(view, IGNORE_CASE_PARAM))
+        : null;
+  }
+
+  private static @Nullable IdentRevFilter getCommitterFilter(GitilesView view) {
+    List<String> committers = view.getParameters().get(COMMITTER_PARAM);
+    return !committers.isEmpty()
+        ? IdentRevFilter.committer(committers, isTrue(view, IGNORE_CASE_PARAM))
+        : null;
+  }
+
+  /**
+   * Create a walk jumping to the commits of the requested identities.
+   *
+   * @return walk over the identity index, or null if the log is not filtered by identity or the
+   *     index cannot serve it yet.
+   */
+  private @Nullable RevWalk newIdentIndexWalk(
+      HttpServletRequest req, Repository repo, GitilesView view, List<? extends ObjectId> starts)
+      throws IOException {
+    IdentRevFilter author = getAuthorFilter(view);
+    IdentRevFilter committer = getCommitterFilter(view);
+    if (author == null && committer == null) {
+      return null;
+    }
+    return identIndex.newWalk(
+        view.getRepositoryName(), repo, RefSnapshot.get(req), starts, author, committer);
+  }
+
+  /**
+   * Set the path filter on a walk.
+   *
+   * @return a revision filter that must be applied to the walk in place of a tree filter, or null
+   *     if the tree filter was set on the walk directly.
+   */
+  private static @Nullable RevFilter setTreeFilter(
+      RevWalk walk,
+      GitilesView view,
+      GitilesAccess access,
+      @Nullable FollowRevFilter follow,
+      boolean asRevFilter)
       throws IOException {
     if (Strings.isNullOrEmpty(view.getPathPart())) {
-      return;
+      return null;
     }
     walk.setRewriteParents(false);
     String path = view.getPathPart();
 
+    if (follow != null) {
+      return follow;
+    }
+
+    if (access.getConfig().getBoolean("gitiles", null, "changedPathFilters", true)) {
+      // Applied as a revision filter, which without parent rewriting is equivalent to setting the
+      // tree filter, so that changed-path filter statistics are recorded.
+      return ChangedPathTreeFilter.newRevFilter(walk, ChangedPathTreeFilter.create(path));
+    }
+    TreeFilter filter =
+        AndTreeFilter.create(PathFilterGroup.createFromStrings(path), TreeFilter.ANY_DIFF);
+    if (asRevFilter) {
+      // Cursors and scan budgets need to observe every commit the walk pops, including those that
+      // do not touch the path, and GenerationTopoWalk only applies revision filters. Without parent
+      // rewriting this is equivalent to setting the tree filter.
+      return new TreeRevFilter(walk, filter);
+    }
+    walk.setTreeFilter(filter);
+    return null;
+  }
+
+  private static boolean isFollow(GitilesView view, GitilesAccess access) throws IOException {
+    if (Strings.isNullOrEmpty(view.getPathPart())) {
+      return false;
+    }
     List<String> followParams = view.getParameters().get(FOLLOW_PARAM);
-    boolean follow =
-        !followParams.isEmpty()
-            ? isTrue(followParams.get(0))
-            : access.getConfig().getBoolean("log", null, "follow", true);
-    if (follow) {
-      walk.setTreeFilter(FollowFilter.create(path, access.getConfig().get(DiffConfig.KEY)));
-    } else {
-      walk.setTreeFilter(
-          AndTreeFilter.create(PathFilterGroup.createFromStrings(path), TreeFilter.ANY_DIFF));
+    if (!followParams.isEmpty()) {
+      return isTrue(followParams.get(0));
     }
+    // A search following renames could not be resumed once it runs out of budget.
+    return !isGrep(view) && access.getConfig().getBoolean("log", null, "follow", true);
+  }
+
+  private static boolean useCursors(GitilesView view, GitilesAccess access) throws IOException {
+    // Searches need cursors to resume after running out of budget.
+    boolean enabled =
+        isGrep(view) || access.getConfig().getBoolean("log", null, "keysetPagination", false);
+    return enabled
+        && !isTrue(view, TOPO_ORDER_PARAM)
+        && !isTrue(view, REVERSE_PARAM)
+        && !isFollow(view, access);
+  }
+
+  private static boolean isGrep(GitilesView view) {
+    return !view.getParameters().get(GREP_PARAM).isEmpty();
+  }
+
+  private static @Nullable ScanBudget newScanBudget(GitilesView view, GitilesAccess access)
+      throws IOException {
+    if (!isGrep(view)) {
+      return null;
+    }
+    Config config = access.getConfig();
+    return new ScanBudget(
+        config.getInt("log", null, "grepMaxCommits", DEFAULT_GREP_MAX_COMMITS),
+        Duration.ofMillis(
+            config.getTimeUnit(
+                "log", null, "grepTimeout", DEFAULT_GREP_TIMEOUT_MS, TimeUnit.MILLISECONDS)));
   }
 
   private static boolean isTrue(GitilesView view, String param) {
@@ -309,26 +611,139 @@ public class LogServlet extends BaseServlet {
     return Boolean.TRUE.equals(StringUtils.toBooleanOrNull(v));
   }
 
-  private static @Nullable Paginator newPaginator(
-      Repository repo, GitilesView view, GitilesAccess access) throws IOException {
+  private @Nullable Paginator newPaginator(
+      HttpServletRequest req, Repository repo, GitilesView view, GitilesAccess access)
+      throws IOException {
     if (view == null) {
       return null;
     }
 
-    try (RevWalk walk = newWalk(repo, view, access)) {
+    LogCursor.Session cursor = null;
+    List<? extends ObjectId> starts = Collections.singletonList(view.getRevision().getId());
+    boolean fromCursor = false;
+    if (isGrep(view) && !useCursors(view, access)) {
+      throw new GitilesRequestFailureException(FailureReason.INCORECT_PARAMETER)
+          .withPublicErrorMessage(
+              "%s cannot be combined with %s, %s or %s",
+              GREP_PARAM, TOPO_ORDER_PARAM, REVERSE_PARAM, FOLLOW_PARAM);
+    }
+    if (useCursors(view, access)) {
+      String fingerprint = getCursorFingerprint(view, access);
+      String token = Iterables.getFirst(view.getParameters().get(CURSOR_PARAM), null);
+      List<ObjectId> frontier = token != null ? cursorCodec.decode(fingerprint, token) : null;
+      if (frontier != null) {
+        starts = frontier;
+        fromCursor = true;
+      } else {
+        // Missing, stale, or foreign cursor: fall back to walking from the tip.
+        token = null;
+      }
+      cursor =
+          new LogCursor.Session(
+              cursorCodec,
+              cursorHistory,
+              fingerprint,
+              new LogCursor.Page(token, fromCursor ? null : getStartOrNull(view)),
+              fromCursor);
+    }
+
+    FollowRevFilter follow = null;
+    if (isFollow(view, access)) {
+      Config config = access.getConfig();
+      follow =
+          new FollowRevFilter(
+              view.getPathPart(),
+              config.get(DiffConfig.KEY),
+              renameCache,
+              config.getBoolean("gitiles", null, "changedPathFilters", true));
+    }
+
+    ScanBudget budget = newScanBudget(view, access);
+    if (isTrue(view, REVERSE_PARAM)
+        && follow == null
+        && budget == null
+        && access.getConfig().getBoolean("log", null, "reverseCache", true)) {
+      return newReversePaginator(req, repo, view, access, starts);
+    }
+    try (RevWalk walk = newWalk(req, repo, view, access, starts, cursor, follow, budget)) {
       if (walk == null) {
         return null;
       }
 
       try {
-        Optional<ObjectId> start = getStart(view.getParameters(), walk.getObjectReader());
-        return new Paginator(walk, getLimit(view), start.orElse(null));
+        Optional<ObjectId> start =
+            fromCursor ? Optional.empty() : getStart(view.getParameters(), walk.getObjectReader());
+        return new Paginator(
+            walk,
+            getLimit(view),
+            start.orElse(null),
+            new Paginator.Options().setCursor(cursor).setFollow(follow).setBudget(budget));
       } catch (InvalidStartValueException e) {
         return null;
       }
     }
   }
 
+  /**
+   * Create a paginator over a slice of a cached reverse log.
+   *
+   * <p>The log is built from the same walk in forward order, once per walk configuration, and the
+   * slice begins up to one page before the requested start so that the paginator can still find
+   * the previous page.
+   */
+  private @Nullable Paginator newReversePaginator(
+      HttpServletRequest req,
+      Repository repo,
+      GitilesView view,
+      GitilesAccess access,
+      List<? extends ObjectId> starts)
+      throws IOException {
+    GitilesView forwardView = GitilesView.log().copyFrom(view).removeParam(REVERSE_PARAM).build();
+    try (RevWalk forward = newWalk(req, repo, forwardView, access, starts, null, null, null)) {
+      if (forward == null) {
+        return null;
+      }
+      ReverseLog log =
+          reverseLogs.get(
+              LogCursor.fingerprint(
+                  getCursorFingerprint(view, access),
+                  Boolean.toString(isTrue(view, TOPO_ORDER_PARAM))),
+              forward);
+      Optional<ObjectId> start = getStart(view.getParameters(), forward.getObjectReader());
+      int limit = getLimit(view);
+      int pos = start.isPresent() ? log.indexOf(start.get()) : 0;
+      if (pos < 0) {
+        // Like a walk that never reaches the start: an empty page.
+        pos = log.size();
+      }
+      try (RevWalk walk = log.newWalk(repo, Math.max(0, pos - limit))) {
+        return new Paginator(walk, limit, start.orElse(null));
+      }
+    } catch (InvalidStartValueException e) {
+      return null;
+    }
+  }
+
+  private static @Nullable ObjectId getStartOrNull(GitilesView view) {
+    String id = Iterables.getFirst(view.getParameters().get(START_PARAM), null);
+    return id != null && ObjectId.isId(id) ? ObjectId.fromString(id) : null;
+  }
+
+  private static String getCursorFingerprint(GitilesView view, GitilesAccess access)
+      throws IOException {
+    return LogCursor.fingerprint(
+        access.getRepositoryName(),
+        view.getRevision().getId().name(),
+        Revision.isNull(view.getOldRevision()) ? null : view.getOldRevision().getId().name(),
+        Strings.nullToEmpty(view.getPathPart()),
+        Boolean.toString(isTrue(view, FIRST_PARENT_PARAM)),
+        Boolean.toString(isTrue(view, "no-merges")),
+        String.join("\n", view.getParameters().get(AUTHOR_PARAM)),
+        String.join("\n", view.getParameters().get(COMMITTER_PARAM)),
+        Boolean.toString(isTrue(view, IGNORE_CASE_PARAM)),
+        String.join("\n", view.getParameters().get(GREP_PARAM)));
+  }
+
   private static int getLimit(GitilesView view) {
     List<String> values = view.getParameters().get(LIMIT_PARAM);
     if (values.isEmpty()) {
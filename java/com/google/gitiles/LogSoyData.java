@@ -15,8 +15,10 @@
 package com.google.gitiles;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
@@ -24,16 +26,29 @@ import com.google.common.collect.Sets;
 import com.google.gitiles.CommitData.Field;
 import com.google.template.soy.jbcsrc.api.SoySauce;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.http.server.ServletUtils;
 import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 
 public class LogSoyData {
   private static final ImmutableSet<Field> FIELDS =
@@ -63,6 +78,8 @@ public class LogSoyData {
   private final Set<Field> fields;
   private final String variant;
   private CommitSoyData csd;
+  private ExecutorService executor;
+  private int parallelism;
 
   public LogSoyData(HttpServletRequest req, GitilesAccess access, String pretty)
       throws IOException {
@@ -77,6 +94,22 @@ public class LogSoyData {
     variant = firstNonNull(config.getString("logFormat", pretty, "variant"), pretty);
   }
 
+  /**
+   * Build entry data on worker threads while the walk advances and entries are rendered.
+   *
+   * <p>Entries are still rendered in order on the calling thread, so the output is unchanged.
+   *
+   * @param executor executor for building entry data, or null to build entries serially.
+   * @param parallelism maximum number of entries built concurrently.
+   * @return this.
+   */
+  LogSoyData setExecutor(@Nullable ExecutorService executor, int parallelism) {
+    checkArgument(executor == null || parallelism > 0, "parallelism must be positive");
+    this.executor = executor;
+    this.parallelism = parallelism;
+    return this;
+  }
+
   private void renderHtml(SoySauce.Renderer renderer, Appendable out) throws IOException {
     if (!renderer.renderHtml(out).result().isDone()) {
       throw new IOException("failed to render HTML");
@@ -99,10 +132,19 @@ public class LogSoyData {
 
     SoySauce.Renderer entryRenderer =
         renderer.newRenderer("com.google.gitiles.templates.LogDetail.logEntryWrapper");
-    boolean renderedEntries = false;
-    for (RevCommit c : paginator) {
-      renderHtml(entryRenderer.setData(toEntrySoyData(paginator, c, df)), writer);
-      renderedEntries = true;
+    Iterable<RevCommit> commits =
+        fields.contains(Field.DIFF_TREE)
+            ? CommitContext.get(req).getDiffTrees().prefetch(paginator)
+            : paginator;
+    boolean renderedEntries;
+    if (executor != null && paginator.getLimit() > 1) {
+      renderedEntries = renderEntriesPipelined(paginator, commits, entryRenderer, writer, df);
+    } else {
+      renderedEntries = false;
+      for (RevCommit c : commits) {
+        renderHtml(entryRenderer.setData(toEntrySoyData(paginator, c, df)), writer);
+        renderedEntries = true;
+      }
     }
     if (!renderedEntries) {
       renderHtml(renderer.newRenderer("com.google.gitiles.templates.LogDetail.emptyLog"), writer);
@@ -117,27 +159,129 @@ public class LogSoyData {
 
   private Map<String, Object> toHeaderSoyData(Paginator paginator, @Nullable String revision) {
     Map<String, Object> data = Maps.newHashMapWithExpectedSize(1);
-    ObjectId prev = paginator.getPreviousStart();
-    if (prev != null) {
+    LogCursor.Page prevPage = paginator.getPreviousPage();
+    ObjectId prev = prevPage != null ? prevPage.getStart() : paginator.getPreviousStart();
+    if (prevPage != null || prev != null) {
       GitilesView.Builder prevView = copyAndCanonicalizeView(revision);
-      if (prevView.getRevision().getId().equals(prev)) {
+      if (prev == null || prevView.getRevision().getId().equals(prev)) {
         prevView.removeParam(LogServlet.START_PARAM);
       } else {
         prevView.replaceParam(LogServlet.START_PARAM, prev.name());
       }
+      if (prevPage != null && prevPage.getCursor() != null) {
+        prevView.replaceParam(LogServlet.CURSOR_PARAM, prevPage.getCursor());
+      } else {
+        prevView.removeParam(LogServlet.CURSOR_PARAM);
+      }
       data.put("previousUrl", prevView.toUrl());
     }
     return data;
   }
 
+  /** Per-worker state; neither {@link RevWalk} nor {@link CommitSoyData} is thread-safe. */
+  private static class Worker implements AutoCloseable {
+    private final RevWalk walk;
+    private final CommitSoyData csd = new CommitSoyData();
+
+    private Worker(Repository repo) {
+      walk = new RevWalk(repo);
+    }
+
+    @Override
+    public void close() {
+      walk.close();
+    }
+  }
+
+  private boolean renderEntriesPipelined(
+      Paginator paginator,
+      Iterable<RevCommit> commits,
+      SoySauce.Renderer entryRenderer,
+      Writer writer,
+      DateFormatter df)
+      throws IOException {
+    Repository repo = ServletUtils.getRepository(req);
+    // Create the shared context on this thread before any worker asks for it.
+    CommitContext.get(req);
+    int workerCount = Math.min(parallelism, paginator.getLimit());
+    BlockingQueue<Worker> workers = new ArrayBlockingQueue<>(workerCount);
+    List<Worker> allWorkers = new ArrayList<>(workerCount);
+    for (int i = 0; i < workerCount; i++) {
+      Worker w = new Worker(repo);
+      allWorkers.add(w);
+      workers.add(w);
+    }
+
+    // Keep a bounded window of entries in flight: the walk advances and submits on this thread,
+    // workers build entry data, and completed entries are rendered here in walk order. The window
+    // is no larger than the number of workers, so tasks never wait for one.
+    Deque<Future<Map<String, Object>>> pending = new ArrayDeque<>(workerCount);
+    boolean renderedEntries = false;
+    try {
+      for (RevCommit c : commits) {
+        // The paginator's walk and its commits are not safe to read once the walk advances; each
+        // worker parses the commit again in its own walk.
+        ObjectId id = c.copy();
+        DiffEntry rename = paginator.getRename(c);
+        pending.add(
+            executor.submit(
+                () -> {
+                  Worker w = workers.take();
+                  try {
+                    return toEntrySoyData(w.csd, w.walk, w.walk.parseCommit(id), rename, df);
+                  } finally {
+                    workers.add(w);
+                  }
+                }));
+        if (pending.size() >= workerCount) {
+          renderHtml(entryRenderer.setData(getEntry(pending.remove())), writer);
+        }
+        renderedEntries = true;
+      }
+      while (!pending.isEmpty()) {
+        renderHtml(entryRenderer.setData(getEntry(pending.remove())), writer);
+      }
+    } finally {
+      // Tasks read from the request, so they must not outlive it.
+      for (Future<Map<String, Object>> f : pending) {
+        try {
+          f.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+          // Already failing; the first error is reported.
+        }
+      }
+      allWorkers.forEach(Worker::close);
+    }
+    return renderedEntries;
+  }
+
+  private static Map<String, Object> getEntry(Future<Map<String, Object>> f) throws IOException {
+    try {
+      return f.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e);
+    }
+  }
+
   private Map<String, Object> toEntrySoyData(Paginator paginator, RevCommit c, DateFormatter df)
       throws IOException {
     if (csd == null) {
       csd = new CommitSoyData();
     }
+    return toEntrySoyData(csd, paginator.getWalk(), c, paginator.getRename(c), df);
+  }
 
-    Map<String, Object> entry = csd.toSoyData(req, paginator.getWalk(), c, fields, df);
-    DiffEntry rename = paginator.getRename(c);
+  private Map<String, Object> toEntrySoyData(
+      CommitSoyData csd, RevWalk walk, RevCommit c, @Nullable DiffEntry rename, DateFormatter df)
+      throws IOException {
+    Map<String, Object> entry = csd.toSoyData(req, walk, c, fields, df);
     if (rename != null) {
       entry.put("rename", toRenameSoyData(rename));
     }
@@ -167,15 +311,26 @@ public class LogSoyData {
       case NEXT:
         ObjectId next = paginator.getNextStart();
         if (next == null) {
-          return ImmutableMap.of();
+          String resume = paginator.isTruncated() ? paginator.getNextCursor() : null;
+          if (resume == null) {
+            return ImmutableMap.of();
+          }
+          // The search ran out of budget; there is no next commit yet, only where to resume.
+          GitilesView.Builder resumeView =
+              copyAndCanonicalizeView(revision)
+                  .removeParam(LogServlet.START_PARAM)
+                  .replaceParam(LogServlet.CURSOR_PARAM, resume);
+          return ImmutableMap.of("nextUrl", resumeView.toUrl(), "nextText", "Search further");
         }
-        return ImmutableMap.of(
-            "nextUrl",
-            copyAndCanonicalizeView(revision)
-                .replaceParam(LogServlet.START_PARAM, next.name())
-                .toUrl(),
-            "nextText",
-            "Next");
+        GitilesView.Builder nextView =
+            copyAndCanonicalizeView(revision).replaceParam(LogServlet.START_PARAM, next.name());
+        String nextCursor = paginator.getNextCursor();
+        if (nextCursor != null) {
+          nextView.replaceParam(LogServlet.CURSOR_PARAM, nextCursor);
+        } else {
+          nextView.removeParam(LogServlet.CURSOR_PARAM);
+        }
+        return ImmutableMap.of("nextUrl", nextView.toUrl(), "nextText", "Next");
 
       case LOG_HEAD:
         return ImmutableMap.of(
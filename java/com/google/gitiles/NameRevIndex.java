@@ -0,0 +1,457 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the names of commits relative to the tags containing them.
+ *
+ * <p>Names are those of {@link org.eclipse.jgit.api.NameRevCommand}: the nearest tag containing a
+ * commit, followed by the path from the tag to the commit, such as {@code v1.0~3^2}. Building them
+ * walks the history of every tag, so the index keeps the name of every commit reachable from the
+ * tags of a repository, and is updated in the background when the tags change. When tags are only
+ * added, names are propagated from the new tags alone, and only replace names that are further
+ * away. When a tag is deleted or moved, or a new tag is exactly as near to a commit as an existing
+ * one, the index is rebuilt, so names never depend on the order tags were added in. Branches move
+ * on nearly every push, which would rebuild the index each time, so names relative to all refs are
+ * not indexed.
+ *
+ * <p>Names are shared by all users who see the same tags of a repository, and the index is bounded
+ * by the number of objects it names.
+ *
+ * <p>Unlike {@code NameRevCommand}, the walk is not cut off at commits older than the commit being
+ * named, so the index may name commits whose nearest ref is only reachable through older history.
+ */
+class NameRevIndex {
+  private static final Logger log = LoggerFactory.getLogger(NameRevIndex.class);
+
+  /** Cost of following a merge's second or later parent, as in {@code NameRevCommand}. */
+  private static final int MERGE_COST = 65535;
+
+  /** Number of sets of visible tags indexed per repository and mode. */
+  private static final int MAX_STATES = 4;
+
+  static CacheBuilder<Object, Object> defaultBuilder() {
+    // About 100 bytes per named object.
+    return CacheBuilder.newBuilder().maximumWeight(1 << 20).expireAfterAccess(1, TimeUnit.DAYS);
+  }
+
+  /** Refs that names are relative to. */
+  enum Mode {
+    /** Annotated tags, the default of {@code NameRevCommand}. */
+    ANNOTATED_TAGS(Constants.R_TAGS, true),
+
+    /** All tags, annotated or not. */
+    TAGS(Constants.R_TAGS, true),
+
+    /** All refs; not indexed. */
+    ALL(Constants.R_REFS, false);
+
+    private final String prefix;
+    private final boolean indexed;
+
+    Mode(String prefix, boolean indexed) {
+      this.prefix = prefix;
+      this.indexed = indexed;
+    }
+
+    /**
+     * Check whether names in this mode are indexed.
+     *
+     * @return whether {@link NameRevIndex#get(GitilesAccess, Repository, RefSnapshot, Mode)}
+     *     accepts this mode.
+     */
+    boolean isIndexed() {
+      return indexed;
+    }
+  }
+
+  /**
+   * Name of a commit, formatted on use.
+   *
+   * <p>Names through a merge's second or later parent refer to the name of the merge rather than
+   * copying it, so the names of a history with many merges share their common prefixes.
+   */
+  private static class Name {
+    private final String tip;
+    @Nullable private final Name merge;
+    private final int parent;
+    private final int distance;
+    private final long cost;
+
+    private Name(String tip, @Nullable Name merge, int parent, int distance, long cost) {
+      this.tip = tip;
+      this.merge = merge;
+      this.parent = parent;
+      this.distance = distance;
+      this.cost = cost;
+    }
+
+    private String format() {
+      Deque<Name> path = new ArrayDeque<>();
+      for (Name n = this; n != null; n = n.merge) {
+        path.push(n);
+      }
+      StringBuilder b = new StringBuilder(tip);
+      for (Name n : path) {
+        if (n.merge != null) {
+          b.append('^').append(n.parent);
+        }
+        if (n.distance > 0) {
+          b.append('~').append(n.distance);
+        }
+      }
+      return b.toString();
+    }
+  }
+
+  /** Immutable names of the objects reachable from a set of refs. */
+  static class Names {
+    private static final Names EMPTY =
+        new Names(ImmutableList.of(), Collections.emptyMap(), Collections.emptyMap());
+
+    /** Refs under the mode's prefix, sorted by name. */
+    private final ImmutableList<Ref> refs;
+
+    private final Map<ObjectId, Name> commits;
+    private final Map<ObjectId, String> nonCommits;
+
+    private Names(
+        ImmutableList<Ref> refs, Map<ObjectId, Name> commits, Map<ObjectId, String> nonCommits) {
+      this.refs = refs;
+      this.commits = commits;
+      this.nonCommits = nonCommits;
+    }
+
+    private int size() {
+      return commits.size() + nonCommits.size();
+    }
+
+    /**
+     * Get the name of an object.
+     *
+     * @param id object to name.
+     * @return name of the object, as {@code NameRevCommand} would name it, or null if it is not
+     *     reachable from any of the refs.
+     */
+    @Nullable
+    String get(AnyObjectId id) {
+      Name name = commits.get(id);
+      if (name != null) {
+        return simplify(name.format());
+      }
+      String ref = nonCommits.get(id);
+      return ref != null ? simplify(ref) : null;
+    }
+  }
+
+  /** Names of a repository in one mode, for each of the most recently used states of its refs. */
+  private class Holder {
+    private final Map<Long, Names> states = new LinkedHashMap<>(MAX_STATES, 0.75f, true);
+    private Names latest = Names.EMPTY;
+    private boolean updating;
+
+    @Nullable
+    private synchronized Names get(long state) {
+      return states.get(state);
+    }
+
+    private synchronized int weight() {
+      long weight = 1;
+      for (Names names : states.values()) {
+        weight += names.size();
+      }
+      return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    private synchronized void scheduleUpdate(
+        List<Object> key, Repository repo, Mode mode, long state, ImmutableList<Ref> refs) {
+      if (updating) {
+        return;
+      }
+      updating = true;
+      Names base = latest;
+      // The request that triggered the update may close the repository before the update runs.
+      repo.incrementOpen();
+      try {
+        executor.execute(
+            () -> {
+              try {
+                Names names = update(repo, mode, base, refs);
+                synchronized (this) {
+                  states.put(state, names);
+                  if (states.size() > MAX_STATES) {
+                    states.remove(states.keySet().iterator().next());
+                  }
+                  latest = names;
+                }
+                // Weigh the holder again, unless it was evicted meanwhile.
+                cache.asMap().replace(key, this, this);
+              } catch (IOException | RuntimeException e) {
+                log.warn("Failed to update name index for {}", repo, e);
+              } finally {
+                repo.close();
+                synchronized (this) {
+                  updating = false;
+                }
+              }
+            });
+      } catch (RuntimeException e) {
+        repo.close();
+        updating = false;
+        throw e;
+      }
+    }
+  }
+
+  private final Cache<List<Object>, Holder> cache;
+  private final ExecutorService executor;
+
+  NameRevIndex() {
+    this(defaultBuilder());
+  }
+
+  NameRevIndex(CacheBuilder<Object, Object> builder) {
+    this(
+        builder,
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("gitiles-name-rev-%d")
+                .setDaemon(true)
+                .build()));
+  }
+
+  /**
+   * Create an index.
+   *
+   * @param builder builder for the cache of per-repository indexes.
+   * @param executor executor running index updates, owned by the index.
+   */
+  @VisibleForTesting
+  NameRevIndex(CacheBuilder<Object, Object> builder, ExecutorService executor) {
+    this.cache = builder.weigher((List<Object> k, Holder v) -> v.weight()).build();
+    this.executor = checkNotNull(executor, "executor");
+  }
+
+  /** Stop indexing; updates in progress are abandoned. */
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Get the names of objects relative to the current tags, if the index is up to date.
+   *
+   * <p>Schedules an update of the index if the tags changed since it was last updated. Changes to
+   * other refs do not affect the index.
+   *
+   * @param access access for the repository.
+   * @param repo repository.
+   * @param refs current snapshot of the repository's refs.
+   * @param mode refs that names are relative to; must be {@link Mode#isIndexed() indexed}.
+   * @return names relative to the refs in {@code refs}, or null if the index is not up to date
+   *     with them yet.
+   * @throws IOException if an error occurred looking up the index.
+   */
+  @Nullable
+  Names get(GitilesAccess access, Repository repo, RefSnapshot refs, Mode mode)
+      throws IOException {
+    checkArgument(mode.isIndexed(), "names are not indexed in mode %s", mode);
+    // Names only depend on the refs under the prefix, so users who see the same ones share them.
+    List<Object> key = ImmutableList.of(access.getRepositoryName(), mode);
+    Holder holder;
+    try {
+      holder = cache.get(key, Holder::new);
+    } catch (ExecutionException e) {
+      throw new IOException(e);
+    }
+    long state = refs.getVersion(mode.prefix);
+    Names names = holder.get(state);
+    if (names == null) {
+      holder.scheduleUpdate(
+          key, repo, mode, state, ImmutableList.copyOf(refs.getRefsByPrefix(mode.prefix)));
+    }
+    return names;
+  }
+
+  /**
+   * Update names for new refs.
+   *
+   * @param repo repository.
+   * @param mode refs that names are relative to.
+   * @param old names relative to earlier refs.
+   * @param refs current refs under the mode's prefix, sorted by name.
+   * @return names relative to {@code refs}.
+   * @throws IOException if an error occurred reading objects.
+   */
+  private static Names update(Repository repo, Mode mode, Names old, ImmutableList<Ref> refs)
+      throws IOException {
+    Map<String, ObjectId> oldRefs = new HashMap<>();
+    for (Ref ref : old.refs) {
+      oldRefs.put(ref.getName(), ref.getObjectId());
+    }
+    List<Ref> added = new ArrayList<>();
+    int kept = 0;
+    for (Ref ref : refs) {
+      if (!oldRefs.containsKey(ref.getName())) {
+        added.add(ref);
+      } else if (Objects.equals(oldRefs.get(ref.getName()), ref.getObjectId())) {
+        kept++;
+      }
+    }
+    if (kept == 0 || kept < oldRefs.size()) {
+      // Names through a deleted or moved ref cannot be withdrawn one by one.
+      return build(repo, mode, refs, refs, false, new HashMap<>(), new HashMap<>());
+    } else if (added.isEmpty()) {
+      return new Names(refs, old.commits, old.nonCommits);
+    }
+    Names names =
+        build(
+            repo,
+            mode,
+            refs,
+            added,
+            true,
+            new HashMap<>(old.commits),
+            new HashMap<>(old.nonCommits));
+    if (names == null) {
+      return build(repo, mode, refs, refs, false, new HashMap<>(), new HashMap<>());
+    }
+    return names;
+  }
+
+  /**
+   * Propagate names from refs.
+   *
+   * @return names, or null if {@code incremental} and a new ref is as near to a commit as an
+   *     existing ref; which of them names the commit depends on the order of the whole walk, so
+   *     the names must be rebuilt.
+   */
+  @Nullable
+  private static Names build(
+      Repository repo,
+      Mode mode,
+      ImmutableList<Ref> refs,
+      List<Ref> tips,
+      boolean incremental,
+      Map<ObjectId, Name> commits,
+      Map<ObjectId, String> nonCommits)
+      throws IOException {
+    Deque<RevCommit> pending = new ArrayDeque<>();
+    try (RevWalk walk = new RevWalk(repo)) {
+      for (Ref ref : tips) {
+        if (ref.getObjectId() == null) {
+          continue;
+        }
+        RevObject o;
+        try {
+          o = walk.parseAny(ref.getObjectId());
+        } catch (MissingObjectException e) {
+          continue;
+        }
+        if (mode == Mode.ANNOTATED_TAGS && !(o instanceof RevTag)) {
+          continue;
+        }
+        String name = ref.getName();
+        while (o instanceof RevTag) {
+          // NameRevCommand keeps the last ref peeling to a tag, in name order.
+          nonCommits.merge(o.copy(), name, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+          o = ((RevTag) o).getObject();
+          walk.parseHeaders(o);
+        }
+        if (o instanceof RevCommit) {
+          Name n = commits.get(o);
+          if (n == null || n.cost > 0) {
+            commits.put(o.copy(), new Name(name, null, 0, 0, 0));
+            pending.add((RevCommit) o);
+          } else if (incremental && name.compareTo(n.tip) < 0) {
+            return null;
+          }
+        } else {
+          // And the first ref peeling to other objects.
+          nonCommits.merge(o.copy(), name, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+        }
+      }
+
+      RevCommit c;
+      while ((c = pending.poll()) != null) {
+        Name cn = commits.get(c);
+        for (int i = 0; i < c.getParentCount(); i++) {
+          RevCommit p = walk.parseCommit(c.getParent(i));
+          long cost = cn.cost + (i > 0 ? MERGE_COST : 1);
+          Name pn = commits.get(p);
+          if (pn == null || cost < pn.cost) {
+            commits.put(p.copy(), parentName(cn, i, cost));
+            pending.add(p);
+          } else if (incremental
+              && cost == pn.cost
+              && !parentName(cn, i, cost).format().equals(pn.format())) {
+            return null;
+          }
+        }
+      }
+    }
+    return new Names(refs, commits, nonCommits);
+  }
+
+  private static Name parentName(Name child, int parent, long cost) {
+    return parent > 0
+        ? new Name(child.tip, child, parent + 1, 0, cost)
+        : new Name(child.tip, child.merge, child.parent, child.distance + 1, cost);
+  }
+
+  private static String simplify(String name) {
+    for (String prefix : new String[] {Constants.R_HEADS, Constants.R_TAGS, Constants.R_REFS}) {
+      if (name.startsWith(prefix)) {
+        return name.substring(prefix.length());
+      }
+    }
+    return name;
+  }
+}
@@ -0,0 +1,115 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Cache of revisions and paths that were not found.
+ *
+ * <p>Requests for deleted branches, unreachable or garbage collected objects, and nonexistent paths
+ * otherwise repeat the ref lookups, visibility checks and tree walks needed to fail each time.
+ *
+ * <p>Revisions are keyed by the version of the refs in a {@link RefSnapshot}, so entries stop
+ * matching once any ref changes. Paths are keyed by the ID of the resolved commit or tree, whose
+ * contents never change.
+ */
+class NotFoundCache {
+  static CacheBuilder<Object, Object> defaultBuilder() {
+    return CacheBuilder.newBuilder().maximumSize(100 << 10).expireAfterWrite(10, TimeUnit.MINUTES);
+  }
+
+  private final Cache<List<Object>, Boolean> cache;
+
+  NotFoundCache() {
+    this(defaultBuilder());
+  }
+
+  NotFoundCache(CacheBuilder<Object, Object> builder) {
+    cache = builder.build();
+  }
+
+  /**
+   * Check whether a revision path was not found.
+   *
+   * @param access access for the current request.
+   * @param refs snapshot of the refs of the repository.
+   * @param forAutomation whether branch redirects are disabled for the request.
+   * @param path path after the repository name, starting with the revision expression.
+   * @return whether parsing {@code path} recently found no visible revision.
+   */
+  boolean isRevisionMissing(
+      GitilesAccess access, RefSnapshot refs, boolean forAutomation, String path) {
+    return cache.getIfPresent(revisionKey(access, refs, forAutomation, path)) != null;
+  }
+
+  /**
+   * Record that a revision path was not found.
+   *
+   * @param access access for the current request.
+   * @param refs snapshot of the refs of the repository, taken before parsing {@code path}.
+   * @param forAutomation whether branch redirects are disabled for the request.
+   * @param path path after the repository name, starting with the revision expression.
+   */
+  void putMissingRevision(
+      GitilesAccess access, RefSnapshot refs, boolean forAutomation, String path) {
+    cache.put(revisionKey(access, refs, forAutomation, path), true);
+  }
+
+  /**
+   * Check whether a path was not found.
+   *
+   * @param access access for the current request.
+   * @param id commit or tree the path was looked up in.
+   * @param path path within {@code id}.
+   * @param recursive whether {@code path} was looked up as a tree to list recursively.
+   * @return whether {@code path} was recently found not to exist in {@code id}.
+   */
+  boolean isPathMissing(GitilesAccess access, ObjectId id, String path, boolean recursive) {
+    return cache.getIfPresent(pathKey(access, id, path, recursive)) != null;
+  }
+
+  /**
+   * Record that a path was not found.
+   *
+   * @param access access for the current request.
+   * @param id commit or tree the path was looked up in.
+   * @param path path within {@code id}.
+   * @param recursive whether {@code path} was looked up as a tree to list recursively.
+   */
+  void putMissingPath(GitilesAccess access, ObjectId id, String path, boolean recursive) {
+    cache.put(pathKey(access, id, path, recursive), true);
+  }
+
+  private static List<Object> revisionKey(
+      GitilesAccess access, RefSnapshot refs, boolean forAutomation, String path) {
+    return ImmutableList.of(
+        access.getVisibilityClass(),
+        access.getRepositoryName(),
+        refs.getVersion(),
+        forAutomation,
+        path);
+  }
+
+  private static List<Object> pathKey(
+      GitilesAccess access, ObjectId id, String path, boolean recursive) {
+    return ImmutableList.of(access.getRepositoryName(), id.copy(), path, recursive);
+  }
+}
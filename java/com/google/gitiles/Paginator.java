@@ -45,6 +45,9 @@ import org.eclipse.jgit.treewalk.filter.TreeFilter;
  * order to present the commit list in a stable way, we must always start from the first commit in
  * the walk. This is because there may be arbitrary merge commits between "c0ffee" and "next" that
  * effectively insert arbitrary commits into the history starting from "c0ffee".
+ *
+ * <p>When a {@link LogCursor.Session} is supplied, the walk may instead have been restarted from a
+ * cursor's frontier, and the paginator additionally produces a cursor for the next page.
  */
 class Paginator implements Iterable<RevCommit> {
   private static class RenameWatcher extends RenameCallback {
@@ -66,13 +69,58 @@ class Paginator implements Iterable<RevCommit> {
   private final int limit;
   private final ObjectId prevStart;
   private final RenameWatcher renameWatcher;
+  private final LogCursor.Session cursor;
+  private final ScanBudget budget;
 
   private RevCommit first;
   private boolean done;
+  private boolean truncated;
   private int n;
   private ObjectId nextStart;
+  private String nextCursor;
   private Map<ObjectId, DiffEntry> renamed;
 
+  /** Optional walk state the paginator cooperates with. */
+  static class Options {
+    private LogCursor.Session cursor;
+    private FollowRevFilter follow;
+    private ScanBudget budget;
+
+    /**
+     * Set the cursor state.
+     *
+     * @param cursor cursor state for the walk, or null if cursors are not in use.
+     * @return this.
+     */
+    Options setCursor(@Nullable LogCursor.Session cursor) {
+      this.cursor = cursor;
+      return this;
+    }
+
+    /**
+     * Set the rename-following filter.
+     *
+     * @param follow rename-following filter applied to the walk, or null if renames are not
+     *     followed or are followed with a {@link FollowFilter}.
+     * @return this.
+     */
+    Options setFollow(@Nullable FollowRevFilter follow) {
+      this.follow = follow;
+      return this;
+    }
+
+    /**
+     * Set the scan budget.
+     *
+     * @param budget scan budget applied to the walk, or null if the walk is unbounded.
+     * @return this.
+     */
+    Options setBudget(@Nullable ScanBudget budget) {
+      this.budget = budget;
+      return this;
+    }
+  }
+
   /**
    * Construct a paginator and walk eagerly to the first returned commit.
    *
@@ -82,12 +130,30 @@ class Paginator implements Iterable<RevCommit> {
    */
   Paginator(RevWalk walk, int limit, @Nullable ObjectId start)
       throws MissingObjectException, IncorrectObjectTypeException, IOException {
+    this(walk, limit, start, new Options());
+  }
+
+  /**
+   * Construct a paginator and walk eagerly to the first returned commit.
+   *
+   * @param walk revision walk; must be fully initialized before calling.
+   * @param limit page size.
+   * @param start commit at which to start the walk, or null to start at the beginning.
+   * @param options cursor, rename-following and scan budget state for the walk.
+   */
+  Paginator(RevWalk walk, int limit, @Nullable ObjectId start, Options options)
+      throws MissingObjectException, IncorrectObjectTypeException, IOException {
     this.walk = checkNotNull(walk, "walk");
     checkArgument(limit > 0, "limit must be positive: %s", limit);
     this.limit = limit;
+    this.cursor = options.cursor;
+    this.budget = options.budget;
 
     TreeFilter filter = walk.getTreeFilter();
-    if (filter instanceof FollowFilter) {
+    if (options.follow != null) {
+      renameWatcher = new RenameWatcher();
+      options.follow.setRenameCallback(renameWatcher);
+    } else if (filter instanceof FollowFilter) {
       renameWatcher = new RenameWatcher();
       ((FollowFilter) filter).setRenameCallback(renameWatcher);
     } else {
@@ -99,6 +165,7 @@ class Paginator implements Iterable<RevCommit> {
       RevCommit commit = nextWithRename();
       if (commit == null) {
         done = true;
+        checkTruncated();
         break;
       }
       if (start == null || start.equals(commit)) {
@@ -134,14 +201,32 @@ class Paginator implements Iterable<RevCommit> {
       commit = nextWithRename();
     }
     if (++n == limit) {
-      nextStart = nextWithRename();
+      RevCommit next = nextWithRename();
+      if (next != null && cursor != null) {
+        // The frontier must be captured before anything else advances the walk.
+        nextCursor = cursor.getNextCursor(next);
+      }
+      nextStart = next;
       done = true;
+      if (next == null) {
+        checkTruncated();
+      }
     } else if (commit == null) {
       done = true;
+      checkTruncated();
     }
     return commit;
   }
 
+  private void checkTruncated() {
+    if (budget != null && budget.isExhausted()) {
+      truncated = true;
+      if (cursor != null) {
+        nextCursor = cursor.getResumeCursor();
+      }
+    }
+  }
+
   private RevCommit nextWithRename() throws IOException {
     RevCommit next = walk.next();
     if (renameWatcher != null) {
@@ -181,6 +266,42 @@ class Paginator implements Iterable<RevCommit> {
     return nextStart;
   }
 
+  /**
+   * Get next cursor.
+   *
+   * @return opaque cursor for the page of results after this one, or null if this is the last page
+   *     or the walk cannot be resumed from a cursor. If the page is {@link #isTruncated()
+   *     truncated}, there may be a cursor but no {@link #getNextStart() next start}.
+   */
+  public @Nullable String getNextCursor() {
+    checkState(done, "getNextCursor() invalid before walk done");
+    return nextCursor;
+  }
+
+  /**
+   * Whether the walk was stopped by its scan budget.
+   *
+   * <p>A truncated page may have fewer results than the page size, or none, even though more
+   * matching commits may follow. {@link #getNextCursor()} resumes the walk where it stopped, if
+   * the walk can be resumed from a cursor.
+   *
+   * @return whether the page was cut short by the scan budget.
+   */
+  public boolean isTruncated() {
+    checkState(done, "isTruncated() invalid before walk done");
+    return truncated;
+  }
+
+  /**
+   * Get previous page.
+   *
+   * @return coordinates of the page of results preceding this one when this page was reached by a
+   *     cursor, or null if unknown or cursors are not in use.
+   */
+  public @Nullable LogCursor.Page getPreviousPage() {
+    return cursor != null ? cursor.getPreviousPage() : null;
+  }
+
   /**
    * Get rename.
    *
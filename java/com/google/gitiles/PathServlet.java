@@ -122,10 +122,20 @@ public class PathServlet extends BaseServlet {
   }
 
   private final GitilesUrls urls;
+  private final NotFoundCache notFoundCache;
 
   public PathServlet(GitilesAccess.Factory accessFactory, Renderer renderer, GitilesUrls urls) {
+    this(accessFactory, renderer, urls, new NotFoundCache());
+  }
+
+  PathServlet(
+      GitilesAccess.Factory accessFactory,
+      Renderer renderer,
+      GitilesUrls urls,
+      NotFoundCache notFoundCache) {
     super(renderer, accessFactory);
     this.urls = checkNotNull(urls, "urls");
+    this.notFoundCache = checkNotNull(notFoundCache, "notFoundCache");
   }
 
   @Override
@@ -134,7 +144,7 @@ public class PathServlet extends BaseServlet {
     Repository repo = ServletUtils.getRepository(req);
 
     try (RevWalk rw = new RevWalk(repo);
-        WalkResult wr = WalkResult.forPath(rw, view, false)) {
+        WalkResult wr = walk(req, rw, view, false)) {
       if (wr == null) {
         throw new GitilesRequestFailureException(FailureReason.OBJECT_NOT_FOUND);
       }
@@ -166,7 +176,7 @@ public class PathServlet extends BaseServlet {
     Repository repo = ServletUtils.getRepository(req);
 
     try (RevWalk rw = new RevWalk(repo);
-        WalkResult wr = WalkResult.forPath(rw, view, false)) {
+        WalkResult wr = walk(req, rw, view, false)) {
       if (wr == null) {
         throw new GitilesRequestFailureException(FailureReason.OBJECT_NOT_FOUND);
       }
@@ -262,7 +272,7 @@ public class PathServlet extends BaseServlet {
                 || Boolean.TRUE.equals(StringUtils.toBooleanOrNull(recursiveStr)));
 
     try (RevWalk rw = new RevWalk(repo);
-        WalkResult wr = WalkResult.forPath(rw, view, recursive)) {
+        WalkResult wr = walk(req, rw, view, recursive)) {
       if (wr == null) {
         throw new GitilesRequestFailureException(FailureReason.OBJECT_NOT_FOUND);
       }
@@ -279,8 +289,8 @@ public class PathServlet extends BaseServlet {
           renderJson(
               req,
               res,
-              TreeJsonData.toJsonData(wr.id, wr.tw, includeSizes, recursive),
-              TreeJsonData.Tree.class);
+              (gson, out) ->
+                  TreeJsonData.write(gson, out, wr.id, wr.tw, includeSizes, recursive));
           break;
         case GITLINK:
           renderJson(
@@ -303,6 +313,21 @@ public class PathServlet extends BaseServlet {
     }
   }
 
+  private @Nullable WalkResult walk(
+      HttpServletRequest req, RevWalk rw, GitilesView view, boolean recursive) throws IOException {
+    GitilesAccess access = getAccess(req);
+    ObjectId id = view.getRevision().getId();
+    String path = view.getPathPart();
+    if (notFoundCache.isPathMissing(access, id, path, recursive)) {
+      return null;
+    }
+    WalkResult wr = WalkResult.forPath(rw, view, recursive);
+    if (wr == null) {
+      notFoundCache.putMissingPath(access, id, path, recursive);
+    }
+    return wr;
+  }
+
   private static @Nullable RevTree getRoot(GitilesView view, RevWalk rw) throws IOException {
     RevObject obj = rw.peel(rw.parseAny(view.getRevision().getId()));
     switch (obj.getType()) {
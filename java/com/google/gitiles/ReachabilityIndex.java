@@ -0,0 +1,250 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Objects.hash;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.lib.BitmapIndex;
+import org.eclipse.jgit.lib.BitmapIndex.BitmapBuilder;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.BitmapWalker;
+import org.eclipse.jgit.revwalk.ObjectWalk;
+
+/**
+ * Index of the objects reachable from the refs visible to a user in a repository.
+ *
+ * <p>Entries are shared by all users of the same {@link GitilesAccess#getVisibilityClass()
+ * visibility class}.
+ *
+ * <p>Built from the repository's pack bitmaps, so it is only available for repositories that have
+ * them. Each entry records the set of tips it was built from; when the visible refs change, tips
+ * that were only added are indexed by walking just the new history into a second bitmap, and
+ * entries whose tips were removed are rebuilt. Objects that are not covered by the bitmaps, such as
+ * those written since the last repack, are handled by {@link BitmapWalker}.
+ *
+ * <p>Entries are built under a lock per key and never modified once published; new history is
+ * always walked with a fresh bitmap index from the reader. The bitmap built from all tips is
+ * rebuilt once too many tips were added to it, or once a tip that had no bitmap of its own gains
+ * one, which means the repository was repacked since.
+ */
+public class ReachabilityIndex {
+  public static CacheBuilder<Object, Object> defaultBuilder() {
+    return CacheBuilder.newBuilder().maximumSize(64).expireAfterAccess(1, TimeUnit.HOURS);
+  }
+
+  /** Maximum number of tips added to an entry before its base bitmap is rebuilt. */
+  private static final int MAX_ADDED = 256;
+
+  /** Maximum number of tips without bitmaps checked for a repack. */
+  private static final int MAX_PROBES = 8;
+
+  private static class Key {
+    private final Object visibilityClass;
+    private final String repositoryName;
+
+    private Key(Object visibilityClass, String repositoryName) {
+      this.visibilityClass = checkNotNull(visibilityClass, "visibilityClass");
+      this.repositoryName = checkNotNull(repositoryName, "repositoryName");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o instanceof Key) {
+        Key k = (Key) o;
+        return Objects.equals(visibilityClass, k.visibilityClass)
+            && Objects.equals(repositoryName, k.repositoryName);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash(visibilityClass, repositoryName);
+    }
+  }
+
+  /** Bitmap of reachable objects, with its own bitmap index. */
+  private static class Layer {
+    private final BitmapBuilder reachable;
+
+    private Layer(BitmapBuilder reachable) {
+      this.reachable = reachable;
+    }
+
+    // Lookups inflate the bitmap lazily, so even they must not run concurrently.
+    private synchronized boolean contains(ObjectId id) {
+      return reachable.contains(id);
+    }
+  }
+
+  private static class Entry {
+    private final ImmutableSet<ObjectId> baseTips;
+    private final Layer base;
+    private final ImmutableList<ObjectId> probes;
+    private final ImmutableSet<ObjectId> tips;
+    @Nullable private final Layer added;
+
+    private Entry(
+        ImmutableSet<ObjectId> baseTips,
+        Layer base,
+        ImmutableList<ObjectId> probes,
+        ImmutableSet<ObjectId> tips,
+        @Nullable Layer added) {
+      this.baseTips = baseTips;
+      this.base = base;
+      this.probes = probes;
+      this.tips = tips;
+      this.added = added;
+    }
+
+    private boolean contains(ObjectId id) {
+      return base.contains(id) || (added != null && added.contains(id));
+    }
+  }
+
+  private static class Holder {
+    @Nullable private volatile Entry entry;
+
+    @Nullable
+    private synchronized Entry update(ObjectReader reader, ImmutableSet<ObjectId> current)
+        throws IOException {
+      // Another request may have built the same entry while this one waited.
+      Entry e = entry;
+      if (e == null || !e.tips.equals(current)) {
+        e = ReachabilityIndex.update(reader, e, current);
+        if (e != null) {
+          entry = e;
+        }
+      }
+      return e;
+    }
+  }
+
+  private final Cache<Key, Holder> cache;
+
+  public ReachabilityIndex() {
+    this(defaultBuilder());
+  }
+
+  public ReachabilityIndex(CacheBuilder<Object, Object> builder) {
+    this.cache = builder.build();
+  }
+
+  public Cache<?, ?> getCache() {
+    return cache;
+  }
+
+  /**
+   * Check whether an object is reachable from a set of tips.
+   *
+   * @param access access for the current request, identifying the visibility class and repository.
+   * @param reader reader for the repository.
+   * @param id object to check.
+   * @param tips all ref tips currently visible to the user.
+   * @return whether {@code id} is reachable from {@code tips}, or null if the repository has no
+   *     bitmap index and the caller must walk.
+   * @throws IOException an error occurred reading the repository.
+   */
+  @Nullable
+  Boolean isReachable(
+      GitilesAccess access, ObjectReader reader, ObjectId id, Collection<? extends ObjectId> tips)
+      throws IOException {
+    Key key = new Key(access.getVisibilityClass(), access.getRepositoryName());
+    Holder holder;
+    try {
+      holder = cache.get(key, Holder::new);
+    } catch (ExecutionException e) {
+      throw new IOException(e);
+    }
+    ImmutableSet<ObjectId> current = copyOf(tips);
+    Entry entry = holder.entry;
+    if (entry == null || !entry.tips.equals(current)) {
+      entry = holder.update(reader, current);
+      if (entry == null) {
+        return null;
+      }
+    }
+    return entry.contains(id);
+  }
+
+  @Nullable
+  private static Entry update(
+      ObjectReader reader, @Nullable Entry old, ImmutableSet<ObjectId> current)
+      throws IOException {
+    // Each call returns a new index, which only this entry will use.
+    BitmapIndex index = reader.getBitmapIndex();
+    if (index == null) {
+      return null;
+    }
+    if (old != null && current.containsAll(old.baseTips) && !repacked(index, old.probes)) {
+      Set<ObjectId> added = Sets.difference(current, old.baseTips);
+      if (added.isEmpty()) {
+        return new Entry(old.baseTips, old.base, old.probes, current, null);
+      } else if (added.size() <= MAX_ADDED) {
+        // The base bitmap cannot be read concurrently, so it does not bound the walk; history
+        // covered by the fresh index's bitmaps is not walked either way.
+        BitmapBuilder delta = newWalker(reader, index).findObjects(added, null, true);
+        return new Entry(old.baseTips, old.base, old.probes, current, new Layer(delta));
+      }
+    }
+
+    BitmapBuilder reachable = newWalker(reader, index).findObjects(current, null, true);
+    ImmutableList.Builder<ObjectId> probes = ImmutableList.builder();
+    int n = 0;
+    for (ObjectId tip : current) {
+      if (n < MAX_PROBES && index.getBitmap(tip) == null) {
+        probes.add(tip);
+        n++;
+      }
+    }
+    return new Entry(current, new Layer(reachable), probes.build(), current, null);
+  }
+
+  private static boolean repacked(BitmapIndex index, ImmutableList<ObjectId> probes) {
+    for (ObjectId tip : probes) {
+      if (index.getBitmap(tip) != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static BitmapWalker newWalker(ObjectReader reader, BitmapIndex index) {
+    return new BitmapWalker(new ObjectWalk(reader), index, NullProgressMonitor.INSTANCE);
+  }
+
+  private static ImmutableSet<ObjectId> copyOf(Collection<? extends ObjectId> ids) {
+    ImmutableSet.Builder<ObjectId> b = ImmutableSet.builderWithExpectedSize(ids.size());
+    for (ObjectId id : ids) {
+      b.add(id.copy());
+    }
+    return b.build();
+  }
+}
@@ -19,17 +19,16 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
 import com.google.common.primitives.Ints;
-import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.common.primitives.Longs;
 import com.google.gitiles.GitilesRequestFailureException.FailureReason;
-import com.google.gson.reflect.TypeToken;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.Collection;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -40,7 +39,6 @@ import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefComparator;
-import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.RefAdvertiser;
 
@@ -48,12 +46,58 @@ import org.eclipse.jgit.transport.RefAdvertiser;
 public class RefServlet extends BaseServlet {
   private static final long serialVersionUID = 1L;
 
+  /** Parameter limiting the number of refs listed in text and JSON. */
+  static final String LIMIT_PARAM = "n";
+
+  /** Parameter giving the name, relative to the listed prefix, of the ref preceding a page. */
+  static final String START_PARAM = "s";
+
+  /** Value of the {@code sort} parameter listing branches from most to least recently updated. */
+  static final String SORT_RECENT = "recent";
+
+  /**
+   * Header giving the value of {@link #START_PARAM} for the next page of text and JSON listings,
+   * set only if more refs follow.
+   */
+  static final String NEXT_START_HEADER = "X-Gitiles-Next-Start";
+
+  /** Default number of refs listed in text and JSON without {@link #LIMIT_PARAM}. */
+  static final int DEFAULT_PAGE_SIZE = 1000;
+
+  /** Default maximum number of refs listed in text and JSON. */
+  static final int DEFAULT_MAX_PAGE_SIZE = 10000;
+
   private final TimeCache timeCache;
+  private final int pageSize;
+  private final int maxPageSize;
 
   protected RefServlet(
       GitilesAccess.Factory accessFactory, Renderer renderer, TimeCache timeCache) {
+    this(accessFactory, renderer, timeCache, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGE_SIZE);
+  }
+
+  /**
+   * Construct a ref servlet.
+   *
+   * @param accessFactory factory for per-request access.
+   * @param renderer renderer.
+   * @param timeCache cache of commit times.
+   * @param pageSize number of refs listed in text and JSON when the request does not give a limit,
+   *     or 0 to list up to {@code maxPageSize}.
+   * @param maxPageSize maximum number of refs listed in text and JSON, or 0 for no maximum.
+   */
+  protected RefServlet(
+      GitilesAccess.Factory accessFactory,
+      Renderer renderer,
+      TimeCache timeCache,
+      int pageSize,
+      int maxPageSize) {
     super(renderer, accessFactory);
+    checkArgument(pageSize >= 0, "pageSize must not be negative: %s", pageSize);
+    checkArgument(maxPageSize >= 0, "maxPageSize must not be negative: %s", maxPageSize);
     this.timeCache = checkNotNull(timeCache, "timeCache");
+    this.pageSize = pageSize;
+    this.maxPageSize = maxPageSize;
   }
 
   @Override
@@ -61,21 +105,27 @@ public class RefServlet extends BaseServlet {
     if (!ViewFilter.getView(req).getPathPart().isEmpty()) {
       throw new GitilesRequestFailureException(FailureReason.INCORECT_PARAMETER);
     }
+    GitilesAccess access = getAccess(req);
+    List<Map<String, Object>> branches;
     List<Map<String, Object>> tags;
     try (RevWalk walk = new RevWalk(ServletUtils.getRepository(req))) {
-      tags = getTagsSoyData(req, timeCache, walk, 0);
+      branches =
+          SORT_RECENT.equals(req.getParameter("sort"))
+              ? getRecentBranchesSoyData(req, access, timeCache, walk, 0)
+              : getBranchesSoyData(req, 0);
+      tags = getTagsSoyData(req, access, timeCache, walk, 0);
     }
     renderHtml(
         req,
         res,
         "com.google.gitiles.templates.RefList.refsDetail",
-        ImmutableMap.of("branches", getBranchesSoyData(req, 0), "tags", tags));
+        ImmutableMap.of("branches", branches, "tags", tags));
   }
 
   @Override
   protected void doGetText(HttpServletRequest req, HttpServletResponse res) throws IOException {
-    GitilesView view = ViewFilter.getView(req);
-    RefsResult refs = getRefs(ServletUtils.getRepository(req).getRefDatabase(), view.getPathPart());
+    RefsResult refs = getRefs(RefSnapshot.get(req), ViewFilter.getView(req));
+    setNextStart(res, refs);
     TextRefAdvertiser adv = new TextRefAdvertiser(startRenderText(req, res));
     adv.setDerefTags(true);
     adv.send(refs.refs);
@@ -84,23 +134,28 @@ public class RefServlet extends BaseServlet {
 
   @Override
   protected void doGetJson(HttpServletRequest req, HttpServletResponse res) throws IOException {
-    GitilesView view = ViewFilter.getView(req);
-    RefsResult refs = getRefs(ServletUtils.getRepository(req).getRefDatabase(), view.getPathPart());
-    Map<String, RefJsonData> jsonRefs = new LinkedHashMap<>();
+    RefsResult refs = getRefs(RefSnapshot.get(req), ViewFilter.getView(req));
+    setNextStart(res, refs);
     int prefixLen = refs.prefix.length();
-    for (Ref ref : refs.refs) {
-      jsonRefs.put(ref.getName().substring(prefixLen), new RefJsonData(ref));
-    }
-    renderJson(req, res, jsonRefs, new TypeToken<Map<String, RefJsonData>>() {}.getType());
+    // Equivalent to rendering a Map<String, RefJsonData> in ref order.
+    renderJson(
+        req,
+        res,
+        (gson, out) -> {
+          out.beginObject();
+          for (Ref ref : refs.refs) {
+            out.name(ref.getName().substring(prefixLen));
+            gson.toJson(new RefJsonData(ref), RefJsonData.class, out);
+          }
+          out.endObject();
+        });
   }
 
   static List<Map<String, Object>> getBranchesSoyData(HttpServletRequest req, int limit)
       throws IOException {
-    RefDatabase refdb = ServletUtils.getRepository(req).getRefDatabase();
-    Ref head = refdb.exactRef(Constants.HEAD);
-    Ref headLeaf = head != null && head.isSymbolic() ? head.getLeaf() : null;
+    Ref headLeaf = getHeadLeaf(req);
     return getRefsSoyData(
-        refdb,
+        RefSnapshot.get(req),
         ViewFilter.getView(req),
         Constants.R_HEADS,
         branchComparator(headLeaf),
@@ -108,6 +163,38 @@ public class RefServlet extends BaseServlet {
         limit);
   }
 
+  /**
+   * Get branches ordered from the most to the least recently committed to.
+   *
+   * @param req current request.
+   * @param access access for the current request.
+   * @param timeCache cache of commit times.
+   * @param walk walk for reading objects.
+   * @param limit maximum number of branches to return, or 0 for all. One more branch than {@code
+   *     limit} is returned, if present, to tell callers whether the list was truncated.
+   * @return soy data for the branches, newest first.
+   * @throws IOException if an error occurred reading the refs or objects.
+   */
+  static List<Map<String, Object>> getRecentBranchesSoyData(
+      HttpServletRequest req,
+      GitilesAccess access,
+      TimeCache timeCache,
+      RevWalk walk,
+      int limit)
+      throws IOException {
+    return toSoyData(
+        ViewFilter.getView(req),
+        Constants.R_HEADS,
+        getNewest(req, access, timeCache, walk, Constants.R_HEADS, limit),
+        getHeadLeaf(req));
+  }
+
+  @Nullable
+  private static Ref getHeadLeaf(HttpServletRequest req) throws IOException {
+    Ref head = ServletUtils.getRepository(req).exactRef(Constants.HEAD);
+    return head != null && head.isSymbolic() ? head.getLeaf() : null;
+  }
+
   private static Ordering<Ref> branchComparator(Ref headLeaf) {
     if (headLeaf == null) {
       return Ordering.from(RefComparator.INSTANCE);
@@ -128,33 +215,37 @@ public class RefServlet extends BaseServlet {
   }
 
   static List<Map<String, Object>> getTagsSoyData(
-      HttpServletRequest req, TimeCache timeCache, RevWalk walk, int limit) throws IOException {
-    return getRefsSoyData(
-        ServletUtils.getRepository(req).getRefDatabase(),
+      HttpServletRequest req,
+      GitilesAccess access,
+      TimeCache timeCache,
+      RevWalk walk,
+      int limit)
+      throws IOException {
+    return toSoyData(
         ViewFilter.getView(req),
         Constants.R_TAGS,
-        tagComparator(timeCache, walk),
-        null,
-        limit);
-  }
-
-  private static Long getTime(RevWalk walk, TimeCache timeCache, Ref ref) {
-    try {
-      return timeCache.getTime(walk, ref.getObjectId());
-    } catch (IOException e) {
-      throw new UncheckedExecutionException(e);
-    }
+        getNewest(req, access, timeCache, walk, Constants.R_TAGS, limit),
+        null);
   }
 
-  private static Ordering<Ref> tagComparator(TimeCache timeCache, RevWalk walk) {
-    return Ordering.natural()
-        .onResultOf((Ref r) -> getTime(walk, timeCache, r))
-        .reverse()
-        .compound(RefComparator.INSTANCE);
+  private static List<Ref> getNewest(
+      HttpServletRequest req,
+      GitilesAccess access,
+      TimeCache timeCache,
+      RevWalk walk,
+      String prefix,
+      int limit)
+      throws IOException {
+    return timeCache.getNewest(
+        walk,
+        access,
+        RefSnapshot.get(req),
+        prefix,
+        limit > 0 ? Ints.saturatedCast(limit + 1L) : 0);
   }
 
   private static List<Map<String, Object>> getRefsSoyData(
-      RefDatabase refdb,
+      RefSnapshot snapshot,
       GitilesView view,
       String prefix,
       Ordering<Ref> ordering,
@@ -162,8 +253,13 @@ public class RefServlet extends BaseServlet {
       int limit)
       throws IOException {
     checkArgument(prefix.endsWith("/"), "ref hierarchy prefix should end with /: %s", prefix);
-    Collection<Ref> refs = refdb.getRefsByPrefix(prefix);
+    Collection<Ref> refs = snapshot.getRefsByPrefix(prefix);
     refs = ordering.leastOf(refs, limit > 0 ? Ints.saturatedCast(limit + 1L) : refs.size());
+    return toSoyData(view, prefix, refs, headLeaf);
+  }
+
+  static List<Map<String, Object>> toSoyData(
+      GitilesView view, String prefix, Collection<Ref> refs, @Nullable Ref headLeaf) {
     List<Map<String, Object>> result = Lists.newArrayListWithCapacity(refs.size());
 
     for (Ref ref : refs) {
@@ -192,31 +288,67 @@ public class RefServlet extends BaseServlet {
   private static class RefsResult {
     String prefix;
     List<Ref> refs;
+    boolean more;
 
-    RefsResult(String prefix, List<Ref> refs) {
+    RefsResult(String prefix, List<Ref> refs, boolean more) {
       this.prefix = prefix;
       this.refs = refs;
+      this.more = more;
+    }
+  }
+
+  private static void setNextStart(HttpServletResponse res, RefsResult refs) {
+    if (refs.more) {
+      Ref last = refs.refs.get(refs.refs.size() - 1);
+      res.setHeader(NEXT_START_HEADER, last.getName().substring(refs.prefix.length()));
+    }
+  }
+
+  private RefsResult getRefs(RefSnapshot snapshot, GitilesView view) {
+    String path = GitilesView.maybeTrimLeadingAndTrailingSlash(view.getPathPart());
+    if (!path.isEmpty()) {
+      path = Constants.R_REFS + path;
+      Ref singleRef = snapshot.exactRef(path);
+      if (singleRef != null) {
+        return new RefsResult("", ImmutableList.of(singleRef), false);
+      }
+      path = path + '/';
     }
+    String start = Iterables.getFirst(view.getParameters().get(START_PARAM), null);
+    int limit = getLimit(view);
+    // One more ref than the limit tells whether another page follows.
+    List<Ref> refs =
+        snapshot.getRefsByPrefix(
+            path, start != null ? path + start : null, limit > 0 ? limit + 1 : 0);
+    if (limit > 0 && refs.size() > limit) {
+      return new RefsResult(path, refs.subList(0, limit), true);
+    }
+    return new RefsResult(path, refs, false);
   }
 
-  private static RefsResult getRefs(RefDatabase refdb, String path) throws IOException {
-    path = GitilesView.maybeTrimLeadingAndTrailingSlash(path);
-    if (path.isEmpty()) {
-      return new RefsResult(path, refdb.getRefs());
+  private int getLimit(GitilesView view) {
+    List<String> values = view.getParameters().get(LIMIT_PARAM);
+    long limit;
+    if (values.isEmpty()) {
+      limit = pageSize;
+    } else {
+      Long parsed = Longs.tryParse(values.get(0));
+      if (parsed == null || parsed < 0) {
+        throw new GitilesRequestFailureException(FailureReason.INCORECT_PARAMETER);
+      }
+      limit = parsed;
     }
-    path = Constants.R_REFS + path;
-    Ref singleRef = refdb.exactRef(path);
-    if (singleRef != null) {
-      return new RefsResult("", ImmutableList.of(singleRef));
+    if (maxPageSize > 0 && (limit == 0 || limit > maxPageSize)) {
+      return maxPageSize;
     }
-    path = path + '/';
-    return new RefsResult(path, refdb.getRefsByPrefix(path));
+    // Leave room for the extra ref read to detect another page.
+    return Ints.saturatedCast(Math.min(limit, Integer.MAX_VALUE - 1));
   }
 
-  private static class TextRefAdvertiser extends RefAdvertiser {
+  static class TextRefAdvertiser extends RefAdvertiser {
     private final Writer writer;
 
-    private TextRefAdvertiser(Writer writer) {
+    TextRefAdvertiser(Writer writer) {
       this.writer = writer;
     }
 
@@ -0,0 +1,484 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparing;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+import org.eclipse.jgit.http.server.ServletUtils;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Immutable snapshot of the refs of a repository.
+ *
+ * <p>Holds the refs sorted by name, so that a ref or all refs under a prefix are found by binary
+ * search, and lazily built indexes of refs by the object they point or peel to. Snapshots are
+ * shared across requests by {@link Snapshots}, which only replaces a snapshot once the refs it was
+ * taken from have changed, and within a request by {@link #get(HttpServletRequest)}.
+ *
+ * <p>A snapshot is not updated during the request that uses it. Callers that must not miss a ref
+ * created since, or use a deleted one, must confirm with the ref database. Each snapshot has a
+ * {@link #getVersion() version} identifying the state of all refs, for caching results that depend
+ * on it.
+ */
+class RefSnapshot {
+  private static final String ATTRIBUTE = RefSnapshot.class.getName();
+
+  // Same order as RefDatabase.SEARCH_PATH, which Repository.resolve() uses.
+  private static final ImmutableList<String> SEARCH_PATH =
+      ImmutableList.of(
+          "", Constants.R_REFS, Constants.R_TAGS, Constants.R_HEADS, Constants.R_REMOTES);
+
+  // Names that Repository.resolve() may also resolve as object IDs: abbreviated IDs and the output
+  // of git describe.
+  private static final Pattern OBJECT_ID_LIKE = Pattern.compile("^[0-9a-fA-F]+$|-g[0-9a-fA-F]+$");
+
+  // Pseudo-refs such as FETCH_HEAD, which the ref database may not list.
+  private static final Pattern PSEUDO_REF = Pattern.compile("^[A-Z_]+$");
+
+  /** Cache of snapshots, keyed by visibility class and repository. */
+  static class Snapshots {
+    static CacheBuilder<Object, Object> defaultBuilder() {
+      return CacheBuilder.newBuilder()
+          .maximumWeight(256 << 20)
+          .expireAfterAccess(10, TimeUnit.MINUTES);
+    }
+
+    private final Cache<List<Object>, RefSnapshot> cache;
+
+    Snapshots() {
+      this(defaultBuilder());
+    }
+
+    Snapshots(CacheBuilder<Object, Object> builder) {
+      cache = builder.weigher((List<Object> k, RefSnapshot v) -> v.weight).build();
+    }
+
+    /**
+     * Get a snapshot.
+     *
+     * <p>The refs are listed on every call, so the snapshot is never older than the request. The
+     * ref database serves the listing from its own cache, only rereading refs whose storage
+     * changed, and usually returns the same {@link Ref} instances while they are unchanged. The
+     * cached snapshot, along with its version and the indexes built on it, is only replaced if the
+     * listing differs from it.
+     *
+     * @param access access for the current request, identifying the visibility class and
+     *     repository.
+     * @param repo repository of the request.
+     * @return a snapshot of the current refs of {@code repo}.
+     * @throws IOException if an error occurred reading refs.
+     */
+    RefSnapshot get(GitilesAccess access, Repository repo) throws IOException {
+      List<Object> key = ImmutableList.of(access.getVisibilityClass(), access.getRepositoryName());
+      List<Ref> refs = readRefs(repo.getRefDatabase());
+      RefSnapshot cached = cache.getIfPresent(key);
+      if (cached != null && sameRefs(cached.refs, refs)) {
+        return cached;
+      }
+      RefSnapshot snapshot = new RefSnapshot(refs, version(refs));
+      cache.put(key, snapshot);
+      return snapshot;
+    }
+
+    /**
+     * Use this cache for the snapshot of a request.
+     *
+     * @param req in-progress request, for a repository.
+     * @param access access for the request.
+     */
+    void bind(HttpServletRequest req, GitilesAccess access) {
+      Repository repo = ServletUtils.getRepository(req);
+      req.setAttribute(ATTRIBUTE, new Loader(() -> get(access, repo)));
+    }
+  }
+
+  /** Supplier of the snapshot of a request, loaded on first use from any thread. */
+  static class Loader {
+    private interface Source {
+      RefSnapshot load() throws IOException;
+    }
+
+    private final Source source;
+    private RefSnapshot refs;
+
+    private Loader(Source source) {
+      this.source = source;
+    }
+
+    /**
+     * Get the snapshot.
+     *
+     * @return the snapshot of the request, the same on every call.
+     * @throws IOException if an error occurred reading refs.
+     */
+    synchronized RefSnapshot get() throws IOException {
+      if (refs == null) {
+        refs = source.load();
+      }
+      return refs;
+    }
+  }
+
+  /**
+   * Get the loader of the snapshot for a request.
+   *
+   * <p>Must be called on the request thread. The returned loader may be used from any thread.
+   *
+   * @param req in-progress request, for a repository.
+   * @return loader of the snapshot for the request: the one bound by {@link Snapshots#bind}, or one
+   *     reading the refs of the request's repository.
+   */
+  static Loader loader(HttpServletRequest req) {
+    Loader loader = (Loader) req.getAttribute(ATTRIBUTE);
+    if (loader == null) {
+      Repository repo = ServletUtils.getRepository(req);
+      loader = new Loader(() -> build(repo.getRefDatabase()));
+      req.setAttribute(ATTRIBUTE, loader);
+    }
+    return loader;
+  }
+
+  /**
+   * Get the snapshot for a request.
+   *
+   * @param req in-progress request, for a repository.
+   * @return the snapshot for the request, the same for every call during the request.
+   * @throws IOException if an error occurred reading refs.
+   */
+  static RefSnapshot get(HttpServletRequest req) throws IOException {
+    return loader(req).get();
+  }
+
+  /**
+   * Release the snapshot for a request, if one was bound or loaded.
+   *
+   * @param req in-progress request.
+   */
+  static void release(HttpServletRequest req) {
+    req.removeAttribute(ATTRIBUTE);
+  }
+
+  /**
+   * Build a snapshot.
+   *
+   * @param refDb ref database.
+   * @return snapshot of all refs currently in {@code refDb}.
+   * @throws IOException if an error occurred reading refs.
+   */
+  static RefSnapshot build(RefDatabase refDb) throws IOException {
+    List<Ref> refs = readRefs(refDb);
+    return new RefSnapshot(refs, version(refs));
+  }
+
+  private static List<Ref> readRefs(RefDatabase refDb) throws IOException {
+    List<Ref> refs = refDb.getRefsByPrefix(RefDatabase.ALL);
+    // Ref databases list refs sorted by name; a linear check guards against one that does not.
+    for (int i = 1; i < refs.size(); i++) {
+      if (refs.get(i - 1).getName().compareTo(refs.get(i).getName()) > 0) {
+        refs = new ArrayList<>(refs);
+        refs.sort(comparing(Ref::getName));
+        break;
+      }
+    }
+    return refs;
+  }
+
+  private static boolean sameRefs(List<Ref> a, List<Ref> b) {
+    if (a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); i++) {
+      if (a.get(i) != b.get(i) && !sameRef(a.get(i), b.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Compares what the version covers, so that equal listings have equal versions.
+  private static boolean sameRef(Ref a, Ref b) {
+    if (!a.getName().equals(b.getName()) || a.isSymbolic() != b.isSymbolic()) {
+      return false;
+    }
+    return a.isSymbolic()
+        ? a.getTarget().getName().equals(b.getTarget().getName())
+        : Objects.equals(a.getObjectId(), b.getObjectId());
+  }
+
+  private static long version(List<Ref> refs) {
+    Hasher version = Hashing.farmHashFingerprint64().newHasher();
+    byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+    for (Ref ref : refs) {
+      version.putString(ref.getName(), UTF_8).putByte((byte) 0);
+      if (ref.isSymbolic()) {
+        version.putString(ref.getTarget().getName(), UTF_8).putByte((byte) 0);
+      } else if (ref.getObjectId() != null) {
+        ref.getObjectId().copyRawTo(raw, 0);
+        version.putBytes(raw);
+      }
+    }
+    return version.hash().asLong();
+  }
+
+  /**
+   * Check whether the snapshot can find a name.
+   *
+   * @param name revision name.
+   * @return whether {@code name} can only resolve to a ref, so that the snapshot alone tells which
+   *     ref it resolves to, if any; false for names that may be object IDs or contain operators.
+   */
+  static boolean canFind(String name) {
+    return !name.isEmpty()
+        && name.chars().noneMatch(c -> c == '^' || c == '~' || c == ':' || c == '@' || c == '{')
+        && !OBJECT_ID_LIKE.matcher(name).find()
+        && !PSEUDO_REF.matcher(name).matches();
+  }
+
+  private final List<Ref> refs;
+  private final String[] names;
+  private final long version;
+  private final int weight;
+
+  // Built on first use.
+  private volatile Map<AnyObjectId, List<Ref>> refsByTip;
+  private volatile Map<AnyObjectId, Set<Ref>> refsByPeeledId;
+  private final Map<String, Long> prefixVersions = new ConcurrentHashMap<>();
+
+  private RefSnapshot(List<Ref> refs, long version) {
+    this.refs = Collections.unmodifiableList(refs);
+    this.names = new String[refs.size()];
+    long weight = 16L;
+    for (int i = 0; i < names.length; i++) {
+      names[i] = refs.get(i).getName();
+      weight += 128L + 2L * names[i].length();
+    }
+    this.version = version;
+    this.weight = (int) Math.min(weight, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Get the version of the refs in this snapshot.
+   *
+   * @return fingerprint of the names and values of all refs, which changes whenever a ref is
+   *     created, deleted or updated.
+   */
+  long getVersion() {
+    return version;
+  }
+
+  /**
+   * Get the version of the refs under a prefix.
+   *
+   * @param prefix prefix of ref names, such as {@code refs/tags/}.
+   * @return fingerprint of the names and values of the refs whose names start with {@code prefix},
+   *     which changes whenever one of them is created, deleted or updated.
+   */
+  long getVersion(String prefix) {
+    return prefixVersions.computeIfAbsent(prefix, p -> version(getRefsByPrefix(p)));
+  }
+
+  /**
+   * Get all refs.
+   *
+   * @return all refs, sorted by name.
+   */
+  List<Ref> getRefs() {
+    return refs;
+  }
+
+  /**
+   * Get refs by prefix.
+   *
+   * @param prefix prefix of ref names, such as {@code refs/heads/}.
+   * @return the refs whose names start with {@code prefix}, sorted by name.
+   */
+  List<Ref> getRefsByPrefix(String prefix) {
+    return getRefsByPrefix(prefix, null, 0);
+  }
+
+  /**
+   * Get a page of refs by prefix.
+   *
+   * <p>Finding the page takes time logarithmic in the number of refs, and the result is a view of
+   * the snapshot, so listing a page of a namespace with millions of refs copies nothing.
+   *
+   * @param prefix prefix of ref names, such as {@code refs/heads/}.
+   * @param after full name of the ref preceding the page, or null to start from the first ref
+   *     under {@code prefix}. This ref need not exist.
+   * @param limit maximum number of refs to return, or 0 for all.
+   * @return the refs whose names start with {@code prefix} and sort after {@code after}, sorted by
+   *     name.
+   */
+  List<Ref> getRefsByPrefix(String prefix, @Nullable String after, int limit) {
+    int from = lowerBound(prefix);
+    if (after != null) {
+      // No ref name contains NUL, so this finds the first name after the given one.
+      from = Math.max(from, lowerBound(after + '\0'));
+    }
+    int to = Math.max(from, endOfPrefix(prefix));
+    if (limit > 0) {
+      to = (int) Math.min(to, (long) from + limit);
+    }
+    return refs.subList(from, to);
+  }
+
+  private int endOfPrefix(String prefix) {
+    if (prefix.isEmpty()) {
+      return names.length;
+    }
+    char last = prefix.charAt(prefix.length() - 1);
+    if (last == Character.MAX_VALUE) {
+      int to = lowerBound(prefix);
+      while (to < names.length && names[to].startsWith(prefix)) {
+        to++;
+      }
+      return to;
+    }
+    return lowerBound(prefix.substring(0, prefix.length() - 1) + (char) (last + 1));
+  }
+
+  /**
+   * Get a ref by its full name.
+   *
+   * @param name full ref name, such as {@code refs/heads/master} or {@code HEAD}.
+   * @return the ref, or null if there is none by that name.
+   */
+  @Nullable
+  Ref exactRef(String name) {
+    int i = Arrays.binarySearch(names, name);
+    return i >= 0 ? refs.get(i) : null;
+  }
+
+  /**
+   * Find the ref a name refers to.
+   *
+   * <p>Candidates are tried in the same order as {@link RefDatabase#findRef(String)} does.
+   *
+   * @param name short or full ref name.
+   * @return the first ref in the snapshot that {@code name} refers to, or null if none does.
+   */
+  @Nullable
+  Ref findRef(String name) {
+    for (String prefix : SEARCH_PATH) {
+      Ref ref = exactRef(prefix + name);
+      if (ref != null) {
+        return ref;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get refs pointing at an object.
+   *
+   * @param id object ID.
+   * @return refs whose value or peeled value is {@code id}, like {@link
+   *     RefDatabase#getTipsWithSha1(ObjectId)}.
+   */
+  List<Ref> getTipsWithSha1(AnyObjectId id) {
+    Map<AnyObjectId, List<Ref>> result = refsByTip;
+    if (result == null) {
+      synchronized (this) {
+        result = refsByTip;
+        if (result == null) {
+          result = new HashMap<>();
+          for (Ref ref : refs) {
+            addTip(result, ref.getObjectId(), ref);
+            if (ref.getPeeledObjectId() != null) {
+              addTip(result, ref.getPeeledObjectId(), ref);
+            }
+          }
+          refsByTip = result;
+        }
+      }
+    }
+    return result.getOrDefault(id, ImmutableList.of());
+  }
+
+  private static void addTip(Map<AnyObjectId, List<Ref>> result, ObjectId id, Ref ref) {
+    if (id != null) {
+      List<Ref> tips = result.computeIfAbsent(id, k -> new ArrayList<>(1));
+      if (!tips.contains(ref)) {
+        tips.add(ref);
+      }
+    }
+  }
+
+  /**
+   * Get refs by the object they peel to.
+   *
+   * @param refDb ref database of the repository, for peeling refs that are not yet peeled.
+   * @return map of object ID to the refs peeling to it, like {@link
+   *     Repository#getAllRefsByPeeledObjectId()}, built once per snapshot.
+   * @throws IOException if a ref could not be peeled.
+   */
+  Map<AnyObjectId, Set<Ref>> getRefsByPeeledObjectId(RefDatabase refDb) throws IOException {
+    Map<AnyObjectId, Set<Ref>> result = refsByPeeledId;
+    if (result == null) {
+      synchronized (this) {
+        result = refsByPeeledId;
+        if (result == null) {
+          result = new HashMap<>();
+          for (Ref ref : refs) {
+            if (!ref.isPeeled()) {
+              ref = refDb.peel(ref);
+            }
+            ObjectId target = ref.getPeeledObjectId();
+            if (target == null) {
+              target = ref.getObjectId();
+            }
+            if (target != null) {
+              result.computeIfAbsent(target, k -> new HashSet<>(2)).add(ref);
+            }
+          }
+          result = Collections.unmodifiableMap(result);
+          refsByPeeledId = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  private int lowerBound(String name) {
+    int i = Arrays.binarySearch(names, name);
+    return i >= 0 ? i : -(i + 1);
+  }
+}
@@ -0,0 +1,159 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+
+/**
+ * Refs under a prefix, ordered from newest to oldest.
+ *
+ * <p>Refs are ordered by the time of their objects, as given by {@link TimeCache}, then by name.
+ * An index is built from the index of the previous state of the refs, so that only refs created or
+ * updated since need their objects read; listing the newest refs then reads no objects at all.
+ */
+class RefTimeIndex {
+  /** Source of the time of a ref's object. */
+  interface Times {
+    /**
+     * Get the time of an object.
+     *
+     * @param id object a ref points at.
+     * @return time of the object in seconds, or {@link Long#MIN_VALUE} if it has none.
+     * @throws IOException if an error occurred reading the object.
+     */
+    long getTime(ObjectId id) throws IOException;
+  }
+
+  private static final Comparator<Entry> NEWEST_FIRST =
+      Comparator.comparingLong((Entry e) -> e.time)
+          .reversed()
+          .thenComparing(e -> e.ref.getName());
+
+  private static class Entry {
+    final Ref ref;
+    final long time;
+
+    Entry(Ref ref, long time) {
+      this.ref = ref;
+      this.time = time;
+    }
+  }
+
+  /**
+   * Build or update an index.
+   *
+   * @param previous index of the same refs in an earlier snapshot, or null.
+   * @param refs current snapshot of the refs.
+   * @param prefix prefix of the refs to index, such as {@code refs/tags/}.
+   * @param times source of times, used for refs that are new or point elsewhere than in {@code
+   *     previous}.
+   * @return index of the refs under {@code prefix} in {@code refs}; {@code previous} itself if the
+   *     refs did not change.
+   * @throws IOException if an error occurred reading an object.
+   */
+  static RefTimeIndex update(
+      @Nullable RefTimeIndex previous, RefSnapshot refs, String prefix, Times times)
+      throws IOException {
+    if (previous != null && previous.version == refs.getVersion()) {
+      return previous;
+    }
+    Map<String, Ref> current = new HashMap<>();
+    for (Ref ref : refs.getRefsByPrefix(prefix)) {
+      current.put(ref.getName(), ref);
+    }
+
+    // Refs that still point at the same object keep their time and their relative order.
+    List<Entry> kept = new ArrayList<>(current.size());
+    if (previous != null) {
+      for (Entry e : previous.entries) {
+        Ref ref = current.get(e.ref.getName());
+        if (ref != null && idOf(ref).equals(idOf(e.ref))) {
+          kept.add(new Entry(ref, e.time));
+          current.remove(ref.getName());
+        }
+      }
+    }
+    List<Entry> added = new ArrayList<>(current.size());
+    for (Ref ref : current.values()) {
+      ObjectId id = ref.getObjectId();
+      added.add(new Entry(ref, id != null ? times.getTime(id) : Long.MIN_VALUE));
+    }
+    added.sort(NEWEST_FIRST);
+    return new RefTimeIndex(refs.getVersion(), merge(kept, added));
+  }
+
+  private static ObjectId idOf(Ref ref) {
+    ObjectId id = ref.getObjectId();
+    return id != null ? id : ObjectId.zeroId();
+  }
+
+  private static Entry[] merge(List<Entry> a, List<Entry> b) {
+    Entry[] result = new Entry[a.size() + b.size()];
+    int i = 0;
+    int j = 0;
+    int k = 0;
+    while (i < a.size() && j < b.size()) {
+      result[k++] = NEWEST_FIRST.compare(a.get(i), b.get(j)) <= 0 ? a.get(i++) : b.get(j++);
+    }
+    while (i < a.size()) {
+      result[k++] = a.get(i++);
+    }
+    while (j < b.size()) {
+      result[k++] = b.get(j++);
+    }
+    return result;
+  }
+
+  private final long version;
+  private final Entry[] entries;
+
+  private RefTimeIndex(long version, Entry[] entries) {
+    this.version = version;
+    this.entries = entries;
+  }
+
+  /**
+   * Get the newest refs.
+   *
+   * @param limit maximum number of refs to return, or 0 for all.
+   * @return up to {@code limit} refs, newest first.
+   */
+  List<Ref> getNewest(int limit) {
+    int n = limit > 0 ? Math.min(limit, entries.length) : entries.length;
+    List<Ref> result = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      result.add(entries[i].ref);
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  /**
+   * Get the number of refs.
+   *
+   * @return number of refs in the index.
+   */
+  int size() {
+    return entries.length;
+  }
+}
@@ -91,7 +91,8 @@ public class RepositoryIndexServlet extends BaseServlet {
     try (RevWalk walk = new RevWalk(repo)) {
       Paginator paginator = null;
       Map<String, Object> data = Maps.newHashMapWithExpectedSize(7);
-      List<Map<String, Object>> tags = RefServlet.getTagsSoyData(req, timeCache, walk, REF_LIMIT);
+      List<Map<String, Object>> tags =
+          RefServlet.getTagsSoyData(req, access, timeCache, walk, REF_LIMIT);
       ObjectId headId = repo.resolve(Constants.HEAD);
       if (headId != null) {
         RevObject head = walk.parseAny(headId);
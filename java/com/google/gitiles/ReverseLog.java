@@ -0,0 +1,243 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.primitives.Ints;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.NB;
+
+/**
+ * Commits of a walk in reverse order, stored compactly and indexed by position.
+ *
+ * <p>A walk sorted with {@link org.eclipse.jgit.revwalk.RevSort#REVERSE} buffers every commit it
+ * emits, fully parsed, before emitting the first, and a paginated log repeats that for every page.
+ * A reverse log instead holds only the raw IDs of the commits, 20 bytes each plus a 4-byte index
+ * entry, and is cached per walk configuration by a {@link LogCache}, so each page after the first
+ * is a slice of the cached list.
+ */
+class ReverseLog {
+  private static final int ENTRY_BYTES = Constants.OBJECT_ID_LENGTH + Integer.BYTES;
+
+  /** Cache of reverse logs, keyed by a fingerprint of the walk configuration. */
+  static class LogCache {
+    static CacheBuilder<Object, Object> defaultBuilder() {
+      return CacheBuilder.newBuilder().maximumWeight(64 << 20).expireAfterAccess(1, TimeUnit.HOURS);
+    }
+
+    private final Cache<String, ReverseLog> cache;
+
+    LogCache() {
+      this(defaultBuilder());
+    }
+
+    LogCache(CacheBuilder<Object, Object> builder) {
+      cache =
+          builder
+              .weigher((String k, ReverseLog v) -> k.length() * 2 + v.size * ENTRY_BYTES)
+              .build();
+    }
+
+    /**
+     * Get a reverse log.
+     *
+     * @param key fingerprint identifying the walk, including the IDs of its start commits.
+     * @param walk fully initialized walk in forward order, only used if the log is not cached.
+     * @return the cached or newly built reverse log.
+     * @throws IOException if an error occurred walking.
+     */
+    ReverseLog get(String key, RevWalk walk) throws IOException {
+      try {
+        return cache.get(key, () -> build(walk));
+      } catch (ExecutionException e) {
+        Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+        throw new IOException(e);
+      }
+    }
+  }
+
+  /**
+   * Build a reverse log.
+   *
+   * @param walk fully initialized walk in forward order.
+   * @return the commits emitted by the walk, in reverse order.
+   * @throws IOException if an error occurred walking.
+   */
+  static ReverseLog build(RevWalk walk) throws IOException {
+    byte[] ids = new byte[64 * Constants.OBJECT_ID_LENGTH];
+    int n = 0;
+    for (RevCommit c = walk.next(); c != null; c = walk.next()) {
+      if ((n + 1) * Constants.OBJECT_ID_LENGTH > ids.length) {
+        ids = Arrays.copyOf(ids, Ints.checkedCast(ids.length * 2L));
+      }
+      c.copyRawTo(ids, n * Constants.OBJECT_ID_LENGTH);
+      n++;
+      c.disposeBody();
+    }
+    byte[] reversed = new byte[n * Constants.OBJECT_ID_LENGTH];
+    for (int i = 0; i < n; i++) {
+      System.arraycopy(
+          ids,
+          (n - 1 - i) * Constants.OBJECT_ID_LENGTH,
+          reversed,
+          i * Constants.OBJECT_ID_LENGTH,
+          Constants.OBJECT_ID_LENGTH);
+    }
+    return new ReverseLog(reversed, n);
+  }
+
+  private final byte[] ids;
+  private final int size;
+  private final int[] byId;
+
+  private ReverseLog(byte[] ids, int size) {
+    this.ids = ids;
+    this.size = size;
+    // Positions sorted by the ID at each position, for binary search. Sort by the first 4 bytes
+    // of each ID packed with its position, to avoid boxing, then by the full ID within runs of
+    // equal prefixes.
+    long[] keys = new long[size];
+    for (int i = 0; i < size; i++) {
+      long prefix = NB.decodeUInt32(ids, i * Constants.OBJECT_ID_LENGTH);
+      keys[i] = (prefix << 31) | i;
+    }
+    Arrays.sort(keys);
+    byId = new int[size];
+    for (int i = 0; i < size; i++) {
+      byId[i] = (int) (keys[i] & Integer.MAX_VALUE);
+    }
+    for (int start = 0; start < size; ) {
+      int end = start + 1;
+      while (end < size && keys[end] >>> 31 == keys[start] >>> 31) {
+        end++;
+      }
+      for (int i = start + 1; i < end; i++) {
+        int pos = byId[i];
+        int j = i - 1;
+        while (j >= start && compare(byId[j], pos) > 0) {
+          byId[j + 1] = byId[j];
+          j--;
+        }
+        byId[j + 1] = pos;
+      }
+      start = end;
+    }
+  }
+
+  private int compare(int a, int b) {
+    return Arrays.compareUnsigned(
+        ids,
+        a * Constants.OBJECT_ID_LENGTH,
+        (a + 1) * Constants.OBJECT_ID_LENGTH,
+        ids,
+        b * Constants.OBJECT_ID_LENGTH,
+        (b + 1) * Constants.OBJECT_ID_LENGTH);
+  }
+
+  /**
+   * Get the number of commits.
+   *
+   * @return number of commits in the log.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Get a commit ID.
+   *
+   * @param i position in the log.
+   * @return ID of the commit at position {@code i}.
+   */
+  ObjectId get(int i) {
+    checkArgument(i >= 0 && i < size, "position out of range: %s", i);
+    return ObjectId.fromRaw(ids, i * Constants.OBJECT_ID_LENGTH);
+  }
+
+  /**
+   * Find the position of a commit.
+   *
+   * @param id commit ID.
+   * @return position of the commit in the log, or -1 if it is not in the log.
+   */
+  int indexOf(AnyObjectId id) {
+    int lo = 0;
+    int hi = size - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int pos = byId[mid];
+      int cmp = id.compareTo(ids, pos * Constants.OBJECT_ID_LENGTH);
+      if (cmp == 0) {
+        return pos;
+      } else if (cmp < 0) {
+        hi = mid - 1;
+      } else {
+        lo = mid + 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Create a walk over a slice of the log.
+   *
+   * <p>The walk emits commits from the given position to the end of the log, with headers parsed,
+   * and applies no filters or sorting of its own.
+   *
+   * @param repo repository the log was built from.
+   * @param from position of the first commit to emit.
+   * @return walk, which the caller must close.
+   */
+  RevWalk newWalk(Repository repo, int from) {
+    checkArgument(from >= 0 && from <= size, "position out of range: %s", from);
+    return new Walk(checkNotNull(repo, "repo"), from);
+  }
+
+  private class Walk extends RevWalk {
+    private int next;
+
+    private Walk(Repository repo, int from) {
+      super(repo);
+      this.next = from;
+    }
+
+    @Override
+    public RevCommit next()
+        throws MissingObjectException, IncorrectObjectTypeException, IOException {
+      if (next >= size) {
+        return null;
+      }
+      RevCommit c = lookupCommit(get(next++));
+      parseHeaders(c);
+      return c;
+    }
+  }
+}
@@ -32,6 +32,7 @@ import org.eclipse.jgit.errors.AmbiguousObjectException;
 import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.errors.RevisionSyntaxException;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevObject;
@@ -106,13 +107,34 @@ class RevisionParser {
   private final GitilesAccess access;
   private final VisibilityCache cache;
   private final BranchRedirect branchRedirect;
+  private final RefSnapshot refs;
 
   RevisionParser(
       Repository repo, GitilesAccess access, VisibilityCache cache, BranchRedirect branchRedirect) {
+    this(repo, access, cache, branchRedirect, null);
+  }
+
+  /**
+   * Create a parser.
+   *
+   * @param repo repository.
+   * @param access access for the current request.
+   * @param cache visibility cache.
+   * @param branchRedirect branch redirects.
+   * @param refs snapshot of the refs of the repository, to find which prefixes of a path are refs
+   *     without resolving each of them, or null to resolve each prefix.
+   */
+  RevisionParser(
+      Repository repo,
+      GitilesAccess access,
+      VisibilityCache cache,
+      BranchRedirect branchRedirect,
+      @Nullable RefSnapshot refs) {
     this.repo = checkNotNull(repo, "repo");
     this.access = checkNotNull(access, "access");
     this.cache = checkNotNull(cache, "cache");
     this.branchRedirect = checkNotNull(branchRedirect, "branchRedirect");
+    this.refs = refs;
   }
 
   @Nullable
@@ -123,6 +145,17 @@ class RevisionParser {
     if (Strings.isNullOrEmpty(path)) {
       return null;
     }
+    if (refs != null) {
+      Result result = parse(path, refs);
+      if (result != null) {
+        return result;
+      }
+      // The snapshot may be missing refs created since it was taken.
+    }
+    return parse(path, null);
+  }
+
+  private @Nullable Result parse(String path, @Nullable RefSnapshot index) throws IOException {
     try (RevWalk walk = new RevWalk(repo)) {
       walk.setRetainBody(false);
 
@@ -200,7 +233,7 @@ class RevisionParser {
                     Revision.peeled(nameRedirected, c),
                     oldRevisionRedirected,
                     path.substring(name.length() + 2));
-            return isVisible(walk, result) ? result : null;
+            return isVisible(walk, result, index) ? result : null;
           }
         }
         b.append(part);
@@ -211,7 +244,7 @@ class RevisionParser {
         }
         String nameRedirected = getRedirectFor(name);
 
-        RevObject obj = resolve(nameRedirected, walk);
+        RevObject obj = resolve(nameRedirected, walk, index);
         if (obj != null) {
           int pathStart;
           if (oldRevision == null) {
@@ -225,7 +258,7 @@ class RevisionParser {
                   Revision.peel(nameRedirected, obj, walk),
                   oldRevisionRedirected,
                   path.substring(pathStart));
-          return isVisible(walk, result) ? result : null;
+          return isVisible(walk, result, index) ? result : null;
         }
         first = false;
       }
@@ -233,6 +266,27 @@ class RevisionParser {
     }
   }
 
+  private @Nullable RevObject resolve(String name, RevWalk walk, @Nullable RefSnapshot index)
+      throws IOException {
+    if (index == null || !RefSnapshot.canFind(name)) {
+      return resolve(name, walk);
+    }
+    Ref found = index.findRef(name);
+    if (found == null) {
+      return null;
+    }
+    Ref ref = repo.exactRef(found.getName());
+    if (ref == null || ref.getObjectId() == null) {
+      // Deleted since the snapshot was taken; a ref later in the search path may still match.
+      return resolve(name, walk);
+    }
+    try {
+      return walk.parseAny(ref.getObjectId());
+    } catch (MissingObjectException e) {
+      return null;
+    }
+  }
+
   private @Nullable RevObject resolve(String name, RevWalk walk) throws IOException {
     try {
       ObjectId id = repo.resolve(name);
@@ -254,18 +308,19 @@ class RevisionParser {
         && !revision.equals("@");
   }
 
-  private boolean isVisible(RevWalk walk, Result result) throws IOException {
+  private boolean isVisible(RevWalk walk, Result result, @Nullable RefSnapshot index)
+      throws IOException {
     String maybeRef = OPERATOR_SPLITTER.split(result.getRevision().getName()).iterator().next();
-    if (repo.findRef(maybeRef) != null) {
+    if ((index != null ? index.findRef(maybeRef) : repo.findRef(maybeRef)) != null) {
       // Name contains a visible ref; skip expensive reachability check.
       return true;
     }
     ObjectId id = result.getRevision().getId();
-    if (!cache.isVisible(repo, walk, access, id)) {
+    if (!cache.isVisible(repo, walk, access, refs, id)) {
       return false;
     }
     if (result.getOldRevision() != null && !Revision.isNull(result.getOldRevision())) {
-      return cache.isVisible(repo, walk, access, result.getOldRevision().getId(), id);
+      return cache.isVisible(repo, walk, access, refs, result.getOldRevision().getId(), id);
     }
     return true;
   }
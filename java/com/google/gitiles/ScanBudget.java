@@ -0,0 +1,115 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+
+/**
+ * Revision filter that stops a walk once it has scanned too many commits or run for too long.
+ *
+ * <p>Must be the first of the walk's revision filters, so that it sees every commit the walk pops
+ * before any other filter reads it. When the budget runs out, the filter stops the walk before
+ * the commit it was passed, so that commit is still pending; a {@link LogCursor.Tracker} wrapping
+ * the filter then describes where a new walk should resume.
+ *
+ * <p>At least one commit is always scanned, so a walk resumed from where a previous one stopped
+ * always makes progress.
+ */
+class ScanBudget extends RevFilter {
+  private final int maxCommits;
+  private final long maxNanos;
+  private final Ticker ticker;
+  private final long startNanos;
+
+  private int scanned;
+  private boolean exhausted;
+
+  /**
+   * Create a budget starting now.
+   *
+   * @param maxCommits maximum number of commits to scan, or 0 for no limit.
+   * @param timeout maximum time to scan for, or zero for no limit.
+   */
+  ScanBudget(int maxCommits, Duration timeout) {
+    this(maxCommits, timeout, Ticker.systemTicker());
+  }
+
+  ScanBudget(int maxCommits, Duration timeout, Ticker ticker) {
+    checkArgument(maxCommits >= 0, "maxCommits must not be negative: %s", maxCommits);
+    checkArgument(!timeout.isNegative(), "timeout must not be negative: %s", timeout);
+    this.maxCommits = maxCommits;
+    this.maxNanos = timeout.toNanos();
+    this.ticker = checkNotNull(ticker, "ticker");
+    this.startNanos = ticker.read();
+  }
+
+  @Override
+  public boolean include(RevWalk walker, RevCommit c) throws StopWalkException {
+    if (scanned > 0
+        && ((maxCommits > 0 && scanned >= maxCommits)
+            || (maxNanos > 0 && ticker.read() - startNanos >= maxNanos))) {
+      exhausted = true;
+      throw StopWalkException.INSTANCE;
+    }
+    scanned++;
+    return true;
+  }
+
+  /**
+   * Whether the budget ran out.
+   *
+   * @return whether the walk was stopped by this budget, leaving commits unscanned.
+   */
+  boolean isExhausted() {
+    return exhausted;
+  }
+
+  /**
+   * Get the number of commits scanned.
+   *
+   * @return commits passed to this filter, not counting one that stopped the walk.
+   */
+  int getScanned() {
+    return scanned;
+  }
+
+  @Override
+  public boolean requiresCommitBody() {
+    return false;
+  }
+
+  /**
+   * Copy the budget for another walk.
+   *
+   * @return a budget with the same limits, starting now with no commits scanned.
+   */
+  @Override
+  public RevFilter clone() {
+    return new ScanBudget(maxCommits, Duration.ofNanos(maxNanos), ticker);
+  }
+
+  @Override
+  public String toString() {
+    return "BUDGET(" + maxCommits + ", " + Duration.ofNanos(maxNanos) + ")";
+  }
+}
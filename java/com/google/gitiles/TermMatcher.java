@@ -0,0 +1,139 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Matcher of fixed-string terms, in decoded strings or directly in raw UTF-8 buffers.
+ *
+ * <p>Terms are fixed strings rather than regular expressions, to avoid the pathological performance
+ * of Java regex matching. Raw buffers can only be matched case-insensitively if all terms are
+ * ASCII, as case is folded byte by byte.
+ */
+final class TermMatcher {
+  private final ImmutableList<String> terms;
+  private final boolean ignoreCase;
+  private final byte[][] rawTerms;
+
+  /**
+   * Create a matcher.
+   *
+   * @param terms terms to match; text matches if it contains any of them.
+   * @param ignoreCase whether to match case-insensitively.
+   */
+  TermMatcher(Iterable<String> terms, boolean ignoreCase) {
+    this.terms = ImmutableList.copyOf(terms);
+    checkArgument(!this.terms.isEmpty(), "at least one pattern is required");
+    this.ignoreCase = ignoreCase;
+    if (!ignoreCase || this.terms.stream().allMatch(CharMatcher.ascii()::matchesAllOf)) {
+      rawTerms = new byte[this.terms.size()][];
+      for (int i = 0; i < rawTerms.length; i++) {
+        rawTerms[i] = this.terms.get(i).getBytes(UTF_8);
+        for (int j = 0; j < rawTerms[i].length; j++) {
+          rawTerms[i][j] = fold(rawTerms[i][j]);
+        }
+      }
+    } else {
+      rawTerms = null;
+    }
+  }
+
+  /**
+   * Get the terms.
+   *
+   * @return terms, in the order given.
+   */
+  ImmutableList<String> getTerms() {
+    return terms;
+  }
+
+  /**
+   * Check whether raw buffers can be matched.
+   *
+   * @return whether {@link #matchesRaw(byte[], int, int)} may be used; if not, text must be
+   *     decoded and matched with {@link #matches(String)}.
+   */
+  boolean canMatchRaw() {
+    return rawTerms != null;
+  }
+
+  /**
+   * Check whether decoded text matches.
+   *
+   * @param s text.
+   * @return whether {@code s} contains any of the terms.
+   */
+  boolean matches(String s) {
+    for (String term : terms) {
+      if (contains(s, term)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Check whether a range of a raw UTF-8 buffer matches.
+   *
+   * @param buf buffer.
+   * @param start first position of the range.
+   * @param end position after the range.
+   * @return whether the range contains any of the terms.
+   */
+  boolean matchesRaw(byte[] buf, int start, int end) {
+    checkArgument(canMatchRaw(), "non-ASCII terms cannot be matched ignoring case");
+    for (byte[] term : rawTerms) {
+      if (contains(buf, start, end, term)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean contains(String s, String term) {
+    if (!ignoreCase) {
+      return s.contains(term);
+    }
+    for (int i = 0; i + term.length() <= s.length(); i++) {
+      if (s.regionMatches(true, i, term, 0, term.length())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean contains(byte[] buf, int start, int end, byte[] term) {
+    int last = end - term.length;
+    for (int i = start; i <= last; i++) {
+      int j = 0;
+      while (j < term.length && fold(buf[i + j]) == term[j]) {
+        j++;
+      }
+      if (j == term.length) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private byte fold(byte b) {
+    return ignoreCase && b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+  }
+}
@@ -14,14 +14,22 @@
 
 package com.google.gitiles;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.common.base.Throwables;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevObject;
 import org.eclipse.jgit.revwalk.RevTag;
@@ -40,6 +48,12 @@ public class TimeCache {
   }
 
   private final Cache<ObjectId, Long> cache;
+  private final CompactObjectCache compact;
+  private final Cache<List<Object>, RefTimeIndex> indexes =
+      CacheBuilder.newBuilder()
+          .maximumWeight(4 << 20)
+          .weigher((List<Object> k, RefTimeIndex v) -> v.size() + 1)
+          .build();
 
   public TimeCache() {
     this(defaultBuilder());
@@ -47,37 +61,133 @@ public class TimeCache {
 
   public TimeCache(CacheBuilder<Object, Object> builder) {
     this.cache = builder.build();
+    this.compact = null;
+  }
+
+  /**
+   * Construct a cache storing times in compact tables.
+   *
+   * @param compact table of times, storing long values.
+   */
+  TimeCache(CompactObjectCache compact) {
+    this.cache = null;
+    this.compact = checkNotNull(compact, "compact");
   }
 
   public Cache<?, ?> getCache() {
-    return cache;
+    return compact != null ? compact.asCache() : cache;
   }
 
   Long getTime(final RevWalk walk, final ObjectId id) throws IOException {
+    if (compact != null) {
+      // Times are in seconds or Long.MIN_VALUE, never Long.MAX_VALUE.
+      long scope = compact.scope();
+      long time = compact.get(scope, id, Long.MAX_VALUE);
+      if (time == Long.MAX_VALUE) {
+        time = computeTime(walk, id);
+        compact.put(scope, id, time);
+      }
+      return time;
+    }
     try {
-      return cache.get(
-          id,
-          () -> {
-            RevObject o = walk.parseAny(id);
-            while (o instanceof RevTag) {
-              walk.parseBody(o);
-
-              RevTag tag = (RevTag) o;
-              PersonIdent ident = tag.getTaggerIdent();
-              if (ident != null) {
-                return ident.getWhenAsInstant().toEpochMilli() / 1000;
-              }
-              o = tag.getObject();
-              walk.parseHeaders(o);
-            }
-            if (o.getType() == Constants.OBJ_COMMIT) {
-              return Long.valueOf(((RevCommit) o).getCommitTime());
-            }
-            return Long.MIN_VALUE;
-          });
+      return cache.get(id, () -> computeTime(walk, id));
     } catch (ExecutionException e) {
       Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
       throw new IOException(e);
     }
   }
+
+  /**
+   * Get the newest refs under a prefix.
+   *
+   * <p>Refs are ordered by {@link #getTime(RevWalk, ObjectId)}, then by name. The order is kept in
+   * an index per repository and prefix that is updated as refs change, so only the objects of refs
+   * created or updated since the last call are read.
+   *
+   * @param walk walk for reading objects.
+   * @param access access for the current request, identifying the visibility class and repository.
+   * @param refs snapshot of the refs of the repository.
+   * @param prefix prefix of the refs to list, such as {@code refs/tags/}.
+   * @param limit maximum number of refs to return, or 0 for all.
+   * @return up to {@code limit} refs under {@code prefix}, newest first.
+   * @throws IOException if an error occurred reading an object.
+   */
+  List<Ref> getNewest(
+      RevWalk walk, GitilesAccess access, RefSnapshot refs, String prefix, int limit)
+      throws IOException {
+    List<Object> key =
+        ImmutableList.of(access.getVisibilityClass(), access.getRepositoryName(), prefix);
+    RefTimeIndex previous = indexes.getIfPresent(key);
+    RefTimeIndex index = RefTimeIndex.update(previous, refs, prefix, id -> getTime(walk, id));
+    if (index != previous) {
+      indexes.put(key, index);
+    }
+    return index.getNewest(limit);
+  }
+
+  /**
+   * Write the cached times to a snapshot.
+   *
+   * @param out stream to write to.
+   * @throws IOException if an error occurred writing.
+   */
+  void writeSnapshot(DataOutputStream out) throws IOException {
+    if (compact != null) {
+      compact.forEach((scope, id, time) -> writeTime(out, id, time));
+    } else {
+      for (Map.Entry<ObjectId, Long> e : cache.asMap().entrySet()) {
+        writeTime(out, e.getKey(), e.getValue());
+      }
+    }
+    out.writeBoolean(false);
+  }
+
+  private static void writeTime(DataOutputStream out, ObjectId id, long time) throws IOException {
+    out.writeBoolean(true);
+    id.copyRawTo(out);
+    out.writeLong(time);
+  }
+
+  /**
+   * Read times written by {@link #writeSnapshot(DataOutputStream)}.
+   *
+   * <p>The time of an object never changes, so every entry is still valid. Times cached since
+   * startup are kept.
+   *
+   * @param in stream to read from.
+   * @throws IOException if an error occurred reading, or the snapshot is truncated.
+   */
+  void readSnapshot(DataInputStream in) throws IOException {
+    byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+    long scope = compact != null ? compact.scope() : 0;
+    while (in.readBoolean()) {
+      in.readFully(raw);
+      ObjectId id = ObjectId.fromRaw(raw);
+      long time = in.readLong();
+      if (compact != null) {
+        compact.putIfAbsent(scope, id, time);
+      } else {
+        cache.asMap().putIfAbsent(id, time);
+      }
+    }
+  }
+
+  private static long computeTime(RevWalk walk, ObjectId id) throws IOException {
+    RevObject o = walk.parseAny(id);
+    while (o instanceof RevTag) {
+      walk.parseBody(o);
+
+      RevTag tag = (RevTag) o;
+      PersonIdent ident = tag.getTaggerIdent();
+      if (ident != null) {
+        return ident.getWhenAsInstant().toEpochMilli() / 1000;
+      }
+      o = tag.getObject();
+      walk.parseHeaders(o);
+    }
+    if (o.getType() == Constants.OBJ_COMMIT) {
+      return ((RevCommit) o).getCommitTime();
+    }
+    return Long.MIN_VALUE;
+  }
 }
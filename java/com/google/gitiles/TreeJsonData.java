@@ -16,7 +16,8 @@ package com.google.gitiles;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
 import java.util.List;
 import org.eclipse.jgit.annotations.Nullable;
@@ -41,30 +42,53 @@ class TreeJsonData {
     @Nullable Long size;
   }
 
-  static Tree toJsonData(ObjectId id, TreeWalk tw, boolean includeSizes, boolean recursive)
+  /**
+   * Write a tree as JSON, equivalent to a {@link Tree}, as the tree is walked.
+   *
+   * @param gson GSON instance used to write entries.
+   * @param out writer for the tree.
+   * @param id ID of the tree.
+   * @param tw walk positioned before the first entry of the tree.
+   * @param includeSizes whether to include blob sizes and symlink targets.
+   * @param recursive whether the walk is recursive, in which case entries are named by path.
+   * @throws IOException if an error occurred reading the tree or writing the output.
+   */
+  static void write(
+      Gson gson,
+      JsonWriter out,
+      ObjectId id,
+      TreeWalk tw,
+      boolean includeSizes,
+      boolean recursive)
       throws IOException {
-    Tree tree = new Tree();
-    tree.id = id.name();
-    tree.entries = Lists.newArrayList();
+    out.beginObject();
+    out.name("id").value(id.name());
+    out.name("entries").beginArray();
     while (tw.next()) {
-      Entry e = new Entry();
-      FileMode mode = tw.getFileMode(0);
-      e.mode = mode.getBits();
-      e.type = Constants.typeString(mode.getObjectType());
-      e.id = tw.getObjectId(0).name();
-      e.name = recursive ? tw.getPathString() : tw.getNameString();
+      gson.toJson(toEntry(tw, includeSizes, recursive), Entry.class, out);
+    }
+    out.endArray();
+    out.endObject();
+  }
+
+  private static Entry toEntry(TreeWalk tw, boolean includeSizes, boolean recursive)
+      throws IOException {
+    Entry e = new Entry();
+    FileMode mode = tw.getFileMode(0);
+    e.mode = mode.getBits();
+    e.type = Constants.typeString(mode.getObjectType());
+    e.id = tw.getObjectId(0).name();
+    e.name = recursive ? tw.getPathString() : tw.getNameString();
 
-      if (includeSizes) {
-        if ((mode.getBits() & FileMode.TYPE_MASK) == FileMode.TYPE_FILE) {
-          e.size = tw.getObjectReader().getObjectSize(tw.getObjectId(0), Constants.OBJ_BLOB);
-        } else if ((mode.getBits() & FileMode.TYPE_MASK) == FileMode.TYPE_SYMLINK) {
-          e.target =
-              new String(tw.getObjectReader().open(tw.getObjectId(0)).getCachedBytes(), UTF_8);
-        }
+    if (includeSizes) {
+      if ((mode.getBits() & FileMode.TYPE_MASK) == FileMode.TYPE_FILE) {
+        e.size = tw.getObjectReader().getObjectSize(tw.getObjectId(0), Constants.OBJ_BLOB);
+      } else if ((mode.getBits() & FileMode.TYPE_MASK) == FileMode.TYPE_SYMLINK) {
+        e.target =
+            new String(tw.getObjectReader().open(tw.getObjectId(0)).getCachedBytes(), UTF_8);
       }
-      tree.entries.add(e);
     }
-    return tree;
+    return e;
   }
 
   private TreeJsonData() {}
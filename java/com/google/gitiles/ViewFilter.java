@@ -29,6 +29,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.eclipse.jgit.http.server.ServletUtils;
 import org.eclipse.jgit.http.server.glue.WrappedRequest;
+import org.eclipse.jgit.lib.Repository;
 
 /** Filter to parse URLs and convert them to {@link GitilesView}s. */
 public class ViewFilter extends AbstractHttpFilter {
@@ -42,11 +43,14 @@ public class ViewFilter extends AbstractHttpFilter {
   private static final String CMD_ARCHIVE = "+archive";
   private static final String CMD_AUTO = "+";
   private static final String CMD_BLAME = "+blame";
+  private static final String CMD_COMPARE = "+compare";
+  private static final String CMD_CONTAINS = "+contains";
   private static final String CMD_DESCRIBE = "+describe";
   private static final String CMD_DIFF = "+diff";
   private static final String CMD_LOG = "+log";
   private static final String CMD_REFS = "+refs";
   private static final String CMD_SHOW = "+show";
+  private static final String CMD_VISIBILITY = "+visibility";
   private static final String CMD_DOC = "+doc";
 
   public static GitilesView getView(HttpServletRequest req) {
@@ -87,21 +91,46 @@ public class ViewFilter extends AbstractHttpFilter {
   private final GitilesAccess.Factory accessFactory;
   private final VisibilityCache visibilityCache;
   private final BranchRedirect branchRedirect;
+  private final RefSnapshot.Snapshots refSnapshots;
+  private final NotFoundCache notFoundCache;
 
   public ViewFilter(
       GitilesAccess.Factory accessFactory,
       GitilesUrls urls,
       VisibilityCache visibilityCache,
       BranchRedirect branchRedirect) {
+    this(accessFactory, urls, visibilityCache, branchRedirect, new NotFoundCache());
+  }
+
+  ViewFilter(
+      GitilesAccess.Factory accessFactory,
+      GitilesUrls urls,
+      VisibilityCache visibilityCache,
+      BranchRedirect branchRedirect,
+      NotFoundCache notFoundCache) {
     this.urls = checkNotNull(urls, "urls");
     this.accessFactory = checkNotNull(accessFactory, "accessFactory");
     this.visibilityCache = checkNotNull(visibilityCache, "visibilityCache");
     this.branchRedirect = checkNotNull(branchRedirect, "branchRedirect");
+    this.refSnapshots = new RefSnapshot.Snapshots();
+    this.notFoundCache = checkNotNull(notFoundCache, "notFoundCache");
   }
 
   @Override
   public void doFilter(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
       throws IOException, ServletException {
+    if (hasRepository(req)) {
+      refSnapshots.bind(req, accessFactory.forRequest(req));
+    }
+    try {
+      doFilterWithRefs(req, res, chain);
+    } finally {
+      RefSnapshot.release(req);
+    }
+  }
+
+  private void doFilterWithRefs(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+      throws IOException, ServletException {
     GitilesView.Builder view = parse(req);
     if (view == null) {
       throw new GitilesRequestFailureException(FailureReason.CANNOT_PARSE_GITILES_VIEW);
@@ -156,6 +185,10 @@ public class ViewFilter extends AbstractHttpFilter {
       return parseAutoCommand(req, repoName, path);
     } else if (command.equals(CMD_BLAME)) {
       return parseBlameCommand(req, repoName, path);
+    } else if (command.equals(CMD_COMPARE)) {
+      return parseCompareCommand(req, repoName, path);
+    } else if (command.equals(CMD_CONTAINS)) {
+      return parseContainsCommand(req, repoName, path);
     } else if (command.equals(CMD_DESCRIBE)) {
       return parseDescribeCommand(repoName, path);
     } else if (command.equals(CMD_DIFF)) {
@@ -168,6 +201,8 @@ public class ViewFilter extends AbstractHttpFilter {
       return parseShowCommand(req, repoName, path);
     } else if (command.equals(CMD_DOC)) {
       return parseDocCommand(req, repoName, path);
+    } else if (command.equals(CMD_VISIBILITY)) {
+      return parseVisibilityCommand(repoName, path);
     } else {
       return null;
     }
@@ -243,6 +278,33 @@ public class ViewFilter extends AbstractHttpFilter {
         .setPathPart(result.getPath());
   }
 
+  private @Nullable GitilesView.Builder parseCompareCommand(
+      HttpServletRequest req, String repoName, String path) throws IOException {
+    if (isEmptyOrSlash(path)) {
+      return null;
+    }
+    RevisionParser.Result result = parseRevision(req, path);
+    if (result == null || !result.getPath().isEmpty()) {
+      return null;
+    }
+    return GitilesView.compare()
+        .setRepositoryName(repoName)
+        .setRevision(result.getRevision())
+        .setOldRevision(result.getOldRevision());
+  }
+
+  private @Nullable GitilesView.Builder parseContainsCommand(
+      HttpServletRequest req, String repoName, String path) throws IOException {
+    if (isEmptyOrSlash(path)) {
+      return null;
+    }
+    RevisionParser.Result result = parseRevision(req, path);
+    if (result == null || result.getOldRevision() != null || !result.getPath().isEmpty()) {
+      return null;
+    }
+    return GitilesView.contains().setRepositoryName(repoName).setRevision(result.getRevision());
+  }
+
   private @Nullable GitilesView.Builder parseDescribeCommand(String repoName, String path) {
     if (isEmptyOrSlash(path)) {
       return null;
@@ -250,6 +312,13 @@ public class ViewFilter extends AbstractHttpFilter {
     return GitilesView.describe().setRepositoryName(repoName).setPathPart(path);
   }
 
+  private @Nullable GitilesView.Builder parseVisibilityCommand(String repoName, String path) {
+    if (!isEmptyOrSlash(path)) {
+      return null;
+    }
+    return GitilesView.visibility().setRepositoryName(repoName);
+  }
+
   private GitilesView.Builder parseDiffCommand(HttpServletRequest req, String repoName, String path)
       throws IOException {
     return parseDiffCommand(repoName, parseRevision(req, path));
@@ -326,13 +395,21 @@ public class ViewFilter extends AbstractHttpFilter {
 
   private RevisionParser.Result parseRevision(HttpServletRequest req, String path)
       throws IOException {
+    path = checkLeadingSlash(path);
+    Repository repo = ServletUtils.getRepository(req);
+    GitilesAccess access = accessFactory.forRequest(req);
+    boolean forAutomation = BranchRedirect.isForAutomation(req);
+    RefSnapshot refs = RefSnapshot.get(req);
+    if (notFoundCache.isRevisionMissing(access, refs, forAutomation, path)) {
+      return null;
+    }
     RevisionParser revParser =
-        new RevisionParser(
-            ServletUtils.getRepository(req),
-            accessFactory.forRequest(req),
-            visibilityCache,
-            getBranchRedirect(req));
-    return revParser.parse(checkLeadingSlash(path));
+        new RevisionParser(repo, access, visibilityCache, getBranchRedirect(req), refs);
+    RevisionParser.Result result = revParser.parse(path);
+    if (result == null) {
+      notFoundCache.putMissingRevision(access, refs, forAutomation, path);
+    }
+    return result;
   }
 
   private BranchRedirect getBranchRedirect(HttpServletRequest req) {
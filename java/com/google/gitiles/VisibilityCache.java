@@ -17,40 +17,58 @@ package com.google.gitiles;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.Objects.hash;
+import static java.util.stream.Collectors.toList;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Streams;
 import com.google.common.util.concurrent.ExecutionError;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
-import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 
-/** Cache of per-user object visibility. */
+/**
+ * Cache of object visibility.
+ *
+ * <p>Results are cached per {@link GitilesAccess#getVisibilityClass() visibility class}, which is
+ * the user unless the access implementation groups users that see the same refs.
+ */
 public class VisibilityCache {
 
   private static class Key {
-    private final Object user;
+    private final Object visibilityClass;
     private final String repositoryName;
     private final ObjectId objectId;
 
-    private Key(Object user, String repositoryName, ObjectId objectId) {
-      this.user = checkNotNull(user, "user");
+    private Key(Object visibilityClass, String repositoryName, ObjectId objectId) {
+      this.visibilityClass = checkNotNull(visibilityClass, "visibilityClass");
       this.repositoryName = checkNotNull(repositoryName, "repositoryName");
       this.objectId = checkNotNull(objectId, "objectId").copy();
     }
@@ -59,7 +77,7 @@ public class VisibilityCache {
     public boolean equals(Object o) {
       if (o instanceof Key) {
         Key k = (Key) o;
-        return Objects.equals(user, k.user)
+        return Objects.equals(visibilityClass, k.visibilityClass)
             && Objects.equals(repositoryName, k.repositoryName)
             && Objects.equals(objectId, k.objectId);
       }
@@ -68,21 +86,44 @@ public class VisibilityCache {
 
     @Override
     public int hashCode() {
-      return hash(user, repositoryName, objectId);
+      return hash(visibilityClass, repositoryName, objectId);
     }
 
     @Override
     public String toString() {
       return toStringHelper(this)
-          .add("user", user)
+          .add("visibilityClass", visibilityClass)
           .add("repositoryName", repositoryName)
           .add("objectId", objectId)
           .toString();
     }
   }
 
+  /** Entries of a visibility class and repository read from a snapshot, not yet validated. */
+  private static class Restored {
+    final long refsVersion;
+    final List<ObjectId> visible = new ArrayList<>();
+    final List<ObjectId> notVisible = new ArrayList<>();
+
+    Restored(long refsVersion) {
+      this.refsVersion = refsVersion;
+    }
+  }
+
+  private static final byte SNAPSHOT_END = 0;
+  private static final byte SNAPSHOT_SCOPE = 1;
+  private static final byte SNAPSHOT_ENTRY = 2;
+
   private final Cache<Key, Boolean> cache;
+  private final CompactObjectCache compact;
   private final VisibilityChecker checker;
+  private final ReachabilityIndex reachabilityIndex;
+
+  // Version of the refs last seen for each visibility class and repository, written to snapshots
+  // to validate their entries when read back.
+  private final Cache<List<Object>, Long> refsVersions =
+      CacheBuilder.newBuilder().maximumSize(64 << 10).build();
+  private final Map<List<Object>, Restored> restored = new ConcurrentHashMap<>();
 
   public static CacheBuilder<Object, Object> defaultBuilder() {
     return CacheBuilder.newBuilder().maximumSize(1 << 10).expireAfterWrite(30, TimeUnit.MINUTES);
@@ -115,12 +156,47 @@ public class VisibilityCache {
    * for example.
    */
   public VisibilityCache(VisibilityChecker checker, CacheBuilder<Object, Object> builder) {
+    this(checker, builder, null);
+  }
+
+  /**
+   * Construct a cache that consults a reachability index on misses.
+   *
+   * @param checker visibility checker, used when the index cannot answer.
+   * @param builder builder for the cache of visibility results.
+   * @param reachabilityIndex index of objects reachable from visible refs, or null to always use
+   *     {@code checker}.
+   */
+  public VisibilityCache(
+      VisibilityChecker checker,
+      CacheBuilder<Object, Object> builder,
+      @Nullable ReachabilityIndex reachabilityIndex) {
     this.cache = builder.build();
+    this.compact = null;
+    this.checker = checker;
+    this.reachabilityIndex = reachabilityIndex;
+  }
+
+  /**
+   * Construct a cache storing visibility results in compact tables.
+   *
+   * @param checker visibility checker, used when the index cannot answer.
+   * @param compact table of visibility results, storing boolean values.
+   * @param reachabilityIndex index of objects reachable from visible refs, or null to always use
+   *     {@code checker}.
+   */
+  VisibilityCache(
+      VisibilityChecker checker,
+      CompactObjectCache compact,
+      @Nullable ReachabilityIndex reachabilityIndex) {
+    this.cache = null;
+    this.compact = checkNotNull(compact, "compact");
     this.checker = checker;
+    this.reachabilityIndex = reachabilityIndex;
   }
 
   public Cache<?, Boolean> getCache() {
-    return cache;
+    return compact != null ? compact.asCache() : cache;
   }
 
   @VisibleForTesting
@@ -131,10 +207,50 @@ public class VisibilityCache {
       final ObjectId id,
       final ObjectId... knownReachable)
       throws IOException {
+    return isVisible(repo, walk, access, (RefSnapshot) null, id, knownReachable);
+  }
+
+  /**
+   * Check the visibility of an object.
+   *
+   * @param repo repository.
+   * @param walk walk to use for the reachability check.
+   * @param access access for the current request, identifying the visibility class.
+   * @param refs snapshot of the refs of {@code repo}, or null to read the refs if the result is not
+   *     cached.
+   * @param id object to check.
+   * @param knownReachable objects known to be reachable from {@code id}.
+   * @return whether {@code id} is visible to the user.
+   * @throws IOException an error occurred reading the repository.
+   */
+  boolean isVisible(
+      final Repository repo,
+      final RevWalk walk,
+      GitilesAccess access,
+      @Nullable RefSnapshot refs,
+      final ObjectId id,
+      final ObjectId... knownReachable)
+      throws IOException {
+    useRefs(access, refs);
+    if (compact != null) {
+      Boolean cached = getCached(access, id);
+      if (cached != null) {
+        return cached;
+      }
+      boolean visible;
+      try {
+        visible = isVisible(repo, walk, access, refs, id, Arrays.asList(knownReachable));
+      } catch (StackOverflowError e) {
+        // As below, but without caching the result.
+        return false;
+      }
+      putCached(access, id, visible);
+      return visible;
+    }
     try {
       return cache.get(
-          new Key(access.getUserKey(), access.getRepositoryName(), id),
-          () -> isVisible(repo, walk, id, Arrays.asList(knownReachable)));
+          new Key(access.getVisibilityClass(), access.getRepositoryName(), id),
+          () -> isVisible(repo, walk, access, refs, id, Arrays.asList(knownReachable)));
     } catch (ExecutionException e) {
       Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
       throw new IOException(e);
@@ -148,8 +264,291 @@ public class VisibilityCache {
     }
   }
 
+  /**
+   * Check the visibility of several objects at once.
+   *
+   * <p>Objects whose visibility is not cached are checked together, by a single reachability check
+   * from the visible refs when they are all visible, and their results are cached. Objects missing
+   * from the repository are not visible, and are not cached.
+   *
+   * @param repo repository.
+   * @param walk walk to use for the reachability check.
+   * @param access access for the current request, identifying the visibility class.
+   * @param ids objects to check.
+   * @return the objects of {@code ids} visible to the user.
+   * @throws IOException an error occurred reading the repository.
+   */
+  Set<ObjectId> getVisible(
+      Repository repo, RevWalk walk, GitilesAccess access, Collection<? extends ObjectId> ids)
+      throws IOException {
+    return getVisible(repo, walk, access, null, ids);
+  }
+
+  /**
+   * Check the visibility of several objects at once.
+   *
+   * @param repo repository.
+   * @param walk walk to use for the reachability check.
+   * @param access access for the current request, identifying the visibility class.
+   * @param refs snapshot of the refs of {@code repo}, or null to read the refs if any result is not
+   *     cached.
+   * @param ids objects to check.
+   * @return the objects of {@code ids} visible to the user.
+   * @throws IOException an error occurred reading the repository.
+   */
+  Set<ObjectId> getVisible(
+      Repository repo,
+      RevWalk walk,
+      GitilesAccess access,
+      @Nullable RefSnapshot refs,
+      Collection<? extends ObjectId> ids)
+      throws IOException {
+    useRefs(access, refs);
+    Set<ObjectId> visible = new HashSet<>();
+    List<RevCommit> unknown = new ArrayList<>();
+    for (ObjectId id : ids) {
+      Boolean cached = getCached(access, id);
+      if (cached != null) {
+        if (cached) {
+          visible.add(id.copy());
+        }
+        continue;
+      }
+      RevCommit commit;
+      try {
+        commit = walk.parseCommit(id);
+      } catch (MissingObjectException e) {
+        continue;
+      } catch (IncorrectObjectTypeException e) {
+        putCached(access, id, false);
+        continue;
+      }
+      if (refs == null) {
+        refs = RefSnapshot.build(repo.getRefDatabase());
+      }
+      if (checker.isTipOfBranch(refs, id)) {
+        putCached(access, id, true);
+        visible.add(id.copy());
+      } else {
+        unknown.add(commit);
+      }
+    }
+    if (unknown.isEmpty()) {
+      return visible;
+    }
+
+    if (reachabilityIndex != null) {
+      List<ObjectId> tips =
+          refs.getRefs().stream()
+              .map(VisibilityCache::refToObjectId)
+              .filter(Objects::nonNull)
+              .collect(toList());
+      for (Iterator<RevCommit> it = unknown.iterator(); it.hasNext(); ) {
+        RevCommit commit = it.next();
+        Boolean reachable =
+            reachabilityIndex.isReachable(access, walk.getObjectReader(), commit, tips);
+        if (reachable == null) {
+          // No bitmaps; the index cannot answer for any of them.
+          break;
+        }
+        putCached(access, commit, reachable);
+        if (reachable) {
+          visible.add(commit.copy());
+        }
+        it.remove();
+      }
+    }
+    if (unknown.isEmpty()) {
+      return visible;
+    }
+
+    List<RevCommit> starters =
+        importantRefsFirst(refs)
+            .map(VisibilityCache::refToObjectId)
+            .map(objId -> VisibilityChecker.objectIdToRevCommit(walk, objId))
+            .filter(Objects::nonNull)
+            .collect(toList());
+    Set<RevCommit> reachable;
+    try {
+      reachable = checker.getReachableFrom(walk, unknown, starters);
+    } catch (StackOverflowError e) {
+      // As in isVisible(), treat them as not visible, without caching the results.
+      return visible;
+    }
+    for (RevCommit commit : unknown) {
+      boolean isReachable = reachable.contains(commit);
+      putCached(access, commit, isReachable);
+      if (isReachable) {
+        visible.add(commit.copy());
+      }
+    }
+    return visible;
+  }
+
+  private void useRefs(GitilesAccess access, @Nullable RefSnapshot refs) {
+    if (refs == null) {
+      return;
+    }
+    List<Object> scope = ImmutableList.of(access.getVisibilityClass(), access.getRepositoryName());
+    Long version = refsVersions.getIfPresent(scope);
+    if (version == null || version != refs.getVersion()) {
+      refsVersions.put(scope, refs.getVersion());
+    }
+    if (restored.isEmpty()) {
+      return;
+    }
+    Restored r = restored.remove(scope);
+    if (r == null || r.refsVersion != refs.getVersion()) {
+      // The refs changed since the snapshot was written, so results may no longer hold.
+      return;
+    }
+    for (ObjectId id : r.visible) {
+      putRestored(access, id, true);
+    }
+    for (ObjectId id : r.notVisible) {
+      putRestored(access, id, false);
+    }
+  }
+
+  private void putRestored(GitilesAccess access, ObjectId id, boolean visible) {
+    if (compact != null) {
+      long scope = compact.scope(access.getVisibilityClass(), access.getRepositoryName());
+      compact.putIfAbsent(scope, id, visible ? 1 : 0);
+    } else {
+      cache
+          .asMap()
+          .putIfAbsent(
+              new Key(access.getVisibilityClass(), access.getRepositoryName(), id), visible);
+    }
+  }
+
+  /**
+   * Write the cached results to a snapshot.
+   *
+   * <p>Results are written with the version of the refs last seen for their visibility class and
+   * repository. Results of visibility classes other than strings, and of repositories whose refs
+   * were not seen, are skipped.
+   *
+   * @param out stream to write to.
+   * @throws IOException if an error occurred writing.
+   */
+  void writeSnapshot(DataOutputStream out) throws IOException {
+    Map<List<Object>, Integer> scopes = new HashMap<>();
+    if (compact != null) {
+      compact.forEach((scope, id, visible) -> writeEntry(out, scopes, scope, id, visible != 0));
+    } else {
+      for (Map.Entry<Key, Boolean> e : cache.asMap().entrySet()) {
+        Key k = e.getKey();
+        writeEntry(
+            out,
+            scopes,
+            ImmutableList.of(k.visibilityClass, k.repositoryName),
+            k.objectId,
+            e.getValue());
+      }
+    }
+    out.writeByte(SNAPSHOT_END);
+  }
+
+  private void writeEntry(
+      DataOutputStream out,
+      Map<List<Object>, Integer> scopes,
+      List<Object> scope,
+      ObjectId id,
+      boolean visible)
+      throws IOException {
+    Integer index = scopes.get(scope);
+    if (index == null) {
+      Long version = refsVersions.getIfPresent(scope);
+      if (!(scope.get(0) instanceof String) || version == null) {
+        index = -1;
+      } else {
+        index = scopes.size();
+        out.writeByte(SNAPSHOT_SCOPE);
+        out.writeUTF((String) scope.get(0));
+        out.writeUTF((String) scope.get(1));
+        out.writeLong(version);
+      }
+      scopes.put(scope, index);
+    }
+    if (index >= 0) {
+      out.writeByte(SNAPSHOT_ENTRY);
+      out.writeInt(index);
+      id.copyRawTo(out);
+      out.writeBoolean(visible);
+    }
+  }
+
+  /**
+   * Read results written by {@link #writeSnapshot(DataOutputStream)}.
+   *
+   * <p>Results are held aside until the refs of their visibility class and repository are next
+   * seen, and then cached only if the refs did not change since the snapshot was written. Results
+   * cached since startup are kept.
+   *
+   * @param in stream to read from.
+   * @throws IOException if an error occurred reading, or the snapshot is truncated or corrupt.
+   */
+  void readSnapshot(DataInputStream in) throws IOException {
+    List<Restored> scopes = new ArrayList<>();
+    Map<List<Object>, Restored> read = new HashMap<>();
+    byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+    while (true) {
+      byte type = in.readByte();
+      if (type == SNAPSHOT_END) {
+        break;
+      } else if (type == SNAPSHOT_SCOPE) {
+        List<Object> scope = ImmutableList.of(in.readUTF(), in.readUTF());
+        Restored r = new Restored(in.readLong());
+        scopes.add(r);
+        read.put(scope, r);
+      } else if (type == SNAPSHOT_ENTRY) {
+        int index = in.readInt();
+        if (index < 0 || index >= scopes.size()) {
+          throw new IOException("invalid scope in visibility snapshot: " + index);
+        }
+        in.readFully(raw);
+        ObjectId id = ObjectId.fromRaw(raw);
+        Restored r = scopes.get(index);
+        (in.readBoolean() ? r.visible : r.notVisible).add(id);
+      } else {
+        throw new IOException("invalid record in visibility snapshot: " + type);
+      }
+    }
+    restored.putAll(read);
+  }
+
+  private @Nullable Boolean getCached(GitilesAccess access, ObjectId id) {
+    if (compact != null) {
+      long scope = compact.scope(access.getVisibilityClass(), access.getRepositoryName());
+      long cached = compact.get(scope, id, -1);
+      return cached >= 0 ? cached != 0 : null;
+    }
+    return cache.getIfPresent(new Key(access.getVisibilityClass(), access.getRepositoryName(), id));
+  }
+
+  private void putCached(GitilesAccess access, ObjectId id, boolean visible) {
+    if (compact != null) {
+      long scope = compact.scope(access.getVisibilityClass(), access.getRepositoryName());
+      compact.put(scope, id, visible ? 1 : 0);
+    } else {
+      cache.put(new Key(access.getVisibilityClass(), access.getRepositoryName(), id), visible);
+    }
+  }
+
   boolean isVisible(Repository repo, RevWalk walk, ObjectId id, Collection<ObjectId> knownReachable)
       throws IOException {
+    return isVisible(repo, walk, null, null, id, knownReachable);
+  }
+
+  private boolean isVisible(
+      Repository repo,
+      RevWalk walk,
+      @Nullable GitilesAccess access,
+      @Nullable RefSnapshot refs,
+      ObjectId id,
+      Collection<ObjectId> knownReachable)
+      throws IOException {
     RevCommit commit;
     try {
       commit = walk.parseCommit(id);
@@ -157,14 +556,35 @@ public class VisibilityCache {
       return false;
     }
 
-    RefDatabase refDb = repo.getRefDatabase();
-    if (checker.isTipOfBranch(refDb, id)) {
+    if (refs == null) {
+      refs = RefSnapshot.build(repo.getRefDatabase());
+    }
+    if (checker.isTipOfBranch(refs, commit)) {
       return true;
     }
 
-    Stream<ObjectId> reachableTips =
-        importantRefsFirst(refDb.getRefsByPrefix(RefDatabase.ALL))
-            .map(VisibilityCache::refToObjectId);
+    if (reachabilityIndex != null && access != null) {
+      List<ObjectId> tips =
+          refs.getRefs().stream()
+              .map(VisibilityCache::refToObjectId)
+              .filter(Objects::nonNull)
+              .collect(toList());
+      Boolean reachable =
+          reachabilityIndex.isReachable(access, walk.getObjectReader(), commit, tips);
+      if (reachable != null) {
+        if (reachable || knownReachable.isEmpty()) {
+          return reachable;
+        }
+        return checker.isReachableFrom(
+            walk,
+            commit,
+            knownReachable.stream()
+                .map(objId -> VisibilityChecker.objectIdToRevCommit(walk, objId))
+                .filter(Objects::nonNull));
+      }
+    }
+
+    Stream<ObjectId> reachableTips = importantRefsFirst(refs).map(VisibilityCache::refToObjectId);
 
     // Check heads first under the assumption that most requests are for refs close to a head. Tags
     // tend to be much further back in history and just clutter up the priority queue in the common
@@ -177,20 +597,17 @@ public class VisibilityCache {
     return checker.isReachableFrom(walk, commit, startCommits);
   }
 
-  static Stream<Ref> importantRefsFirst(Collection<Ref> visibleRefs) {
-    Predicate<Ref> startsWithRefsHeads = ref -> ref.getName().startsWith(Constants.R_HEADS);
-    Predicate<Ref> startsWithRefsTags = ref -> ref.getName().startsWith(Constants.R_TAGS);
-    Predicate<Ref> startsWithRefsChanges = ref -> ref.getName().startsWith("refs/changes");
+  static Stream<Ref> importantRefsFirst(RefSnapshot refs) {
     Predicate<Ref> allOther =
         ref ->
-            !startsWithRefsHeads.test(ref)
-                && !startsWithRefsTags.test(ref)
-                && !startsWithRefsChanges.test(ref);
+            !ref.getName().startsWith(Constants.R_HEADS)
+                && !ref.getName().startsWith(Constants.R_TAGS)
+                && !ref.getName().startsWith("refs/changes");
 
     return Streams.concat(
-        visibleRefs.stream().filter(startsWithRefsHeads),
-        visibleRefs.stream().filter(startsWithRefsTags),
-        visibleRefs.stream().filter(allOther));
+        refs.getRefsByPrefix(Constants.R_HEADS).stream(),
+        refs.getRefsByPrefix(Constants.R_TAGS).stream(),
+        refs.getRefs().stream().filter(allOther));
   }
 
   private static ObjectId refToObjectId(Ref ref) {
@@ -16,11 +16,18 @@ package com.google.gitiles;
 
 import com.google.common.collect.ImmutableList;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 import org.eclipse.jgit.annotations.Nullable;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +55,17 @@ public class VisibilityChecker {
     return !refDb.getTipsWithSha1(id).isEmpty();
   }
 
+  /**
+   * Check if any of the refs in {@code refs} points to the object {@code id}.
+   *
+   * @param refs a snapshot of the refs of a repository
+   * @param id object we are looking for
+   * @return true if the any of the references in the snapshot points directly to the id
+   */
+  boolean isTipOfBranch(RefSnapshot refs, ObjectId id) {
+    return !refs.getTipsWithSha1(id).isEmpty();
+  }
+
   /**
    * Check if {@code commit} is reachable starting from {@code starters}.
    *
@@ -66,6 +84,53 @@ public class VisibilityChecker {
         .isEmpty();
   }
 
+  /**
+   * Find which of {@code commits} are reachable starting from {@code starters}.
+   *
+   * <p>All commits are checked in one walk: it starts from {@code commits} with {@code starters}
+   * marked uninteresting, and the commits the walk finds to be uninteresting are the reachable
+   * ones. Like JGit's own reachability checker without bitmaps, the walk is sorted topologically,
+   * so that commit times out of order do not end it early.
+   *
+   * @param walk The walk to use for the reachability check
+   * @param commits The commits to check. They *MUST* come from the walk in use
+   * @param starters visible commits. Anything reachable from these commits is visible.
+   * @return the commits of {@code commits} that we can get to from the {@code starters}
+   * @throws IOException a pack file or loose object could not be read
+   */
+  protected Set<RevCommit> getReachableFrom(
+      RevWalk walk, Collection<RevCommit> commits, Collection<RevCommit> starters)
+      throws IOException {
+    Set<RevCommit> reachable = new LinkedHashSet<>();
+    if (starters.isEmpty()) {
+      return reachable;
+    }
+    // A walk of its own, so that the caller's walk keeps its flags and sort order.
+    try (RevWalk rw = new RevWalk(walk.getObjectReader())) {
+      rw.setRetainBody(false);
+      rw.sort(RevSort.TOPO);
+      List<RevCommit> checked = new ArrayList<>(commits.size());
+      for (RevCommit c : commits) {
+        RevCommit own = rw.parseCommit(c);
+        checked.add(own);
+        rw.markStart(own);
+      }
+      for (RevCommit s : starters) {
+        rw.markUninteresting(rw.parseCommit(s));
+      }
+      while (rw.next() != null) {
+        // Drained only for the flags it leaves behind.
+      }
+      int i = 0;
+      for (RevCommit c : commits) {
+        if (checked.get(i++).has(RevFlag.UNINTERESTING)) {
+          reachable.add(c);
+        }
+      }
+    }
+    return reachable;
+  }
+
   @Nullable
   static RevCommit objectIdToRevCommit(RevWalk walk, ObjectId objectId) {
     if (objectId == null) {
@@ -0,0 +1,97 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.gitiles.GitilesRequestFailureException.FailureReason;
+import com.google.gson.reflect.TypeToken;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jgit.http.server.ServletUtils;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Serves an API result telling which of a list of objects are visible.
+ *
+ * <p>Objects are given as full hex IDs in repeated {@code id} parameters, and are checked together
+ * by {@link VisibilityCache#getVisible(Repository, RevWalk, GitilesAccess, java.util.Collection)}.
+ */
+public class VisibilityServlet extends BaseServlet {
+  private static final long serialVersionUID = 1L;
+
+  static final String ID_PARAM = "id";
+  static final int MAX_IDS = 1000;
+
+  private final VisibilityCache visibilityCache;
+
+  protected VisibilityServlet(
+      GitilesAccess.Factory accessFactory, VisibilityCache visibilityCache) {
+    super(null, accessFactory);
+    this.visibilityCache = checkNotNull(visibilityCache, "visibilityCache");
+  }
+
+  @Override
+  protected void doGetText(HttpServletRequest req, HttpServletResponse res) throws IOException {
+    Map<String, Boolean> result = getVisibility(req);
+    try (Writer out = startRenderText(req, res)) {
+      for (Map.Entry<String, Boolean> e : result.entrySet()) {
+        out.write(e.getKey() + ' ' + e.getValue() + '\n');
+      }
+    }
+  }
+
+  @Override
+  protected void doGetJson(HttpServletRequest req, HttpServletResponse res) throws IOException {
+    renderJson(req, res, getVisibility(req), new TypeToken<Map<String, Boolean>>() {}.getType());
+  }
+
+  private Map<String, Boolean> getVisibility(HttpServletRequest req) throws IOException {
+    List<String> names = ViewFilter.getView(req).getParameters().get(ID_PARAM);
+    if (names.isEmpty() || names.size() > MAX_IDS) {
+      throw new GitilesRequestFailureException(FailureReason.INCORECT_PARAMETER)
+          .withPublicErrorMessage("Between 1 and %d IDs are required", MAX_IDS);
+    }
+    List<ObjectId> ids = new ArrayList<>(names.size());
+    for (String name : names) {
+      if (!ObjectId.isId(name)) {
+        throw new GitilesRequestFailureException(FailureReason.INCORECT_PARAMETER)
+            .withPublicErrorMessage("Invalid object ID: %s", RefServlet.sanitizeRefForText(name));
+      }
+      ids.add(ObjectId.fromString(name));
+    }
+
+    Repository repo = ServletUtils.getRepository(req);
+    Set<ObjectId> visible;
+    try (RevWalk walk = new RevWalk(repo)) {
+      walk.setRetainBody(false);
+      visible = visibilityCache.getVisible(repo, walk, getAccess(req), RefSnapshot.get(req), ids);
+    }
+    Map<String, Boolean> result = new LinkedHashMap<>();
+    for (ObjectId id : ids) {
+      result.put(id.name(), visible.contains(id));
+    }
+    return result;
+  }
+}
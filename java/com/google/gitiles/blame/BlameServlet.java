@@ -33,6 +33,7 @@ import com.google.gitiles.Renderer;
 import com.google.gitiles.ViewFilter;
 import com.google.gitiles.blame.cache.BlameCache;
 import com.google.gitiles.blame.cache.Region;
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 import java.io.IOException;
@@ -136,6 +137,12 @@ public class BlameServlet extends BaseServlet {
     }
   }
 
+  @Override
+  protected Gson getGson(HttpServletRequest req) throws IOException {
+    // The region adapter formats dates using the repository's configuration.
+    return newGsonBuilder(req).create();
+  }
+
   @Override
   protected GsonBuilder newGsonBuilder(HttpServletRequest req) throws IOException {
     return super.newGsonBuilder(req)
@@ -15,6 +15,7 @@
 package com.google.gitiles.blame.cache;
 
 import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.hash;
 
 import com.google.common.cache.Cache;
@@ -24,6 +25,8 @@ import com.google.common.collect.Interner;
 import com.google.common.collect.Interners;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
@@ -33,6 +36,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import org.eclipse.jgit.blame.BlameGenerator;
 import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
@@ -91,6 +95,7 @@ public class BlameCacheImpl implements BlameCache {
   }
 
   private final Cache<Key, List<Region>> cache;
+  private final boolean useChangedPathFilters;
 
   public BlameCacheImpl() {
     this(defaultBuilder());
@@ -105,7 +110,20 @@ public class BlameCacheImpl implements BlameCache {
   }
 
   public BlameCacheImpl(CacheBuilder<? super Key, ? super List<Region>> builder) {
+    this(builder, true);
+  }
+
+  /**
+   * Construct a blame cache.
+   *
+   * @param builder builder for the underlying cache.
+   * @param useChangedPathFilters whether to consult the repository's changed-path Bloom filters
+   *     when searching for the last commit to modify a path.
+   */
+  public BlameCacheImpl(
+      CacheBuilder<? super Key, ? super List<Region>> builder, boolean useChangedPathFilters) {
     this.cache = builder.build();
+    this.useChangedPathFilters = useChangedPathFilters;
   }
 
   @Override
@@ -128,12 +146,111 @@ public class BlameCacheImpl implements BlameCache {
       // Don't use rename detection, even though BlameGenerator does. It is not
       // possible for a commit to modify a path when not doing rename detection
       // but to not modify the same path when taking renames into account.
-      rw.setTreeFilter(
-          AndTreeFilter.create(PathFilterGroup.createFromStrings(path), TreeFilter.ANY_DIFF));
+      if (useChangedPathFilters) {
+        rw.setRevFilter(ChangedPathTreeFilter.newRevFilter(rw, ChangedPathTreeFilter.create(path)));
+      } else {
+        rw.setTreeFilter(
+            AndTreeFilter.create(PathFilterGroup.createFromStrings(path), TreeFilter.ANY_DIFF));
+      }
       return rw.next();
     }
   }
 
+  /**
+   * Write the cached blame results to a snapshot.
+   *
+   * @param out stream to write to.
+   * @throws IOException if an error occurred writing.
+   */
+  public void writeSnapshot(DataOutputStream out) throws IOException {
+    for (Map.Entry<Key, List<Region>> e : cache.asMap().entrySet()) {
+      out.writeBoolean(true);
+      e.getKey().commitId.copyRawTo(out);
+      writeString(out, e.getKey().path);
+      List<Region> regions = e.getValue();
+      out.writeInt(regions.size());
+      for (Region r : regions) {
+        out.writeInt(r.getStart());
+        out.writeInt(r.getEnd());
+        out.writeBoolean(r.getSourceCommit() != null);
+        if (r.getSourceCommit() != null) {
+          PersonIdent author = r.getSourceAuthor();
+          r.getSourceCommit().copyRawTo(out);
+          writeString(out, r.getSourcePath());
+          writeString(out, author.getName());
+          writeString(out, author.getEmailAddress());
+          out.writeLong(author.getWhen().getTime());
+          out.writeInt(author.getTimeZoneOffset());
+        }
+      }
+    }
+    out.writeBoolean(false);
+  }
+
+  /**
+   * Read blame results written by {@link #writeSnapshot(DataOutputStream)}.
+   *
+   * <p>The blame of a path at a commit never changes, so every entry is still valid. Results cached
+   * since startup are kept.
+   *
+   * @param in stream to read from.
+   * @throws IOException if an error occurred reading, or the snapshot is truncated or corrupt.
+   */
+  public void readSnapshot(DataInputStream in) throws IOException {
+    Map<ObjectId, PooledCommit> commits = Maps.newHashMap();
+    Interner<String> strings = Interners.newStrongInterner();
+    byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+    while (in.readBoolean()) {
+      in.readFully(raw);
+      Key key = new Key(ObjectId.fromRaw(raw), readString(in));
+      int count = in.readInt();
+      if (count < 0) {
+        throw new IOException("invalid region count in blame snapshot: " + count);
+      }
+      List<Region> regions = Lists.newArrayListWithCapacity(Math.min(count, 1 << 10));
+      for (int i = 0; i < count; i++) {
+        int start = in.readInt();
+        int end = in.readInt();
+        if (!in.readBoolean()) {
+          regions.add(new Region(null, null, null, start, end));
+          continue;
+        }
+        in.readFully(raw);
+        ObjectId commit = ObjectId.fromRaw(raw);
+        String path = strings.intern(readString(in));
+        String name = readString(in);
+        String email = readString(in);
+        long when = in.readLong();
+        int tz = in.readInt();
+        PooledCommit pc = commits.get(commit);
+        if (pc == null) {
+          pc =
+              new PooledCommit(
+                  commit, new PersonIdent(strings.intern(name), strings.intern(email), when, tz));
+          commits.put(commit, pc);
+        }
+        regions.add(new Region(path, pc.commit, pc.author, start, end));
+      }
+      cache.asMap().putIfAbsent(key, ImmutableList.copyOf(regions));
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] b = s.getBytes(UTF_8);
+    out.writeInt(b.length);
+    out.write(b);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int len = in.readInt();
+    if (len < 0) {
+      throw new IOException("invalid string length in blame snapshot: " + len);
+    }
+    byte[] b = new byte[len];
+    in.readFully(b);
+    return new String(b, UTF_8);
+  }
+
   public static List<Region> loadBlame(Key key, AnyObjectId blameCommit, Repository repo)
       throws IOException {
     if (blameCommit == null) {
@@ -0,0 +1,230 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles.blame.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.TreeRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Tree filter matching differences in a set of paths, usable with changed-path Bloom filters.
+ *
+ * <p>Equivalent to {@code AndTreeFilter.create(PathFilterGroup.createFromStrings(paths),
+ * TreeFilter.ANY_DIFF)}, except that it exposes its paths to {@link TreeRevFilter}. When the
+ * repository has a commit-graph with changed-path Bloom filters, this lets the walk skip the tree
+ * diff of any single-parent commit whose filter rules out all of the paths. {@code AndTreeFilter}
+ * does not expose its paths, so walks using it always diff trees.
+ *
+ * <p>JGit only loads the commit-graph if the repository sets {@code core.commitGraph}, and only
+ * reads its changed-path filters if it also sets {@code commitGraph.readChangedPaths}; without
+ * them, this filter behaves exactly like the conjunction above.
+ */
+public final class ChangedPathTreeFilter extends TreeFilter {
+  private static final AtomicLong negatives = new AtomicLong();
+  private static final AtomicLong truePositives = new AtomicLong();
+  private static final AtomicLong falsePositives = new AtomicLong();
+
+  /** Snapshot of process-wide changed-path filter counters. */
+  public static class Statistics {
+    private final long negatives;
+    private final long truePositives;
+    private final long falsePositives;
+
+    private Statistics(long negatives, long truePositives, long falsePositives) {
+      this.negatives = negatives;
+      this.truePositives = truePositives;
+      this.falsePositives = falsePositives;
+    }
+
+    /**
+     * Get the number of tree diffs avoided.
+     *
+     * @return number of commits whose tree diff was skipped because the Bloom filter ruled out
+     *     every path.
+     */
+    public long getNegatives() {
+      return negatives;
+    }
+
+    /**
+     * Get the number of true positives.
+     *
+     * @return number of commits the Bloom filter could not rule out that did touch a path.
+     */
+    public long getTruePositives() {
+      return truePositives;
+    }
+
+    /**
+     * Get the number of false positives.
+     *
+     * @return number of commits the Bloom filter could not rule out that did not touch any path.
+     */
+    public long getFalsePositives() {
+      return falsePositives;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("negatives", negatives)
+          .add("truePositives", truePositives)
+          .add("falsePositives", falsePositives)
+          .toString();
+    }
+  }
+
+  /**
+   * Get statistics.
+   *
+   * @return counters accumulated by all walks using {@link #newRevFilter(RevWalk, TreeFilter)}.
+   */
+  public static Statistics getStatistics() {
+    return new Statistics(negatives.get(), truePositives.get(), falsePositives.get());
+  }
+
+  /**
+   * Create a filter.
+   *
+   * @param paths paths to match; must not be empty.
+   * @return filter matching differences in any of the paths.
+   */
+  public static ChangedPathTreeFilter create(String... paths) {
+    // The group JGit returns for a single path does not expose it, so a lone path is not grouped.
+    return new ChangedPathTreeFilter(
+        paths.length == 1 ? PathFilter.create(paths[0]) : PathFilterGroup.createFromStrings(paths));
+  }
+
+  /**
+   * Create a revision filter applying a tree filter, recording changed-path filter statistics.
+   *
+   * <p>Equivalent to {@link RevWalk#setTreeFilter(TreeFilter)} on a walk that does not rewrite
+   * parents.
+   *
+   * @param walk walk the filter will be used with.
+   * @param filter tree filter to apply to each commit.
+   * @return revision filter.
+   */
+  public static RevFilter newRevFilter(RevWalk walk, TreeFilter filter) {
+    return new CountingRevFilter(new TreeRevFilter(walk, filter));
+  }
+
+  private static class CountingRevFilter extends RevFilter {
+    private final TreeRevFilter delegate;
+    private long lastNegatives;
+    private long lastTruePositives;
+    private long lastFalsePositives;
+
+    private CountingRevFilter(TreeRevFilter delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public boolean include(RevWalk walk, RevCommit c)
+        throws StopWalkException, MissingObjectException, IncorrectObjectTypeException,
+            IOException {
+      boolean result = delegate.include(walk, c);
+      lastNegatives = update(negatives, lastNegatives, delegate.getChangedPathFilterNegative());
+      lastTruePositives =
+          update(truePositives, lastTruePositives, delegate.getChangedPathFilterTruePositive());
+      lastFalsePositives =
+          update(falsePositives, lastFalsePositives, delegate.getChangedPathFilterFalsePositive());
+      return result;
+    }
+
+    private static long update(AtomicLong total, long last, long current) {
+      if (current != last) {
+        total.addAndGet(current - last);
+      }
+      return current;
+    }
+
+    @Override
+    public boolean requiresCommitBody() {
+      return delegate.requiresCommitBody();
+    }
+
+    @Override
+    public RevFilter clone() {
+      return new CountingRevFilter((TreeRevFilter) delegate.clone());
+    }
+
+    @Override
+    public String toString() {
+      return delegate.toString();
+    }
+  }
+
+  private final TreeFilter paths;
+
+  private ChangedPathTreeFilter(TreeFilter paths) {
+    this.paths = checkNotNull(paths, "paths");
+  }
+
+  @Override
+  public boolean include(TreeWalk walker)
+      throws MissingObjectException, IncorrectObjectTypeException, IOException {
+    return paths.include(walker) && ANY_DIFF.include(walker);
+  }
+
+  @Override
+  public int matchFilter(TreeWalk walker)
+      throws MissingObjectException, IncorrectObjectTypeException, IOException {
+    int ra = paths.matchFilter(walker);
+    if (ra == 1) {
+      return 1;
+    }
+    int rb = ANY_DIFF.matchFilter(walker);
+    if (rb == 1) {
+      return 1;
+    }
+    return ra == -1 || rb == -1 ? -1 : 0;
+  }
+
+  @Override
+  public boolean shouldBeRecursive() {
+    return paths.shouldBeRecursive() || ANY_DIFF.shouldBeRecursive();
+  }
+
+  @Override
+  public Optional<Set<byte[]>> getPathsBestEffort() {
+    return paths.getPathsBestEffort();
+  }
+
+  @Override
+  public TreeFilter clone() {
+    return new ChangedPathTreeFilter(paths.clone());
+  }
+
+  @Override
+  public String toString() {
+    return "(" + paths + " AND " + ANY_DIFF + ")";
+  }
+}
@@ -0,0 +1,168 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+import com.google.gitiles.blame.cache.BlameCacheImpl;
+import com.google.gitiles.blame.cache.Region;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepository;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link CacheSnapshots}. */
+@RunWith(JUnit4.class)
+public class CacheSnapshotsTest {
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+  private TestRepository<DfsRepository> repo;
+  private GitilesAccess access;
+  private Path dir;
+
+  @Before
+  public void setUp() throws Exception {
+    repo = new TestRepository<>(new InMemoryRepository(new DfsRepositoryDescription("test")));
+    access = new TestGitilesAccess(repo.getRepository()).forRequest(null);
+    dir = tmp.getRoot().toPath().resolve("snapshots");
+  }
+
+  @Test
+  public void timesRestored() throws Exception {
+    RevCommit c = repo.branch("master").commit().create();
+    TimeCache before = new TimeCache();
+    try (RevWalk walk = new RevWalk(repo.getRepository())) {
+      before.getTime(walk, c);
+    }
+    snapshots(before, new VisibilityCache(), new BlameCacheImpl()).write();
+
+    TimeCache after = new TimeCache();
+    snapshots(after, new VisibilityCache(), new BlameCacheImpl()).restore();
+    assertThat(after.getCache().size()).isEqualTo(1);
+    // An empty repository cannot compute the time, so it must come from the snapshot.
+    DfsRepository empty = new InMemoryRepository(new DfsRepositoryDescription("empty"));
+    try (RevWalk walk = new RevWalk(empty)) {
+      assertThat(after.getTime(walk, c)).isEqualTo(c.getCommitTime());
+    }
+  }
+
+  @Test
+  public void visibilityRestoredOnlyForSameRefs() throws Exception {
+    RevCommit c = repo.branch("master").commit().create();
+    RefSnapshot refs = refs();
+    VisibilityCache before = new VisibilityCache();
+    try (RevWalk walk = new RevWalk(repo.getRepository())) {
+      assertThat(before.isVisible(repo.getRepository(), walk, access, refs, c)).isTrue();
+    }
+    snapshots(new TimeCache(), before, new BlameCacheImpl()).write();
+
+    CountingChecker checker = new CountingChecker();
+    VisibilityCache after = new VisibilityCache(checker);
+    snapshots(new TimeCache(), after, new BlameCacheImpl()).restore();
+    assertThat(after.getCache().size()).isEqualTo(0);
+    try (RevWalk walk = new RevWalk(repo.getRepository())) {
+      assertThat(after.isVisible(repo.getRepository(), walk, access, refs(), c)).isTrue();
+    }
+    assertThat(checker.tipChecks).isEqualTo(0);
+
+    checker = new CountingChecker();
+    after = new VisibilityCache(checker);
+    snapshots(new TimeCache(), after, new BlameCacheImpl()).restore();
+    repo.branch("other").commit().create();
+    try (RevWalk walk = new RevWalk(repo.getRepository())) {
+      assertThat(after.isVisible(repo.getRepository(), walk, access, refs(), c)).isTrue();
+    }
+    assertThat(checker.tipChecks).isEqualTo(1);
+  }
+
+  @Test
+  public void blameRestored() throws Exception {
+    RevCommit c1 = repo.branch("master").commit().add("file", "a\n").create();
+    RevCommit c2 = repo.branch("master").commit().parent(c1).add("file", "a\nb\n").create();
+    BlameCacheImpl before = new BlameCacheImpl();
+    List<Region> regions = before.get(repo.getRepository(), c2, "file");
+    snapshots(new TimeCache(), new VisibilityCache(), before).write();
+
+    BlameCacheImpl after = new BlameCacheImpl();
+    snapshots(new TimeCache(), new VisibilityCache(), after).restore();
+    List<Region> restored = after.getCache().getIfPresent(new BlameCacheImpl.Key(c2, "file"));
+    assertThat(restored).isNotNull();
+    assertThat(restored.stream().map(Region::toString).collect(toList()))
+        .containsExactlyElementsIn(regions.stream().map(Region::toString).collect(toList()))
+        .inOrder();
+    assertThat(restored.get(1).getSourceAuthor()).isEqualTo(regions.get(1).getSourceAuthor());
+  }
+
+  @Test
+  public void unreadableSnapshotsIgnored() throws Exception {
+    Files.createDirectories(dir);
+    Files.write(dir.resolve("tagTime.snapshot"), "garbage".getBytes(UTF_8));
+    TimeCache times = new TimeCache();
+    CacheSnapshots snapshots = snapshots(times, new VisibilityCache(), new BlameCacheImpl());
+
+    // Not yet restored: the previous snapshots are kept.
+    snapshots.write();
+    assertThat(Files.readAllBytes(dir.resolve("tagTime.snapshot")))
+        .isEqualTo("garbage".getBytes(UTF_8));
+
+    snapshots.restore();
+    assertThat(times.getCache().size()).isEqualTo(0);
+    snapshots.write();
+    assertThat(Files.size(dir.resolve("tagTime.snapshot"))).isGreaterThan(7L);
+  }
+
+  private CacheSnapshots snapshots(
+      TimeCache times, VisibilityCache visibility, BlameCacheImpl blame) throws Exception {
+    CacheSnapshots snapshots =
+        new CacheSnapshots(dir, Duration.ZERO)
+            .add("tagTime", times::writeSnapshot, times::readSnapshot)
+            .add("visibility", visibility::writeSnapshot, visibility::readSnapshot)
+            .add("blame", blame::writeSnapshot, blame::readSnapshot);
+    if (Files.notExists(dir)) {
+      // Nothing to restore yet; allow the first snapshot to be written.
+      snapshots.restore();
+    }
+    return snapshots;
+  }
+
+  private RefSnapshot refs() throws Exception {
+    return RefSnapshot.build(repo.getRepository().getRefDatabase());
+  }
+
+  private static class CountingChecker extends VisibilityChecker {
+    int tipChecks;
+
+    @Override
+    boolean isTipOfBranch(RefSnapshot refs, ObjectId id) {
+      tipChecks++;
+      return super.isTipOfBranch(refs, id);
+    }
+  }
+}
@@ -0,0 +1,142 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link CompactObjectCache}. */
+@RunWith(JUnit4.class)
+public class CompactObjectCacheTest {
+  private List<ObjectId> ids;
+
+  @Before
+  public void setUp() {
+    Random random = new Random(42);
+    ids = new ArrayList<>();
+    for (int i = 0; i < 50000; i++) {
+      byte[] raw = new byte[20];
+      random.nextBytes(raw);
+      ids.add(ObjectId.fromRaw(raw));
+    }
+  }
+
+  @Test
+  public void putAndGet() {
+    CompactObjectCache cache = new CompactObjectCache(64 << 20, Duration.ZERO, true);
+    long scope = cache.scope("user", "repo");
+    for (int i = 0; i < ids.size(); i++) {
+      cache.put(scope, ids.get(i), i - 100L);
+    }
+    assertThat(cache.size()).isEqualTo((long) ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      assertThat(cache.get(scope, ids.get(i), Long.MAX_VALUE)).isEqualTo(i - 100L);
+    }
+
+    cache.put(scope, ids.get(0), Long.MIN_VALUE);
+    assertThat(cache.get(scope, ids.get(0), Long.MAX_VALUE)).isEqualTo(Long.MIN_VALUE);
+    assertThat(cache.size()).isEqualTo((long) ids.size());
+  }
+
+  @Test
+  public void scopesAreSeparate() {
+    CompactObjectCache cache = new CompactObjectCache(1 << 20, Duration.ZERO, false);
+    long user1 = cache.scope("user1", "repo");
+    long user2 = cache.scope("user2", "repo");
+    assertThat(user1).isNotEqualTo(user2);
+    assertThat(cache.scope("user1", "repo")).isEqualTo(user1);
+
+    cache.put(user1, ids.get(0), 1);
+    cache.put(user2, ids.get(1), 0);
+    assertThat(cache.get(user1, ids.get(0), -1)).isEqualTo(1L);
+    assertThat(cache.get(user1, ids.get(1), -1)).isEqualTo(-1L);
+    assertThat(cache.get(user2, ids.get(0), -1)).isEqualTo(-1L);
+    assertThat(cache.get(user2, ids.get(1), -1)).isEqualTo(0L);
+  }
+
+  @Test
+  public void evictsWithinBudget() {
+    long maxBytes = 64 << 10;
+    CompactObjectCache cache = new CompactObjectCache(maxBytes, Duration.ZERO, false);
+    long scope = cache.scope("user", "repo");
+    for (int i = 0; i < ids.size(); i++) {
+      cache.put(scope, ids.get(i), i & 1);
+      assertThat(cache.get(scope, ids.get(i), -1)).isEqualTo(i & 1L);
+    }
+    assertThat(cache.size()).isGreaterThan(0L);
+    assertThat(cache.size() * CompactObjectCache.bytesPerSlot(false)).isAtMost(maxBytes);
+    assertThat(cache.asCache().stats().evictionCount()).isEqualTo(ids.size() - cache.size());
+
+    int present = 0;
+    for (int i = 0; i < ids.size(); i++) {
+      long value = cache.get(scope, ids.get(i), -1);
+      if (value >= 0) {
+        assertThat(value).isEqualTo(i & 1L);
+        present++;
+      }
+    }
+    assertThat((long) present).isEqualTo(cache.size());
+  }
+
+  @Test
+  public void expiresAfterWrite() {
+    FakeTicker ticker = new FakeTicker();
+    CompactObjectCache cache =
+        new CompactObjectCache(1 << 20, Duration.ofMinutes(30), false, ticker);
+    long scope = cache.scope("user", "repo");
+    cache.put(scope, ids.get(0), 1);
+    ticker.advance(20, TimeUnit.MINUTES);
+    cache.put(scope, ids.get(1), 1);
+    assertThat(cache.get(scope, ids.get(0), -1)).isEqualTo(1L);
+
+    ticker.advance(20, TimeUnit.MINUTES);
+    assertThat(cache.get(scope, ids.get(0), -1)).isEqualTo(-1L);
+    assertThat(cache.get(scope, ids.get(1), -1)).isEqualTo(1L);
+  }
+
+  @Test
+  public void invalidateAll() {
+    CompactObjectCache cache = new CompactObjectCache(1 << 20, Duration.ZERO, false);
+    long scope = cache.scope("user", "repo");
+    cache.put(scope, ids.get(0), 1);
+    cache.asCache().invalidateAll();
+    assertThat(cache.size()).isEqualTo(0L);
+    assertThat(cache.get(scope, ids.get(0), -1)).isEqualTo(-1L);
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long time, TimeUnit unit) {
+      nanos += unit.toNanos(time);
+    }
+  }
+}
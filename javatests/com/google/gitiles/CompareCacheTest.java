@@ -0,0 +1,128 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gitiles.CompareCache.Comparison;
+import java.util.List;
+import org.eclipse.jgit.internal.storage.dfs.DfsGarbageCollector;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepository;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.pack.PackConfig;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link CompareCache}. */
+@RunWith(JUnit4.class)
+public class CompareCacheTest {
+  private TestRepository<DfsRepository> repo;
+  private RevCommit root;
+  private RevCommit b;
+  private RevCommit c;
+  private RevCommit base;
+  private RevCommit head;
+  private RevCommit unrelated;
+
+  @Before
+  public void setUp() throws Exception {
+    repo = new TestRepository<>(new InMemoryRepository(new DfsRepositoryDescription("test")));
+    repo.getRepository().getConfig().setBoolean("core", null, "commitGraph", true);
+
+    // Criss-cross merge, so that base and head have two merge-bases.
+    root = repo.commit().create();
+    b = repo.commit().parent(root).create();
+    c = repo.commit().parent(root).create();
+    base = repo.commit().parent(repo.commit().parent(b).parent(c).create()).create();
+    RevCommit m = repo.commit().parent(c).parent(b).create();
+    head = repo.commit().parent(repo.commit().parent(m).create()).create();
+    unrelated = repo.commit().create();
+    repo.branch("base").update(base);
+    repo.branch("head").update(head);
+    repo.branch("unrelated").update(unrelated);
+  }
+
+  @Test
+  public void compareWithoutIndexes() throws Exception {
+    assertComparisons(new CompareCache());
+  }
+
+  @Test
+  public void compareWithCommitGraph() throws Exception {
+    PackConfig pc = new PackConfig(repo.getRepository());
+    pc.setBuildBitmaps(false);
+    new DfsGarbageCollector(repo.getRepository())
+        .setPackConfig(pc)
+        .setWriteCommitGraph(true)
+        .pack(NullProgressMonitor.INSTANCE);
+    try (RevWalk walk = new RevWalk(repo.getRepository())) {
+      assertThat(walk.getObjectReader().getBitmapIndex()).isNull();
+      assertThat(walk.getObjectReader().getCommitGraph()).isPresent();
+    }
+    assertComparisons(new CompareCache());
+  }
+
+  @Test
+  public void compareWithBitmaps() throws Exception {
+    new DfsGarbageCollector(repo.getRepository()).pack(NullProgressMonitor.INSTANCE);
+    try (RevWalk walk = new RevWalk(repo.getRepository())) {
+      assertThat(walk.getObjectReader().getBitmapIndex()).isNotNull();
+    }
+    assertComparisons(new CompareCache());
+
+    // History written since the bitmaps were.
+    RevCommit next = repo.commit().parent(head).create();
+    List<Comparison> result =
+        new CompareCache().compare(repo.getRepository(), base, ImmutableList.of(next));
+    assertComparison(result.get(0), 4, 2, b, c);
+  }
+
+  @Test
+  public void cachedByCommits() throws Exception {
+    CompareCache cache = new CompareCache();
+    Comparison first = compare(cache, head).get(0);
+    repo.branch("base").commit().create();
+    assertThat(compare(cache, head).get(0)).isSameInstanceAs(first);
+  }
+
+  private void assertComparisons(CompareCache cache) throws Exception {
+    List<Comparison> result = compare(cache, head, base, root, b, unrelated);
+    assertComparison(result.get(0), 3, 2, b, c);
+    assertComparison(result.get(1), 0, 0, base);
+    assertComparison(result.get(2), 0, 4, root);
+    assertComparison(result.get(3), 0, 3, b);
+    assertComparison(result.get(4), 1, 5);
+  }
+
+  private List<Comparison> compare(CompareCache cache, RevCommit... heads) throws Exception {
+    return cache.compare(repo.getRepository(), base, ImmutableList.copyOf(heads));
+  }
+
+  private static void assertComparison(
+      Comparison comparison, int ahead, int behind, ObjectId... mergeBases) {
+    assertThat(comparison.getAhead()).isEqualTo(ahead);
+    assertThat(comparison.getBehind()).isEqualTo(behind);
+    assertThat(comparison.getMergeBases()).containsExactlyElementsIn(mergeBases);
+  }
+}
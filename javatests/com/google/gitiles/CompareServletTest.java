@@ -0,0 +1,180 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.truth.Truth.assertThat;
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+
+import com.google.gitiles.CompareServlet.CompareJsonData;
+import com.google.gson.reflect.TypeToken;
+import java.util.Map;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link CompareServlet}. */
+@RunWith(JUnit4.class)
+public class CompareServletTest extends ServletTest {
+  private RevCommit root;
+  private RevCommit merged;
+  private RevCommit master;
+  private RevCommit feature;
+
+  private void setUpRefs() throws Exception {
+    root = repo.branch("master").commit().create();
+    merged = repo.branch("master").commit().create();
+    master = repo.branch("master").commit().create();
+    repo.branch("merged").update(merged);
+    RevCommit f1 = repo.branch("feature").commit().parent(root).create();
+    feature = repo.branch("feature").commit().parent(f1).create();
+    RevTag tag = repo.tag("v1", feature);
+    repo.update("refs/tags/v1", tag);
+  }
+
+  @Test
+  public void compareRangeJson() throws Exception {
+    setUpRefs();
+    CompareJsonData result = buildJson(CompareJsonData.class, "/repo/+compare/master..feature");
+    assertThat(result.base).isEqualTo(master.name());
+    assertThat(result.head).isEqualTo(feature.name());
+    assertThat(result.mergeBases).containsExactly(root.name());
+    assertThat(result.ahead).isEqualTo(2);
+    assertThat(result.behind).isEqualTo(2);
+
+    result = buildJson(CompareJsonData.class, "/repo/+compare/feature..merged");
+    assertThat(result.mergeBases).containsExactly(root.name());
+    assertThat(result.ahead).isEqualTo(1);
+    assertThat(result.behind).isEqualTo(2);
+  }
+
+  @Test
+  public void compareBranchesJson() throws Exception {
+    setUpRefs();
+    Map<String, CompareJsonData> result = buildCompareJson("/repo/+compare/master", null);
+    assertThat(result.keySet())
+        .containsExactly("refs/heads/feature", "refs/heads/master", "refs/heads/merged")
+        .inOrder();
+
+    CompareJsonData data = result.get("refs/heads/master");
+    assertThat(data.head).isEqualTo(master.name());
+    assertThat(data.mergeBases).containsExactly(master.name());
+    assertThat(data.ahead).isEqualTo(0);
+    assertThat(data.behind).isEqualTo(0);
+
+    data = result.get("refs/heads/merged");
+    assertThat(data.base).isEqualTo(master.name());
+    assertThat(data.head).isEqualTo(merged.name());
+    assertThat(data.mergeBases).containsExactly(merged.name());
+    assertThat(data.ahead).isEqualTo(0);
+    assertThat(data.behind).isEqualTo(1);
+  }
+
+  @Test
+  public void compareNamedRefsJson() throws Exception {
+    setUpRefs();
+    Map<String, CompareJsonData> result =
+        buildCompareJson(
+            "/repo/+compare/merged", "head=feature&head=refs/heads/master&head=nonexistent");
+    assertThat(result.keySet())
+        .containsExactly("refs/heads/feature", "refs/heads/master")
+        .inOrder();
+    assertThat(result.get("refs/heads/master").ahead).isEqualTo(1);
+    assertThat(result.get("refs/heads/master").behind).isEqualTo(0);
+
+    result = buildCompareJson("/repo/+compare/master", "prefix=refs/tags/&head=merged");
+    assertThat(result.keySet()).containsExactly("refs/heads/merged", "refs/tags/v1").inOrder();
+    CompareJsonData data = result.get("refs/tags/v1");
+    assertThat(data.head).isEqualTo(feature.name());
+    assertThat(data.ahead).isEqualTo(2);
+    assertThat(data.behind).isEqualTo(2);
+  }
+
+  @Test
+  public void compareBranchesPaged() throws Exception {
+    setUpRefs();
+    FakeHttpServletResponse res = buildResponse("/repo/+compare/master", "format=TEXT&n=2", SC_OK);
+    assertThat(res.getHeader(RefServlet.NEXT_START_HEADER)).isEqualTo("refs/heads/master");
+    assertThat(res.getActualBodyString()).contains("refs/heads/feature");
+    assertThat(res.getActualBodyString()).doesNotContain("refs/heads/merged");
+
+    res = buildResponse("/repo/+compare/master", "format=TEXT&n=2&s=refs/heads/master", SC_OK);
+    assertThat(res.getHeader(RefServlet.NEXT_START_HEADER)).isNull();
+    assertThat(res.getActualBodyString())
+        .isEqualTo("0 1 refs/heads/merged " + merged.name() + "\n");
+
+    Map<String, CompareJsonData> result =
+        buildCompareJson("/repo/+compare/master", "prefix=refs/tags/&head=merged&s=refs/heads/m");
+    assertThat(result.keySet()).containsExactly("refs/heads/merged", "refs/tags/v1").inOrder();
+  }
+
+  @Test
+  public void compareBranchesDefaultPage() throws Exception {
+    setUpRefs();
+    for (int i = 0; i < CompareServlet.MAX_HEADS; i++) {
+      repo.update(String.format("refs/heads/b%04d", i), root);
+    }
+    FakeHttpServletResponse res = buildResponse("/repo/+compare/master", "format=JSON", SC_OK);
+    assertThat(res.getHeader(RefServlet.NEXT_START_HEADER)).isEqualTo("refs/heads/b0999");
+    res = buildResponse("/repo/+compare/master", "format=JSON&n=5000", SC_OK);
+    assertThat(res.getHeader(RefServlet.NEXT_START_HEADER)).isEqualTo("refs/heads/b0999");
+
+    Map<String, CompareJsonData> result =
+        buildCompareJson("/repo/+compare/master", "s=refs/heads/b0999");
+    assertThat(result.keySet())
+        .containsExactly("refs/heads/feature", "refs/heads/master", "refs/heads/merged")
+        .inOrder();
+  }
+
+  @Test
+  public void compareText() throws Exception {
+    setUpRefs();
+    FakeHttpServletResponse res = buildText("/repo/+compare/master..feature");
+    assertThat(res.getActualBodyString()).isEqualTo("2 2 feature " + root.name() + "\n");
+
+    res = buildResponse("/repo/+compare/master", "format=TEXT&head=feature&head=merged", SC_OK);
+    assertThat(res.getActualBodyString())
+        .isEqualTo(
+            "2 2 refs/heads/feature "
+                + root.name()
+                + "\n"
+                + "0 1 refs/heads/merged "
+                + merged.name()
+                + "\n");
+  }
+
+  @Test
+  public void invalidRequests() throws Exception {
+    setUpRefs();
+    buildResponse("/repo/+compare/master..feature", null, SC_BAD_REQUEST);
+    buildResponse("/repo/+compare/master", "format=JSON&prefix=heads/", SC_BAD_REQUEST);
+    repo.update("refs/tags/tree", master.getTree());
+    buildResponse("/repo/+compare/tree", "format=JSON", SC_BAD_REQUEST);
+    buildResponse("/repo/+compare/tree..master", "format=JSON", SC_BAD_REQUEST);
+    StringBuilder heads = new StringBuilder("format=JSON");
+    for (int i = 0; i <= CompareServlet.MAX_HEADS; i++) {
+      heads.append("&head=b").append(i);
+    }
+    buildResponse("/repo/+compare/master", heads.toString(), SC_BAD_REQUEST);
+    buildResponse("/repo/+compare/master", "format=JSON&n=-1", SC_BAD_REQUEST);
+  }
+
+  private Map<String, CompareJsonData> buildCompareJson(String path, String queryString)
+      throws Exception {
+    return buildJson(new TypeToken<Map<String, CompareJsonData>>() {}, path, queryString);
+  }
+}
@@ -0,0 +1,110 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.truth.Truth.assertThat;
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+
+import com.google.gitiles.RefServlet.RefJsonData;
+import com.google.gson.reflect.TypeToken;
+import java.util.Map;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ContainsServlet}. */
+@RunWith(JUnit4.class)
+public class ContainsServletTest extends ServletTest {
+  private RevCommit base;
+  private RevCommit fix;
+  private RevTag tag;
+
+  private void setUpRefs() throws Exception {
+    base = repo.branch("master").commit().create();
+    fix = repo.branch("master").commit().create();
+    repo.branch("release-1").update(base);
+    repo.branch("release-2").commit().parent(fix).create();
+    tag = repo.tag("v2", fix);
+    repo.update("refs/tags/v2", tag);
+    repo.update("refs/tags/v1", base);
+    repo.update("refs/changes/01/1/1", fix);
+  }
+
+  @Test
+  public void containsJson() throws Exception {
+    setUpRefs();
+    Map<String, RefJsonData> result = buildRefJson("/repo/+contains/" + fix.name(), null);
+    assertThat(result.keySet())
+        .containsExactly("refs/heads/master", "refs/heads/release-2", "refs/tags/v2")
+        .inOrder();
+    assertThat(result.get("refs/tags/v2").value).isEqualTo(tag.name());
+    assertThat(result.get("refs/tags/v2").peeled).isEqualTo(fix.name());
+
+    assertThat(buildRefJson("/repo/+contains/release-1", null).keySet())
+        .containsExactly(
+            "refs/heads/master",
+            "refs/heads/release-1",
+            "refs/heads/release-2",
+            "refs/tags/v1",
+            "refs/tags/v2")
+        .inOrder();
+  }
+
+  @Test
+  public void containsWithPrefixes() throws Exception {
+    setUpRefs();
+    assertThat(
+            buildRefJson("/repo/+contains/" + fix.name(), "prefix=refs/heads/release-").keySet())
+        .containsExactly("refs/heads/release-2");
+    assertThat(
+            buildRefJson(
+                    "/repo/+contains/" + fix.name(),
+                    "prefix=refs/changes/&prefix=refs/tags/&prefix=refs/tags/v")
+                .keySet())
+        .containsExactly("refs/changes/01/1/1", "refs/tags/v2")
+        .inOrder();
+  }
+
+  @Test
+  public void containsText() throws Exception {
+    setUpRefs();
+    FakeHttpServletResponse res = buildText("/repo/+contains/" + fix.name());
+    assertThat(res.getActualBodyString())
+        .isEqualTo(
+            fix.name()
+                + " refs/heads/master\n"
+                + repo.getRepository().exactRef("refs/heads/release-2").getObjectId().name()
+                + " refs/heads/release-2\n"
+                + tag.name()
+                + " refs/tags/v2\n"
+                + fix.name()
+                + " refs/tags/v2^{}\n");
+  }
+
+  @Test
+  public void invalidRequests() throws Exception {
+    setUpRefs();
+    buildResponse("/repo/+contains/" + fix.name(), "format=JSON&prefix=heads/", SC_BAD_REQUEST);
+    repo.update("refs/tags/tree", fix.getTree());
+    buildResponse("/repo/+contains/tree", "format=JSON", SC_BAD_REQUEST);
+  }
+
+  private Map<String, RefJsonData> buildRefJson(String path, String queryString)
+      throws Exception {
+    return buildJson(new TypeToken<Map<String, RefJsonData>>() {}, path, queryString);
+  }
+}
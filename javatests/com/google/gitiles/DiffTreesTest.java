@@ -0,0 +1,127 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepository;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link DiffTrees}. */
+@RunWith(JUnit4.class)
+public class DiffTreesTest {
+  private static final String CONTENTS = "line 1\nline 2\nline 3\nline 4\nline 5\n";
+
+  private TestRepository<DfsRepository> repo;
+  private RevWalk walk;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    repo = new TestRepository<>(new InMemoryRepository(new DfsRepositoryDescription("test")));
+    walk = new RevWalk(repo.getRepository());
+    executor = new ForkJoinPool(2);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    walk.close();
+    executor.shutdown();
+  }
+
+  @Test
+  public void prefetchedDiffsMatchSerialDiffs() throws Exception {
+    RevCommit c1 = repo.commit().add("a", CONTENTS).add("b", "b").create();
+    RevCommit c2 = repo.commit().parent(c1).add("c", "c").create();
+    RevCommit c3 = repo.commit().parent(c2).rm("a").add("d", CONTENTS + "line 6\n").create();
+    RevCommit c4 = repo.commit().parent(c3).add("b", "b2").add("d", "d").create();
+    List<RevCommit> commits = ImmutableList.of(c4, c3, c2, c1);
+
+    List<List<DiffEntry>> expected = new ArrayList<>();
+    try (DiffTrees serial = new DiffTrees(repo.getRepository())) {
+      for (RevCommit c : serial.prefetch(commits)) {
+        expected.add(serial.scan(walk, walk.parseCommit(c)));
+      }
+    }
+
+    List<String> actual = new ArrayList<>();
+    try (DiffTrees parallel = new DiffTrees(repo.getRepository(), executor, 2, -1)) {
+      for (RevCommit c : parallel.prefetch(parse(commits))) {
+        actual.add(parallel.scan(walk, c).toString());
+      }
+    }
+    assertThat(actual)
+        .containsExactly(
+            expected.get(0).toString(),
+            expected.get(1).toString(),
+            expected.get(2).toString(),
+            expected.get(3).toString())
+        .inOrder();
+    assertThat(expected.get(0)).hasSize(2);
+    assertThat(expected.get(1)).hasSize(1);
+    assertThat(expected.get(1).get(0).getChangeType()).isEqualTo(ChangeType.RENAME);
+  }
+
+  @Test
+  public void renameLimitSkipsContentRenames() throws Exception {
+    RevCommit c1 = repo.commit().add("a", CONTENTS).add("b", "b").create();
+    RevCommit c2 = repo.commit().parent(c1).rm("a").add("c", CONTENTS + "line 6\n").create();
+
+    try (DiffTrees limited = new DiffTrees(repo.getRepository(), executor, 2, 0)) {
+      List<DiffEntry> entries = limited.scan(walk, walk.parseCommit(c2));
+      assertThat(entries).hasSize(1);
+      assertThat(entries.get(0).getChangeType()).isEqualTo(ChangeType.RENAME);
+    }
+    try (DiffTrees limited = new DiffTrees(repo.getRepository(), null, 0, 1)) {
+      RevCommit c3 =
+          repo.commit()
+              .parent(c2)
+              .rm("b")
+              .rm("c")
+              .add("d", CONTENTS + "line 6\nline 7\n")
+              .add("e", "e")
+              .create();
+      List<DiffEntry> entries = limited.scan(walk, walk.parseCommit(c3));
+      assertThat(entries).hasSize(4);
+      for (DiffEntry e : entries) {
+        assertThat(e.getChangeType()).isNotEqualTo(ChangeType.RENAME);
+      }
+    }
+  }
+
+  private List<RevCommit> parse(List<RevCommit> commits) throws Exception {
+    List<RevCommit> result = new ArrayList<>(commits.size());
+    for (RevCommit c : commits) {
+      result.add(walk.parseCommit(c));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,139 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepository;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link GenerationTopoWalk}. */
+@RunWith(JUnit4.class)
+public class GenerationTopoWalkTest {
+  private TestRepository<DfsRepository> repo;
+  private GenerationTopoWalk.Generations generations;
+  private List<RevCommit> commits;
+
+  @Before
+  public void setUp() throws Exception {
+    repo = new TestRepository<>(new InMemoryRepository(new DfsRepositoryDescription("test")));
+    generations = new GenerationTopoWalk.Generations();
+
+    // Mainline with side branches forking off and merging back, so that date order interleaves
+    // branches.
+    commits = new ArrayList<>();
+    commits.add(repo.commit().create());
+    for (int i = 1; i < 30; i++) {
+      TestRepository<DfsRepository>.CommitBuilder b =
+          repo.commit().parent(commits.get(i - 1)).add("f", Integer.toString(i));
+      if (i % 4 == 0) {
+        RevCommit side = repo.commit().parent(commits.get(i - 3)).add("g", "" + i).create();
+        b.parent(repo.commit().parent(side).add("h", "" + i).create());
+      }
+      commits.add(b.create());
+    }
+  }
+
+  @Test
+  public void matchesJGitTopoOrder() throws Exception {
+    RevCommit tip = commits.get(commits.size() - 1);
+    assertThat(walk(tip, null, false))
+        .containsExactlyElementsIn(jgitWalk(tip, null, false))
+        .inOrder();
+  }
+
+  @Test
+  public void matchesJGitTopoOrderForRange() throws Exception {
+    RevCommit tip = commits.get(commits.size() - 1);
+    RevCommit old = commits.get(13);
+    List<RevCommit> expected = jgitWalk(tip, old, false);
+    assertThat(expected).doesNotContain(old);
+    assertThat(walk(tip, old, false)).containsExactlyElementsIn(expected).inOrder();
+  }
+
+  @Test
+  public void matchesJGitTopoOrderForFirstParent() throws Exception {
+    RevCommit tip = commits.get(commits.size() - 1);
+    assertThat(walk(tip, null, true))
+        .containsExactlyElementsIn(jgitWalk(tip, null, true))
+        .inOrder();
+  }
+
+  @Test
+  public void reusesCachedGenerations() throws Exception {
+    RevCommit tip = commits.get(commits.size() - 1);
+    List<RevCommit> first = walk(tip, null, false);
+    assertThat(walk(tip, null, false)).containsExactlyElementsIn(first).inOrder();
+
+    RevCommit next = repo.commit().parent(tip).create();
+    List<RevCommit> second = walk(next, null, false);
+    assertThat(second.get(0)).isEqualTo(next);
+    assertThat(second.subList(1, second.size())).containsExactlyElementsIn(first).inOrder();
+  }
+
+  @Test
+  public void appliesRevFilter() throws Exception {
+    RevCommit tip = commits.get(commits.size() - 1);
+    try (GenerationTopoWalk w = new GenerationTopoWalk(repo.getRepository(), generations)) {
+      w.setRevFilter(RevFilter.NO_MERGES);
+      w.markStart(w.parseCommit(tip));
+      for (RevCommit c : w) {
+        assertThat(c.getParentCount()).isAtMost(1);
+      }
+    }
+  }
+
+  private List<RevCommit> walk(RevCommit tip, ObjectId old, boolean firstParent)
+      throws Exception {
+    try (RevWalk w = new GenerationTopoWalk(repo.getRepository(), generations)) {
+      return walk(w, tip, old, firstParent);
+    }
+  }
+
+  private List<RevCommit> jgitWalk(RevCommit tip, ObjectId old, boolean firstParent)
+      throws Exception {
+    try (RevWalk w = new RevWalk(repo.getRepository())) {
+      w.sort(RevSort.TOPO_KEEP_BRANCH_TOGETHER, true);
+      return walk(w, tip, old, firstParent);
+    }
+  }
+
+  private static List<RevCommit> walk(RevWalk w, RevCommit tip, ObjectId old, boolean firstParent)
+      throws Exception {
+    w.setFirstParent(firstParent);
+    w.markStart(w.parseCommit(tip));
+    if (old != null) {
+      w.markUninteresting(w.parseCommit(old));
+    }
+    List<RevCommit> result = new ArrayList<>();
+    for (RevCommit c : w) {
+      result.add(c);
+    }
+    return result;
+  }
+}
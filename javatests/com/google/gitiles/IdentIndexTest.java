@@ -0,0 +1,176 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.internal.storage.dfs.DfsGarbageCollector;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepository;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link IdentIndex}. */
+@RunWith(JUnit4.class)
+public class IdentIndexTest {
+  private static final PersonIdent ALICE = new PersonIdent("Alice", "alice@example.com");
+  private static final PersonIdent BOB = new PersonIdent("Bob", "bob@example.com");
+
+  private TestRepository<DfsRepository> repo;
+  private IdentIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    repo = new TestRepository<>(new InMemoryRepository(new DfsRepositoryDescription("test")));
+    // Run updates on the calling thread, so they finish before newWalk returns.
+    index = new IdentIndex(IdentIndex.defaultBuilder(), MoreExecutors.newDirectExecutorService());
+  }
+
+  @Test
+  public void notCoveredUntilIndexed() throws Exception {
+    RevCommit c = repo.branch("master").commit().author(ALICE).create();
+    gc();
+    IdentRevFilter author = IdentRevFilter.author("Alice");
+
+    assertThat(newWalk(c, author, null)).isNull();
+    assertThat(walk(newWalk(c, author, null), c, null)).containsExactly(c);
+  }
+
+  @Test
+  public void notUsedWithoutBitmaps() throws Exception {
+    RevCommit c = repo.branch("master").commit().author(ALICE).create();
+    IdentRevFilter author = IdentRevFilter.author("Alice");
+
+    assertThat(newWalk(c, author, null)).isNull();
+    assertThat(newWalk(c, author, null)).isNull();
+  }
+
+  @Test
+  public void matchesAuthorAndCommitter() throws Exception {
+    RevCommit c1 = repo.branch("master").commit().author(ALICE).committer(ALICE).create();
+    RevCommit c2 = repo.branch("master").commit().author(BOB).committer(ALICE).create();
+    RevCommit c3 = repo.branch("master").commit().author(ALICE).committer(BOB).create();
+    gc();
+    IdentRevFilter alice = IdentRevFilter.author("alice@");
+    IdentRevFilter bob = IdentRevFilter.committer("Bob");
+
+    assertThat(newWalk(c3, alice, null)).isNull();
+    assertThat(walk(newWalk(c3, alice, null), c3, null)).containsExactly(c3, c1).inOrder();
+    assertThat(walk(newWalk(c3, null, bob), c3, null)).containsExactly(c3);
+    assertThat(walk(newWalk(c3, alice, bob), c3, null)).containsExactly(c3);
+    assertThat(walk(newWalk(c2, IdentRevFilter.author("BOB"), null), c2, null)).isEmpty();
+    assertThat(
+            walk(
+                newWalk(c3, IdentRevFilter.author(ImmutableList.of("BOB"), true), null),
+                c3,
+                null))
+        .containsExactly(c2);
+  }
+
+  @Test
+  public void onlyEmitsReachableCommits() throws Exception {
+    RevCommit base = repo.branch("master").commit().author(ALICE).create();
+    RevCommit side = repo.branch("side").commit().parent(base).author(ALICE).create();
+    RevCommit mid = repo.branch("master").commit().author(BOB).create();
+    gc();
+    RevCommit merge = repo.branch("master").commit().parent(side).author(ALICE).create();
+    RevCommit tip = repo.branch("master").commit().author(ALICE).create();
+    RevCommit other = repo.branch("other").commit().parent(mid).author(ALICE).create();
+    IdentRevFilter alice = IdentRevFilter.author("Alice");
+
+    assertThat(newWalk(tip, alice, null)).isNull();
+    assertThat(walk(newWalk(tip, alice, null), tip, null))
+        .containsExactly(tip, merge, side, base)
+        .inOrder();
+    assertThat(walk(newWalk(other, alice, null), other, null))
+        .containsExactly(other, base)
+        .inOrder();
+    assertThat(walk(newWalk(tip, alice, null), tip, side)).containsExactly(tip, merge).inOrder();
+
+    IdentIndex.Walk noMerges = newWalk(tip, alice, null);
+    noMerges.setRevFilter(RevFilter.NO_MERGES);
+    assertThat(walk(noMerges, tip, null)).containsExactly(tip, side, base).inOrder();
+  }
+
+  @Test
+  public void indexesNewHistoryIncrementally() throws Exception {
+    IdentRevFilter alice = IdentRevFilter.author("Alice");
+    List<RevCommit> expected = new ArrayList<>();
+    RevCommit tip = repo.branch("master").commit().author(BOB).create();
+    gc();
+    // Enough updates to merge segments.
+    for (int i = 0; i < 20; i++) {
+      tip = repo.branch("master").commit().author(i % 2 == 0 ? ALICE : BOB).create();
+      if (i % 2 == 0) {
+        expected.add(0, tip);
+      }
+      assertThat(newWalk(tip, alice, null)).isNull();
+      assertThat(walk(newWalk(tip, alice, null), tip, null))
+          .containsExactlyElementsIn(expected)
+          .inOrder();
+    }
+
+    RevCommit side = repo.branch("side").commit().parent(tip).author(ALICE).create();
+    assertThat(newWalk(side, alice, null)).isNull();
+    expected.add(0, side);
+    assertThat(walk(newWalk(side, alice, null), side, null))
+        .containsExactlyElementsIn(expected)
+        .inOrder();
+  }
+
+  private void gc() throws Exception {
+    new DfsGarbageCollector(repo.getRepository()).pack(NullProgressMonitor.INSTANCE);
+  }
+
+  private IdentIndex.Walk newWalk(
+      RevCommit start, IdentRevFilter author, IdentRevFilter committer) throws Exception {
+    return index.newWalk(
+        "test",
+        repo.getRepository(),
+        RefSnapshot.build(repo.getRepository().getRefDatabase()),
+        ImmutableList.of(start),
+        author,
+        committer);
+  }
+
+  private static List<RevCommit> walk(IdentIndex.Walk walk, RevCommit start, RevCommit exclude)
+      throws Exception {
+    assertThat(walk).isNotNull();
+    List<RevCommit> result = new ArrayList<>();
+    try (RevWalk w = walk) {
+      if (exclude != null) {
+        w.markUninteresting(w.parseCommit(exclude));
+      }
+      w.markStart(w.parseCommit(start));
+      for (RevCommit c : w) {
+        result.add(c);
+      }
+    }
+    return result;
+  }
+}
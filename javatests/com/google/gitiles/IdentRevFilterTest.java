@@ -16,9 +16,13 @@ package com.google.gitiles;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import com.google.common.collect.ImmutableList;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
 import org.eclipse.jgit.junit.TestRepository;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -26,9 +30,8 @@ import org.junit.runners.JUnit4;
 /**
  * Tests for {@link IdentRevFilter}.
  *
- * <p>Unfortunately it's not easy to test the Filter using real {@link RevCommit}s because {@link
- * TestRepository} hard-codes its author as "J. Author". The next best thing is to test a {@link
- * PersonIdent}, those are easy to construct. TODO(dborowitz): Fix TestRepository to allow this.
+ * <p>Most tests match a {@link PersonIdent} directly, since those are easy to construct; {@link
+ * #matchesRawCommit()} covers matching against the raw buffer of a real {@link RevCommit}.
  */
 @RunWith(JUnit4.class)
 public class IdentRevFilterTest {
@@ -86,4 +89,51 @@ public class IdentRevFilterTest {
     assertThat(filter.matchesPerson(new PersonIdent("null", "null@tESt.com"))).isFalse();
     assertThat(filter.matchesPerson(new PersonIdent("null", "null@tesTing.com"))).isFalse();
   }
+
+  @Test
+  public void matchesAnyTerm() throws Exception {
+    IdentRevFilter filter = IdentRevFilter.author(ImmutableList.of("alice", "bob@"), false);
+    assertThat(filter.matchesPerson(new PersonIdent("alice", "a@google.com"))).isTrue();
+    assertThat(filter.matchesPerson(new PersonIdent("Robert", "bob@google.com"))).isTrue();
+    assertThat(filter.matchesPerson(new PersonIdent("Bob", "robert@google.com"))).isFalse();
+  }
+
+  @Test
+  public void ignoreCase() throws Exception {
+    IdentRevFilter filter = IdentRevFilter.author(ImmutableList.of("eSt", "ÉCOLE"), true);
+    assertThat(filter.matchesPerson(new PersonIdent("tEsting", "null@google.com"))).isTrue();
+    assertThat(filter.matchesPerson(new PersonIdent("null", "null@EST.com"))).isTrue();
+    assertThat(filter.matchesPerson(new PersonIdent("école", "null@google.com"))).isTrue();
+    assertThat(filter.matchesPerson(new PersonIdent("null", "null@google.com"))).isFalse();
+  }
+
+  @Test
+  public void matchesRawCommit() throws Exception {
+    TestRepository<InMemoryRepository> repo =
+        new TestRepository<>(new InMemoryRepository(new DfsRepositoryDescription("test")));
+    RevCommit c =
+        repo.commit()
+            .author(new PersonIdent("A. Testér", "author@example.com"))
+            .committer(new PersonIdent("C. Committer", "committer@example.com"))
+            .create();
+    try (RevWalk walk = new RevWalk(repo.getRepository())) {
+      RevCommit parsed = walk.parseCommit(c);
+      assertThat(IdentRevFilter.author("Testér").include(walk, parsed)).isTrue();
+      assertThat(IdentRevFilter.author("author@").include(walk, parsed)).isTrue();
+      assertThat(IdentRevFilter.author("Committer").include(walk, parsed)).isFalse();
+      assertThat(IdentRevFilter.author("Tester").include(walk, parsed)).isFalse();
+      // Name and email address are matched separately.
+      assertThat(IdentRevFilter.author("Testér <").include(walk, parsed)).isFalse();
+      assertThat(IdentRevFilter.committer("committer@").include(walk, parsed)).isTrue();
+      assertThat(IdentRevFilter.committer("author").include(walk, parsed)).isFalse();
+
+      IdentRevFilter anyIgnoringCase =
+          IdentRevFilter.author(ImmutableList.of("nobody", "a. test"), true);
+      assertThat(anyIgnoringCase.include(walk, parsed)).isTrue();
+      IdentRevFilter nonAsciiIgnoringCase = IdentRevFilter.author(ImmutableList.of("TESTÉR"), true);
+      assertThat(nonAsciiIgnoringCase.include(walk, parsed)).isTrue();
+      IdentRevFilter caseSensitive = IdentRevFilter.author(ImmutableList.of("EXAMPLE.COM"), false);
+      assertThat(caseSensitive.include(walk, parsed)).isFalse();
+    }
+  }
 }
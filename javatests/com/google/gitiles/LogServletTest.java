@@ -15,13 +15,20 @@
 package com.google.gitiles;
 
 import static com.google.common.truth.Truth.assertThat;
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
 
 import com.google.gitiles.CommitJsonData.Commit;
 import com.google.gitiles.CommitJsonData.Log;
 import com.google.gitiles.DateFormatter.Format;
+import com.google.gitiles.blame.cache.ChangedPathTreeFilter;
 import com.google.gson.reflect.TypeToken;
 import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.internal.storage.dfs.DfsGarbageCollector;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepository;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.NullProgressMonitor;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -102,6 +109,80 @@ public class LogServletTest extends ServletTest {
     verifyJsonCommit(response.log.get(4), a);
   }
 
+  @Test
+  public void reversePages() throws Exception {
+    RevCommit c1 = repo.branch("master").commit().create();
+    RevCommit c2 = repo.branch("master").commit().create();
+    RevCommit c3 = repo.branch("master").commit().create();
+    RevCommit c4 = repo.branch("master").commit().create();
+    RevCommit c5 = repo.branch("master").commit().create();
+    for (RevCommit c : new RevCommit[] {c1, c2, c3, c4, c5}) {
+      repo.getRevWalk().parseBody(c);
+    }
+
+    Log response = buildJson(LOG, "/repo/+log/master", "reverse&n=2");
+    assertThat(response.log).hasSize(2);
+    verifyJsonCommit(response.log.get(0), c1);
+    verifyJsonCommit(response.log.get(1), c2);
+    assertThat(response.previous).isNull();
+    assertThat(response.next).isEqualTo(c3.name());
+
+    response = buildJson(LOG, "/repo/+log/master", "reverse&n=2&s=" + response.next);
+    assertThat(response.log).hasSize(2);
+    verifyJsonCommit(response.log.get(0), c3);
+    verifyJsonCommit(response.log.get(1), c4);
+    assertThat(response.previous).isEqualTo(c1.name());
+    assertThat(response.next).isEqualTo(c5.name());
+
+    response = buildJson(LOG, "/repo/+log/master", "reverse&n=2&s=" + response.next);
+    assertThat(response.log).hasSize(1);
+    verifyJsonCommit(response.log.get(0), c5);
+    assertThat(response.previous).isEqualTo(c3.name());
+    assertThat(response.next).isNull();
+  }
+
+  @Test
+  public void grep() throws Exception {
+    RevCommit c1 = repo.branch("master").commit().message("Fix parser").create();
+    repo.branch("master").commit().message("Add feature").create();
+    RevCommit c3 = repo.branch("master").commit().message("Update docs\n\nFixes #1").create();
+    repo.getRevWalk().parseBody(c1);
+    repo.getRevWalk().parseBody(c3);
+
+    Log response = buildJson(LOG, "/repo/+log/master", "grep=Fix");
+    assertThat(response.log).hasSize(2);
+    verifyJsonCommit(response.log.get(0), c3);
+    verifyJsonCommit(response.log.get(1), c1);
+    assertThat(response.truncated).isNull();
+    assertThat(response.nextCursor).isNull();
+    assertThat(buildJsonRaw("/repo/+log/master", "grep=Fix")).doesNotContain("truncated");
+
+    response = buildJson(LOG, "/repo/+log/master", "grep=fix&regexp-ignore-case");
+    assertThat(response.log).hasSize(2);
+
+    response = buildJson(LOG, "/repo/+log/master", "grep=fix");
+    assertThat(response.log).isEmpty();
+  }
+
+  @Test
+  public void grepCannotBeResumedWithoutCursors() throws Exception {
+    String contents = "contents";
+    RevCommit c1 = repo.branch("master").commit().message("Fix foo").add("foo", contents).create();
+    RevCommit c2 =
+        repo.branch("master").commit().message("Fix bar").rm("foo").add("bar", contents).create();
+    repo.getRevWalk().parseBody(c1);
+    repo.getRevWalk().parseBody(c2);
+
+    // Searches do not follow renames unless asked to.
+    Log response = buildJson(LOG, "/repo/+log/master/bar", "grep=Fix");
+    assertThat(response.log).hasSize(1);
+    verifyJsonCommit(response.log.get(0), c2);
+
+    buildResponse("/repo/+log/master/bar", "format=JSON&grep=Fix&follow=1", SC_BAD_REQUEST);
+    buildResponse("/repo/+log/master", "format=JSON&grep=Fix&topo-order", SC_BAD_REQUEST);
+    buildResponse("/repo/+log/master", "format=JSON&grep=Fix&reverse", SC_BAD_REQUEST);
+  }
+
   @Test
   public void follow() throws Exception {
     String contents = "contents";
@@ -120,6 +201,74 @@ public class LogServletTest extends ServletTest {
     verifyJsonCommit(response.log.get(1), c1);
   }
 
+  @Test
+  public void followAcrossPages() throws Exception {
+    String contents = "line 1\nline 2\nline 3\nline 4\n";
+    RevCommit c1 = repo.branch("master").commit().add("foo", contents).create();
+    RevCommit c2 = repo.branch("master").commit().add("foo", contents + "line 5\n").create();
+    RevCommit c3 =
+        repo.branch("master").commit().rm("foo").add("bar", contents + "line 5\n").create();
+    repo.branch("master").commit().add("baz", "unrelated").create();
+    RevCommit c5 = repo.branch("master").commit().add("bar", contents).create();
+
+    for (int i = 0; i < 2; i++) {
+      Log response = buildJson(LOG, "/repo/+log/master/bar", "n=2");
+      assertThat(response.log).hasSize(2);
+      verifyJsonCommit(response.log.get(0), c5);
+      verifyJsonCommit(response.log.get(1), c3);
+      assertThat(response.next).isEqualTo(c2.name());
+
+      response = buildJson(LOG, "/repo/+log/master/bar", "n=2&s=" + response.next);
+      assertThat(response.log).hasSize(2);
+      verifyJsonCommit(response.log.get(0), c2);
+      verifyJsonCommit(response.log.get(1), c1);
+      assertThat(response.next).isNull();
+    }
+  }
+
+  @Test
+  public void pathLogWithoutFollow() throws Exception {
+    RevCommit c1 = repo.branch("master").commit().add("foo", "1").create();
+    repo.branch("master").commit().add("bar", "1").create();
+    RevCommit c3 = repo.branch("master").commit().add("foo", "2").create();
+    repo.branch("master").commit().add("dir/baz", "1").create();
+    repo.getRevWalk().parseBody(c1);
+    repo.getRevWalk().parseBody(c3);
+
+    Log response = buildJson(LOG, "/repo/+log/master/foo", "follow=0");
+    assertThat(response.log).hasSize(2);
+    verifyJsonCommit(response.log.get(0), c3);
+    verifyJsonCommit(response.log.get(1), c1);
+  }
+
+  @Test
+  public void pathLogWithChangedPathFilters() throws Exception {
+    DfsRepository r = repo.getRepository();
+    r.getConfig().setBoolean("core", null, "commitGraph", true);
+    r.getConfig().setBoolean("commitGraph", null, "readChangedPaths", true);
+    RevCommit c1 = repo.branch("master").commit().add("foo", "1").create();
+    repo.branch("master").commit().add("bar", "1").create();
+    RevCommit c3 = repo.branch("master").commit().add("foo", "2").create();
+    repo.branch("master").commit().add("dir/baz", "1").create();
+    new DfsGarbageCollector(r)
+        .setWriteCommitGraph(true)
+        .setWriteBloomFilter(true)
+        .pack(NullProgressMonitor.INSTANCE);
+
+    ChangedPathTreeFilter.Statistics before = ChangedPathTreeFilter.getStatistics();
+    Log response = buildJson(LOG, "/repo/+log/master/foo", "follow=0");
+    ChangedPathTreeFilter.Statistics after = ChangedPathTreeFilter.getStatistics();
+    assertThat(response.log).hasSize(2);
+    verifyJsonCommit(response.log.get(0), c3);
+    verifyJsonCommit(response.log.get(1), c1);
+
+    // The commits touching only bar and dir/baz are ruled out without diffing their trees; the
+    // root commit has no parent to compare a filter against.
+    assertThat(after.getNegatives() - before.getNegatives()).isEqualTo(2);
+    assertThat(after.getTruePositives() - before.getTruePositives()).isEqualTo(1);
+    assertThat(after.getFalsePositives() - before.getFalsePositives()).isEqualTo(0);
+  }
+
   private void verifyJsonCommit(Commit jsonCommit, RevCommit commit) throws Exception {
     repo.getRevWalk().parseBody(commit);
     GitilesAccess access = new TestGitilesAccess(repo.getRepository()).forRequest(null);
@@ -199,6 +348,33 @@ public class LogServletTest extends ServletTest {
                 + "\">");
   }
 
+  @Test
+  public void pipelinedRenderingMatchesSerial() throws Exception {
+    List<RevCommit> commits = new ArrayList<>();
+    commits.add(repo.branch(MAIN).commit().add("foo", "contents").create());
+    for (int i = 1; i < 7; i++) {
+      commits.add(repo.branch(MAIN).commit().add("file" + i, "contents " + i).create());
+    }
+    Config config = new Config();
+    config.setInt("log", null, "renderThreads", 3);
+    GitilesServlet serial = servlet;
+    GitilesServlet pipelined = TestGitilesServlet.create(repo, config);
+
+    for (String pretty : new String[] {"oneline", "fuller"}) {
+      for (int start = commits.size() - 1; start >= 0; start -= 3) {
+        String query = "format=html&pretty=" + pretty + "&n=3&s=" + commits.get(start).name();
+        String expected = buildResponse("/repo/+log/" + MAIN, query, SC_OK).getActualBodyString();
+        servlet = pipelined;
+        try {
+          assertThat(buildResponse("/repo/+log/" + MAIN, query, SC_OK).getActualBodyString())
+              .isEqualTo(expected);
+        } finally {
+          servlet = serial;
+        }
+      }
+    }
+  }
+
   @Test
   public void prettyDefaultUsesDefaultCssClass() throws Exception {
     RevCommit parent = repo.branch(MAIN).commit().add("foo", "contents").create();
@@ -0,0 +1,237 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static com.google.gitiles.MoreAssert.assertThrows;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gitiles.NameRevIndex.Mode;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.NameRevCommand;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepository;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.eclipse.jgit.transport.resolver.ServiceNotAuthorizedException;
+import org.eclipse.jgit.transport.resolver.ServiceNotEnabledException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link NameRevIndex}. */
+@RunWith(JUnit4.class)
+public class NameRevIndexTest {
+  private TestRepository<DfsRepository> repo;
+  private GitilesAccess access;
+  private NameRevIndex index;
+  private List<RevObject> objects;
+  private RevCommit master;
+
+  @Before
+  public void setUp() throws Exception {
+    repo = new TestRepository<>(new InMemoryRepository(new DfsRepositoryDescription("test")));
+    access = new TestGitilesAccess(repo.getRepository()).forRequest(null);
+    // Run updates on the calling thread, so they finish before get returns.
+    index =
+        new NameRevIndex(NameRevIndex.defaultBuilder(), MoreExecutors.newDirectExecutorService());
+    objects = new ArrayList<>();
+
+    RevCommit root = commit();
+    RevCommit a = commit(root);
+    RevCommit b = commit(root);
+    RevCommit inner = commit(b, commit(root));
+    RevCommit merge = commit(a, inner);
+    RevCommit tip = commit(merge);
+    tag("v1", a);
+    repo.update("refs/tags/light", b);
+    tag("v2", tip);
+    master = commit(tip);
+    repo.branch("master").update(master);
+    repo.branch("side").update(commit(b));
+  }
+
+  @Test
+  public void notIndexedUntilUpdated() throws Exception {
+    RefSnapshot refs = refs();
+    assertThat(index.get(access, repo.getRepository(), refs, Mode.ANNOTATED_TAGS)).isNull();
+    assertThat(index.get(access, repo.getRepository(), refs, Mode.ANNOTATED_TAGS)).isNotNull();
+    assertThat(index.get(access, repo.getRepository(), refs, Mode.TAGS)).isNull();
+  }
+
+  @Test
+  public void matchesNameRevCommand() throws Exception {
+    assertMatchesNameRev(Mode.ANNOTATED_TAGS);
+    assertMatchesNameRev(Mode.TAGS);
+  }
+
+  @Test
+  public void allRefsNotIndexed() throws Exception {
+    assertThat(Mode.ALL.isIndexed()).isFalse();
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> index.get(access, repo.getRepository(), refs(), Mode.ALL));
+  }
+
+  @Test
+  public void updatedWhenRefsAdded() throws Exception {
+    assertMatchesNameRev(Mode.TAGS);
+    NameRevIndex.Names first = names(Mode.TAGS);
+
+    RevCommit c = commit(master);
+    repo.branch("next").update(c);
+    tag("v3", c);
+    // Points at the same commit as an existing tag, but sorts first.
+    repo.update("refs/tags/aaa", repo.getRepository().exactRef("refs/tags/light").getObjectId());
+    assertThat(index.get(access, repo.getRepository(), refs(), Mode.TAGS)).isNull();
+    assertMatchesNameRev(Mode.TAGS);
+    assertThat(names(Mode.TAGS)).isNotSameInstanceAs(first);
+  }
+
+  @Test
+  public void sharedAcrossVisibilityClasses() throws Exception {
+    NameRevIndex.Names names = names(Mode.TAGS);
+    GitilesAccess other = withVisibilityClass(access, "other class");
+    assertThat(index.get(other, repo.getRepository(), refs(), Mode.TAGS)).isSameInstanceAs(names);
+  }
+
+  @Test
+  public void keepsNamesForRecentRefStates() throws Exception {
+    NameRevIndex.Names first = names(Mode.TAGS);
+    RefSnapshot before = refs();
+
+    tag("v3", commit(master));
+    NameRevIndex.Names second = names(Mode.TAGS);
+    assertThat(second).isNotSameInstanceAs(first);
+    // Users who do not see the new tag yet still use the earlier names.
+    assertThat(index.get(access, repo.getRepository(), before, Mode.TAGS)).isSameInstanceAs(first);
+  }
+
+  @Test
+  public void rebuiltWhenRefsRemoved() throws Exception {
+    assertMatchesNameRev(Mode.TAGS);
+
+    RefUpdate ru = repo.getRepository().updateRef("refs/tags/light");
+    ru.setForceUpdate(true);
+    assertThat(ru.delete()).isEqualTo(RefUpdate.Result.FORCED);
+    assertThat(index.get(access, repo.getRepository(), refs(), Mode.TAGS)).isNull();
+    assertMatchesNameRev(Mode.TAGS);
+  }
+
+  @Test
+  public void unchangedWhenOtherRefsMove() throws Exception {
+    assertMatchesNameRev(Mode.TAGS);
+    repo.branch("master").commit().create();
+    assertThat(index.get(access, repo.getRepository(), refs(), Mode.TAGS)).isNotNull();
+    assertMatchesNameRev(Mode.TAGS);
+  }
+
+  private RevCommit commit(RevCommit... parents) throws Exception {
+    RevCommit c = repo.commit(parents);
+    objects.add(c);
+    return c;
+  }
+
+  private void tag(String name, RevCommit c) throws Exception {
+    RevTag tag = repo.tag(name, c);
+    repo.update(Constants.R_TAGS + name, tag);
+    objects.add(tag);
+  }
+
+  private static GitilesAccess withVisibilityClass(GitilesAccess access, Object visibilityClass) {
+    return new GitilesAccess() {
+      @Override
+      public Map<String, RepositoryDescription> listRepositories(
+          String prefix, Set<String> branches)
+          throws ServiceNotEnabledException, ServiceNotAuthorizedException, IOException {
+        return access.listRepositories(prefix, branches);
+      }
+
+      @Override
+      public Object getUserKey() {
+        return access.getUserKey();
+      }
+
+      @Override
+      public Object getVisibilityClass() {
+        return visibilityClass;
+      }
+
+      @Override
+      public String getRepositoryName() {
+        return access.getRepositoryName();
+      }
+
+      @Override
+      public RepositoryDescription getRepositoryDescription() throws IOException {
+        return access.getRepositoryDescription();
+      }
+
+      @Override
+      public Config getConfig() throws IOException {
+        return access.getConfig();
+      }
+    };
+  }
+
+  private RefSnapshot refs() throws Exception {
+    return RefSnapshot.build(repo.getRepository().getRefDatabase());
+  }
+
+  private NameRevIndex.Names names(Mode mode) throws Exception {
+    RefSnapshot refs = refs();
+    NameRevIndex.Names names = index.get(access, repo.getRepository(), refs, mode);
+    if (names == null) {
+      names = index.get(access, repo.getRepository(), refs, mode);
+    }
+    assertThat(names).isNotNull();
+    return names;
+  }
+
+  private void assertMatchesNameRev(Mode mode) throws Exception {
+    NameRevIndex.Names names = names(mode);
+    try (Git git = new Git(repo.getRepository())) {
+      for (RevObject o : objects) {
+        NameRevCommand cmd = git.nameRev();
+        switch (mode) {
+          case ALL:
+            cmd.addPrefix(Constants.R_REFS);
+            break;
+          case TAGS:
+            cmd.addPrefix(Constants.R_TAGS);
+            break;
+          case ANNOTATED_TAGS:
+            cmd.addAnnotatedTags();
+            break;
+        }
+        String expected = cmd.add(o).call().get(o);
+        assertWithMessage("%s %s", mode, o.name()).that(names.get(o)).isEqualTo(expected);
+      }
+    }
+  }
+}
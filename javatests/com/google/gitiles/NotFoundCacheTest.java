@@ -0,0 +1,74 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsRepository;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link NotFoundCache}. */
+@RunWith(JUnit4.class)
+public class NotFoundCacheTest {
+  private TestRepository<DfsRepository> repo;
+  private GitilesAccess access;
+  private NotFoundCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    repo = new TestRepository<>(new InMemoryRepository(new DfsRepositoryDescription("test")));
+    access = new TestGitilesAccess(repo.getRepository()).forRequest(null);
+    cache = new NotFoundCache();
+  }
+
+  @Test
+  public void missingRevisionInvalidatedByRefChange() throws Exception {
+    RevCommit master = repo.branch("master").commit().create();
+    RefSnapshot before = refs();
+    cache.putMissingRevision(access, before, false, "/feature/file");
+    assertThat(cache.isRevisionMissing(access, before, false, "/feature/file")).isTrue();
+    assertThat(cache.isRevisionMissing(access, before, true, "/feature/file")).isFalse();
+    assertThat(cache.isRevisionMissing(access, before, false, "/feature")).isFalse();
+    assertThat(cache.isRevisionMissing(access, refs(), false, "/feature/file")).isTrue();
+
+    repo.branch("feature").update(master);
+    assertThat(cache.isRevisionMissing(access, refs(), false, "/feature/file")).isFalse();
+
+    RefSnapshot created = refs();
+    repo.branch("master").commit().parent(master).create();
+    assertThat(refs().getVersion()).isNotEqualTo(created.getVersion());
+  }
+
+  @Test
+  public void missingPath() throws Exception {
+    RevCommit c1 = repo.commit().create();
+    RevCommit c2 = repo.commit().add("file", "contents").create();
+    cache.putMissingPath(access, c1, "file", false);
+    assertThat(cache.isPathMissing(access, c1, "file", false)).isTrue();
+    assertThat(cache.isPathMissing(access, c1, "file", true)).isFalse();
+    assertThat(cache.isPathMissing(access, c2, "file", false)).isFalse();
+  }
+
+  private RefSnapshot refs() throws Exception {
+    return RefSnapshot.build(repo.getRepository().getRefDatabase());
+  }
+}
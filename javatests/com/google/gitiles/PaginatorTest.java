@@ -17,14 +17,20 @@ package com.google.gitiles;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.truth.Truth.assertThat;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import java.time.Duration;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.eclipse.jgit.internal.storage.dfs.DfsRepository;
 import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
 import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
 import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.AndRevFilter;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -36,6 +42,7 @@ import org.junit.runners.JUnit4;
 public class PaginatorTest {
   private TestRepository<DfsRepository> repo;
   private RevWalk walk;
+  private int fallbacks;
 
   @Before
   public void setUp() throws Exception {
@@ -158,6 +165,188 @@ public class PaginatorTest {
     assertThat(p.getNextStart()).isNull();
   }
 
+  @Test
+  public void cursorResumesMergeHistory() throws Exception {
+    RevCommit base = repo.commit().create();
+    RevCommit a1 = repo.commit().parent(base).create();
+    RevCommit b1 = repo.commit().parent(base).create();
+    RevCommit a2 = repo.commit().parent(a1).create();
+    RevCommit b2 = repo.commit().parent(b1).create();
+    RevCommit merge = repo.commit().parent(a2).parent(b2).create();
+    RevCommit tip = repo.commit().parent(merge).create();
+
+    assertThat(walkPages(tip, null, 2)).containsExactlyElementsIn(walkAll(tip, null)).inOrder();
+    assertThat(fallbacks).isEqualTo(0);
+
+    // A walk with uninteresting commits returns commits a little after its filter sees them.
+    assertThat(walkPages(tip, a1, 1)).containsExactlyElementsIn(walkAll(tip, a1)).inOrder();
+    assertThat(fallbacks).isEqualTo(0);
+
+    LogCursor.Codec codec = new LogCursor.Codec();
+    assertThat(codec.decode("other", codec.encode("fp", ImmutableList.of(tip)))).isNull();
+  }
+
+  @Test
+  public void cursorWithClockSkew() throws Exception {
+    // x is emitted before g, one of its descendants, since g is older than x.
+    RevCommit root = repo.commit().create();
+    RevCommit x = repo.commit().tick(9).parent(root).create();
+    RevCommit g = repo.commit().tick(-7).parent(x).create();
+    RevCommit f = repo.commit().tick(2).parent(g).create();
+    RevCommit tip = repo.commit().tick(15).parent(f).parent(x).create();
+
+    List<RevCommit> expected = walkAll(tip, null);
+    assertThat(expected).containsExactly(tip, x, f, g, root).inOrder();
+    for (int limit = 1; limit <= expected.size(); limit++) {
+      assertThat(walkPages(tip, null, limit)).containsExactlyElementsIn(expected).inOrder();
+    }
+
+    // Commits with the same time may be emitted in either order.
+    RevCommit y = repo.commit().tick(0).parent(tip).create();
+    RevCommit z = repo.commit().tick(0).parent(y).create();
+    RevCommit merge = repo.commit().parent(y).parent(z).create();
+    expected = walkAll(merge, null);
+    for (int limit = 1; limit <= expected.size(); limit++) {
+      assertThat(walkPages(merge, null, limit)).containsExactlyElementsIn(expected).inOrder();
+    }
+  }
+
+  @Test
+  public void budgetCopyStartsOver() throws Exception {
+    List<RevCommit> commits = linearCommits(5);
+    ScanBudget budget = new ScanBudget(2, Duration.ZERO);
+    walk.setRevFilter(budget);
+    walk.markStart(commits.get(4));
+    assertThat(walk).containsExactly(commits.get(4), commits.get(3)).inOrder();
+    assertThat(budget.isExhausted()).isTrue();
+
+    ScanBudget copy = (ScanBudget) budget.clone();
+    assertThat(copy.isExhausted()).isFalse();
+    assertThat(copy.getScanned()).isEqualTo(0);
+    try (RevWalk w = new RevWalk(repo.getRepository())) {
+      w.setRevFilter(copy);
+      w.markStart(w.parseCommit(commits.get(2)));
+      assertThat(w).containsExactly(commits.get(2), commits.get(1)).inOrder();
+    }
+    assertThat(copy.isExhausted()).isTrue();
+  }
+
+  @Test
+  public void budgetTruncatesAndResumesSearch() throws Exception {
+    RevCommit tip = null;
+    List<RevCommit> expected = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      String msg = (i % 3 == 0 ? "Fix bug " : "Add feature ") + i;
+      tip = (tip != null ? repo.commit().parent(tip) : repo.commit()).message(msg).create();
+      if (i % 3 == 0) {
+        expected.add(0, tip);
+      }
+    }
+
+    LogCursor.Codec codec = new LogCursor.Codec();
+    LogCursor.History history = new LogCursor.History();
+    List<RevCommit> actual = Lists.newArrayList();
+    List<ObjectId> starts = ImmutableList.of(tip);
+    String token = null;
+    int pages = 0;
+    do {
+      try (RevWalk w = new RevWalk(repo.getRepository())) {
+        ScanBudget budget = new ScanBudget(4, Duration.ZERO);
+        w.setRevFilter(
+            AndRevFilter.create(budget, new GrepRevFilter(ImmutableList.of("fix"), true)));
+        LogCursor.Session session =
+            new LogCursor.Session(
+                codec, history, "fp", new LogCursor.Page(token, null), token != null);
+        List<RevCommit> startCommits = Lists.newArrayList();
+        for (ObjectId id : starts) {
+          startCommits.add(w.parseCommit(id));
+        }
+        session.setTracker(LogCursor.Tracker.install(w, startCommits, token != null ? tip : null));
+        for (RevCommit c : startCommits) {
+          w.markStart(c);
+        }
+        Paginator p =
+            new Paginator(
+                w, 10, null, new Paginator.Options().setCursor(session).setBudget(budget));
+        Iterables.addAll(actual, p);
+        assertThat(p.getNextStart()).isNull();
+        assertThat(p.isTruncated()).isEqualTo(budget.isExhausted());
+        token = p.getNextCursor();
+        assertThat(token == null).isEqualTo(!p.isTruncated());
+        pages++;
+      }
+      if (token != null) {
+        starts = codec.decode("fp", token);
+        assertThat(starts).isNotNull();
+      }
+    } while (token != null);
+
+    assertThat(pages).isEqualTo(3);
+    assertThat(actual).containsExactlyElementsIn(expected).inOrder();
+  }
+
+  private List<RevCommit> walkAll(RevCommit tip, @Nullable RevCommit old) throws Exception {
+    try (RevWalk w = new RevWalk(repo.getRepository())) {
+      if (old != null) {
+        w.markUninteresting(old);
+      }
+      w.markStart(tip);
+      return Lists.newArrayList(w);
+    }
+  }
+
+  /**
+   * Walk every page of a log, following cursors where the paginator issues them and start commits
+   * where it does not.
+   */
+  private List<RevCommit> walkPages(RevCommit tip, @Nullable RevCommit old, int limit)
+      throws Exception {
+    LogCursor.Codec codec = new LogCursor.Codec();
+    LogCursor.History history = new LogCursor.History();
+    List<RevCommit> result = Lists.newArrayList();
+    List<ObjectId> starts = ImmutableList.of(tip);
+    String token = null;
+    ObjectId start = null;
+    fallbacks = 0;
+    while (true) {
+      try (RevWalk w = new RevWalk(repo.getRepository())) {
+        if (old != null) {
+          w.markUninteresting(w.parseCommit(old));
+        }
+        LogCursor.Session session =
+            new LogCursor.Session(
+                codec, history, "fp", new LogCursor.Page(token, start), token != null);
+        List<RevCommit> startCommits = Lists.newArrayList();
+        for (ObjectId id : starts) {
+          startCommits.add(w.parseCommit(id));
+        }
+        session.setTracker(LogCursor.Tracker.install(w, startCommits, token != null ? tip : null));
+        for (RevCommit c : startCommits) {
+          w.markStart(c);
+        }
+        Paginator p = new Paginator(w, limit, start, new Paginator.Options().setCursor(session));
+        Iterables.addAll(result, p);
+        if (token != null) {
+          assertThat(p.getPreviousPage()).isNotNull();
+        }
+        if (p.getNextStart() == null) {
+          assertThat(p.getNextCursor()).isNull();
+          return result;
+        }
+        token = p.getNextCursor();
+        if (token != null) {
+          starts = codec.decode("fp", token);
+          assertThat(starts).isNotNull();
+          start = null;
+        } else {
+          starts = ImmutableList.of(tip);
+          start = p.getNextStart();
+          fallbacks++;
+        }
+      }
+    }
+  }
+
   private List<RevCommit> linearCommits(int n) throws Exception {
     checkArgument(n > 0);
     List<RevCommit> commits = Lists.newArrayList();
@@ -16,6 +16,8 @@ package com.google.gitiles;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.gitiles.TestGitilesUrls.URLS;
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -25,6 +27,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
+import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -224,6 +227,113 @@ public class RefServletTest extends ServletTest {
     assertThat(master.target).isNull();
   }
 
+  @Test
+  public void getRefsHeadsJsonPrettyAndCompact() throws Exception {
+    setUpSimpleRefs();
+    String branch = id("refs/heads/branch");
+    String master = id("refs/heads/master");
+
+    String pretty = buildResponse("/repo/+refs/heads", "format=JSON", SC_OK).getActualBodyString();
+    assertThat(pretty)
+        .isEqualTo(
+            ")]}'\n"
+                + "{\n"
+                + "  \"branch\": {\n"
+                + "    \"value\": \""
+                + branch
+                + "\"\n"
+                + "  },\n"
+                + "  \"master\": {\n"
+                + "    \"value\": \""
+                + master
+                + "\"\n"
+                + "  }\n"
+                + "}\n");
+
+    String compact =
+        buildResponse("/repo/+refs/heads", "format=JSON&compact", SC_OK).getActualBodyString();
+    assertThat(compact)
+        .isEqualTo(
+            ")]}'\n{\"branch\":{\"value\":\""
+                + branch
+                + "\"},\"master\":{\"value\":\""
+                + master
+                + "\"}}\n");
+  }
+
+  @Test
+  public void getRefsJsonPages() throws Exception {
+    setUpSimpleRefs();
+    repo.branch("refs/heads/other").commit().create();
+    TypeToken<Map<String, RefJsonData>> type = new TypeToken<Map<String, RefJsonData>>() {};
+
+    assertThat(buildJson(type, "/repo/+refs/heads", "n=2").keySet())
+        .containsExactly("branch", "master")
+        .inOrder();
+    assertThat(buildJson(type, "/repo/+refs/heads", "n=2&s=master").keySet())
+        .containsExactly("other");
+    assertThat(buildJson(type, "/repo/+refs/heads", "n=2&s=other")).isEmpty();
+    assertThat(buildJson(type, "/repo/+refs/heads", "s=c").keySet())
+        .containsExactly("master", "other")
+        .inOrder();
+    assertThat(buildJson(type, "/repo/+refs", "n=1&s=refs/heads/other").keySet())
+        .containsExactly("refs/tags/atag");
+  }
+
+  @Test
+  public void getRefsTextPage() throws Exception {
+    setUpSimpleRefs();
+    FakeHttpServletResponse res =
+        buildResponse("/repo/+refs/tags", "format=text&n=1&s=atag", SC_OK);
+
+    assertThat(res.getActualBodyString()).isEqualTo(id("refs/tags/ctag") + " refs/tags/ctag\n");
+  }
+
+  @Test
+  public void getRefsNextStart() throws Exception {
+    setUpSimpleRefs();
+    repo.branch("refs/heads/other").commit().create();
+
+    FakeHttpServletResponse res = buildResponse("/repo/+refs/heads", "format=JSON&n=2", SC_OK);
+    assertThat(res.getHeader(RefServlet.NEXT_START_HEADER)).isEqualTo("master");
+    res = buildResponse("/repo/+refs/heads", "format=text&n=2&s=master", SC_OK);
+    assertThat(res.getHeader(RefServlet.NEXT_START_HEADER)).isNull();
+    res = buildResponse("/repo/+refs/heads", "format=JSON&n=3", SC_OK);
+    assertThat(res.getHeader(RefServlet.NEXT_START_HEADER)).isNull();
+    res = buildResponse("/repo/+refs", "format=text&n=2", SC_OK);
+    assertThat(res.getHeader(RefServlet.NEXT_START_HEADER)).isEqualTo("refs/heads/branch");
+  }
+
+  @Test
+  public void getRefsDefaultAndMaximumPageSize() throws Exception {
+    setUpSimpleRefs();
+    repo.branch("refs/heads/other").commit().create();
+    Config config = new Config();
+    config.setInt("refs", null, "pageSize", 1);
+    config.setInt("refs", null, "maxPageSize", 2);
+    servlet = TestGitilesServlet.create(repo, config);
+    TypeToken<Map<String, RefJsonData>> type = new TypeToken<Map<String, RefJsonData>>() {};
+
+    assertThat(buildJson(type, "/repo/+refs/heads").keySet()).containsExactly("branch");
+    assertThat(buildJson(type, "/repo/+refs/heads", "n=3").keySet())
+        .containsExactly("branch", "master")
+        .inOrder();
+    assertThat(buildJson(type, "/repo/+refs/heads", "n=0").keySet())
+        .containsExactly("branch", "master")
+        .inOrder();
+    FakeHttpServletResponse res = buildResponse("/repo/+refs/heads", "format=text&n=0", SC_OK);
+    assertThat(res.getHeader(RefServlet.NEXT_START_HEADER)).isEqualTo("master");
+    assertThat(buildJson(type, "/repo/+refs/heads", "s=master").keySet())
+        .containsExactly("other");
+  }
+
+  @Test
+  public void getRefsInvalidLimit() throws Exception {
+    setUpSimpleRefs();
+    buildResponse("/repo/+refs/heads", "format=JSON&n=-1", SC_BAD_REQUEST);
+    buildResponse("/repo/+refs/heads", "format=JSON&n=x", SC_BAD_REQUEST);
+  }
+
   private Map<String, RefJsonData> buildRefJson(String path) throws Exception {
     return buildJson(new TypeToken<Map<String, RefJsonData>>() {}, path);
   }
@@ -285,6 +395,28 @@ public class RefServletTest extends ServletTest {
         .inOrder();
   }
 
+  @Test
+  public void recentBranchesSoy() throws Exception {
+    RevCommit c = repo.branch("refs/heads/old").commit().create();
+    repo.tick(10);
+    repo.branch("refs/heads/new").commit().parent(c).create();
+
+    HttpServletRequest req = buildSoyRequest();
+    try (RevWalk rw = new RevWalk(repo.getRepository())) {
+      assertThat(
+              RefServlet.getRecentBranchesSoyData(
+                  req,
+                  new TestGitilesAccess(repo.getRepository()).forRequest(req),
+                  new TimeCache(),
+                  rw,
+                  1))
+          .containsExactly(
+              ref("/b/test/+/refs/heads/new", "new"),
+              ref("/b/test/+/refs/heads/old", "old"))
+          .inOrder();
+    }
+  }
+
   private HttpServletRequest buildSoyRequest() {
     HttpServletRequest req = FakeHttpServletRequest.newRequest(repo.getRepository());
     ViewFilter.setView(
@@ -303,8 +435,13 @@ public class RefServletTest extends ServletTest {
 
   private List<?> buildTagsSoyData() throws Exception {
     try (RevWalk rw = new RevWalk(repo.getRepository())) {
+      HttpServletRequest req = buildSoyRequest();
       return RefServlet.getTagsSoyData(
-          buildSoyRequest(), new TimeCache(TimeCache.defaultBuilder()), rw, Integer.MAX_VALUE);
+          req,
+          new TestGitilesAccess(repo.getRepository()).forRequest(req),
+          new TimeCache(TimeCache.defaultBuilder()),
+          rw,
+          Integer.MAX_VALUE);
     }
   }
 
@@ -0,0 +1,139 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.stream.Collectors.toList;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepository;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link RefSnapshot}. */
+@RunWith(JUnit4.class)
+public class RefSnapshotTest {
+  private TestRepository<DfsRepository> repo;
+  private RevCommit master;
+  private RevCommit feature;
+  private RevTag tag;
+
+  @Before
+  public void setUp() throws Exception {
+    repo = new TestRepository<>(new InMemoryRepository(new DfsRepositoryDescription("test")));
+    master = repo.branch("master").commit().create();
+    feature = repo.branch("team/feature").commit().create();
+    tag = repo.tag("v1", master);
+    repo.update("refs/tags/v1", tag);
+    repo.update("refs/heads/team2", feature);
+  }
+
+  @Test
+  public void lookups() throws Exception {
+    RefSnapshot refs = snapshot();
+    assertThat(names(refs.getRefsByPrefix("refs/heads/")))
+        .containsExactly("refs/heads/master", "refs/heads/team/feature", "refs/heads/team2")
+        .inOrder();
+    assertThat(names(refs.getRefsByPrefix("refs/heads/team/")))
+        .containsExactly("refs/heads/team/feature");
+    assertThat(refs.getRefsByPrefix("refs/notes/")).isEmpty();
+
+    assertThat(refs.exactRef("refs/heads/master").getObjectId()).isEqualTo(master);
+    assertThat(refs.exactRef("master")).isNull();
+    assertThat(refs.findRef("master").getName()).isEqualTo("refs/heads/master");
+    assertThat(refs.findRef("v1").getName()).isEqualTo("refs/tags/v1");
+    assertThat(refs.findRef("team")).isNull();
+  }
+
+  @Test
+  public void indexesByObject() throws Exception {
+    RefSnapshot refs = snapshot();
+    assertThat(names(refs.getTipsWithSha1(feature)))
+        .containsExactly("refs/heads/team/feature", "refs/heads/team2");
+    assertThat(names(refs.getTipsWithSha1(tag))).containsExactly("refs/tags/v1");
+    assertThat(refs.getTipsWithSha1(repo.commit().create())).isEmpty();
+
+    Set<Ref> peeledToMaster =
+        refs.getRefsByPeeledObjectId(repo.getRepository().getRefDatabase()).get(master);
+    assertThat(names(peeledToMaster)).containsAtLeast("refs/heads/master", "refs/tags/v1");
+  }
+
+  @Test
+  public void snapshotsReplacedWhenRefsChange() throws Exception {
+    RefSnapshot.Snapshots snapshots = new RefSnapshot.Snapshots();
+    GitilesAccess access = new TestGitilesAccess(repo.getRepository()).forRequest(null);
+    RefSnapshot first = snapshots.get(access, repo.getRepository());
+    assertThat(snapshots.get(access, repo.getRepository())).isSameInstanceAs(first);
+
+    repo.branch("master").commit().parent(master).create();
+    RefSnapshot second = snapshots.get(access, repo.getRepository());
+    assertThat(second).isNotSameInstanceAs(first);
+    assertThat(second.getVersion()).isNotEqualTo(first.getVersion());
+    assertThat(second.exactRef("refs/heads/master").getObjectId()).isNotEqualTo(master);
+    assertThat(snapshots.get(access, repo.getRepository())).isSameInstanceAs(second);
+  }
+
+  @Test
+  public void versionByPrefix() throws Exception {
+    RefSnapshot before = snapshot();
+    repo.branch("master").commit().parent(master).create();
+    RefSnapshot after = snapshot();
+
+    assertThat(after.getVersion()).isNotEqualTo(before.getVersion());
+    assertThat(after.getVersion(Constants.R_TAGS)).isEqualTo(before.getVersion(Constants.R_TAGS));
+    assertThat(after.getVersion(Constants.R_HEADS))
+        .isNotEqualTo(before.getVersion(Constants.R_HEADS));
+  }
+
+  @Test
+  public void snapshotsReusedWhenRefsRewrittenUnchanged() throws Exception {
+    RefSnapshot.Snapshots snapshots = new RefSnapshot.Snapshots();
+    GitilesAccess access = new TestGitilesAccess(repo.getRepository()).forRequest(null);
+    RefSnapshot first = snapshots.get(access, repo.getRepository());
+
+    // Rewriting a ref with the object it already points to is not a change.
+    repo.update("refs/heads/master", master);
+    assertThat(snapshots.get(access, repo.getRepository())).isSameInstanceAs(first);
+
+    repo.update("refs/heads/other", master);
+    RefSnapshot second = snapshots.get(access, repo.getRepository());
+    assertThat(second).isNotSameInstanceAs(first);
+    assertThat(second.exactRef("refs/heads/other")).isNotNull();
+
+    repo.delete("refs/heads/other");
+    RefSnapshot third = snapshots.get(access, repo.getRepository());
+    assertThat(third.exactRef("refs/heads/other")).isNull();
+    assertThat(third.getVersion()).isEqualTo(first.getVersion());
+  }
+
+  private RefSnapshot snapshot() throws Exception {
+    return RefSnapshot.build(repo.getRepository().getRefDatabase());
+  }
+
+  private static List<String> names(Collection<Ref> refs) {
+    return refs.stream().map(Ref::getName).collect(toList());
+  }
+}
@@ -0,0 +1,118 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepository;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link RefTimeIndex}. */
+@RunWith(JUnit4.class)
+public class RefTimeIndexTest {
+  private TestRepository<DfsRepository> repo;
+  private TimeCache timeCache;
+  private List<ObjectId> read;
+
+  @Before
+  public void setUp() throws Exception {
+    repo = new TestRepository<>(new InMemoryRepository(new DfsRepositoryDescription("test")));
+    timeCache = new TimeCache();
+    read = new ArrayList<>();
+  }
+
+  @Test
+  public void newestFirst() throws Exception {
+    RevCommit c1 = repo.commit().create();
+    repo.update("refs/tags/light", c1);
+    repo.tick(10);
+    repo.update("refs/tags/old", repo.tag("old", c1));
+    repo.tick(10);
+    RevCommit c2 = repo.commit().create();
+    repo.update("refs/tags/new", repo.tag("new", c2));
+    repo.branch("master").update(c2);
+
+    RefTimeIndex index = update(null);
+    assertThat(names(index.getNewest(0)))
+        .containsExactly("refs/tags/new", "refs/tags/old", "refs/tags/light")
+        .inOrder();
+    assertThat(names(index.getNewest(1))).containsExactly("refs/tags/new");
+    assertThat(index.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void updateReadsOnlyChangedRefs() throws Exception {
+    RevCommit c1 = repo.commit().create();
+    repo.update("refs/tags/a", repo.tag("a", c1));
+    repo.update("refs/tags/b", repo.tag("b", c1));
+    RefTimeIndex first = update(null);
+    assertThat(read).hasSize(2);
+
+    read.clear();
+    assertThat(update(first)).isSameInstanceAs(first);
+    assertThat(read).isEmpty();
+
+    repo.tick(10);
+    RevCommit c2 = repo.commit().create();
+    repo.update("refs/tags/c", repo.tag("c", c2));
+    repo.branch("master").update(c2);
+    RefTimeIndex second = update(first);
+    assertThat(read).containsExactly(repo.getRepository().exactRef("refs/tags/c").getObjectId());
+    assertThat(names(second.getNewest(0)))
+        .containsExactly("refs/tags/c", "refs/tags/a", "refs/tags/b")
+        .inOrder();
+
+    read.clear();
+    RefUpdate ru = repo.getRepository().updateRef("refs/tags/c");
+    ru.setForceUpdate(true);
+    assertThat(ru.delete()).isEqualTo(RefUpdate.Result.FORCED);
+    assertThat(names(update(second).getNewest(0)))
+        .containsExactly("refs/tags/a", "refs/tags/b")
+        .inOrder();
+    assertThat(read).isEmpty();
+  }
+
+  private RefTimeIndex update(RefTimeIndex previous) throws Exception {
+    RefSnapshot refs = RefSnapshot.build(repo.getRepository().getRefDatabase());
+    try (RevWalk walk = new RevWalk(repo.getRepository())) {
+      return RefTimeIndex.update(
+          previous,
+          refs,
+          "refs/tags/",
+          id -> {
+            read.add(id.copy());
+            return timeCache.getTime(walk, id);
+          });
+    }
+  }
+
+  private static List<String> names(List<Ref> refs) {
+    return refs.stream().map(Ref::getName).collect(toList());
+  }
+}
@@ -25,6 +25,7 @@ import org.eclipse.jgit.internal.storage.dfs.DfsRepository;
 import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
 import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
 import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.revwalk.RevBlob;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTag;
@@ -269,4 +270,36 @@ public class RevisionParserTest {
     assertThat(parser.parse("deadbeef")).isNull();
     assertThat(parser.parse("deadbeefdeadbeefdeadbeefdeadbeefdeadbeef")).isNull();
   }
+
+  @Test
+  public void parseWithRefSnapshot() throws Exception {
+    RevCommit master = repo.branch("master").commit().create();
+    RevCommit feature = repo.branch("team/feature").commit().create();
+    repo.update("refs/tags/team", master);
+    RevisionParser withRefs =
+        new RevisionParser(
+            repo.getRepository(),
+            new TestGitilesAccess(repo.getRepository()).forRequest(null),
+            new VisibilityCache(CacheBuilder.newBuilder().maximumSize(0)),
+            new BranchRedirect(),
+            RefSnapshot.build(repo.getRepository().getRefDatabase()));
+    assertThat(withRefs.parse("team/feature/src/main/File.java"))
+        .isEqualTo(
+            new Result(Revision.peeled("team", master), null, "/feature/src/main/File.java"));
+    assertThat(withRefs.parse("refs/heads/team/feature/src/main/File.java"))
+        .isEqualTo(
+            new Result(
+                Revision.peeled("refs/heads/team/feature", feature), null, "/src/main/File.java"));
+
+    // Refs created and deleted after the snapshot was taken.
+    RevCommit created = repo.branch("created").commit().create();
+    assertThat(withRefs.parse("created/file"))
+        .isEqualTo(new Result(Revision.peeled("created", created), null, "/file"));
+    RefUpdate ru = repo.getRepository().updateRef("refs/tags/team");
+    ru.setForceUpdate(true);
+    assertThat(ru.delete()).isEqualTo(RefUpdate.Result.FORCED);
+    assertThat(withRefs.parse("team/feature/src"))
+        .isEqualTo(new Result(Revision.peeled("team/feature", feature), null, "/src"));
+    assertThat(withRefs.parse("missing/file")).isNull();
+  }
 }
@@ -0,0 +1,70 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gitiles;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link TermMatcher}. */
+@RunWith(JUnit4.class)
+public class TermMatcherTest {
+  @Test
+  public void caseSensitive() throws Exception {
+    TermMatcher m = new TermMatcher(ImmutableList.of("Fix", "bug"), false);
+    assertThat(m.matches("Fix it")).isTrue();
+    assertThat(m.matches("a bug")).isTrue();
+    assertThat(m.matches("fix it")).isFalse();
+    assertThat(matchesRaw(m, "Fix it")).isTrue();
+    assertThat(matchesRaw(m, "fix a Bug")).isFalse();
+  }
+
+  @Test
+  public void ignoreCase() throws Exception {
+    TermMatcher m = new TermMatcher(ImmutableList.of("FiX"), true);
+    assertThat(m.matches("prefix")).isTrue();
+    assertThat(m.matches("FIXED")).isTrue();
+    assertThat(m.matches("fi x")).isFalse();
+    assertThat(matchesRaw(m, "prefix")).isTrue();
+    assertThat(matchesRaw(m, "FIXED")).isTrue();
+    assertThat(matchesRaw(m, "fi x")).isFalse();
+  }
+
+  @Test
+  public void rawRange() throws Exception {
+    TermMatcher m = new TermMatcher(ImmutableList.of("ab"), false);
+    byte[] buf = "xxabxx".getBytes(UTF_8);
+    assertThat(m.matchesRaw(buf, 2, 4)).isTrue();
+    assertThat(m.matchesRaw(buf, 3, 6)).isFalse();
+    assertThat(m.matchesRaw(buf, 0, 3)).isFalse();
+  }
+
+  @Test
+  public void nonAsciiIgnoringCaseNotMatchedRaw() throws Exception {
+    TermMatcher m = new TermMatcher(ImmutableList.of("TESTÉR"), true);
+    assertThat(m.canMatchRaw()).isFalse();
+    assertThat(m.matches("testér")).isTrue();
+    assertThat(new TermMatcher(ImmutableList.of("TESTÉR"), false).canMatchRaw()).isTrue();
+  }
+
+  private static boolean matchesRaw(TermMatcher m, String s) {
+    byte[] buf = s.getBytes(UTF_8);
+    return m.matchesRaw(buf, 0, buf.length);
+  }
+}
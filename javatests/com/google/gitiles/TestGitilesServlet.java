@@ -64,10 +64,32 @@ public class TestGitilesServlet {
       GitwebRedirectFilter gitwebRedirect,
       BranchRedirect branchRedirect)
       throws ServletException {
+    return create(repo, new Config(), gitwebRedirect, branchRedirect);
+  }
+
+  /**
+   * Create a servlet backed by a single test repository, with a server config.
+   *
+   * @param repo the test repo backing the servlet.
+   * @param config server config.
+   * @return a servlet.
+   * @see #create(TestRepository, GitwebRedirectFilter, BranchRedirect)
+   */
+  public static GitilesServlet create(final TestRepository<DfsRepository> repo, Config config)
+      throws ServletException {
+    return create(repo, config, new GitwebRedirectFilter(), new BranchRedirect());
+  }
+
+  private static GitilesServlet create(
+      final TestRepository<DfsRepository> repo,
+      Config config,
+      GitwebRedirectFilter gitwebRedirect,
+      BranchRedirect branchRedirect)
+      throws ServletException {
     final String repoName = repo.getRepository().getDescription().getRepositoryName();
     GitilesServlet servlet =
         new GitilesServlet(
-            new Config(),
+            config,
             new DefaultRenderer(
                 GitilesServlet.STATIC_PREFIX, ImmutableList.<URL>of(), repoName + " test site"),
             TestGitilesUrls.URLS,
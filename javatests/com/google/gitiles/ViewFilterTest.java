@@ -158,6 +158,71 @@ public class ViewFilterTest {
     assertThat(view.getPathPart()).isEqualTo("refs/heads/master~3^~2");
   }
 
+  @Test
+  public void visibility() throws Exception {
+    GitilesView view;
+
+    assertThrows(GitilesRequestFailureException.class, () -> getView("/repo/+visibility/master"));
+
+    view = getView("/repo/+visibility");
+    assertThat(view.getType()).isEqualTo(GitilesView.Type.VISIBILITY);
+    assertThat(view.getRepositoryName()).isEqualTo("repo");
+    assertThat(view.getRevision()).isEqualTo(Revision.NULL);
+    assertThat(view.getPathPart()).isNull();
+    assertThat(view.toUrl()).isEqualTo("/b/repo/+visibility");
+  }
+
+  @Test
+  public void contains() throws Exception {
+    RevCommit master = repo.branch(MASTER).commit().create();
+    GitilesView view;
+
+    assertThrows(GitilesRequestFailureException.class, () -> getView("/repo/+contains"));
+    assertThrows(GitilesRequestFailureException.class, () -> getView("/repo/+contains/"));
+    assertThrows(
+        GitilesRequestFailureException.class, () -> getView("/repo/+contains/master/foo"));
+    assertThrows(
+        GitilesRequestFailureException.class, () -> getView("/repo/+contains/master^..master"));
+
+    view = getView("/repo/+contains/master");
+    assertThat(view.getType()).isEqualTo(GitilesView.Type.CONTAINS);
+    assertThat(view.getRepositoryName()).isEqualTo("repo");
+    assertThat(view.getRevision().getName()).isEqualTo("master");
+    assertThat(view.getRevision().getId()).isEqualTo(master);
+    assertThat(view.getPathPart()).isNull();
+    assertThat(view.toUrl()).isEqualTo("/b/repo/+contains/master");
+  }
+
+  @Test
+  public void compare() throws Exception {
+    RevCommit master = repo.branch(MASTER).commit().create();
+    RevCommit stable = repo.branch("refs/heads/stable").commit().create();
+    GitilesView view;
+
+    assertThrows(GitilesRequestFailureException.class, () -> getView("/repo/+compare"));
+    assertThrows(GitilesRequestFailureException.class, () -> getView("/repo/+compare/"));
+    assertThrows(
+        GitilesRequestFailureException.class, () -> getView("/repo/+compare/master/foo"));
+
+    view = getView("/repo/+compare/master");
+    assertThat(view.getType()).isEqualTo(GitilesView.Type.COMPARE);
+    assertThat(view.getRepositoryName()).isEqualTo("repo");
+    assertThat(view.getRevision().getName()).isEqualTo("master");
+    assertThat(view.getRevision().getId()).isEqualTo(master);
+    assertThat(view.getOldRevision()).isEqualTo(Revision.NULL);
+    assertThat(view.getPathPart()).isNull();
+    assertThat(view.toUrl()).isEqualTo("/b/repo/+compare/master");
+
+    view = getView("/repo/+compare/master..stable");
+    assertThat(view.getType()).isEqualTo(GitilesView.Type.COMPARE);
+    assertThat(view.getRevision().getName()).isEqualTo("stable");
+    assertThat(view.getRevision().getId()).isEqualTo(stable);
+    assertThat(view.getOldRevision().getName()).isEqualTo("master");
+    assertThat(view.getOldRevision().getId()).isEqualTo(master);
+    assertThat(view.getPathPart()).isNull();
+    assertThat(view.toUrl()).isEqualTo("/b/repo/+compare/master..stable");
+  }
+
   @Test
   public void showBranches() throws Exception {
     RevCommit master = repo.branch(MASTER).commit().create();
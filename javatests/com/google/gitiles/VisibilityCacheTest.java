@@ -15,14 +15,23 @@ package com.google.gitiles;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.eclipse.jgit.internal.storage.dfs.DfsGarbageCollector;
 import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
 import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
 import org.eclipse.jgit.junit.TestRepository;
 import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.NullProgressMonitor;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.resolver.ServiceNotAuthorizedException;
@@ -119,7 +128,115 @@ public class VisibilityCacheTest {
     assertThat(visibilityCache.isVisible(repo, walk, access, commitB.getId(), known)).isTrue();
   }
 
+  @Test
+  public void reachabilityIndex() throws Exception {
+    new DfsGarbageCollector(repo).pack(NullProgressMonitor.INSTANCE);
+    VisibilityCache indexed =
+        new VisibilityCache(
+            new VisibilityChecker(),
+            CacheBuilder.newBuilder().maximumSize(0),
+            new ReachabilityIndex());
+    ObjectId[] known = new ObjectId[0];
+    assertThat(indexed.isVisible(repo, walk, access, commit1.getId(), known)).isTrue();
+    assertThat(indexed.isVisible(repo, walk, access, commitB.getId(), known)).isFalse();
+
+    try (TestRepository<InMemoryRepository> git = new TestRepository<>(repo)) {
+      git.update("refs/heads/other", commitC);
+    }
+    assertThat(indexed.isVisible(repo, walk, access, commitB.getId(), known)).isTrue();
+
+    RefUpdate ru = repo.updateRef("refs/heads/other");
+    ru.setForceUpdate(true);
+    ru.delete();
+    assertThat(indexed.isVisible(repo, walk, access, commitB.getId(), known)).isFalse();
+
+    // Repacked while the index holds an entry built from the old pack.
+    try (TestRepository<InMemoryRepository> git = new TestRepository<>(repo)) {
+      git.update("refs/heads/other", commitC);
+    }
+    assertThat(indexed.isVisible(repo, walk, access, commitB.getId(), known)).isTrue();
+    new DfsGarbageCollector(repo).pack(NullProgressMonitor.INSTANCE);
+    try (TestRepository<InMemoryRepository> git = new TestRepository<>(repo)) {
+      git.update("refs/heads/third", commit2);
+    }
+    assertThat(indexed.isVisible(repo, walk, access, commitB.getId(), known)).isTrue();
+    assertThat(indexed.isVisible(repo, walk, access, commit2.getId(), known)).isTrue();
+  }
+
+  @Test
+  public void getVisible() throws Exception {
+    AtomicInteger walks = new AtomicInteger();
+    VisibilityCache cache =
+        new VisibilityCache(
+            new VisibilityChecker() {
+              @Override
+              protected Set<RevCommit> getReachableFrom(
+                  RevWalk walk, Collection<RevCommit> commits, Collection<RevCommit> starters)
+                  throws IOException {
+                walks.incrementAndGet();
+                return super.getReachableFrom(walk, commits, starters);
+              }
+            });
+    ObjectId missing = ObjectId.fromString("deadbeefdeadbeefdeadbeefdeadbeefdeadbeef");
+    List<ObjectId> ids =
+        ImmutableList.of(
+            commit2.getId(),
+            commit1.getId(),
+            baseCommit.getId(),
+            commitB.getId(),
+            commitC.getId(),
+            missing);
+
+    assertThat(cache.getVisible(repo, walk, access, ids))
+        .containsExactly(commit2.getId(), commit1.getId(), baseCommit.getId());
+    assertThat(walks.get()).isEqualTo(1);
+
+    // Every result but the missing object's was cached.
+    assertThat(cache.isVisible(repo, walk, access, commitB.getId())).isFalse();
+    assertThat(cache.getVisible(repo, walk, access, ids.subList(0, 5)))
+        .containsExactly(commit2.getId(), commit1.getId(), baseCommit.getId());
+    assertThat(walks.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void sharedAcrossVisibilityClass() throws Exception {
+    AtomicInteger walks = new AtomicInteger();
+    VisibilityCache cache =
+        new VisibilityCache(
+            new VisibilityChecker() {
+              @Override
+              protected boolean isReachableFrom(
+                  RevWalk walk, RevCommit commit, Stream<RevCommit> starters) throws IOException {
+                walks.incrementAndGet();
+                return super.isReachableFrom(walk, commit, starters);
+              }
+            });
+    ObjectId[] known = new ObjectId[0];
+    GitilesAccess user1 = new FakeGitilesAccess("user1", "readers");
+    GitilesAccess user2 = new FakeGitilesAccess("user2", "readers");
+    GitilesAccess user3 = new FakeGitilesAccess("user3", "admins");
+
+    assertThat(cache.isVisible(repo, walk, user1, commit1.getId(), known)).isTrue();
+    assertThat(walks.get()).isEqualTo(1);
+    assertThat(cache.isVisible(repo, walk, user2, commit1.getId(), known)).isTrue();
+    assertThat(walks.get()).isEqualTo(1);
+    assertThat(cache.isVisible(repo, walk, user3, commit1.getId(), known)).isTrue();
+    assertThat(walks.get()).isEqualTo(2);
+  }
+
   private static class FakeGitilesAccess implements GitilesAccess {
+    private final Object userKey;
+    private final Object visibilityClass;
+
+    FakeGitilesAccess() {
+      this("Test", "Test");
+    }
+
+    FakeGitilesAccess(Object userKey, Object visibilityClass) {
+      this.userKey = userKey;
+      this.visibilityClass = visibilityClass;
+    }
+
     @Override
     public Map<String, RepositoryDescription> listRepositories(String prefix, Set<String> branches)
         throws ServiceNotEnabledException, ServiceNotAuthorizedException, IOException {
@@ -128,7 +245,12 @@ public class VisibilityCacheTest {
 
     @Override
     public Object getUserKey() {
-      return "Test";
+      return userKey;
+    }
+
+    @Override
+    public Object getVisibilityClass() {
+      return visibilityClass;
     }
 
     @Override
@@ -14,10 +14,13 @@
 
 package com.google.gitiles;
 
+import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
+import java.util.List;
 import java.util.stream.Stream;
 import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
 import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
@@ -80,6 +83,22 @@ public class VisibilityCheckerTest {
     assertTrue(visibilityChecker.isReachableFrom(walk, walk.parseCommit(commitB), starters));
   }
 
+  @Test
+  public void getReachableFrom() throws IOException {
+    List<RevCommit> commits =
+        ImmutableList.of(
+            walk.parseCommit(commitC),
+            walk.parseCommit(commit1),
+            walk.parseCommit(commitB),
+            walk.parseCommit(baseCommit));
+    List<RevCommit> starters =
+        ImmutableList.of(walk.parseCommit(commit2), walk.parseCommit(commitA));
+    assertThat(visibilityChecker.getReachableFrom(walk, commits, starters))
+        .containsExactly(commits.get(1), commits.get(3))
+        .inOrder();
+    assertThat(visibilityChecker.getReachableFrom(walk, commits, ImmutableList.of())).isEmpty();
+  }
+
   @Test
   public void unreachableFromRef() throws IOException {
     Stream<RevCommit> starters = Stream.of(walk.parseCommit(commit2), walk.parseCommit(commitA));